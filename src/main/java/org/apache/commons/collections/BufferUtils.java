@@ -69,12 +69,16 @@ public class BufferUtils {
     }
 
     /**
-     * Returns a synchronized buffer backed by the given buffer that will
+     * Returns a thread-safe buffer backed by the given buffer that will
      * block on {@link Buffer#get()} and {@link Buffer#remove()} operations.
      * If the buffer is empty, then the {@link Buffer#get()} and
      * {@link Buffer#remove()} operations will block until new elements
      * are added to the buffer, rather than immediately throwing a
      * <code>BufferUnderflowException</code>.
+     * <p>
+     * The buffer is guarded by a lock rather than by its monitor, so
+     * synchronizing on it protects nothing. Callers must hold the lock
+     * returned by {@link BlockingBuffer#getLock()} while iterating.
      *
      * @param <E> the type of the elements in the buffer
      * @param buffer  the buffer to synchronize, must not be null
@@ -86,12 +90,16 @@ public class BufferUtils {
     }
 
     /**
-     * Returns a synchronized buffer backed by the given buffer that will
+     * Returns a thread-safe buffer backed by the given buffer that will
      * block on {@link Buffer#get()} and {@link Buffer#remove()} operations
      * until <code>timeout</code> expires.  If the buffer is empty, then the
      * {@link Buffer#get()} and {@link Buffer#remove()} operations will block
      * until new elements are added to the buffer, rather than immediately
      * throwing a <code>BufferUnderflowException</code>.
+     * <p>
+     * The buffer is guarded by a lock rather than by its monitor, so
+     * synchronizing on it protects nothing. Callers must hold the lock
+     * returned by {@link BlockingBuffer#getLock()} while iterating.
      *
      * @param <E> the type of the elements in the buffer
      * @param buffer  the buffer to synchronize, must not be null
@@ -105,11 +113,15 @@ public class BufferUtils {
     }
 
     /**
-     * Returns a synchronized buffer backed by the given buffer that will
+     * Returns a thread-safe buffer backed by the given buffer that will
      * block on {@link Buffer#add(Object)} and
      * {@link Buffer#addAll(java.util.Collection)} until enough object(s) are
      * removed from the buffer to allow the object(s) to be added and still
      * maintain the maximum size.
+     * <p>
+     * The buffer is guarded by a lock rather than by its monitor, so
+     * synchronizing on it protects nothing. Callers must hold the lock
+     * returned by {@link BoundedBuffer#getLock()} while iterating.
      *
      * @param <E> the type of the elements in the buffer
      * @param buffer  the buffer to make bounded,  must not be null
@@ -123,11 +135,15 @@ public class BufferUtils {
     }
 
     /**
-     * Returns a synchronized buffer backed by the given buffer that will
+     * Returns a thread-safe buffer backed by the given buffer that will
      * block on {@link Buffer#add(Object)} and
      * {@link Buffer#addAll(java.util.Collection)} until enough object(s) are
      * removed from the buffer to allow the object(s) to be added and still
      * maintain the maximum size or the timeout expires.
+     * <p>
+     * The buffer is guarded by a lock rather than by its monitor, so
+     * synchronizing on it protects nothing. Callers must hold the lock
+     * returned by {@link BoundedBuffer#getLock()} while iterating.
      *
      * @param <E> the type of the elements in the buffer
      * @param buffer the buffer to make bounded, must not be null
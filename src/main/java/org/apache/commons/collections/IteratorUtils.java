@@ -46,6 +46,7 @@ import org.apache.commons.collections.iterators.IteratorIterable;
 import org.apache.commons.collections.iterators.ListIteratorWrapper;
 import org.apache.commons.collections.iterators.LoopingIterator;
 import org.apache.commons.collections.iterators.LoopingListIterator;
+import org.apache.commons.collections.iterators.MergingIterator;
 import org.apache.commons.collections.iterators.ObjectArrayIterator;
 import org.apache.commons.collections.iterators.ObjectArrayListIterator;
 import org.apache.commons.collections.iterators.ObjectGraphIterator;
@@ -545,6 +546,29 @@ public class IteratorUtils {
         return new CollatingIterator<E>(comparator, iterators);
     }
 
+    /**
+     * Gets an iterator that provides an ordered iteration over the elements
+     * contained in a collection of ordered {@link Iterator}s, merging them
+     * through a loser tree.
+     * <p>
+     * The result is the same as that of
+     * {@link #collatedIterator(Comparator, Collection)}, but each element
+     * costs <code>O(log k)</code> comparisons rather than <code>O(k)</code>
+     * for <code>k</code> iterators, which matters when merging many of them.
+     * <p>
+     * The comparator is optional. If null is specified then natural order is used.
+     *
+     * @param comparator  the comparator to use, may be null for natural order
+     * @param iterators  the iterators to use, not null or contain nulls
+     * @return a combination iterator over the iterators
+     * @throws NullPointerException if iterators collection is null or contains a null
+     * @since 4.0
+     */
+    public static <E> Iterator<E> mergedIterator(final Comparator<? super E> comparator,
+            final Collection<Iterator<? extends E>> iterators) {
+        return new MergingIterator<E>(comparator, iterators);
+    }
+
     // Object Graph
     //-----------------------------------------------------------------------
     /**
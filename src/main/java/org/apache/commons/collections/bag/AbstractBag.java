@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.bag;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.apache.commons.collections.Bag;
+
+/**
+ * Abstract implementation of the {@link Bag} interface for bags that do not
+ * store their counts in a <code>Map</code>.
+ * <p>
+ * The bulk operations, <code>equals</code>, <code>hashCode</code> and
+ * <code>toString</code> are implemented on top of {@link #getCount(Object)},
+ * {@link #uniqueSet()}, {@link #size()} and {@link #remove(Object, int)}, so
+ * subclasses only implement their storage. Elements of the unique set whose
+ * count is zero, as a concurrent bag may briefly hold, are ignored.
+ *
+ * @since 4.0
+ * @version $Id$
+ */
+public abstract class AbstractBag<E> extends AbstractCollection<E> implements Bag<E> {
+
+    /**
+     * Constructor needed for subclass serialisation.
+     */
+    protected AbstractBag() {
+        super();
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Determines if the bag contains the given elements, respecting cardinality.
+     *
+     * @param coll  the collection to check against
+     * @return <code>true</code> if the Bag contains all the collection
+     */
+    @Override
+    public boolean containsAll(final Collection<?> coll) {
+        final Bag<?> other = coll instanceof Bag ? (Bag<?>) coll : new HashBag<Object>(coll);
+        for (final Object current : other.uniqueSet()) {
+            if (getCount(current) < other.getCount(current)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes objects from the bag according to their count in the specified
+     * collection.
+     *
+     * @param coll  the collection to use
+     * @return true if the bag changed
+     */
+    @Override
+    public boolean removeAll(final Collection<?> coll) {
+        boolean result = false;
+        if (coll != null) {
+            for (final Object current : coll) {
+                final boolean changed = remove(current, 1);
+                result = result || changed;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Remove any members of the bag that are not in the given collection,
+     * respecting cardinality.
+     *
+     * @param coll  the collection to retain
+     * @return true if this call changed the collection
+     */
+    @Override
+    public boolean retainAll(final Collection<?> coll) {
+        final Bag<?> other = coll instanceof Bag ? (Bag<?>) coll : new HashBag<Object>(coll);
+        boolean result = false;
+        for (final E current : new ArrayList<E>(uniqueSet())) {
+            final int excess = getCount(current) - other.getCount(current);
+            if (excess > 0) {
+                final boolean changed = remove(current, excess);
+                result = result || changed;
+            }
+        }
+        return result;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Compares this Bag to another. This Bag equals another Bag if it contains
+     * the same number of occurrences of the same elements.
+     *
+     * @param object  the Bag to compare to
+     * @return true if equal
+     */
+    @Override
+    public boolean equals(final Object object) {
+        if (object == this) {
+            return true;
+        }
+        if (object instanceof Bag == false) {
+            return false;
+        }
+        final Bag<?> other = (Bag<?>) object;
+        if (other.size() != size() || other.uniqueSet().size() != uniqueSet().size()) {
+            return false;
+        }
+        for (final E current : uniqueSet()) {
+            if (other.getCount(current) != getCount(current)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets a hash code for the Bag compatible with the definition of equals.
+     * The hash code is defined as the sum total of a hash code for each
+     * element. The per element hash code is defined as
+     * <code>(e==null ? 0 : e.hashCode()) ^ noOccurances)</code>. This hash code
+     * is compatible with the Set interface.
+     *
+     * @return the hash code of the Bag
+     */
+    @Override
+    public int hashCode() {
+        int total = 0;
+        for (final E current : uniqueSet()) {
+            final int count = getCount(current);
+            if (count > 0) {
+                total += (current == null ? 0 : current.hashCode()) ^ count;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Implement a toString() method suitable for debugging.
+     *
+     * @return a debugging toString
+     */
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder();
+        buf.append('[');
+        for (final E current : uniqueSet()) {
+            final int count = getCount(current);
+            if (count > 0) {
+                if (buf.length() > 1) {
+                    buf.append(',');
+                }
+                buf.append(count);
+                buf.append(':');
+                buf.append(current);
+            }
+        }
+        buf.append(']');
+        return buf.toString();
+    }
+
+}
@@ -0,0 +1,665 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.bag;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.collections.Bag;
+import org.apache.commons.collections.buffer.IndexedPriorityBuffer;
+import org.apache.commons.collections.buffer.IndexedPriorityBuffer.Handle;
+import org.apache.commons.collections.set.UnmodifiableSet;
+
+/**
+ * Implements {@link Bag} with approximate counts in bounded memory, for
+ * streams with too many distinct elements to count exactly.
+ * <p>
+ * Two summaries are kept. A <i>Count-Min sketch</i> of
+ * <code>depth</code> rows of <code>width</code> counters estimates the
+ * count of any element, and a <i>Space-Saving</i> summary monitors the
+ * <code>capacity</code> most frequent elements seen. Both only ever
+ * overestimate, so {@link #getCount(Object)} returns the smaller of their
+ * estimates. With <code>N</code> the number of elements added,
+ * <code>epsilon</code> and <code>delta</code> the constructor parameters
+ * and <code>k</code> the capacity:
+ * <ul>
+ * <li><code>getCount(e)</code> is never less than the true count of <code>e</code>
+ * <li><code>getCount(e)</code> exceeds the true count by at most
+ *     <code>epsilon * N</code>, with probability at least <code>1 - delta</code>
+ * <li><code>getCount(e)</code> exceeds the true count by at most
+ *     <code>N / k</code> when <code>e</code> is in the {@link #uniqueSet()}
+ * <li>every element whose true count exceeds <code>N / k</code> is in
+ *     the {@link #uniqueSet()}
+ * <li>all counts are exact while there are at most <code>k</code> distinct
+ *     elements
+ * </ul>
+ * The {@link #uniqueSet()} therefore holds the top-k candidates rather than
+ * every element added, and the iterator returns those elements only, as
+ * many times as their estimated count. {@link #size()} is the exact number
+ * of elements added.
+ * <p>
+ * Bags created with the same parameters hash elements in the same way and
+ * may be combined with {@link #merge(ApproximateBag)}, so that each thread
+ * can count into its own instance. The sketch cannot forget an element, so
+ * the removal methods are not supported.
+ * <p>
+ * This bag permits null elements. Note that this implementation is not
+ * synchronized.
+ *
+ * @since 4.0
+ * @version $Id$
+ */
+public class ApproximateBag<E> extends AbstractBag<E> implements Serializable {
+
+    /** Serial version lock */
+    private static final long serialVersionUID = -3391782306467120894L;
+
+    /** The default relative error */
+    public static final double DEFAULT_EPSILON = 0.001;
+    /** The default probability of exceeding the error */
+    public static final double DEFAULT_DELTA = 0.01;
+    /** The default number of monitored elements */
+    public static final int DEFAULT_CAPACITY = 100;
+
+    /** The prime modulus of the sketch hash functions */
+    private static final long PRIME = (1L << 31) - 1;
+    /** The seed of the sketch hash functions, shared so that bags merge */
+    private static final long SEED = 0x5DEECE66DL;
+
+    /** The number of counters per row of the sketch */
+    private final int width;
+    /** The number of rows of the sketch */
+    private final int depth;
+    /** The number of monitored elements */
+    private final int capacity;
+    /** The sketch counters, row by row */
+    private final long[] table;
+    /** The number of elements added */
+    private long size;
+
+    /** The multipliers of the row hash functions */
+    private transient long[] multipliers;
+    /** The increments of the row hash functions */
+    private transient long[] increments;
+    /** The monitored elements, by element */
+    private transient Map<E, Handle<Counter<E>>> monitored;
+    /** The monitored elements, least frequent first */
+    private transient IndexedPriorityBuffer<Counter<E>> counters;
+    /** The modification count for fail fast iterators */
+    private transient int modCount;
+
+    /**
+     * Constructs an empty bag with the default error bounds and capacity.
+     */
+    public ApproximateBag() {
+        this(DEFAULT_EPSILON, DEFAULT_DELTA, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty bag with the given error bounds and capacity.
+     * The sketch takes <code>ceil(e / epsilon) * ceil(ln(1 / delta))</code>
+     * counters.
+     *
+     * @param epsilon  the error of a count relative to the size, between 0 and 1
+     * @param delta  the probability of exceeding that error, between 0 and 1
+     * @param capacity  the number of most frequent elements to monitor
+     * @throws IllegalArgumentException if a parameter is out of range
+     */
+    public ApproximateBag(final double epsilon, final double delta, final int capacity) {
+        super();
+        if (epsilon <= 0 || epsilon >= 1) {
+            throw new IllegalArgumentException("Epsilon must be between 0 and 1");
+        }
+        if (delta <= 0 || delta >= 1) {
+            throw new IllegalArgumentException("Delta must be between 0 and 1");
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be at least one");
+        }
+        this.width = (int) Math.ceil(Math.E / epsilon);
+        this.depth = (int) Math.ceil(Math.log(1 / delta));
+        this.capacity = capacity;
+        this.table = new long[width * depth];
+        init();
+    }
+
+    /**
+     * Creates the hash functions and the Space-Saving summary.
+     */
+    private void init() {
+        final Random random = new Random(SEED);
+        multipliers = new long[depth];
+        increments = new long[depth];
+        for (int row = 0; row < depth; row++) {
+            multipliers[row] = 1 + (long) (random.nextDouble() * (PRIME - 1));
+            increments[row] = (long) (random.nextDouble() * PRIME);
+        }
+        monitored = new HashMap<E, Handle<Counter<E>>>();
+        counters = new IndexedPriorityBuffer<Counter<E>>(new Comparator<Counter<E>>() {
+            public int compare(final Counter<E> c1, final Counter<E> c2) {
+                return c1.count < c2.count ? -1 : c1.count == c2.count ? 0 : 1;
+            }
+        });
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Gets the relative error of the sketch, the <code>epsilon</code> that
+     * the bag was created with rounded to the width of the sketch.
+     *
+     * @return the relative error
+     */
+    public double getEpsilon() {
+        return Math.E / width;
+    }
+
+    /**
+     * Gets the number of elements monitored as top-k candidates.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the bound, with probability <code>1 - delta</code>, on how much
+     * {@link #getCount(Object)} may exceed the true count. The bound is zero
+     * while fewer than <code>capacity</code> distinct elements have been added.
+     *
+     * @return the error bound
+     */
+    public long getErrorBound() {
+        if (!isFull()) {
+            return 0;
+        }
+        return Math.min((long) Math.ceil(getEpsilon() * size), size / capacity);
+    }
+
+    /**
+     * Gets the monitored elements, most frequent first.
+     *
+     * @param count  the maximum number of elements to return
+     * @return the most frequent elements
+     */
+    public List<E> getMostFrequent(final int count) {
+        final List<Counter<E>> list = new ArrayList<Counter<E>>(counters);
+        Collections.sort(list, Collections.reverseOrder(counters.comparator()));
+        final List<E> result = new ArrayList<E>(Math.min(count, list.size()));
+        for (int i = 0; i < count && i < list.size(); i++) {
+            result.add(list.get(i).element);
+        }
+        return result;
+    }
+
+    /**
+     * Adds the counts of another bag into this one, after which this bag
+     * summarises both streams with the same error bounds. The other bag is
+     * not changed.
+     *
+     * @param other  the bag to merge, created with the same parameters
+     * @throws IllegalArgumentException if the bags have different parameters
+     */
+    public void merge(final ApproximateBag<? extends E> other) {
+        if (other.width != width || other.depth != depth || other.capacity != capacity) {
+            throw new IllegalArgumentException("Only bags created with the same parameters can be merged");
+        }
+        modCount++;
+        for (int i = 0; i < table.length; i++) {
+            table[i] += other.table[i];
+        }
+        size += other.size;
+
+        // an element missing from a full summary may have up to its minimum count
+        final long floor = isFull() ? counters.get().count : 0;
+        final long otherFloor = other.isFull() ? other.counters.get().count : 0;
+        final Map<E, Counter<E>> union = new HashMap<E, Counter<E>>();
+        for (final Counter<E> counter : counters) {
+            union.put(counter.element, new Counter<E>(counter.element,
+                    counter.count + otherFloor, counter.error + otherFloor));
+        }
+        for (final Counter<? extends E> counter : other.counters) {
+            final Counter<E> mine = union.get(counter.element);
+            if (mine == null) {
+                union.put(counter.element, new Counter<E>(counter.element,
+                        counter.count + floor, counter.error + floor));
+            } else {
+                mine.count += counter.count - otherFloor;
+                mine.error += counter.error - otherFloor;
+            }
+        }
+        final List<Counter<E>> list = new ArrayList<Counter<E>>(union.values());
+        Collections.sort(list, Collections.reverseOrder(counters.comparator()));
+        monitored.clear();
+        counters.clear();
+        for (int i = 0; i < capacity && i < list.size(); i++) {
+            final Counter<E> counter = list.get(i);
+            monitored.put(counter.element, counters.insert(counter));
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Checks whether the Space-Saving summary monitors as many elements as it can.
+     *
+     * @return true if full
+     */
+    private boolean isFull() {
+        return counters.size() >= capacity;
+    }
+
+    /**
+     * Gets the column of an element in a row of the sketch.
+     *
+     * @param row  the row
+     * @param hash  the hash code of the element
+     * @return the column
+     */
+    private int column(final int row, final int hash) {
+        return (int) (((multipliers[row] * (hash & 0x7FFFFFFFL) + increments[row]) % PRIME) % width);
+    }
+
+    /**
+     * Gets the Count-Min estimate of an element.
+     *
+     * @param hash  the hash code of the element
+     * @return the estimate
+     */
+    private long estimate(final int hash) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, table[row * width + column(row, hash)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Gets the estimated count of an element.
+     *
+     * @param object  the element
+     * @return the estimate
+     */
+    private long estimate(final Object object) {
+        final long sketch = estimate(hash(object));
+        final Handle<Counter<E>> handle = monitored.get(object);
+        if (handle != null) {
+            return Math.min(sketch, handle.getValue().count);
+        }
+        return isFull() ? Math.min(sketch, counters.get().count) : 0;
+    }
+
+    /**
+     * Gets the hash code of an element, spreading the bits of its own.
+     *
+     * @param object  the element
+     * @return the hash code
+     */
+    private static int hash(final Object object) {
+        if (object == null) {
+            return 0;
+        }
+        final int h = object.hashCode();
+        return h ^ h >>> 16;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns the number of elements added to this bag, or
+     * <code>Integer.MAX_VALUE</code> if there are more.
+     *
+     * @return current size of the bag
+     */
+    public int size() {
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns true if the bag is empty.
+     *
+     * @return true if bag is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the estimated number of occurrences of the given element,
+     * which is never less than the true number.
+     *
+     * @param object  the object to search for
+     * @return the estimated number of occurrences of the object
+     */
+    public int getCount(final Object object) {
+        return (int) Math.min(estimate(object), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Determines if the bag may contain the given element. There are no false
+     * negatives, and false positives are bounded as for the counts.
+     *
+     * @param object  the object to search for
+     * @return true if the estimated count is positive
+     */
+    public boolean contains(final Object object) {
+        return estimate(object) > 0;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Adds a new element to the bag, incrementing its count.
+     *
+     * @param object  the object to add
+     * @return <code>true</code> if the object was not already in the
+     * <code>uniqueSet</code>
+     */
+    public boolean add(final E object) {
+        return add(object, 1);
+    }
+
+    /**
+     * Adds copies of an element to the bag, incrementing its count. If the
+     * element is not monitored and the summary is full, it replaces the least
+     * frequent monitored element.
+     *
+     * @param object  the object to add
+     * @param nCopies  the number of copies to add
+     * @return <code>true</code> if the object was not already in the
+     * <code>uniqueSet</code>
+     */
+    public boolean add(final E object, final int nCopies) {
+        if (nCopies <= 0) {
+            return false;
+        }
+        modCount++;
+        size += nCopies;
+        final int hash = hash(object);
+        for (int row = 0; row < depth; row++) {
+            table[row * width + column(row, hash)] += nCopies;
+        }
+
+        Handle<Counter<E>> handle = monitored.get(object);
+        if (handle != null) {
+            handle.getValue().count += nCopies;
+            counters.update(handle);
+            return false;
+        }
+        if (isFull()) {
+            handle = counters.getHandle();
+            final Counter<E> counter = handle.getValue();
+            monitored.remove(counter.element);
+            counter.element = object;
+            counter.error = counter.count;
+            counter.count += nCopies;
+            counters.update(handle);
+        } else {
+            handle = counters.insert(new Counter<E>(object, nCopies, 0));
+        }
+        monitored.put(object, handle);
+        return true;
+    }
+
+    /**
+     * Adds all the elements of a collection, adding the elements of a bag
+     * once per distinct element with their count.
+     *
+     * @param coll  the collection to add
+     * @return <code>true</code> if this call changed the bag
+     */
+    @SuppressWarnings("unchecked")
+    public boolean addAll(final Collection<? extends E> coll) {
+        boolean changed = false;
+        if (coll instanceof Bag) {
+            final Bag<? extends E> other = (Bag<? extends E>) coll;
+            for (final E current : other.uniqueSet()) {
+                final int count = other.getCount(current);
+                if (count > 0) {
+                    add(current, count);
+                    changed = true;
+                }
+            }
+        } else {
+            for (final E current : coll) {
+                add(current, 1);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Clears the bag, keeping its parameters.
+     */
+    public void clear() {
+        modCount++;
+        for (int i = 0; i < table.length; i++) {
+            table[i] = 0;
+        }
+        size = 0;
+        monitored.clear();
+        counters.clear();
+    }
+
+    /**
+     * Not supported, as the sketch cannot forget an element.
+     *
+     * @param object  ignored
+     * @return never
+     * @throws UnsupportedOperationException always
+     */
+    public boolean remove(final Object object) {
+        throw new UnsupportedOperationException("An approximate bag cannot remove elements");
+    }
+
+    /**
+     * Not supported, as the sketch cannot forget an element.
+     *
+     * @param object  ignored
+     * @param nCopies  ignored
+     * @return never
+     * @throws UnsupportedOperationException always
+     */
+    public boolean remove(final Object object, final int nCopies) {
+        throw new UnsupportedOperationException("An approximate bag cannot remove elements");
+    }
+
+    /**
+     * Not supported, as the sketch cannot forget an element.
+     *
+     * @param coll  ignored
+     * @return never
+     * @throws UnsupportedOperationException always
+     */
+    public boolean removeAll(final Collection<?> coll) {
+        throw new UnsupportedOperationException("An approximate bag cannot remove elements");
+    }
+
+    /**
+     * Not supported, as the sketch cannot forget an element.
+     *
+     * @param coll  ignored
+     * @return never
+     * @throws UnsupportedOperationException always
+     */
+    public boolean retainAll(final Collection<?> coll) {
+        throw new UnsupportedOperationException("An approximate bag cannot remove elements");
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Gets an iterator over the monitored elements, each returned as many
+     * times as its estimated count.
+     *
+     * @return the iterator
+     */
+    public Iterator<E> iterator() {
+        return new BagIterator();
+    }
+
+    /**
+     * Iterator over the monitored elements.
+     */
+    private class BagIterator implements Iterator<E> {
+        /** The monitored elements */
+        private final Iterator<E> elements = monitored.keySet().iterator();
+        /** The expected modification count */
+        private final int mods = modCount;
+        /** The current element */
+        private E current;
+        /** The number of copies of the current element still to return */
+        private long remaining;
+
+        public boolean hasNext() {
+            return remaining > 0 || elements.hasNext();
+        }
+
+        public E next() {
+            if (modCount != mods) {
+                throw new ConcurrentModificationException();
+            }
+            if (remaining == 0) {
+                if (!elements.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                current = elements.next();
+                remaining = estimate(current);
+            }
+            remaining--;
+            return current;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("An approximate bag cannot remove elements");
+        }
+    }
+
+    /**
+     * Returns an unmodifiable view of the monitored elements, which include
+     * every element more frequent than <code>size() / capacity</code>.
+     *
+     * @return the set of monitored elements
+     */
+    public Set<E> uniqueSet() {
+        return UnmodifiableSet.unmodifiableSet(monitored.keySet());
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns an array of the monitored elements, each as many times as its
+     * estimated count.
+     *
+     * @return an array of the monitored elements
+     */
+    public Object[] toArray() {
+        return snapshot().toArray();
+    }
+
+    /**
+     * Returns an array of the monitored elements, each as many times as its
+     * estimated count.
+     *
+     * @param <T> the type of the array elements
+     * @param array the array to populate
+     * @return an array of the monitored elements
+     */
+    public <T> T[] toArray(final T[] array) {
+        return snapshot().toArray(array);
+    }
+
+    /**
+     * Copies the elements to a list.
+     *
+     * @return the elements
+     */
+    private List<E> snapshot() {
+        final List<E> list = new ArrayList<E>();
+        for (final E element : this) {
+            list.add(element);
+        }
+        return list;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Write the bag out using a custom routine.
+     *
+     * @param out  the output stream
+     * @throws IOException if an I/O error occurs while writing to the output stream
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(counters.size());
+        for (final Counter<E> counter : counters) {
+            out.writeObject(counter.element);
+            out.writeLong(counter.count);
+            out.writeLong(counter.error);
+        }
+    }
+
+    /**
+     * Read the bag in using a custom routine.
+     *
+     * @param in  the input stream
+     * @throws IOException if an I/O error occurs while reading from the input stream
+     * @throws ClassNotFoundException if the class of a serialized object can not be found
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        init();
+        final int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            final E element = (E) in.readObject();
+            final Counter<E> counter = new Counter<E>(element, in.readLong(), in.readLong());
+            monitored.put(element, counters.insert(counter));
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * A monitored element of the Space-Saving summary.
+     */
+    private static final class Counter<E> {
+        /** The element */
+        E element;
+        /** The estimated count, never less than the true count */
+        long count;
+        /** The most by which the count may exceed the true count */
+        long error;
+
+        Counter(final E element, final long count, final long error) {
+            this.element = element;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+}
@@ -0,0 +1,551 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.bag;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.commons.collections.Bag;
+
+/**
+ * Implements {@link Bag} for concurrent use, using a <code>ConcurrentHashMap</code>
+ * of atomic counters.
+ * <p>
+ * Unlike a {@link SynchronizedBag}, no method of this bag takes a lock of its
+ * own. {@link #add(Object, int)} and {@link #remove(Object, int)} update the
+ * counter of an element with compare and set, so threads counting different
+ * elements never contend, and threads counting the same element only retry.
+ * A counter that reaches zero is removed from the map, and is never
+ * incremented again.
+ * <p>
+ * The total is kept in counters striped by thread, which {@link #size()}
+ * sums. While other threads are updating the bag the size is therefore an
+ * estimate, as are the results of <code>equals</code>, <code>hashCode</code>
+ * and <code>toArray</code>. The iterators and the {@link #uniqueSet()} view
+ * are weakly consistent: they never throw
+ * <code>ConcurrentModificationException</code>, and may or may not reflect
+ * changes made after they were created.
+ * <p>
+ * {@link #getCount(Object)} has the same semantics as in {@link HashBag}.
+ * This bag permits null elements.
+ *
+ * @since 4.0
+ * @version $Id$
+ */
+public class ConcurrentHashBag<E> extends AbstractBag<E> implements Serializable {
+
+    /** Serial version lock */
+    private static final long serialVersionUID = 2867412093317498524L;
+
+    /** The key stored for the null element */
+    private static final Object NULL = new Object();
+    /** The spacing of the size stripes, keeping each on its own cache line */
+    private static final int PADDING = 8;
+
+    /** The counters, by element */
+    private transient ConcurrentHashMap<Object, AtomicInteger> map;
+    /** The striped element totals */
+    private transient AtomicLongArray sizes;
+    /** The number of stripes minus one */
+    private transient int stripeMask;
+    /** The unique set view */
+    private transient Set<E> uniqueSet;
+
+    /**
+     * Constructs an empty bag, striping the size by the number of processors.
+     */
+    public ConcurrentHashBag() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs an empty bag, striping the size for the given number of
+     * concurrently updating threads.
+     *
+     * @param concurrencyLevel  the expected number of updating threads
+     * @throws IllegalArgumentException if the level is less than one
+     */
+    public ConcurrentHashBag(final int concurrencyLevel) {
+        super();
+        if (concurrencyLevel < 1) {
+            throw new IllegalArgumentException("The concurrency level must be at least one");
+        }
+        init(concurrencyLevel);
+    }
+
+    /**
+     * Constructs a bag containing all the members of the given collection.
+     *
+     * @param coll  a collection to copy into this bag
+     */
+    public ConcurrentHashBag(final Collection<? extends E> coll) {
+        this();
+        addAll(coll);
+    }
+
+    /**
+     * Creates the map and the size stripes.
+     *
+     * @param concurrencyLevel  the expected number of updating threads
+     */
+    private void init(final int concurrencyLevel) {
+        int stripes = 1;
+        while (stripes < concurrencyLevel && stripes < 1 << 16) {
+            stripes <<= 1;
+        }
+        map = new ConcurrentHashMap<Object, AtomicInteger>(16, 0.75f, stripes);
+        sizes = new AtomicLongArray(stripes * PADDING);
+        stripeMask = stripes - 1;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Adds to the size stripe of the current thread.
+     *
+     * @param delta  the change in size
+     */
+    private void addToSize(final long delta) {
+        int h = System.identityHashCode(Thread.currentThread());
+        h ^= h >>> 16;
+        sizes.addAndGet((h & stripeMask) * PADDING, delta);
+    }
+
+    /**
+     * Gets the counter of an element.
+     *
+     * @param object  the element
+     * @return the counter, null if absent
+     */
+    private AtomicInteger counter(final Object object) {
+        return map.get(object == null ? NULL : object);
+    }
+
+    /**
+     * Converts a key back to an element.
+     *
+     * @param key  the key
+     * @return the element
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> E element(final Object key) {
+        return key == NULL ? null : (E) key;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns the number of elements in this bag, summing the striped totals.
+     *
+     * @return current size of the bag
+     */
+    public int size() {
+        long total = 0;
+        for (int i = 0; i < sizes.length(); i += PADDING) {
+            total += sizes.get(i);
+        }
+        return (int) Math.max(0, Math.min(total, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Returns true if the bag is empty.
+     *
+     * @return true if bag is empty
+     */
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    /**
+     * Returns the number of occurrence of the given element in this bag
+     * by looking up its count in the underlying map.
+     *
+     * @param object  the object to search for
+     * @return the number of occurrences of the object, zero if not found
+     */
+    public int getCount(final Object object) {
+        final AtomicInteger count = counter(object);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Determines if the bag contains the given element by checking if the
+     * underlying map contains the element as a key.
+     *
+     * @param object  the object to search for
+     * @return true if the bag contains the given element
+     */
+    public boolean contains(final Object object) {
+        return getCount(object) > 0;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Adds a new element to the bag, incrementing its count.
+     *
+     * @param object  the object to add
+     * @return <code>true</code> if the object was not already in the
+     * <code>uniqueSet</code>
+     */
+    public boolean add(final E object) {
+        return add(object, 1);
+    }
+
+    /**
+     * Adds copies of an element to the bag without locking, incrementing its
+     * count.
+     *
+     * @param object  the object to add
+     * @param nCopies  the number of copies to add
+     * @return <code>true</code> if the object was not already in the
+     * <code>uniqueSet</code>
+     */
+    public boolean add(final E object, final int nCopies) {
+        if (nCopies <= 0) {
+            return false;
+        }
+        final Object key = object == null ? NULL : object;
+        while (true) {
+            AtomicInteger count = map.get(key);
+            if (count == null) {
+                count = map.putIfAbsent(key, new AtomicInteger(nCopies));
+                if (count == null) {
+                    addToSize(nCopies);
+                    return true;
+                }
+            }
+            while (true) {
+                final int value = count.get();
+                if (value == 0) {
+                    // being removed, help and start again with a new counter
+                    map.remove(key, count);
+                    break;
+                }
+                if (count.compareAndSet(value, value + nCopies)) {
+                    addToSize(nCopies);
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds all the elements of a collection, adding the elements of a bag
+     * once per distinct element with their count.
+     *
+     * @param coll  the collection to add
+     * @return <code>true</code> if this call changed the bag
+     */
+    @SuppressWarnings("unchecked")
+    public boolean addAll(final Collection<? extends E> coll) {
+        boolean changed = false;
+        if (coll instanceof Bag) {
+            final Bag<? extends E> other = (Bag<? extends E>) coll;
+            for (final E current : other.uniqueSet()) {
+                final int count = other.getCount(current);
+                if (count > 0) {
+                    add(current, count);
+                    changed = true;
+                }
+            }
+        } else {
+            for (final E current : coll) {
+                add(current, 1);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Removes every element present when the call starts.
+     */
+    public void clear() {
+        for (final Object key : map.keySet()) {
+            removeCopies(key, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Removes all copies of the specified object from the bag.
+     *
+     * @param object  the object to remove
+     * @return true if the bag changed
+     */
+    public boolean remove(final Object object) {
+        return removeCopies(object == null ? NULL : object, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Removes a specified number of copies of an object from the bag without
+     * locking.
+     *
+     * @param object  the object to remove
+     * @param nCopies  the number of copies to remove
+     * @return true if the bag changed
+     */
+    public boolean remove(final Object object, final int nCopies) {
+        if (nCopies <= 0) {
+            return false;
+        }
+        return removeCopies(object == null ? NULL : object, nCopies);
+    }
+
+    /**
+     * Decrements the counter of a key, removing it once it reaches zero.
+     *
+     * @param key  the key
+     * @param nCopies  the number of copies to remove, greater than zero
+     * @return true if the bag changed
+     */
+    private boolean removeCopies(final Object key, final int nCopies) {
+        final AtomicInteger count = map.get(key);
+        if (count == null) {
+            return false;
+        }
+        while (true) {
+            final int value = count.get();
+            if (value == 0) {
+                return false;
+            }
+            final int remaining = nCopies < value ? value - nCopies : 0;
+            if (count.compareAndSet(value, remaining)) {
+                if (remaining == 0) {
+                    map.remove(key, count);
+                }
+                addToSize(remaining - value);
+                return true;
+            }
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Gets a weakly consistent iterator over the bag elements. Elements
+     * present in the Bag more than once will be returned repeatedly.
+     *
+     * @return the iterator
+     */
+    public Iterator<E> iterator() {
+        return new BagIterator();
+    }
+
+    /**
+     * Weakly consistent iterator over the elements, which returns each
+     * element as many times as its count, checking the count before each.
+     */
+    private class BagIterator implements Iterator<E> {
+        /** The entry iterator */
+        private final Iterator<Map.Entry<Object, AtomicInteger>> entries = map.entrySet().iterator();
+        /** The current key */
+        private Object key;
+        /** The counter of the current key */
+        private AtomicInteger count;
+        /** The number of copies of the current key returned */
+        private int returned;
+        /** Whether remove may be called */
+        private boolean canRemove;
+
+        public boolean hasNext() {
+            while (count == null || returned >= count.get()) {
+                if (!entries.hasNext()) {
+                    count = null;
+                    return false;
+                }
+                final Map.Entry<Object, AtomicInteger> entry = entries.next();
+                key = entry.getKey();
+                count = entry.getValue();
+                returned = 0;
+            }
+            return true;
+        }
+
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            returned++;
+            canRemove = true;
+            return ConcurrentHashBag.<E>element(key);
+        }
+
+        public void remove() {
+            if (!canRemove) {
+                throw new IllegalStateException();
+            }
+            if (removeCopies(key, 1)) {
+                returned--;
+            }
+            canRemove = false;
+        }
+    }
+
+    /**
+     * Returns a weakly consistent view of the distinct elements, whose
+     * iterator removes all the copies of an element.
+     *
+     * @return the set of unique elements in this bag
+     */
+    public Set<E> uniqueSet() {
+        if (uniqueSet == null) {
+            uniqueSet = new UniqueSet();
+        }
+        return uniqueSet;
+    }
+
+    /**
+     * The set of distinct elements.
+     */
+    private class UniqueSet extends AbstractSet<E> {
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public boolean contains(final Object object) {
+            return ConcurrentHashBag.this.contains(object);
+        }
+
+        @Override
+        public boolean remove(final Object object) {
+            return ConcurrentHashBag.this.remove(object);
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentHashBag.this.clear();
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            final Iterator<Object> keys = map.keySet().iterator();
+            return new Iterator<E>() {
+                private Object last = keys;
+
+                public boolean hasNext() {
+                    return keys.hasNext();
+                }
+
+                public E next() {
+                    last = keys.next();
+                    return ConcurrentHashBag.<E>element(last);
+                }
+
+                public void remove() {
+                    if (last == keys) {
+                        throw new IllegalStateException();
+                    }
+                    removeCopies(last, Integer.MAX_VALUE);
+                    last = keys;
+                }
+            };
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns an array of all of this bag's elements.
+     *
+     * @return an array of all of this bag's elements
+     */
+    public Object[] toArray() {
+        return snapshot().toArray();
+    }
+
+    /**
+     * Returns an array of all of this bag's elements.
+     *
+     * @param <T> the type of the array elements
+     * @param array the array to populate
+     * @return an array of all of this bag's elements
+     */
+    public <T> T[] toArray(final T[] array) {
+        return snapshot().toArray(array);
+    }
+
+    /**
+     * Copies the elements to a list.
+     *
+     * @return the elements
+     */
+    private List<E> snapshot() {
+        final List<E> list = new ArrayList<E>(size());
+        for (final E element : this) {
+            list.add(element);
+        }
+        return list;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Write the bag out using a custom routine.
+     *
+     * @param out  the output stream
+     * @throws IOException if an I/O error occurs while writing to the output stream
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        final List<Object> keys = new ArrayList<Object>();
+        final List<Integer> counts = new ArrayList<Integer>();
+        for (final Map.Entry<Object, AtomicInteger> entry : map.entrySet()) {
+            final int count = entry.getValue().get();
+            if (count > 0) {
+                keys.add(element(entry.getKey()));
+                counts.add(Integer.valueOf(count));
+            }
+        }
+        out.writeInt(stripeMask + 1);
+        out.writeInt(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            out.writeObject(keys.get(i));
+            out.writeInt(counts.get(i).intValue());
+        }
+    }
+
+    /**
+     * Read the bag in using a custom routine.
+     *
+     * @param in  the input stream
+     * @throws IOException if an I/O error occurs while reading from the input stream
+     * @throws ClassNotFoundException if the class of a serialized object can not be found
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        init(Math.max(1, in.readInt()));
+        final int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            final E element = (E) in.readObject();
+            add(element, in.readInt());
+        }
+    }
+
+}
@@ -0,0 +1,779 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.bag;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.commons.collections.Bag;
+
+/**
+ * Implements {@link Bag}, using an open addressed hash table whose counts
+ * are primitives.
+ * <p>
+ * A {@link HashBag} stores each distinct element as a <code>HashMap</code>
+ * entry pointing to a <code>MutableInteger</code>, that is two objects per
+ * element. This bag stores the elements in one array and their counts in
+ * a parallel array, with linear probing, so that no object is created per
+ * element and the table takes a few bytes per element.
+ * <p>
+ * The counts are held in an <code>int[]</code>, which is widened to a
+ * <code>long[]</code> the first time a count overflows an <code>int</code>.
+ * {@link #getLongCount(Object)} and {@link #longSize()} return the exact
+ * tallies, while {@link #getCount(Object)} and {@link #size()} saturate at
+ * <code>Integer.MAX_VALUE</code>.
+ * <p>
+ * {@link #addAll(Collection)} adds a <code>Bag</code> one distinct element
+ * at a time, and adds runs of equal consecutive elements of any other
+ * collection with a single lookup.
+ * <p>
+ * Removed elements leave a marker in the table, which is cleared when the
+ * table is next rebuilt, so the table suits tallies that mostly grow.
+ * <p>
+ * This bag permits null elements. Note that this implementation is not
+ * synchronized.
+ *
+ * @since 4.0
+ * @version $Id$
+ */
+public class OpenHashBag<E> extends AbstractBag<E> implements Serializable {
+
+    /** Serial version lock */
+    private static final long serialVersionUID = -5893465287914782637L;
+
+    /** The default capacity, a power of two */
+    private static final int DEFAULT_CAPACITY = 16;
+    /** The maximum capacity, a power of two */
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    /** The proportion of used slots above which the table is rebuilt */
+    private static final float LOAD_FACTOR = 0.75f;
+    /** The key stored for the null element */
+    private static final Object NULL = new Object();
+    /** The key left in the slot of a removed element */
+    private static final Object REMOVED = new Object();
+
+    /** The keys, null for an empty slot */
+    private transient Object[] keys;
+    /** The counts while they all fit in an int, else null */
+    private transient int[] counts;
+    /** The counts once one has overflowed an int, else null */
+    private transient long[] longCounts;
+    /** The number of distinct elements */
+    private transient int distinct;
+    /** The number of slots used, including removed markers */
+    private transient int used;
+    /** The number of used slots at which the table is rebuilt */
+    private transient int threshold;
+    /** The total number of elements */
+    private transient long size;
+    /** The modification count for fail fast iterators */
+    private transient int modCount;
+    /** The unique set view */
+    private transient Set<E> uniqueSet;
+
+    /**
+     * Constructs an empty bag.
+     */
+    public OpenHashBag() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty bag able to hold the specified number of distinct
+     * elements without being rebuilt.
+     *
+     * @param expectedDistinct  the expected number of distinct elements
+     * @throws IllegalArgumentException if the number is negative
+     */
+    public OpenHashBag(final int expectedDistinct) {
+        super();
+        if (expectedDistinct < 0) {
+            throw new IllegalArgumentException("The expected number of elements must not be negative");
+        }
+        init(capacityFor(expectedDistinct));
+    }
+
+    /**
+     * Constructs a bag containing all the members of the given collection.
+     *
+     * @param coll  a collection to copy into this bag
+     */
+    public OpenHashBag(final Collection<? extends E> coll) {
+        this(coll instanceof Bag ? ((Bag<?>) coll).uniqueSet().size() : DEFAULT_CAPACITY);
+        addAll(coll);
+    }
+
+    /**
+     * Creates an empty table.
+     *
+     * @param capacity  the number of slots, a power of two
+     */
+    private void init(final int capacity) {
+        keys = new Object[capacity];
+        counts = new int[capacity];
+        longCounts = null;
+        threshold = Math.min((int) (capacity * LOAD_FACTOR), capacity - 1);
+        used = 0;
+    }
+
+    /**
+     * Gets the number of slots needed for a number of distinct elements.
+     *
+     * @param expectedDistinct  the number of distinct elements
+     * @return the capacity, a power of two
+     */
+    private static int capacityFor(final int expectedDistinct) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity < MAXIMUM_CAPACITY && capacity * LOAD_FACTOR <= expectedDistinct) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Gets the slot of a key, or where it would be inserted.
+     *
+     * @param key  the key, NULL for the null element
+     * @return the slot of the key, or the bitwise complement of the slot to insert it at
+     */
+    private int find(final Object key) {
+        final Object[] keys = this.keys;
+        final int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        int free = -1;
+        while (true) {
+            final Object current = keys[slot];
+            if (current == null) {
+                return ~(free < 0 ? slot : free);
+            }
+            if (current == REMOVED) {
+                if (free < 0) {
+                    free = slot;
+                }
+            } else if (current == key || current.equals(key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Gets the slot of an element.
+     *
+     * @param object  the element
+     * @return the slot, or -1 if the element is not in the bag
+     */
+    private int slotOf(final Object object) {
+        final int slot = find(object == null ? NULL : object);
+        return slot < 0 ? -1 : slot;
+    }
+
+    /**
+     * Spreads the hash code of a key across the bits used to find a slot.
+     *
+     * @param key  the key
+     * @return the hash
+     */
+    private static int hash(final Object key) {
+        final int h = key.hashCode() * 0x9E3779B9;
+        return h ^ h >>> 16;
+    }
+
+    /**
+     * Gets the count in a slot.
+     *
+     * @param slot  the slot
+     * @return the count
+     */
+    private long count(final int slot) {
+        return counts != null ? counts[slot] : longCounts[slot];
+    }
+
+    /**
+     * Sets the count in a slot, widening the counts if needed.
+     *
+     * @param slot  the slot
+     * @param count  the count
+     */
+    private void setCount(final int slot, final long count) {
+        if (counts != null) {
+            if (count <= Integer.MAX_VALUE) {
+                counts[slot] = (int) count;
+                return;
+            }
+            longCounts = new long[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                longCounts[i] = counts[i];
+            }
+            counts = null;
+        }
+        longCounts[slot] = count;
+    }
+
+    /**
+     * Rebuilds the table with the given capacity, dropping removed markers.
+     *
+     * @param capacity  the new number of slots
+     */
+    private void rehash(final int capacity) {
+        final Object[] oldKeys = keys;
+        final int[] oldCounts = counts;
+        final long[] oldLongCounts = longCounts;
+        keys = new Object[capacity];
+        if (oldCounts != null) {
+            counts = new int[capacity];
+        } else {
+            longCounts = new long[capacity];
+        }
+        threshold = Math.min((int) (capacity * LOAD_FACTOR), capacity - 1);
+        final int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            final Object key = oldKeys[i];
+            if (key != null && key != REMOVED) {
+                int slot = hash(key) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                if (oldCounts != null) {
+                    counts[slot] = oldCounts[i];
+                } else {
+                    longCounts[slot] = oldLongCounts[i];
+                }
+            }
+        }
+        used = distinct;
+    }
+
+    /**
+     * Adds copies of a key, inserting it if absent.
+     *
+     * @param key  the key, NULL for the null element
+     * @param nCopies  the number of copies, greater than zero
+     * @return true if the key was inserted
+     */
+    private boolean addCopies(final Object key, final long nCopies) {
+        modCount++;
+        size += nCopies;
+        int slot = find(key);
+        if (slot >= 0) {
+            setCount(slot, count(slot) + nCopies);
+            return false;
+        }
+        slot = ~slot;
+        if (keys[slot] == null) {
+            if (used >= threshold) {
+                rehash(distinct >= threshold / 2 ? Math.min(keys.length * 2, MAXIMUM_CAPACITY) : keys.length);
+                slot = ~find(key);
+            }
+            used++;
+        }
+        keys[slot] = key;
+        setCount(slot, nCopies);
+        distinct++;
+        return true;
+    }
+
+    /**
+     * Removes the element in a slot, leaving a marker.
+     *
+     * @param slot  the slot
+     */
+    private void removeSlot(final int slot) {
+        modCount++;
+        size -= count(slot);
+        keys[slot] = REMOVED;
+        setCount(slot, 0);
+        distinct--;
+    }
+
+    /**
+     * Decrements the count in a slot, removing the element at zero.
+     *
+     * @param slot  the slot
+     * @param nCopies  the number of copies to remove, greater than zero
+     */
+    private void removeCopies(final int slot, final long nCopies) {
+        final long count = count(slot);
+        if (nCopies < count) {
+            modCount++;
+            setCount(slot, count - nCopies);
+            size -= nCopies;
+        } else {
+            removeSlot(slot);
+        }
+    }
+
+    /**
+     * Converts a key back to an element.
+     *
+     * @param key  the key
+     * @return the element
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> E element(final Object key) {
+        return key == NULL ? null : (E) key;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns the number of elements in this bag, or
+     * <code>Integer.MAX_VALUE</code> if there are more.
+     *
+     * @return current size of the bag
+     */
+    public int size() {
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the exact number of elements in this bag.
+     *
+     * @return current size of the bag
+     */
+    public long longSize() {
+        return size;
+    }
+
+    /**
+     * Returns true if the bag is empty.
+     *
+     * @return true if bag is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of occurrences of the given element in this bag, or
+     * <code>Integer.MAX_VALUE</code> if there are more.
+     *
+     * @param object  the object to search for
+     * @return the number of occurrences of the object, zero if not found
+     */
+    public int getCount(final Object object) {
+        return (int) Math.min(getLongCount(object), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the exact number of occurrences of the given element in this bag.
+     *
+     * @param object  the object to search for
+     * @return the number of occurrences of the object, zero if not found
+     */
+    public long getLongCount(final Object object) {
+        final int slot = slotOf(object);
+        return slot < 0 ? 0 : count(slot);
+    }
+
+    /**
+     * Determines if the bag contains the given element.
+     *
+     * @param object  the object to search for
+     * @return true if the bag contains the given element
+     */
+    public boolean contains(final Object object) {
+        return slotOf(object) >= 0;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Adds a new element to the bag, incrementing its count.
+     *
+     * @param object  the object to add
+     * @return <code>true</code> if the object was not already in the
+     * <code>uniqueSet</code>
+     */
+    public boolean add(final E object) {
+        return addCopies(object == null ? NULL : object, 1);
+    }
+
+    /**
+     * Adds copies of an element to the bag, incrementing its count.
+     *
+     * @param object  the object to add
+     * @param nCopies  the number of copies to add
+     * @return <code>true</code> if the object was not already in the
+     * <code>uniqueSet</code>
+     */
+    public boolean add(final E object, final int nCopies) {
+        return add(object, (long) nCopies);
+    }
+
+    /**
+     * Adds copies of an element to the bag, incrementing its count, which
+     * may exceed <code>Integer.MAX_VALUE</code>.
+     *
+     * @param object  the object to add
+     * @param nCopies  the number of copies to add
+     * @return <code>true</code> if the object was not already in the
+     * <code>uniqueSet</code>
+     */
+    public boolean add(final E object, final long nCopies) {
+        if (nCopies <= 0) {
+            modCount++;
+            return false;
+        }
+        return addCopies(object == null ? NULL : object, nCopies);
+    }
+
+    /**
+     * Adds all the elements of a collection. The elements of a bag are added
+     * once per distinct element with their count, and runs of equal
+     * consecutive elements of other collections are added with one lookup.
+     *
+     * @param coll  the collection to add
+     * @return <code>true</code> if this call changed the bag
+     */
+    @SuppressWarnings("unchecked")
+    public boolean addAll(final Collection<? extends E> coll) {
+        if (coll instanceof OpenHashBag) {
+            final OpenHashBag<? extends E> other = (OpenHashBag<? extends E>) coll;
+            final Object[] otherKeys = other.keys;
+            for (int i = 0; i < otherKeys.length; i++) {
+                final Object key = otherKeys[i];
+                if (key != null && key != REMOVED) {
+                    addCopies(key, other.count(i));
+                }
+            }
+            return !other.isEmpty();
+        }
+        if (coll instanceof Bag) {
+            final Bag<? extends E> other = (Bag<? extends E>) coll;
+            for (final E element : other.uniqueSet()) {
+                add(element, other.getCount(element));
+            }
+            return !other.isEmpty();
+        }
+        final Iterator<? extends E> it = coll.iterator();
+        if (!it.hasNext()) {
+            return false;
+        }
+        E run = it.next();
+        long length = 1;
+        while (it.hasNext()) {
+            final E element = it.next();
+            if (element == run || element != null && element.equals(run)) {
+                length++;
+            } else {
+                add(run, length);
+                run = element;
+                length = 1;
+            }
+        }
+        add(run, length);
+        return true;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Clears the bag, keeping the table at its current capacity.
+     */
+    public void clear() {
+        modCount++;
+        final int capacity = keys.length;
+        init(capacity);
+        distinct = 0;
+        size = 0;
+    }
+
+    /**
+     * Removes all copies of the specified object from the bag.
+     *
+     * @param object  the object to remove
+     * @return true if the bag changed
+     */
+    public boolean remove(final Object object) {
+        final int slot = slotOf(object);
+        if (slot < 0) {
+            return false;
+        }
+        removeSlot(slot);
+        return true;
+    }
+
+    /**
+     * Removes a specified number of copies of an object from the bag.
+     *
+     * @param object  the object to remove
+     * @param nCopies  the number of copies to remove
+     * @return true if the bag changed
+     */
+    public boolean remove(final Object object, final int nCopies) {
+        final int slot = slotOf(object);
+        if (slot < 0 || nCopies <= 0) {
+            return false;
+        }
+        removeCopies(slot, nCopies);
+        return true;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Gets an iterator over the bag elements. Elements present in the Bag more
+     * than once will be returned repeatedly.
+     *
+     * @return the iterator
+     */
+    public Iterator<E> iterator() {
+        return new BagIterator();
+    }
+
+    /**
+     * Iterator over the slots of the table, which returns each element as
+     * many times as its count.
+     */
+    private abstract class SlotIterator {
+        /** The next slot to look at */
+        private int next;
+        /** The slot last returned, or -1 */
+        protected int current = -1;
+        /** The expected modification count */
+        protected int mods = modCount;
+
+        /**
+         * Moves to the next used slot.
+         *
+         * @return true if there is one
+         */
+        protected boolean hasNextSlot() {
+            while (next < keys.length) {
+                final Object key = keys[next];
+                if (key != null && key != REMOVED) {
+                    return true;
+                }
+                next++;
+            }
+            return false;
+        }
+
+        /**
+         * Returns the next used slot.
+         *
+         * @return the slot
+         */
+        protected int nextSlot() {
+            if (modCount != mods) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNextSlot()) {
+                throw new NoSuchElementException();
+            }
+            current = next++;
+            return current;
+        }
+
+        /**
+         * Checks that the last returned element can be removed.
+         */
+        protected void checkRemove() {
+            if (modCount != mods) {
+                throw new ConcurrentModificationException();
+            }
+            if (current < 0) {
+                throw new IllegalStateException();
+            }
+        }
+    }
+
+    /**
+     * Iterator over the elements of the bag.
+     */
+    private class BagIterator extends SlotIterator implements Iterator<E> {
+        /** The number of copies of the current element still to return */
+        private long remaining;
+        /** Whether remove may be called */
+        private boolean canRemove;
+
+        public boolean hasNext() {
+            return remaining > 0 || hasNextSlot();
+        }
+
+        public E next() {
+            if (remaining == 0) {
+                remaining = count(nextSlot());
+            } else if (modCount != mods) {
+                throw new ConcurrentModificationException();
+            }
+            remaining--;
+            canRemove = true;
+            return OpenHashBag.<E>element(keys[current]);
+        }
+
+        public void remove() {
+            checkRemove();
+            if (!canRemove) {
+                throw new IllegalStateException();
+            }
+            removeCopies(current, 1);
+            mods = modCount;
+            canRemove = false;
+        }
+    }
+
+    /**
+     * Returns a view of the distinct elements, whose iterator removes all the
+     * copies of an element.
+     *
+     * @return the set of unique elements in this bag
+     */
+    public Set<E> uniqueSet() {
+        if (uniqueSet == null) {
+            uniqueSet = new UniqueSet();
+        }
+        return uniqueSet;
+    }
+
+    /**
+     * The set of distinct elements.
+     */
+    private class UniqueSet extends AbstractSet<E> {
+
+        @Override
+        public int size() {
+            return distinct;
+        }
+
+        @Override
+        public boolean contains(final Object object) {
+            return OpenHashBag.this.contains(object);
+        }
+
+        @Override
+        public boolean remove(final Object object) {
+            return OpenHashBag.this.remove(object);
+        }
+
+        @Override
+        public void clear() {
+            OpenHashBag.this.clear();
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return new UniqueIterator();
+        }
+    }
+
+    /**
+     * Iterator over the distinct elements.
+     */
+    private class UniqueIterator extends SlotIterator implements Iterator<E> {
+
+        public boolean hasNext() {
+            return hasNextSlot();
+        }
+
+        public E next() {
+            return OpenHashBag.<E>element(keys[nextSlot()]);
+        }
+
+        public void remove() {
+            checkRemove();
+            removeSlot(current);
+            mods = modCount;
+            current = -1;
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns an array of all of this bag's elements.
+     *
+     * @return an array of all of this bag's elements
+     */
+    public Object[] toArray() {
+        return toArray(new Object[size()]);
+    }
+
+    /**
+     * Returns an array of all of this bag's elements.
+     *
+     * @param <T> the type of the array elements
+     * @param array the array to populate
+     * @return an array of all of this bag's elements
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] array) {
+        final int size = size();
+        if (array.length < size) {
+            array = (T[]) Array.newInstance(array.getClass().getComponentType(), size);
+        }
+        int i = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            final Object key = keys[slot];
+            if (key != null && key != REMOVED) {
+                final T element = (T) element(key);
+                for (long index = count(slot); index > 0; index--) {
+                    array[i++] = element;
+                }
+            }
+        }
+        while (i < array.length) {
+            array[i++] = null;
+        }
+        return array;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Write the bag out using a custom routine.
+     *
+     * @param out  the output stream
+     * @throws IOException if an I/O error occurs while writing to the output stream
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(distinct);
+        for (int slot = 0; slot < keys.length; slot++) {
+            final Object key = keys[slot];
+            if (key != null && key != REMOVED) {
+                out.writeObject(element(key));
+                out.writeLong(count(slot));
+            }
+        }
+    }
+
+    /**
+     * Read the bag in using a custom routine.
+     *
+     * @param in  the input stream
+     * @throws IOException if an I/O error occurs while reading from the input stream
+     * @throws ClassNotFoundException if the class of a serialized object can not be found
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        final int count = in.readInt();
+        init(capacityFor(count));
+        for (int i = 0; i < count; i++) {
+            final E element = (E) in.readObject();
+            add(element, in.readLong());
+        }
+    }
+
+}
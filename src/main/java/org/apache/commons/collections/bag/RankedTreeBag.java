@@ -0,0 +1,796 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.bag;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.commons.collections.SortedBag;
+import org.apache.commons.collections.set.UnmodifiableSet;
+
+/**
+ * Implements {@link SortedBag}, using an AVL tree in which each node also
+ * holds the number of elements in its subtree, counting duplicates.
+ * <p>
+ * A {@link TreeBag} has to iterate to find the position of an element. The
+ * subtree totals of this bag answer order statistic queries in O(log n) time,
+ * where n is the number of distinct elements:
+ * <ul>
+ * <li>{@link #rank(Object)} - the number of elements less than an element
+ * <li>{@link #select(int)} - the element at an index of the sorted bag
+ * <li>{@link #count(Object, Object)} - the number of elements in a range
+ * <li>{@link #percentile(double)} - the element at a percentile
+ * </ul>
+ * Adding and removing elements also takes O(log n) time.
+ * <p>
+ * As with the other bags of this package, {@link #uniqueSet()} is an
+ * unmodifiable view, elements are removed through the bag itself.
+ * <p>
+ * Null elements are only permitted if the comparator permits them.
+ * Note that this implementation is not synchronized.
+ *
+ * @since 4.0
+ * @version $Id$
+ */
+public class RankedTreeBag<E> extends AbstractBag<E> implements SortedBag<E>, Serializable {
+
+    /** Serial version lock */
+    private static final long serialVersionUID = 4428196367418263529L;
+
+    /** The comparator, null for natural ordering */
+    private final Comparator<? super E> comparator;
+    /** The root of the tree */
+    private transient Node<E> root;
+    /** The number of distinct elements */
+    private transient int distinct;
+    /** The modification count for fail fast iterators */
+    private transient int modCount;
+    /** Whether the last insertion created a node */
+    private transient boolean inserted;
+    /** The view of the distinct elements, created on first use */
+    private transient Set<E> uniqueSet;
+
+    /**
+     * Constructs an empty bag ordered by the natural ordering of its elements.
+     */
+    public RankedTreeBag() {
+        this((Comparator<? super E>) null);
+    }
+
+    /**
+     * Constructs an empty bag ordered by the given comparator.
+     *
+     * @param comparator  the comparator to use, null for natural ordering
+     */
+    public RankedTreeBag(final Comparator<? super E> comparator) {
+        super();
+        this.comparator = comparator;
+    }
+
+    /**
+     * Constructs a bag containing all the members of the given collection,
+     * ordered by their natural ordering.
+     *
+     * @param coll  a collection to copy into this bag
+     */
+    public RankedTreeBag(final Collection<? extends E> coll) {
+        this();
+        addAll(coll);
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Gets the comparator, or null for natural ordering.
+     *
+     * @return the comparator
+     */
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    /**
+     * Gets the lowest element.
+     *
+     * @return the first element
+     * @throws NoSuchElementException if the bag is empty
+     */
+    public E first() {
+        Node<E> node = root;
+        if (node == null) {
+            throw new NoSuchElementException();
+        }
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node.key;
+    }
+
+    /**
+     * Gets the highest element.
+     *
+     * @return the last element
+     * @throws NoSuchElementException if the bag is empty
+     */
+    public E last() {
+        Node<E> node = root;
+        if (node == null) {
+            throw new NoSuchElementException();
+        }
+        while (node.right != null) {
+            node = node.right;
+        }
+        return node.key;
+    }
+
+    /**
+     * Gets the number of elements less than the given element, which is the
+     * index of its first copy if it is in the bag.
+     *
+     * @param object  the element
+     * @return the number of elements less than the element
+     */
+    public int rank(final Object object) {
+        int rank = 0;
+        Node<E> node = root;
+        while (node != null) {
+            final int cmp = compare(object, node.key);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                rank += total(node.left) + node.count;
+                node = node.right;
+            } else {
+                return rank + total(node.left);
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Gets the element at the given index, counting duplicates, such that
+     * <code>select(i)</code> is the element the iterator returns at index
+     * <code>i</code>.
+     *
+     * @param index  the index, from zero
+     * @return the element at the index
+     * @throws IndexOutOfBoundsException if the index is not less than the size
+     */
+    public E select(final int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        return nodeAt(index).key;
+    }
+
+    /**
+     * Gets the number of elements greater than or equal to <code>fromElement</code>
+     * and less than <code>toElement</code>, counting duplicates.
+     *
+     * @param fromElement  the low end of the range, inclusive
+     * @param toElement  the high end of the range, exclusive
+     * @return the number of elements in the range
+     * @throws IllegalArgumentException if <code>fromElement</code> is greater than <code>toElement</code>
+     */
+    public int count(final E fromElement, final E toElement) {
+        if (compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+        return rank(toElement) - rank(fromElement);
+    }
+
+    /**
+     * Gets the element at the given percentile, using the nearest rank: the
+     * lowest element that at least <code>percent</code> percent of the
+     * elements are less than or equal to.
+     *
+     * @param percent  the percentile, from 0 to 100
+     * @return the element at the percentile
+     * @throws IllegalArgumentException if the percentile is out of range
+     * @throws NoSuchElementException if the bag is empty
+     */
+    public E percentile(final double percent) {
+        if (!(percent >= 0 && percent <= 100)) {
+            throw new IllegalArgumentException("The percentile must be between 0 and 100");
+        }
+        final int size = size();
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        final int index = (int) Math.ceil(percent / 100 * size) - 1;
+        return nodeAt(Math.min(Math.max(index, 0), size - 1)).key;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns the number of elements in this bag.
+     *
+     * @return current size of the bag
+     */
+    public int size() {
+        return total(root);
+    }
+
+    /**
+     * Returns true if the bag is empty.
+     *
+     * @return true if bag is empty
+     */
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * Returns the number of occurrence of the given element in this bag.
+     *
+     * @param object  the object to search for
+     * @return the number of occurrences of the object, zero if not found
+     */
+    public int getCount(final Object object) {
+        final Node<E> node = getNode(object);
+        return node == null ? 0 : node.count;
+    }
+
+    /**
+     * Determines if the bag contains the given element.
+     *
+     * @param object  the object to search for
+     * @return true if the bag contains the given element
+     */
+    public boolean contains(final Object object) {
+        return getNode(object) != null;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Adds a new element to the bag, incrementing its count.
+     *
+     * @param object  the object to add
+     * @return <code>true</code> if the object was not already in the
+     * <code>uniqueSet</code>
+     * @throws IllegalArgumentException if the object does not implement
+     * {@link Comparable} and the bag is using natural ordering
+     */
+    public boolean add(final E object) {
+        return add(object, 1);
+    }
+
+    /**
+     * Adds copies of an element to the bag, incrementing its count.
+     *
+     * @param object  the object to add
+     * @param nCopies  the number of copies to add
+     * @return <code>true</code> if the object was not already in the
+     * <code>uniqueSet</code>
+     * @throws IllegalArgumentException if the object does not implement
+     * {@link Comparable} and the bag is using natural ordering
+     */
+    public boolean add(final E object, final int nCopies) {
+        if (comparator == null && !(object instanceof Comparable)) {
+            throw new IllegalArgumentException("Objects of type " + (object == null ? null : object.getClass())
+                    + " cannot be added to a naturally ordered RankedTreeBag as they do not implement Comparable");
+        }
+        modCount++;
+        if (nCopies <= 0) {
+            return false;
+        }
+        inserted = false;
+        root = insert(root, object, nCopies);
+        return inserted;
+    }
+
+    /**
+     * Adds all the elements of a collection.
+     *
+     * @param coll  the collection to add
+     * @return <code>true</code> if this call changed the bag
+     */
+    public boolean addAll(final Collection<? extends E> coll) {
+        boolean changed = false;
+        for (final E current : coll) {
+            final boolean added = add(current, 1);
+            changed = changed || added;
+        }
+        return changed || !coll.isEmpty();
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Clears the bag.
+     */
+    public void clear() {
+        modCount++;
+        root = null;
+        distinct = 0;
+    }
+
+    /**
+     * Removes all copies of the specified object from the bag.
+     *
+     * @param object  the object to remove
+     * @return true if the bag changed
+     */
+    public boolean remove(final Object object) {
+        return remove(object, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Removes a specified number of copies of an object from the bag.
+     *
+     * @param object  the object to remove
+     * @param nCopies  the number of copies to remove
+     * @return true if the bag changed
+     */
+    public boolean remove(final Object object, final int nCopies) {
+        if (nCopies <= 0 || getNode(object) == null) {
+            return false;
+        }
+        modCount++;
+        root = delete(root, object, nCopies);
+        return true;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Gets an iterator over the bag elements in order. Elements present in
+     * the Bag more than once will be returned repeatedly.
+     *
+     * @return the iterator
+     */
+    public Iterator<E> iterator() {
+        return new BagIterator();
+    }
+
+    /**
+     * Iterator over the elements by index, so that it survives the
+     * rebalancing caused by its own removals.
+     */
+    private class BagIterator implements Iterator<E> {
+        /** The index of the next element */
+        private int index;
+        /** The node of the last element returned */
+        private Node<E> current;
+        /** The number of copies of the current node still to return */
+        private int remaining;
+        /** Whether remove may be called */
+        private boolean canRemove;
+        /** The expected modification count */
+        private int mods = modCount;
+
+        public boolean hasNext() {
+            return index < size();
+        }
+
+        public E next() {
+            if (modCount != mods) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (remaining == 0) {
+                current = nodeAt(index);
+                remaining = current.count;
+            }
+            index++;
+            remaining--;
+            canRemove = true;
+            return current.key;
+        }
+
+        public void remove() {
+            if (modCount != mods) {
+                throw new ConcurrentModificationException();
+            }
+            if (!canRemove) {
+                throw new IllegalStateException();
+            }
+            RankedTreeBag.this.remove(current.key, 1);
+            index--;
+            mods = modCount;
+            canRemove = false;
+        }
+    }
+
+    /**
+     * Returns an unmodifiable view of the distinct elements, in order.
+     *
+     * @return the set of unique elements in this bag
+     */
+    public Set<E> uniqueSet() {
+        if (uniqueSet == null) {
+            uniqueSet = UnmodifiableSet.unmodifiableSet(new UniqueSet());
+        }
+        return uniqueSet;
+    }
+
+    /**
+     * The set of distinct elements.
+     */
+    private class UniqueSet extends AbstractSet<E> {
+
+        @Override
+        public int size() {
+            return distinct;
+        }
+
+        @Override
+        public boolean contains(final Object object) {
+            return RankedTreeBag.this.contains(object);
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return new Iterator<E>() {
+                private int index;
+                private final int mods = modCount;
+
+                public boolean hasNext() {
+                    return index < RankedTreeBag.this.size();
+                }
+
+                public E next() {
+                    if (modCount != mods) {
+                        throw new ConcurrentModificationException();
+                    }
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    final Node<E> node = nodeAt(index);
+                    index += node.count;
+                    return node.key;
+                }
+
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns an array of all of this bag's elements, in order.
+     *
+     * @return an array of all of this bag's elements
+     */
+    public Object[] toArray() {
+        return toArray(new Object[size()]);
+    }
+
+    /**
+     * Returns an array of all of this bag's elements, in order.
+     *
+     * @param <T> the type of the array elements
+     * @param array the array to populate
+     * @return an array of all of this bag's elements
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] array) {
+        final int size = size();
+        if (array.length < size) {
+            array = (T[]) Array.newInstance(array.getClass().getComponentType(), size);
+        }
+        final int end = fill(root, array, 0);
+        for (int i = end; i < array.length; i++) {
+            array[i] = null;
+        }
+        return array;
+    }
+
+    /**
+     * Copies the elements of a subtree into an array, in order.
+     *
+     * @param node  the subtree
+     * @param array  the array
+     * @param start  the index of the first element
+     * @return the index after the last element
+     */
+    private static int fill(final Node<?> node, final Object[] array, int start) {
+        if (node != null) {
+            start = fill(node.left, array, start);
+            for (int i = 0; i < node.count; i++) {
+                array[start++] = node.key;
+            }
+            start = fill(node.right, array, start);
+        }
+        return start;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Compares two elements with the comparator or their natural ordering.
+     *
+     * @param o1  the first element
+     * @param o2  the second element
+     * @return the comparison
+     */
+    @SuppressWarnings("unchecked")
+    private int compare(final Object o1, final Object o2) {
+        if (comparator != null) {
+            return comparator.compare((E) o1, (E) o2);
+        }
+        return ((Comparable<Object>) o1).compareTo(o2);
+    }
+
+    /**
+     * Finds the node of an element.
+     *
+     * @param object  the element
+     * @return the node, or null if absent
+     */
+    private Node<E> getNode(final Object object) {
+        if (object == null && comparator == null) {
+            return null;
+        }
+        Node<E> node = root;
+        while (node != null) {
+            final int cmp = compare(object, node.key);
+            if (cmp == 0) {
+                return node;
+            }
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * Finds the node holding the element at an index.
+     *
+     * @param index  the index, which must be valid
+     * @return the node
+     */
+    private Node<E> nodeAt(int index) {
+        Node<E> node = root;
+        while (true) {
+            final int left = total(node.left);
+            if (index < left) {
+                node = node.left;
+            } else if (index < left + node.count) {
+                return node;
+            } else {
+                index -= left + node.count;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Adds copies of an element to a subtree.
+     *
+     * @param node  the subtree, may be null
+     * @param key  the element
+     * @param nCopies  the number of copies
+     * @return the new root of the subtree
+     */
+    private Node<E> insert(final Node<E> node, final E key, final int nCopies) {
+        if (node == null) {
+            distinct++;
+            inserted = true;
+            return new Node<E>(key, nCopies);
+        }
+        final int cmp = compare(key, node.key);
+        if (cmp < 0) {
+            node.left = insert(node.left, key, nCopies);
+        } else if (cmp > 0) {
+            node.right = insert(node.right, key, nCopies);
+        } else {
+            node.count += nCopies;
+        }
+        return balance(node);
+    }
+
+    /**
+     * Removes copies of an element known to be in a subtree.
+     *
+     * @param node  the subtree
+     * @param key  the element
+     * @param nCopies  the number of copies
+     * @return the new root of the subtree
+     */
+    private Node<E> delete(final Node<E> node, final Object key, final int nCopies) {
+        final int cmp = compare(key, node.key);
+        if (cmp < 0) {
+            node.left = delete(node.left, key, nCopies);
+        } else if (cmp > 0) {
+            node.right = delete(node.right, key, nCopies);
+        } else if (nCopies < node.count) {
+            node.count -= nCopies;
+        } else {
+            distinct--;
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            Node<E> successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = deleteFirst(node.right);
+            successor.left = node.left;
+            return balance(successor);
+        }
+        return balance(node);
+    }
+
+    /**
+     * Unlinks the first node of a subtree.
+     *
+     * @param node  the subtree
+     * @return the new root of the subtree
+     */
+    private Node<E> deleteFirst(final Node<E> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = deleteFirst(node.left);
+        return balance(node);
+    }
+
+    /**
+     * Updates a node from its children and rotates it if it is unbalanced.
+     *
+     * @param node  the node
+     * @return the new root of the subtree
+     */
+    private static <E> Node<E> balance(final Node<E> node) {
+        node.update();
+        final int factor = height(node.left) - height(node.right);
+        if (factor > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (factor < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    /**
+     * Rotates a subtree to the left.
+     *
+     * @param node  the root of the subtree
+     * @return the new root
+     */
+    private static <E> Node<E> rotateLeft(final Node<E> node) {
+        final Node<E> right = node.right;
+        node.right = right.left;
+        right.left = node;
+        node.update();
+        right.update();
+        return right;
+    }
+
+    /**
+     * Rotates a subtree to the right.
+     *
+     * @param node  the root of the subtree
+     * @return the new root
+     */
+    private static <E> Node<E> rotateRight(final Node<E> node) {
+        final Node<E> left = node.left;
+        node.left = left.right;
+        left.right = node;
+        node.update();
+        left.update();
+        return left;
+    }
+
+    /**
+     * Gets the height of a subtree.
+     *
+     * @param node  the subtree, may be null
+     * @return the height
+     */
+    private static int height(final Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    /**
+     * Gets the number of elements in a subtree.
+     *
+     * @param node  the subtree, may be null
+     * @return the number of elements
+     */
+    private static int total(final Node<?> node) {
+        return node == null ? 0 : node.total;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Write the bag out using a custom routine.
+     *
+     * @param out  the output stream
+     * @throws IOException if an I/O error occurs while writing to the output stream
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(distinct);
+        for (final E element : uniqueSet()) {
+            out.writeObject(element);
+            out.writeInt(getCount(element));
+        }
+    }
+
+    /**
+     * Read the bag in using a custom routine.
+     *
+     * @param in  the input stream
+     * @throws IOException if an I/O error occurs while reading from the input stream
+     * @throws ClassNotFoundException if the class of a serialized object can not be found
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        final int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            final E element = (E) in.readObject();
+            add(element, in.readInt());
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * A node of the tree, holding an element and its count.
+     */
+    private static final class Node<E> {
+        /** The element */
+        final E key;
+        /** The number of copies of the element */
+        int count;
+        /** The number of elements in the subtree, counting duplicates */
+        int total;
+        /** The height of the subtree */
+        int height;
+        /** The left child */
+        Node<E> left;
+        /** The right child */
+        Node<E> right;
+
+        Node(final E key, final int count) {
+            this.key = key;
+            this.count = count;
+            this.total = count;
+            this.height = 1;
+        }
+
+        /**
+         * Recomputes the height and total from the children.
+         */
+        void update() {
+            height = 1 + Math.max(height(left), height(right));
+            total = count + total(left) + total(right);
+        }
+    }
+
+}
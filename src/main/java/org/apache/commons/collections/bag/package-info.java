@@ -22,7 +22,11 @@
  * The following implementations are provided in the package:
  * <ul>
  *   <li>HashBag - implementation that uses a HashMap to store the data
+ *   <li>OpenHashBag - implementation that uses an open addressed table of primitive counts
+ *   <li>ConcurrentHashBag - implementation that uses a ConcurrentHashMap of atomic counts
+ *   <li>ApproximateBag - implementation that keeps approximate counts in bounded memory
  *   <li>TreeBag - implementation that uses a TreeMap to store the data
+ *   <li>RankedTreeBag - implementation that uses a counted AVL tree to answer rank and percentile queries
  * </ul>
  * <p>
  * The following decorators are provided in the package:
@@ -0,0 +1,725 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.bidimap;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.collections.BidiMap;
+import org.apache.commons.collections.MapIterator;
+
+/**
+ * Thread-safe implementation of {@link BidiMap} backed by a pair of
+ * <code>ConcurrentHashMap</code>s.
+ * <p>
+ * Lookups in either direction, <code>get</code>, <code>getKey</code>,
+ * <code>containsKey</code> and <code>containsValue</code>, go straight to
+ * one of the maps and never block. Updates take the striped locks covering
+ * every key and value they touch, including the old value of the key and
+ * the old key of the value, always acquiring them in ascending stripe order
+ * so that concurrent updates cannot deadlock. Updates touching different
+ * stripes proceed in parallel.
+ * <p>
+ * Each update is atomic with respect to other updates. A reader may briefly
+ * observe one direction of an update before the other, as the two maps
+ * are not changed at the same instant. Iterators are weakly consistent: they
+ * never throw <code>ConcurrentModificationException</code> and may or may
+ * not reflect changes made after they were created.
+ * <p>
+ * The inverse map shares the maps and the locks, and so costs nothing to
+ * create. Neither keys nor values may be null.
+ *
+ * @since 4.0
+ * @version $Id$
+ */
+public class ConcurrentHashBidiMap<K, V> extends AbstractMap<K, V> implements BidiMap<K, V>, Serializable {
+
+    /** Serialization version */
+    private static final long serialVersionUID = 7164372589340285112L;
+
+    /** The default capacity */
+    protected static final int DEFAULT_CAPACITY = 16;
+    /** The default number of lock stripes */
+    protected static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+    /** The maximum number of lock stripes */
+    protected static final int MAXIMUM_CONCURRENCY_LEVEL = 1 << 16;
+
+    /** The mappings from key to value */
+    private transient ConcurrentHashMap<K, V> normalMap;
+    /** The mappings from value to key */
+    private transient ConcurrentHashMap<V, K> reverseMap;
+    /** The locks guarding updates, by hash of the key or value */
+    private transient ReentrantLock[] locks;
+    /** The inverse map view */
+    private transient ConcurrentHashBidiMap<V, K> inverse;
+    /** The key set view */
+    private transient Set<K> keySet;
+    /** The values view */
+    private transient Set<V> values;
+    /** The entry set view */
+    private transient Set<Map.Entry<K, V>> entrySet;
+
+    /**
+     * Creates an empty map.
+     */
+    public ConcurrentHashBidiMap() {
+        this(DEFAULT_CAPACITY, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Creates an empty map sized for the given number of mappings and
+     * concurrently updating threads.
+     *
+     * @param initialCapacity  the expected number of mappings
+     * @param concurrencyLevel  the expected number of concurrently updating threads
+     * @throws IllegalArgumentException if the capacity is negative or the
+     *  concurrency level is not positive
+     */
+    public ConcurrentHashBidiMap(final int initialCapacity, final int concurrencyLevel) {
+        super();
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Initial capacity must not be negative");
+        }
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("Concurrency level must be positive");
+        }
+        init(initialCapacity, concurrencyLevel);
+    }
+
+    /**
+     * Creates a map containing the mappings of another map.
+     *
+     * @param map  the map whose mappings are to be placed in this map
+     * @throws NullPointerException if the map contains a null key or value
+     */
+    public ConcurrentHashBidiMap(final Map<? extends K, ? extends V> map) {
+        this(Math.max(DEFAULT_CAPACITY, map.size()), DEFAULT_CONCURRENCY_LEVEL);
+        putAll(map);
+    }
+
+    /**
+     * Creates the inverse view, sharing the maps and locks of its parent.
+     *
+     * @param normalMap  the mappings from key to value
+     * @param reverseMap  the mappings from value to key
+     * @param locks  the shared locks
+     * @param inverse  the parent map
+     */
+    private ConcurrentHashBidiMap(final ConcurrentHashMap<K, V> normalMap, final ConcurrentHashMap<V, K> reverseMap,
+            final ReentrantLock[] locks, final ConcurrentHashBidiMap<V, K> inverse) {
+        super();
+        this.normalMap = normalMap;
+        this.reverseMap = reverseMap;
+        this.locks = locks;
+        this.inverse = inverse;
+    }
+
+    /**
+     * Creates the maps and the locks.
+     *
+     * @param initialCapacity  the expected number of mappings
+     * @param concurrencyLevel  the expected number of concurrently updating threads
+     */
+    private void init(final int initialCapacity, final int concurrencyLevel) {
+        int stripes = 1;
+        while (stripes < concurrencyLevel && stripes < MAXIMUM_CONCURRENCY_LEVEL) {
+            stripes <<= 1;
+        }
+        normalMap = new ConcurrentHashMap<K, V>(initialCapacity, 0.75f, stripes);
+        reverseMap = new ConcurrentHashMap<V, K>(initialCapacity, 0.75f, stripes);
+        locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public int size() {
+        return normalMap.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return normalMap.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return key != null && normalMap.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(final Object value) {
+        return value != null && reverseMap.containsKey(value);
+    }
+
+    @Override
+    public V get(final Object key) {
+        return key == null ? null : normalMap.get(key);
+    }
+
+    public K getKey(final Object value) {
+        return value == null ? null : reverseMap.get(value);
+    }
+
+    /**
+     * Puts the key-value pair into the map, removing any mapping of the
+     * value to another key.
+     *
+     * @param key  the key, not null
+     * @param value  the value, not null
+     * @return the previous value of the key, null if none
+     * @throws NullPointerException if the key or value is null
+     */
+    @Override
+    public V put(final K key, final V value) {
+        return doPut(key, value, true);
+    }
+
+    @Override
+    public V remove(final Object key) {
+        if (key == null) {
+            return null;
+        }
+        while (true) {
+            final V value = normalMap.get(key);
+            if (value == null) {
+                return null;
+            }
+            final int[] stripes = lock(key, value, null, null);
+            try {
+                if (normalMap.get(key) == value) {
+                    normalMap.remove(key);
+                    reverseMap.remove(value);
+                    return value;
+                }
+            } finally {
+                unlock(stripes);
+            }
+        }
+    }
+
+    public K removeValue(final Object value) {
+        return inverseBidiMap().remove(value);
+    }
+
+    @Override
+    public void clear() {
+        for (final ReentrantLock lock : locks) {
+            lock.lock();
+        }
+        try {
+            normalMap.clear();
+            reverseMap.clear();
+        } finally {
+            for (int i = locks.length - 1; i >= 0; i--) {
+                locks[i].unlock();
+            }
+        }
+    }
+
+    public BidiMap<V, K> inverseBidiMap() {
+        if (inverse == null) {
+            inverse = new ConcurrentHashBidiMap<V, K>(reverseMap, normalMap, locks, this);
+        }
+        return inverse;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Gets a weakly consistent map iterator over the keys, which can also
+     * get and set the values.
+     *
+     * @return a map iterator
+     */
+    public MapIterator<K, V> mapIterator() {
+        return new BidiMapIterator();
+    }
+
+    @Override
+    public Set<K> keySet() {
+        if (keySet == null) {
+            keySet = new KeySet();
+        }
+        return keySet;
+    }
+
+    /**
+     * Gets a view of the values, which is a <code>Set</code> as the values
+     * of a bidirectional map are unique.
+     *
+     * @return the values view
+     */
+    @Override
+    public Set<V> values() {
+        if (values == null) {
+            values = new Values();
+        }
+        return values;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Put logic, run with the stripes of the key, the value, the old value
+     * of the key and the old key of the value all held.
+     *
+     * @param key  the key, not null
+     * @param value  the value, not null
+     * @param replaceOther  whether a mapping of the value to another key is
+     *  removed, rather than rejected
+     * @return the previous value of the key, null if none
+     * @throws IllegalArgumentException if the value is mapped to another key
+     *  and <code>replaceOther</code> is false
+     */
+    private V doPut(final K key, final V value, final boolean replaceOther) {
+        if (key == null || value == null) {
+            throw new NullPointerException("Null keys and values are not supported");
+        }
+        while (true) {
+            final V oldValue = normalMap.get(key);
+            final K oldKey = reverseMap.get(value);
+            final int[] stripes = lock(key, value, oldValue, oldKey);
+            try {
+                // both mappings can only change under stripes we now hold
+                if (normalMap.get(key) == oldValue && reverseMap.get(value) == oldKey) {
+                    if (oldKey != null && oldKey.equals(key) == false) {
+                        if (replaceOther == false) {
+                            throw new IllegalArgumentException("Value is already mapped to another key");
+                        }
+                        normalMap.remove(oldKey);
+                    }
+                    if (oldValue != null && oldValue.equals(value) == false) {
+                        reverseMap.remove(oldValue);
+                    }
+                    normalMap.put(key, value);
+                    reverseMap.put(value, key);
+                    return oldValue;
+                }
+            } finally {
+                unlock(stripes);
+            }
+        }
+    }
+
+    /**
+     * Removes a mapping only if the key is still mapped to the value.
+     *
+     * @param key  the key, may be null
+     * @param value  the value, may be null
+     * @return true if the mapping was removed
+     */
+    private boolean removeMapping(final Object key, final Object value) {
+        if (key == null || value == null) {
+            return false;
+        }
+        final int[] stripes = lock(key, value, null, null);
+        try {
+            if (value.equals(normalMap.get(key)) == false) {
+                return false;
+            }
+            normalMap.remove(key);
+            reverseMap.remove(value);
+            return true;
+        } finally {
+            unlock(stripes);
+        }
+    }
+
+    /**
+     * Gets the lock stripe of a key or value.
+     *
+     * @param object  the key or value, not null
+     * @return the stripe index
+     */
+    private int stripe(final Object object) {
+        int h = object.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return h & (locks.length - 1);
+    }
+
+    /**
+     * Locks the distinct stripes of up to four objects in ascending order.
+     *
+     * @param a  the first object, not null
+     * @param b  the second object, not null
+     * @param c  the third object, may be null
+     * @param d  the fourth object, may be null
+     * @return the locked stripes, in ascending order
+     */
+    private int[] lock(final Object a, final Object b, final Object c, final Object d) {
+        final int[] stripes = new int[4];
+        int count = 0;
+        count = insert(stripes, count, stripe(a));
+        count = insert(stripes, count, stripe(b));
+        if (c != null) {
+            count = insert(stripes, count, stripe(c));
+        }
+        if (d != null) {
+            count = insert(stripes, count, stripe(d));
+        }
+        final int[] result = new int[count];
+        System.arraycopy(stripes, 0, result, 0, count);
+        for (final int stripe : result) {
+            locks[stripe].lock();
+        }
+        return result;
+    }
+
+    /**
+     * Inserts a stripe into a sorted array of distinct stripes.
+     *
+     * @param stripes  the sorted stripes
+     * @param count  the number of stripes in use
+     * @param stripe  the stripe to insert
+     * @return the new number of stripes in use
+     */
+    private static int insert(final int[] stripes, final int count, final int stripe) {
+        int i = count;
+        while (i > 0 && stripes[i - 1] > stripe) {
+            i--;
+        }
+        if (i > 0 && stripes[i - 1] == stripe) {
+            return count;
+        }
+        System.arraycopy(stripes, i, stripes, i + 1, count - i);
+        stripes[i] = stripe;
+        return count + 1;
+    }
+
+    /**
+     * Unlocks stripes in the reverse order of locking.
+     *
+     * @param stripes  the stripes returned by <code>lock</code>
+     */
+    private void unlock(final int[] stripes) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            locks[stripes[i]].unlock();
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Write the map out using a custom routine.
+     *
+     * @param out  the output stream
+     * @throws IOException if an I/O error occurs while writing to the output stream
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(locks.length);
+        for (final Map.Entry<K, V> entry : normalMap.entrySet()) {
+            out.writeObject(entry.getKey());
+            out.writeObject(entry.getValue());
+        }
+        out.writeObject(null);
+    }
+
+    /**
+     * Read the map in using a custom routine.
+     *
+     * @param in  the input stream
+     * @throws IOException if an I/O error occurs while reading from the input stream
+     * @throws ClassNotFoundException if the class of a serialized object can not be found
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        init(DEFAULT_CAPACITY, in.readInt());
+        while (true) {
+            final K key = (K) in.readObject();
+            if (key == null) {
+                break;
+            }
+            put(key, (V) in.readObject());
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Weakly consistent iterator over the mappings, tracking the last one
+     * returned so that it can be removed or updated.
+     */
+    private abstract class MappingIterator {
+        /** The underlying iterator */
+        private final Iterator<Map.Entry<K, V>> iterator = normalMap.entrySet().iterator();
+        /** The last key returned */
+        protected K lastKey;
+        /** The value of the last key returned */
+        protected V lastValue;
+
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        protected void nextMapping() {
+            final Map.Entry<K, V> entry = iterator.next();
+            lastKey = entry.getKey();
+            lastValue = entry.getValue();
+        }
+
+        protected V setLastValue(final V value) {
+            if (lastKey == null) {
+                throw new IllegalStateException("Iterator setValue() can only be called after next() and before remove()");
+            }
+            final V old = doPut(lastKey, value, false);
+            lastValue = value;
+            return old;
+        }
+
+        public void remove() {
+            if (lastKey == null) {
+                throw new IllegalStateException("Iterator remove() can only be called once after next()");
+            }
+            removeMapping(lastKey, lastValue);
+            lastKey = null;
+            lastValue = null;
+        }
+    }
+
+    /**
+     * The map iterator.
+     */
+    private class BidiMapIterator extends MappingIterator implements MapIterator<K, V> {
+
+        public K next() {
+            nextMapping();
+            return lastKey;
+        }
+
+        public K getKey() {
+            if (lastKey == null) {
+                throw new IllegalStateException("Iterator getKey() can only be called after next() and before remove()");
+            }
+            return lastKey;
+        }
+
+        public V getValue() {
+            if (lastKey == null) {
+                throw new IllegalStateException(
+                        "Iterator getValue() can only be called after next() and before remove()");
+            }
+            return lastValue;
+        }
+
+        public V setValue(final V value) {
+            return setLastValue(value);
+        }
+
+        @Override
+        public String toString() {
+            if (lastKey == null) {
+                return "MapIterator[]";
+            }
+            return "MapIterator[" + lastKey + "=" + lastValue + "]";
+        }
+    }
+
+    /**
+     * The key set view.
+     */
+    private class KeySet extends AbstractSet<K> {
+
+        @Override
+        public int size() {
+            return ConcurrentHashBidiMap.this.size();
+        }
+
+        @Override
+        public boolean contains(final Object object) {
+            return containsKey(object);
+        }
+
+        @Override
+        public boolean remove(final Object object) {
+            return ConcurrentHashBidiMap.this.remove(object) != null;
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentHashBidiMap.this.clear();
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            return new BidiMapIterator();
+        }
+    }
+
+    /**
+     * The values view, iterating in key order.
+     */
+    private class Values extends AbstractSet<V> {
+
+        @Override
+        public int size() {
+            return ConcurrentHashBidiMap.this.size();
+        }
+
+        @Override
+        public boolean contains(final Object object) {
+            return containsValue(object);
+        }
+
+        @Override
+        public boolean remove(final Object object) {
+            return removeValue(object) != null;
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentHashBidiMap.this.clear();
+        }
+
+        @Override
+        public Iterator<V> iterator() {
+            return new ValueIterator();
+        }
+    }
+
+    /**
+     * The values iterator.
+     */
+    private class ValueIterator extends MappingIterator implements Iterator<V> {
+
+        public V next() {
+            nextMapping();
+            return lastValue;
+        }
+    }
+
+    /**
+     * The entry set view.
+     */
+    private class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+        @Override
+        public int size() {
+            return ConcurrentHashBidiMap.this.size();
+        }
+
+        @Override
+        public boolean contains(final Object object) {
+            if (object instanceof Map.Entry == false) {
+                return false;
+            }
+            final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) object;
+            final Object value = entry.getValue();
+            return value != null && value.equals(get(entry.getKey()));
+        }
+
+        @Override
+        public boolean remove(final Object object) {
+            if (object instanceof Map.Entry == false) {
+                return false;
+            }
+            final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) object;
+            return removeMapping(entry.getKey(), entry.getValue());
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentHashBidiMap.this.clear();
+        }
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+    }
+
+    /**
+     * The entry set iterator.
+     */
+    private class EntryIterator extends MappingIterator implements Iterator<Map.Entry<K, V>> {
+
+        public Map.Entry<K, V> next() {
+            nextMapping();
+            return new MappingEntry(lastKey, lastValue);
+        }
+    }
+
+    /**
+     * An entry whose <code>setValue</code> writes through to the map.
+     */
+    private class MappingEntry implements Map.Entry<K, V> {
+        /** The key */
+        private final K key;
+        /** The value, as last seen or set */
+        private V value;
+
+        MappingEntry(final K key, final V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        public V setValue(final V newValue) {
+            final V old = doPut(key, newValue, false);
+            value = newValue;
+            return old;
+        }
+
+        @Override
+        public boolean equals(final Object object) {
+            if (object == this) {
+                return true;
+            }
+            if (object instanceof Map.Entry == false) {
+                return false;
+            }
+            final Map.Entry<?, ?> other = (Map.Entry<?, ?>) object;
+            return key.equals(other.getKey()) && value.equals(other.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+}
@@ -0,0 +1,665 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.bidimap;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.commons.collections.BidiMap;
+import org.apache.commons.collections.MapIterator;
+import org.apache.commons.collections.keyvalue.UnmodifiableMapEntry;
+import org.apache.commons.collections.set.UnmodifiableSet;
+
+/**
+ * A dictionary that assigns each distinct key a dense <code>int</code>
+ * code, in order of first encoding, and maps the codes back to the keys.
+ * <p>
+ * This is the structure used to dictionary encode a column of values. A
+ * {@link DualHashBidiMap} from key to <code>Integer</code> would box every
+ * code and hold two hash maps. This class holds a single open addressed
+ * table of codes, probed by the hash of the key, and an array of the keys
+ * indexed by code. {@link #encode(Object)} and {@link #indexOf(Object)} find
+ * a code with one hash lookup and {@link #getKey(int)} decodes it with one
+ * array access, neither of them boxing.
+ * <p>
+ * The class also implements <code>BidiMap</code> from key to code so that it
+ * can be passed to code written against the interface. Keys can only be
+ * added by encoding them, so the codes stay dense: <code>put</code>,
+ * <code>remove</code> and the other modifying methods of the map and its
+ * views throw <code>UnsupportedOperationException</code>. Null keys are not
+ * permitted.
+ * <p>
+ * Note that this implementation is not synchronized.
+ *
+ * @since 4.0
+ * @version $Id$
+ */
+public class DictionaryBidiMap<K> extends AbstractMap<K, Integer> implements BidiMap<K, Integer>, Serializable {
+
+    /** Serialization version */
+    private static final long serialVersionUID = 2931640317420537962L;
+
+    /** The default capacity */
+    protected static final int DEFAULT_CAPACITY = 16;
+    /** The maximum table length, a power of two */
+    protected static final int MAXIMUM_CAPACITY = 1 << 30;
+    /** The load factor of the table */
+    protected static final float LOAD_FACTOR = 0.5f;
+
+    /** The keys, by code */
+    private transient Object[] keys;
+    /** The hash of each key, by code */
+    private transient int[] hashes;
+    /** The table of codes plus one, probed by hash, zero for a free slot */
+    private transient int[] table;
+    /** The number of codes */
+    private transient int size;
+    /** The size above which the table grows */
+    private transient int threshold;
+    /** The inverse map view */
+    private transient Inverse inverse;
+    /** The key set view */
+    private transient Set<K> keySet;
+    /** The values view */
+    private transient Set<Integer> values;
+    /** The entry set view */
+    private transient Set<Map.Entry<K, Integer>> entrySet;
+
+    /**
+     * Creates an empty dictionary.
+     */
+    public DictionaryBidiMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty dictionary able to hold the given number of keys
+     * without growing.
+     *
+     * @param initialCapacity  the expected number of keys
+     * @throws IllegalArgumentException if the capacity is negative
+     */
+    public DictionaryBidiMap(final int initialCapacity) {
+        super();
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Initial capacity must not be negative");
+        }
+        init(initialCapacity);
+    }
+
+    /**
+     * Creates the arrays.
+     *
+     * @param initialCapacity  the expected number of keys
+     */
+    private void init(final int initialCapacity) {
+        int capacity = 2;
+        while (capacity < MAXIMUM_CAPACITY && capacity * LOAD_FACTOR <= initialCapacity) {
+            capacity <<= 1;
+        }
+        final int length = Math.max(initialCapacity, 1);
+        keys = new Object[length];
+        hashes = new int[length];
+        table = new int[capacity];
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Gets the code of a key, assigning it the next code if it has none.
+     *
+     * @param key  the key to encode, not null
+     * @return the code of the key, from zero to <code>size() - 1</code>
+     * @throws NullPointerException if the key is null
+     */
+    public int encode(final K key) {
+        if (key == null) {
+            throw new NullPointerException("Null keys are not supported");
+        }
+        final int hash = hash(key);
+        final int[] table = this.table;
+        final int mask = table.length - 1;
+        int slot = hash & mask;
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            final int code = entry - 1;
+            if (hashes[code] == hash) {
+                final Object current = keys[code];
+                if (current == key || current.equals(key)) {
+                    return code;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+        final int code = size;
+        if (code == keys.length) {
+            growKeys();
+        }
+        keys[code] = key;
+        hashes[code] = hash;
+        table[slot] = code + 1;
+        if (++size > threshold) {
+            rehash();
+        }
+        return code;
+    }
+
+    /**
+     * Gets the code of a key without assigning one.
+     *
+     * @param key  the key to look up, may be null
+     * @return the code of the key, or -1 if it has none
+     */
+    public int indexOf(final Object key) {
+        if (key == null) {
+            return -1;
+        }
+        final int hash = hash(key);
+        final int[] table = this.table;
+        final int mask = table.length - 1;
+        int slot = hash & mask;
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            final int code = entry - 1;
+            if (hashes[code] == hash) {
+                final Object current = keys[code];
+                if (current == key || current.equals(key)) {
+                    return code;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the key of a code.
+     * <p>
+     * Unlike {@link #getKey(Object)}, which returns null for a code that
+     * has not been assigned, this method treats such a code as an error.
+     *
+     * @param code  the code to decode
+     * @return the key
+     * @throws IndexOutOfBoundsException if the code has not been assigned
+     */
+    @SuppressWarnings("unchecked")
+    public K getKey(final int code) {
+        if (code < 0 || code >= size) {
+            throw new IndexOutOfBoundsException("Code: " + code + ", Size: " + size);
+        }
+        return (K) keys[code];
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(final Object value) {
+        return codeOf(value) >= 0;
+    }
+
+    @Override
+    public Integer get(final Object key) {
+        final int code = indexOf(key);
+        return code < 0 ? null : Integer.valueOf(code);
+    }
+
+    @SuppressWarnings("unchecked")
+    public K getKey(final Object value) {
+        final int code = codeOf(value);
+        return code < 0 ? null : (K) keys[code];
+    }
+
+    /**
+     * Unsupported, as keys are added by {@link #encode(Object)}.
+     *
+     * @param key  ignored
+     * @param value  ignored
+     * @return never
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public Integer put(final K key, final Integer value) {
+        throw new UnsupportedOperationException("Keys can only be added by encode()");
+    }
+
+    @Override
+    public void putAll(final Map<? extends K, ? extends Integer> map) {
+        throw new UnsupportedOperationException("Keys can only be added by encode()");
+    }
+
+    @Override
+    public Integer remove(final Object key) {
+        throw new UnsupportedOperationException("Codes cannot be removed");
+    }
+
+    public K removeValue(final Object value) {
+        throw new UnsupportedOperationException("Codes cannot be removed");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Codes cannot be removed");
+    }
+
+    public BidiMap<Integer, K> inverseBidiMap() {
+        if (inverse == null) {
+            inverse = new Inverse();
+        }
+        return inverse;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Gets a map iterator over the keys in code order.
+     *
+     * @return a map iterator
+     */
+    public MapIterator<K, Integer> mapIterator() {
+        return new CodeMapIterator<K, Integer>(false);
+    }
+
+    @Override
+    public Set<K> keySet() {
+        if (keySet == null) {
+            keySet = UnmodifiableSet.unmodifiableSet(new View<K>(View.KEYS));
+        }
+        return keySet;
+    }
+
+    /**
+     * Gets a view of the codes, which is a <code>Set</code> as the values
+     * of a bidirectional map are unique.
+     *
+     * @return the values view
+     */
+    @Override
+    public Set<Integer> values() {
+        if (values == null) {
+            values = UnmodifiableSet.unmodifiableSet(new View<Integer>(View.CODES));
+        }
+        return values;
+    }
+
+    @Override
+    public Set<Map.Entry<K, Integer>> entrySet() {
+        if (entrySet == null) {
+            entrySet = UnmodifiableSet.unmodifiableSet(new View<Map.Entry<K, Integer>>(View.ENTRIES));
+        }
+        return entrySet;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Spreads the hash code of a key across the bits used to find a slot.
+     *
+     * @param key  the key
+     * @return the hash
+     */
+    private static int hash(final Object key) {
+        final int h = key.hashCode() * 0x9E3779B9;
+        return h ^ h >>> 16;
+    }
+
+    /**
+     * Gets an assigned code from a boxed value.
+     *
+     * @param value  the value, may be null
+     * @return the code, or -1 if the value is not an assigned code
+     */
+    private int codeOf(final Object value) {
+        if (value instanceof Integer) {
+            final int code = ((Integer) value).intValue();
+            if (code >= 0 && code < size) {
+                return code;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Doubles the arrays indexed by code.
+     */
+    private void growKeys() {
+        final int length = keys.length * 2;
+        final Object[] newKeys = new Object[length];
+        final int[] newHashes = new int[length];
+        System.arraycopy(keys, 0, newKeys, 0, size);
+        System.arraycopy(hashes, 0, newHashes, 0, size);
+        keys = newKeys;
+        hashes = newHashes;
+    }
+
+    /**
+     * Doubles the table, reinserting the codes from the cached hashes.
+     */
+    private void rehash() {
+        if (table.length == MAXIMUM_CAPACITY) {
+            threshold = Integer.MAX_VALUE;
+            return;
+        }
+        final int[] newTable = new int[table.length * 2];
+        final int mask = newTable.length - 1;
+        for (int code = 0; code < size; code++) {
+            int slot = hashes[code] & mask;
+            while (newTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newTable[slot] = code + 1;
+        }
+        table = newTable;
+        threshold = (int) (newTable.length * LOAD_FACTOR);
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Write the map out using a custom routine.
+     *
+     * @param out  the output stream
+     * @throws IOException if an I/O error occurs while writing to the output stream
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size);
+        for (int code = 0; code < size; code++) {
+            out.writeObject(keys[code]);
+        }
+    }
+
+    /**
+     * Read the map in using a custom routine.
+     *
+     * @param in  the input stream
+     * @throws IOException if an I/O error occurs while reading from the input stream
+     * @throws ClassNotFoundException if the class of a serialized object can not be found
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        final int count = in.readInt();
+        init(count);
+        for (int i = 0; i < count; i++) {
+            encode((K) in.readObject());
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Iterator over the codes in order. Codes are never removed, so the
+     * iterator simply stops at the size current at each step.
+     */
+    private abstract class CodeIterator {
+        /** The next code */
+        private int next;
+        /** The last code returned, -1 if none */
+        protected int last = -1;
+
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        protected int nextCode() {
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+            last = next++;
+            return last;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("Codes cannot be removed");
+        }
+    }
+
+    /**
+     * The map iterator, over the keys or, for the inverse, over the codes.
+     */
+    private class CodeMapIterator<A, B> extends CodeIterator implements MapIterator<A, B> {
+        /** Whether this iterates the inverse map */
+        private final boolean inverse;
+
+        CodeMapIterator(final boolean inverse) {
+            this.inverse = inverse;
+        }
+
+        private Object get(final boolean code) {
+            if (last < 0) {
+                throw new IllegalStateException(
+                        "Iterator getKey() or getValue() can only be called after next()");
+            }
+            return code ? (Object) Integer.valueOf(last) : keys[last];
+        }
+
+        public A next() {
+            nextCode();
+            return getKey();
+        }
+
+        @SuppressWarnings("unchecked")
+        public A getKey() {
+            return (A) get(inverse);
+        }
+
+        @SuppressWarnings("unchecked")
+        public B getValue() {
+            return (B) get(!inverse);
+        }
+
+        public B setValue(final B value) {
+            throw new UnsupportedOperationException("Codes cannot be changed");
+        }
+
+        @Override
+        public String toString() {
+            if (last < 0) {
+                return "MapIterator[]";
+            }
+            return "MapIterator[" + getKey() + "=" + getValue() + "]";
+        }
+    }
+
+    /**
+     * A view of the keys, the codes or the entries, in code order.
+     */
+    private class View<E> extends AbstractSet<E> {
+        /** View of the keys */
+        static final int KEYS = 0;
+        /** View of the codes */
+        static final int CODES = 1;
+        /** View of the entries from key to code */
+        static final int ENTRIES = 2;
+        /** View of the entries from code to key */
+        static final int INVERSE_ENTRIES = 3;
+
+        /** The kind of view */
+        private final int type;
+
+        View(final int type) {
+            this.type = type;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(final Object object) {
+            switch (type) {
+            case KEYS:
+                return containsKey(object);
+            case CODES:
+                return containsValue(object);
+            default:
+                if (object instanceof Map.Entry == false) {
+                    return false;
+                }
+                final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) object;
+                final Object key = type == ENTRIES ? entry.getKey() : entry.getValue();
+                final int code = indexOf(key);
+                return code >= 0 && Integer.valueOf(code).equals(type == ENTRIES ? entry.getValue() : entry.getKey());
+            }
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return new ViewIterator();
+        }
+
+        /**
+         * The iterator of the view.
+         */
+        private class ViewIterator extends CodeIterator implements Iterator<E> {
+
+            @SuppressWarnings("unchecked")
+            public E next() {
+                final int code = nextCode();
+                switch (type) {
+                case KEYS:
+                    return (E) keys[code];
+                case CODES:
+                    return (E) Integer.valueOf(code);
+                case ENTRIES:
+                    return (E) new UnmodifiableMapEntry<Object, Integer>(keys[code], Integer.valueOf(code));
+                default:
+                    return (E) new UnmodifiableMapEntry<Integer, Object>(Integer.valueOf(code), keys[code]);
+                }
+            }
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * The inverse map, from code to key.
+     */
+    private class Inverse extends AbstractMap<Integer, K> implements BidiMap<Integer, K> {
+        /** The key set view */
+        private Set<Integer> inverseKeySet;
+        /** The values view */
+        private Set<K> inverseValues;
+        /** The entry set view */
+        private Set<Map.Entry<Integer, K>> inverseEntrySet;
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return DictionaryBidiMap.this.containsValue(key);
+        }
+
+        @Override
+        public boolean containsValue(final Object value) {
+            return DictionaryBidiMap.this.containsKey(value);
+        }
+
+        @Override
+        public K get(final Object key) {
+            return DictionaryBidiMap.this.getKey(key);
+        }
+
+        public Integer getKey(final Object value) {
+            return DictionaryBidiMap.this.get(value);
+        }
+
+        @Override
+        public K put(final Integer key, final K value) {
+            throw new UnsupportedOperationException("Keys can only be added by encode()");
+        }
+
+        @Override
+        public void putAll(final Map<? extends Integer, ? extends K> map) {
+            throw new UnsupportedOperationException("Keys can only be added by encode()");
+        }
+
+        @Override
+        public K remove(final Object key) {
+            throw new UnsupportedOperationException("Codes cannot be removed");
+        }
+
+        public Integer removeValue(final Object value) {
+            throw new UnsupportedOperationException("Codes cannot be removed");
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException("Codes cannot be removed");
+        }
+
+        public BidiMap<K, Integer> inverseBidiMap() {
+            return DictionaryBidiMap.this;
+        }
+
+        public MapIterator<Integer, K> mapIterator() {
+            return new CodeMapIterator<Integer, K>(true);
+        }
+
+        @Override
+        public Set<Integer> keySet() {
+            if (inverseKeySet == null) {
+                inverseKeySet = UnmodifiableSet.unmodifiableSet(new View<Integer>(View.CODES));
+            }
+            return inverseKeySet;
+        }
+
+        @Override
+        public Set<K> values() {
+            if (inverseValues == null) {
+                inverseValues = UnmodifiableSet.unmodifiableSet(new View<K>(View.KEYS));
+            }
+            return inverseValues;
+        }
+
+        @Override
+        public Set<Map.Entry<Integer, K>> entrySet() {
+            if (inverseEntrySet == null) {
+                inverseEntrySet = UnmodifiableSet.unmodifiableSet(
+                        new View<Map.Entry<Integer, K>>(View.INVERSE_ENTRIES));
+            }
+            return inverseEntrySet;
+        }
+    }
+
+}
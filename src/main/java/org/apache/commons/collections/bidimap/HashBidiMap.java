@@ -0,0 +1,1003 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.bidimap;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.commons.collections.BidiMap;
+import org.apache.commons.collections.MapIterator;
+import org.apache.commons.collections.ResettableIterator;
+
+/**
+ * Implementation of {@link BidiMap} that stores each mapping once, in a
+ * node linked into both a hash table of keys and a hash table of values.
+ * <p>
+ * A {@link DualHashBidiMap} holds two <code>HashMap</code>s, so each mapping
+ * costs two entries and every <code>put</code> updates both maps. This map
+ * has a single node per mapping, found by key through one chain and by
+ * value through the other, which takes roughly half the memory.
+ * <code>get</code>, <code>getKey</code>, <code>put</code>, <code>remove</code>
+ * and <code>removeValue</code> all take constant time on average.
+ * <p>
+ * The inverse map shares the nodes, and so costs nothing to create. Both
+ * the keys and the values may be null. The views of this map iterate in
+ * the order of the key table, and those of the inverse map in the order of
+ * the value table.
+ * <p>
+ * Note that this implementation is not synchronized.
+ *
+ * @since 4.0
+ * @version $Id$
+ */
+public class HashBidiMap<K, V> extends AbstractMap<K, V> implements BidiMap<K, V>, Serializable {
+
+    /** Serialization version */
+    private static final long serialVersionUID = -2593250925218547365L;
+
+    /** The default capacity, a power of two */
+    protected static final int DEFAULT_CAPACITY = 16;
+    /** The maximum capacity, a power of two */
+    protected static final int MAXIMUM_CAPACITY = 1 << 30;
+    /** The load factor */
+    protected static final float LOAD_FACTOR = 0.75f;
+
+    /** The nodes, by hash of the key */
+    private transient Node<K, V>[] keyTable;
+    /** The nodes, by hash of the value */
+    private transient Node<K, V>[] valueTable;
+    /** The number of mappings */
+    private transient int size;
+    /** The size above which the tables grow */
+    private transient int threshold;
+    /** The modification count for fail fast iterators */
+    private transient int modCount;
+    /** The inverse map view */
+    private transient Inverse inverse;
+    /** The key set view */
+    private transient Set<K> keySet;
+    /** The values view */
+    private transient Set<V> values;
+    /** The entry set view */
+    private transient Set<Map.Entry<K, V>> entrySet;
+
+    /**
+     * Creates an empty map.
+     */
+    public HashBidiMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty map able to hold the given number of mappings
+     * without growing.
+     *
+     * @param initialCapacity  the expected number of mappings
+     * @throws IllegalArgumentException if the capacity is negative
+     */
+    public HashBidiMap(final int initialCapacity) {
+        super();
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Initial capacity must not be negative");
+        }
+        int capacity = 1;
+        while (capacity < MAXIMUM_CAPACITY && capacity * LOAD_FACTOR < initialCapacity) {
+            capacity <<= 1;
+        }
+        init(capacity);
+    }
+
+    /**
+     * Creates a map containing the mappings of another map.
+     *
+     * @param map  the map whose mappings are to be placed in this map
+     */
+    public HashBidiMap(final Map<? extends K, ? extends V> map) {
+        this(Math.max(DEFAULT_CAPACITY, map.size()));
+        putAll(map);
+    }
+
+    /**
+     * Creates the tables.
+     *
+     * @param capacity  the number of buckets, a power of two
+     */
+    @SuppressWarnings("unchecked")
+    private void init(final int capacity) {
+        keyTable = new Node[capacity];
+        valueTable = new Node[capacity];
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return getNodeByKey(key) != null;
+    }
+
+    @Override
+    public boolean containsValue(final Object value) {
+        return getNodeByValue(value) != null;
+    }
+
+    @Override
+    public V get(final Object key) {
+        final Node<K, V> node = getNodeByKey(key);
+        return node == null ? null : node.value;
+    }
+
+    public K getKey(final Object value) {
+        final Node<K, V> node = getNodeByValue(value);
+        return node == null ? null : node.key;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(final K key, final V value) {
+        return (V) putMapping(key, value, false);
+    }
+
+    @Override
+    public V remove(final Object key) {
+        final Node<K, V> node = getNodeByKey(key);
+        if (node == null) {
+            return null;
+        }
+        removeNode(node);
+        return node.value;
+    }
+
+    public K removeValue(final Object value) {
+        final Node<K, V> node = getNodeByValue(value);
+        if (node == null) {
+            return null;
+        }
+        removeNode(node);
+        return node.key;
+    }
+
+    @Override
+    public void clear() {
+        modCount++;
+        for (int i = 0; i < keyTable.length; i++) {
+            keyTable[i] = null;
+            valueTable[i] = null;
+        }
+        size = 0;
+    }
+
+    public BidiMap<V, K> inverseBidiMap() {
+        if (inverse == null) {
+            inverse = new Inverse();
+        }
+        return inverse;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Gets a map iterator over the keys, which can also get and set the values.
+     *
+     * @return a map iterator
+     */
+    public MapIterator<K, V> mapIterator() {
+        return new NodeMapIterator<K, V>(false);
+    }
+
+    @Override
+    public Set<K> keySet() {
+        if (keySet == null) {
+            keySet = new KeySet<K>(false, false);
+        }
+        return keySet;
+    }
+
+    /**
+     * Gets a view of the values, which is a <code>Set</code> as the values
+     * of a bidirectional map are unique.
+     *
+     * @return the values view
+     */
+    @Override
+    public Set<V> values() {
+        if (values == null) {
+            values = new KeySet<V>(true, false);
+        }
+        return values;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet<K, V>(false);
+        }
+        return entrySet;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Gets the hash code of a key or value, spreading its high bits.
+     *
+     * @param object  the object, may be null
+     * @return the hash code
+     */
+    private static int hash(final Object object) {
+        if (object == null) {
+            return 0;
+        }
+        final int h = object.hashCode();
+        return h ^ h >>> 16;
+    }
+
+    /**
+     * Compares two keys or values, either of which may be null.
+     *
+     * @param o1  the first object
+     * @param o2  the second object
+     * @return true if equal
+     */
+    private static boolean isEqual(final Object o1, final Object o2) {
+        return o1 == o2 || o1 != null && o1.equals(o2);
+    }
+
+    /**
+     * Finds the node of a key.
+     *
+     * @param key  the key
+     * @return the node, null if not found
+     */
+    private Node<K, V> getNodeByKey(final Object key) {
+        final int hash = hash(key);
+        for (Node<K, V> node = keyTable[hash & keyTable.length - 1]; node != null; node = node.nextByKey) {
+            if (node.keyHash == hash && isEqual(key, node.key)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the node of a value.
+     *
+     * @param value  the value
+     * @return the node, null if not found
+     */
+    private Node<K, V> getNodeByValue(final Object value) {
+        final int hash = hash(value);
+        for (Node<K, V> node = valueTable[hash & valueTable.length - 1]; node != null; node = node.nextByValue) {
+            if (node.valueHash == hash && isEqual(value, node.value)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the node in one direction.
+     *
+     * @param object  the key, or the value if inverse
+     * @param inverse  whether to look up by value
+     * @return the node, null if not found
+     */
+    private Node<K, V> getNode(final Object object, final boolean inverse) {
+        return inverse ? getNodeByValue(object) : getNodeByKey(object);
+    }
+
+    /**
+     * Puts a mapping, removing any mapping of the key and of the value.
+     *
+     * @param key  the key
+     * @param value  the value
+     * @param inverse  whether to return the previous key of the value
+     * @return the previous value of the key, or the previous key of the value if inverse
+     */
+    private Object putMapping(final K key, final V value, final boolean inverse) {
+        final Node<K, V> byKey = getNodeByKey(key);
+        final Node<K, V> byValue = getNodeByValue(value);
+        final Object previous;
+        if (inverse) {
+            previous = byValue == null ? null : byValue.key;
+        } else {
+            previous = byKey == null ? null : byKey.value;
+        }
+        if (byKey != null && byKey == byValue) {
+            return previous;
+        }
+        if (byValue != null) {
+            removeNode(byValue);
+        }
+        if (byKey != null) {
+            // the node moves to another value bucket, which iterators must notice
+            unlinkValue(byKey);
+            byKey.value = value;
+            byKey.valueHash = hash(value);
+            linkValue(byKey);
+            modCount++;
+        } else {
+            final Node<K, V> node = new Node<K, V>(key, hash(key), value, hash(value));
+            linkKey(node);
+            linkValue(node);
+            modCount++;
+            if (++size > threshold) {
+                resize();
+            }
+        }
+        return previous;
+    }
+
+    /**
+     * Removes a node from both tables.
+     *
+     * @param node  the node
+     */
+    private void removeNode(final Node<K, V> node) {
+        unlinkKey(node);
+        unlinkValue(node);
+        size--;
+        modCount++;
+    }
+
+    /**
+     * Links a node at the head of its key chain.
+     *
+     * @param node  the node
+     */
+    private void linkKey(final Node<K, V> node) {
+        final int index = node.keyHash & keyTable.length - 1;
+        node.nextByKey = keyTable[index];
+        keyTable[index] = node;
+    }
+
+    /**
+     * Links a node at the head of its value chain.
+     *
+     * @param node  the node
+     */
+    private void linkValue(final Node<K, V> node) {
+        final int index = node.valueHash & valueTable.length - 1;
+        node.nextByValue = valueTable[index];
+        valueTable[index] = node;
+    }
+
+    /**
+     * Unlinks a node from its key chain.
+     *
+     * @param node  the node
+     */
+    private void unlinkKey(final Node<K, V> node) {
+        final int index = node.keyHash & keyTable.length - 1;
+        if (keyTable[index] == node) {
+            keyTable[index] = node.nextByKey;
+        } else {
+            Node<K, V> previous = keyTable[index];
+            while (previous.nextByKey != node) {
+                previous = previous.nextByKey;
+            }
+            previous.nextByKey = node.nextByKey;
+        }
+    }
+
+    /**
+     * Unlinks a node from its value chain.
+     *
+     * @param node  the node
+     */
+    private void unlinkValue(final Node<K, V> node) {
+        final int index = node.valueHash & valueTable.length - 1;
+        if (valueTable[index] == node) {
+            valueTable[index] = node.nextByValue;
+        } else {
+            Node<K, V> previous = valueTable[index];
+            while (previous.nextByValue != node) {
+                previous = previous.nextByValue;
+            }
+            previous.nextByValue = node.nextByValue;
+        }
+    }
+
+    /**
+     * Checks whether a node is still in the map.
+     *
+     * @param node  the node
+     * @return true if the node is linked in its key chain
+     */
+    private boolean isLinked(final Node<K, V> node) {
+        Node<K, V> current = keyTable[node.keyHash & keyTable.length - 1];
+        while (current != null && current != node) {
+            current = current.nextByKey;
+        }
+        return current != null;
+    }
+
+    /**
+     * Doubles the size of both tables.
+     */
+    private void resize() {
+        final Node<K, V>[] oldTable = keyTable;
+        if (oldTable.length >= MAXIMUM_CAPACITY) {
+            threshold = Integer.MAX_VALUE;
+            return;
+        }
+        init(oldTable.length * 2);
+        for (Node<K, V> node : oldTable) {
+            while (node != null) {
+                final Node<K, V> next = node.nextByKey;
+                linkKey(node);
+                linkValue(node);
+                node = next;
+            }
+        }
+    }
+
+    /**
+     * Replaces the value of a node, as the view entries and map iterators do.
+     *
+     * @param node  the node
+     * @param object  the new value, or the new key if inverse
+     * @param inverse  whether the key is being replaced
+     * @return the previous value, or the previous key if inverse
+     * @throws IllegalStateException if the node has been removed from the map
+     * @throws IllegalArgumentException if the object is mapped to another node
+     */
+    @SuppressWarnings("unchecked")
+    private Object setNodeValue(final Node<K, V> node, final Object object, final boolean inverse) {
+        if (isLinked(node) == false) {
+            throw new IllegalStateException(
+                    "Cannot use setValue() when the entry has been removed from the map");
+        }
+        final Node<K, V> other = inverse ? getNodeByKey(object) : getNodeByValue(object);
+        if (other != null && other != node) {
+            throw new IllegalArgumentException(
+                    "Cannot use setValue() when the object being set is already in the map");
+        }
+        modCount++;
+        if (inverse) {
+            final K previous = node.key;
+            unlinkKey(node);
+            node.key = (K) object;
+            node.keyHash = hash(object);
+            linkKey(node);
+            return previous;
+        }
+        final V previous = node.value;
+        unlinkValue(node);
+        node.value = (V) object;
+        node.valueHash = hash(object);
+        linkValue(node);
+        return previous;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Write the map out using a custom routine.
+     *
+     * @param out  the output stream
+     * @throws IOException if an I/O error occurs while writing to the output stream
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(keyTable.length);
+        out.writeInt(size);
+        for (Node<K, V> node : keyTable) {
+            for (; node != null; node = node.nextByKey) {
+                out.writeObject(node.key);
+                out.writeObject(node.value);
+            }
+        }
+    }
+
+    /**
+     * Read the map in using a custom routine.
+     *
+     * @param in  the input stream
+     * @throws IOException if an I/O error occurs while reading from the input stream
+     * @throws ClassNotFoundException if the class of a serialized object can not be found
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        init(in.readInt());
+        final int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            final K key = (K) in.readObject();
+            final V value = (V) in.readObject();
+            putMapping(key, value, false);
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * A mapping, linked into a chain of each table.
+     */
+    private static final class Node<K, V> {
+        /** The key */
+        K key;
+        /** The hash of the key */
+        int keyHash;
+        /** The value */
+        V value;
+        /** The hash of the value */
+        int valueHash;
+        /** The next node in the key chain */
+        Node<K, V> nextByKey;
+        /** The next node in the value chain */
+        Node<K, V> nextByValue;
+
+        Node(final K key, final int keyHash, final V value, final int valueHash) {
+            this.key = key;
+            this.keyHash = keyHash;
+            this.value = value;
+            this.valueHash = valueHash;
+        }
+    }
+
+    /**
+     * Iterator over the nodes in the order of the key table, or of the value
+     * table for the inverse map, so that replacing the value of the current
+     * node does not move it.
+     */
+    private abstract class NodeIterator {
+        /** Whether this iterates the inverse map */
+        protected final boolean inverse;
+        /** The next node */
+        private Node<K, V> next;
+        /** The bucket of the next node */
+        private int index;
+        /** The last node returned, null after removal */
+        protected Node<K, V> current;
+        /** The expected modification count */
+        private int mods;
+
+        protected NodeIterator(final boolean inverse) {
+            this.inverse = inverse;
+            reset();
+        }
+
+        public void reset() {
+            mods = modCount;
+            current = null;
+            next = null;
+            index = 0;
+            advance();
+        }
+
+        private void advance() {
+            final Node<K, V>[] table = inverse ? valueTable : keyTable;
+            while (next == null && index < table.length) {
+                next = table[index++];
+            }
+        }
+
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        protected Node<K, V> nextNode() {
+            if (modCount != mods) {
+                throw new ConcurrentModificationException();
+            }
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            current = next;
+            next = inverse ? next.nextByValue : next.nextByKey;
+            advance();
+            return current;
+        }
+
+        public void remove() {
+            if (current == null) {
+                throw new IllegalStateException("Iterator remove() can only be called once after next()");
+            }
+            if (modCount != mods) {
+                throw new ConcurrentModificationException();
+            }
+            removeNode(current);
+            current = null;
+            mods = modCount;
+        }
+
+        /**
+         * Replaces the value of the current node.
+         *
+         * @param object  the new value
+         * @return the previous value
+         */
+        protected Object setCurrentValue(final Object object) {
+            return setValue(current, object);
+        }
+
+        /**
+         * Replaces the value of a node returned by this iterator, which does
+         * not move it in the table being iterated.
+         *
+         * @param node  the node
+         * @param object  the new value
+         * @return the previous value
+         */
+        protected Object setValue(final Node<K, V> node, final Object object) {
+            final boolean inSync = modCount == mods;
+            final Object previous = setNodeValue(node, object, inverse);
+            if (inSync) {
+                // other changes must still be detected by the next call
+                mods = modCount;
+            }
+            return previous;
+        }
+    }
+
+    /**
+     * Map iterator in either direction.
+     */
+    private class NodeMapIterator<A, B> extends NodeIterator implements MapIterator<A, B>, ResettableIterator<A> {
+
+        NodeMapIterator(final boolean inverse) {
+            super(inverse);
+        }
+
+        @SuppressWarnings("unchecked")
+        public A next() {
+            final Node<K, V> node = nextNode();
+            return (A) (inverse ? node.value : node.key);
+        }
+
+        @SuppressWarnings("unchecked")
+        public A getKey() {
+            if (current == null) {
+                throw new IllegalStateException(
+                        "Iterator getKey() can only be called after next() and before remove()");
+            }
+            return (A) (inverse ? current.value : current.key);
+        }
+
+        @SuppressWarnings("unchecked")
+        public B getValue() {
+            if (current == null) {
+                throw new IllegalStateException(
+                        "Iterator getValue() can only be called after next() and before remove()");
+            }
+            return (B) (inverse ? current.key : current.value);
+        }
+
+        @SuppressWarnings("unchecked")
+        public B setValue(final B value) {
+            if (current == null) {
+                throw new IllegalStateException(
+                        "Iterator setValue() can only be called after next() and before remove()");
+            }
+            return (B) setCurrentValue(value);
+        }
+
+        @Override
+        public String toString() {
+            if (current != null) {
+                return "MapIterator[" + getKey() + "=" + getValue() + "]";
+            }
+            return "MapIterator[]";
+        }
+    }
+
+    /**
+     * The keys, or the values, as a set.
+     */
+    private class KeySet<E> extends AbstractSet<E> {
+        /** Whether this is the set of values */
+        private final boolean ofValues;
+        /** Whether this is a view of the inverse map */
+        private final boolean inverse;
+
+        KeySet(final boolean ofValues, final boolean inverse) {
+            this.ofValues = ofValues;
+            this.inverse = inverse;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(final Object object) {
+            return getNode(object, ofValues) != null;
+        }
+
+        @Override
+        public boolean remove(final Object object) {
+            final Node<K, V> node = getNode(object, ofValues);
+            if (node == null) {
+                return false;
+            }
+            removeNode(node);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            HashBidiMap.this.clear();
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return new ElementIterator<E>(ofValues, inverse);
+        }
+    }
+
+    /**
+     * Iterator over the keys or the values.
+     */
+    private class ElementIterator<E> extends NodeIterator implements Iterator<E> {
+        /** Whether to return the values */
+        private final boolean ofValues;
+
+        ElementIterator(final boolean ofValues, final boolean inverse) {
+            super(inverse);
+            this.ofValues = ofValues;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            final Node<K, V> node = nextNode();
+            return (E) (ofValues ? node.value : node.key);
+        }
+    }
+
+    /**
+     * The mappings in either direction, as a set of entries.
+     */
+    private class EntrySet<A, B> extends AbstractSet<Map.Entry<A, B>> {
+        /** Whether this is the entry set of the inverse map */
+        private final boolean inverse;
+
+        EntrySet(final boolean inverse) {
+            this.inverse = inverse;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Finds the node of an entry.
+         *
+         * @param object  the entry
+         * @return the node, null if the entry is not in the map
+         */
+        private Node<K, V> getEntryNode(final Object object) {
+            if (object instanceof Map.Entry == false) {
+                return null;
+            }
+            final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) object;
+            final Node<K, V> node = getNode(entry.getKey(), inverse);
+            if (node == null || !isEqual(entry.getValue(), inverse ? node.key : node.value)) {
+                return null;
+            }
+            return node;
+        }
+
+        @Override
+        public boolean contains(final Object object) {
+            return getEntryNode(object) != null;
+        }
+
+        @Override
+        public boolean remove(final Object object) {
+            final Node<K, V> node = getEntryNode(object);
+            if (node == null) {
+                return false;
+            }
+            removeNode(node);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            HashBidiMap.this.clear();
+        }
+
+        @Override
+        public Iterator<Map.Entry<A, B>> iterator() {
+            return new EntryIterator<A, B>(inverse);
+        }
+    }
+
+    /**
+     * Iterator over the entries in either direction.
+     */
+    private class EntryIterator<A, B> extends NodeIterator implements Iterator<Map.Entry<A, B>> {
+
+        EntryIterator(final boolean inverse) {
+            super(inverse);
+        }
+
+        public Map.Entry<A, B> next() {
+            return new NodeEntry<A, B>(nextNode(), this);
+        }
+    }
+
+    /**
+     * An entry of either direction backed by a node.
+     */
+    private class NodeEntry<A, B> implements Map.Entry<A, B> {
+        /** The node */
+        private final Node<K, V> node;
+        /** The iterator that returned this entry */
+        private final NodeIterator iterator;
+        /** Whether this is an entry of the inverse map */
+        private final boolean inverse;
+
+        NodeEntry(final Node<K, V> node, final NodeIterator iterator) {
+            this.node = node;
+            this.iterator = iterator;
+            this.inverse = iterator.inverse;
+        }
+
+        @SuppressWarnings("unchecked")
+        public A getKey() {
+            return (A) (inverse ? node.value : node.key);
+        }
+
+        @SuppressWarnings("unchecked")
+        public B getValue() {
+            return (B) (inverse ? node.key : node.value);
+        }
+
+        @SuppressWarnings("unchecked")
+        public B setValue(final B value) {
+            return (B) iterator.setValue(node, value);
+        }
+
+        @Override
+        public boolean equals(final Object object) {
+            if (object == this) {
+                return true;
+            }
+            if (object instanceof Map.Entry == false) {
+                return false;
+            }
+            final Map.Entry<?, ?> other = (Map.Entry<?, ?>) object;
+            return isEqual(getKey(), other.getKey()) && isEqual(getValue(), other.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            final Object key = getKey();
+            final Object value = getValue();
+            return (key == null ? 0 : key.hashCode()) ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * The inverse map, sharing the nodes of this map.
+     */
+    private class Inverse extends AbstractMap<V, K> implements BidiMap<V, K> {
+
+        /** The key set view */
+        private transient Set<V> keySet;
+        /** The values view */
+        private transient Set<K> values;
+        /** The entry set view */
+        private transient Set<Map.Entry<V, K>> entrySet;
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return HashBidiMap.this.containsValue(key);
+        }
+
+        @Override
+        public boolean containsValue(final Object value) {
+            return HashBidiMap.this.containsKey(value);
+        }
+
+        @Override
+        public K get(final Object key) {
+            return HashBidiMap.this.getKey(key);
+        }
+
+        public V getKey(final Object value) {
+            return HashBidiMap.this.get(value);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public K put(final V key, final K value) {
+            return (K) putMapping(value, key, true);
+        }
+
+        @Override
+        public K remove(final Object key) {
+            return HashBidiMap.this.removeValue(key);
+        }
+
+        public V removeValue(final Object value) {
+            return HashBidiMap.this.remove(value);
+        }
+
+        @Override
+        public void clear() {
+            HashBidiMap.this.clear();
+        }
+
+        public BidiMap<K, V> inverseBidiMap() {
+            return HashBidiMap.this;
+        }
+
+        public MapIterator<V, K> mapIterator() {
+            return new NodeMapIterator<V, K>(true);
+        }
+
+        @Override
+        public Set<V> keySet() {
+            if (keySet == null) {
+                keySet = new KeySet<V>(true, true);
+            }
+            return keySet;
+        }
+
+        @Override
+        public Set<K> values() {
+            if (values == null) {
+                values = new KeySet<K>(false, true);
+            }
+            return values;
+        }
+
+        @Override
+        public Set<Map.Entry<V, K>> entrySet() {
+            if (entrySet == null) {
+                entrySet = new EntrySet<V, K>(true);
+            }
+            return entrySet;
+        }
+    }
+
+}
@@ -16,13 +16,16 @@
  */
 package org.apache.commons.collections.bidimap;
 
+import java.util.AbstractMap;
 import java.util.AbstractSet;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.SortedMap;
 
 import org.apache.commons.collections.KeyValue;
 import org.apache.commons.collections.MapIterator;
@@ -65,6 +68,11 @@ import static org.apache.commons.collections.bidimap.TreeBidiMap.DataElement.VAL
  * contains the key and value, storage is significantly less than that
  * required by two TreeMaps.
  * <p>
+ * Range views over either tree are available through {@link #subMap},
+ * {@link #headMap}, {@link #tailMap} and their <code>inverse</code>
+ * counterparts. They are backed by the map rather than copied, and iterating
+ * <code>k</code> mappings of a view costs <code>O(log n + k)</code>.
+ * <p>
  * The Map.Entry instances returned by the appropriate methods will
  * not allow setValue() and will throw an
  * UnsupportedOperationException on attempts to call that method.
@@ -350,6 +358,170 @@ public class TreeBidiMap<K extends Comparable<K>, V extends Comparable<V>> imple
         return node == null ? null : node.getKey();
     }
 
+    //-----------------------------------------------------------------------
+    /**
+     * Gets the least key greater than or equal to the key specified.
+     * <p>
+     * Unlike {@link #nextKey(Comparable)} the key does not have to be
+     * present in the map.
+     *
+     * @param key  the key to search from
+     * @return the ceiling key, null if there is no such key
+     * @throws NullPointerException if the key is null
+     * @since 4.0
+     */
+    public K ceilingKey(final K key) {
+        checkKey(key);
+        final Node<K, V> node = this.<K>ceilingNode(key, KEY);
+        return node == null ? null : node.getKey();
+    }
+
+    /**
+     * Gets the greatest key less than or equal to the key specified.
+     * <p>
+     * Unlike {@link #previousKey(Comparable)} the key does not have to be
+     * present in the map.
+     *
+     * @param key  the key to search from
+     * @return the floor key, null if there is no such key
+     * @throws NullPointerException if the key is null
+     * @since 4.0
+     */
+    public K floorKey(final K key) {
+        checkKey(key);
+        final Node<K, V> node = this.<K>floorNode(key, KEY, true);
+        return node == null ? null : node.getKey();
+    }
+
+    /**
+     * Gets the least value greater than or equal to the value specified,
+     * searching the value tree.
+     *
+     * @param value  the value to search from
+     * @return the ceiling value, null if there is no such value
+     * @throws NullPointerException if the value is null
+     * @since 4.0
+     */
+    public V ceilingValue(final V value) {
+        checkValue(value);
+        final Node<K, V> node = this.<V>ceilingNode(value, VALUE);
+        return node == null ? null : node.getValue();
+    }
+
+    /**
+     * Gets the greatest value less than or equal to the value specified,
+     * searching the value tree.
+     *
+     * @param value  the value to search from
+     * @return the floor value, null if there is no such value
+     * @throws NullPointerException if the value is null
+     * @since 4.0
+     */
+    public V floorValue(final V value) {
+        checkValue(value);
+        final Node<K, V> node = this.<V>floorNode(value, VALUE, true);
+        return node == null ? null : node.getValue();
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Gets a view of the mappings whose keys range from <code>fromKey</code>,
+     * inclusive, to <code>toKey</code>, exclusive.
+     * <p>
+     * The view is backed by this map and is not a copy. Iterating over
+     * <code>k</code> mappings of the view costs <code>O(log n + k)</code>.
+     * Mappings can be removed through the view, and added as long as the
+     * key lies within the range.
+     *
+     * @param fromKey  the low endpoint of the keys, inclusive
+     * @param toKey  the high endpoint of the keys, exclusive
+     * @return a view of the key range
+     * @throws NullPointerException if either key is null
+     * @throws IllegalArgumentException if <code>fromKey</code> is greater than <code>toKey</code>
+     * @since 4.0
+     */
+    public SortedMap<K, V> subMap(final K fromKey, final K toKey) {
+        checkKey(fromKey);
+        checkKey(toKey);
+        return new RangeMap<K, V>(KEY, fromKey, toKey);
+    }
+
+    /**
+     * Gets a view of the mappings whose keys are strictly less than
+     * <code>toKey</code>. See {@link #subMap(Comparable, Comparable)}.
+     *
+     * @param toKey  the high endpoint of the keys, exclusive
+     * @return a view of the key range
+     * @throws NullPointerException if the key is null
+     * @since 4.0
+     */
+    public SortedMap<K, V> headMap(final K toKey) {
+        checkKey(toKey);
+        return new RangeMap<K, V>(KEY, null, toKey);
+    }
+
+    /**
+     * Gets a view of the mappings whose keys are greater than or equal to
+     * <code>fromKey</code>. See {@link #subMap(Comparable, Comparable)}.
+     *
+     * @param fromKey  the low endpoint of the keys, inclusive
+     * @return a view of the key range
+     * @throws NullPointerException if the key is null
+     * @since 4.0
+     */
+    public SortedMap<K, V> tailMap(final K fromKey) {
+        checkKey(fromKey);
+        return new RangeMap<K, V>(KEY, fromKey, null);
+    }
+
+    /**
+     * Gets a view of the inverse mappings whose values range from
+     * <code>fromValue</code>, inclusive, to <code>toValue</code>, exclusive.
+     * <p>
+     * The view walks the value tree, so it behaves exactly like
+     * {@link #subMap(Comparable, Comparable)} on the inverse map.
+     *
+     * @param fromValue  the low endpoint of the values, inclusive
+     * @param toValue  the high endpoint of the values, exclusive
+     * @return a view of the value range, keyed by value
+     * @throws NullPointerException if either value is null
+     * @throws IllegalArgumentException if <code>fromValue</code> is greater than <code>toValue</code>
+     * @since 4.0
+     */
+    public SortedMap<V, K> inverseSubMap(final V fromValue, final V toValue) {
+        checkValue(fromValue);
+        checkValue(toValue);
+        return new RangeMap<V, K>(VALUE, fromValue, toValue);
+    }
+
+    /**
+     * Gets a view of the inverse mappings whose values are strictly less
+     * than <code>toValue</code>. See {@link #inverseSubMap(Comparable, Comparable)}.
+     *
+     * @param toValue  the high endpoint of the values, exclusive
+     * @return a view of the value range, keyed by value
+     * @throws NullPointerException if the value is null
+     * @since 4.0
+     */
+    public SortedMap<V, K> inverseHeadMap(final V toValue) {
+        checkValue(toValue);
+        return new RangeMap<V, K>(VALUE, null, toValue);
+    }
+
+    /**
+     * Gets a view of the inverse mappings whose values are greater than or
+     * equal to <code>fromValue</code>. See {@link #inverseSubMap(Comparable, Comparable)}.
+     *
+     * @param fromValue  the low endpoint of the values, inclusive
+     * @return a view of the value range, keyed by value
+     * @throws NullPointerException if the value is null
+     * @since 4.0
+     */
+    public SortedMap<V, K> inverseTailMap(final V fromValue) {
+        checkValue(fromValue);
+        return new RangeMap<V, K>(VALUE, fromValue, null);
+    }
+
     //-----------------------------------------------------------------------
     /**
      * Returns a set view of the keys contained in this map in key order.
@@ -581,6 +753,64 @@ public class TreeBidiMap<K extends Comparable<K>, V extends Comparable<V>> imple
         return this.<V>lookup(value, VALUE);
     }
 
+    /**
+     * find the least node whose data is greater than or equal to the
+     * specified data
+     *
+     * @param data the key or value to search from
+     * @param dataElement  the KEY or VALUE int
+     * @return the ceiling node, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends Comparable<T>> Node<K, V> ceilingNode(final Object data, final DataElement dataElement) {
+        Node<K, V> rval = null;
+        Node<K, V> node = rootNode[dataElement.ordinal()];
+
+        while (node != null) {
+            final int cmp = compare((T) data, (T) node.getData(dataElement));
+            if (cmp == 0) {
+                return node;
+            } else if (cmp < 0) {
+                rval = node;
+                node = node.getLeft(dataElement);
+            } else {
+                node = node.getRight(dataElement);
+            }
+        }
+
+        return rval;
+    }
+
+    /**
+     * find the greatest node whose data is less than (or equal to, if
+     * inclusive) the specified data
+     *
+     * @param data the key or value to search from
+     * @param dataElement  the KEY or VALUE int
+     * @param inclusive  whether a node equal to the data qualifies
+     * @return the floor node, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends Comparable<T>> Node<K, V> floorNode(final Object data, final DataElement dataElement,
+            final boolean inclusive) {
+        Node<K, V> rval = null;
+        Node<K, V> node = rootNode[dataElement.ordinal()];
+
+        while (node != null) {
+            final int cmp = compare((T) data, (T) node.getData(dataElement));
+            if (cmp == 0 && inclusive) {
+                return node;
+            } else if (cmp > 0) {
+                rval = node;
+                node = node.getRight(dataElement);
+            } else {
+                node = node.getLeft(dataElement);
+            }
+        }
+
+        return rval;
+    }
+
     /**
      * get the next larger node from the specified node
      *
@@ -1784,6 +2014,268 @@ public class TreeBidiMap<K extends Comparable<K>, V extends Comparable<V>> imple
         }
     }
 
+    //-----------------------------------------------------------------------
+    /**
+     * A view of the mappings whose key (or value, in VALUE order) lies in a
+     * half-open range. The view descends the tree once to find the first
+     * node in range and then walks it in order, so no data is copied.
+     */
+    class RangeMap<A extends Comparable<A>, B> extends AbstractMap<A, B> implements SortedMap<A, B> {
+
+        /** Whether the range is over the KEY or VALUE tree. */
+        private final DataElement orderType;
+        /** The other data element, returned as the mapped value. */
+        private final DataElement valueType;
+        /** The low endpoint, inclusive, null if unbounded. */
+        private final A fromKey;
+        /** The high endpoint, exclusive, null if unbounded. */
+        private final A toKey;
+        /** Store the entrySet once created. */
+        private Set<Map.Entry<A, B>> entrySet;
+
+        /**
+         * Constructor.
+         * @param orderType  the KEY or VALUE int for the order
+         * @param fromKey  the low endpoint, inclusive, null if unbounded
+         * @param toKey  the high endpoint, exclusive, null if unbounded
+         */
+        RangeMap(final DataElement orderType, final A fromKey, final A toKey) {
+            super();
+            if (fromKey != null && toKey != null && compare(fromKey, toKey) > 0) {
+                throw new IllegalArgumentException("fromKey > toKey");
+            }
+            this.orderType = orderType;
+            this.valueType = orderType == KEY ? VALUE : KEY;
+            this.fromKey = fromKey;
+            this.toKey = toKey;
+        }
+
+        @SuppressWarnings("unchecked")
+        private boolean tooLow(final Object data) {
+            return fromKey != null && compare(fromKey, (A) data) > 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        private boolean tooHigh(final Object data) {
+            return toKey != null && compare((A) data, toKey) >= 0;
+        }
+
+        private Node<K, V> firstNode() {
+            final Node<K, V> node = fromKey == null
+                    ? leastNode(rootNode[orderType.ordinal()], orderType)
+                    : TreeBidiMap.this.<A>ceilingNode(fromKey, orderType);
+            return node == null || tooHigh(node.getData(orderType)) ? null : node;
+        }
+
+        private Node<K, V> lastNode() {
+            final Node<K, V> node = toKey == null
+                    ? greatestNode(rootNode[orderType.ordinal()], orderType)
+                    : TreeBidiMap.this.<A>floorNode(toKey, orderType, false);
+            return node == null || tooLow(node.getData(orderType)) ? null : node;
+        }
+
+        private Node<K, V> lookupInRange(final Object key) {
+            checkNonNullComparable(key, orderType);
+            if (tooLow(key) || tooHigh(key)) {
+                return null;
+            }
+            return TreeBidiMap.this.<A>lookup(key, orderType);
+        }
+
+        @SuppressWarnings("unchecked")
+        private A getKey(final Node<K, V> node) {
+            return (A) node.getData(orderType);
+        }
+
+        @SuppressWarnings("unchecked")
+        private B getValue(final Node<K, V> node) {
+            return (B) node.getData(valueType);
+        }
+
+        private A checkBound(final A bound) {
+            checkNonNullComparable(bound, orderType);
+            if (tooLow(bound) || toKey != null && compare(bound, toKey) > 0) {
+                throw new IllegalArgumentException(orderType + " out of range");
+            }
+            return bound;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return firstNode() == null;
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return lookupInRange(key) != null;
+        }
+
+        @Override
+        public B get(final Object key) {
+            final Node<K, V> node = lookupInRange(key);
+            return node == null ? null : getValue(node);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public B put(final A key, final B value) {
+            checkNonNullComparable(key, orderType);
+            if (tooLow(key) || tooHigh(key)) {
+                throw new IllegalArgumentException(orderType + " out of range");
+            }
+            final B result = get(key);
+            if (orderType == KEY) {
+                doPut((K) key, (V) value);
+            } else {
+                doPut((K) value, (V) key);
+            }
+            return result;
+        }
+
+        @Override
+        public B remove(final Object key) {
+            final Node<K, V> node = lookupInRange(key);
+            if (node == null) {
+                return null;
+            }
+            doRedBlackDelete(node);
+            return getValue(node);
+        }
+
+        public Comparator<? super A> comparator() {
+            return null;
+        }
+
+        public A firstKey() {
+            final Node<K, V> node = firstNode();
+            if (node == null) {
+                throw new NoSuchElementException("Map is empty");
+            }
+            return getKey(node);
+        }
+
+        public A lastKey() {
+            final Node<K, V> node = lastNode();
+            if (node == null) {
+                throw new NoSuchElementException("Map is empty");
+            }
+            return getKey(node);
+        }
+
+        public SortedMap<A, B> subMap(final A fromKey, final A toKey) {
+            return new RangeMap<A, B>(orderType, checkBound(fromKey), checkBound(toKey));
+        }
+
+        public SortedMap<A, B> headMap(final A toKey) {
+            return new RangeMap<A, B>(orderType, fromKey, checkBound(toKey));
+        }
+
+        public SortedMap<A, B> tailMap(final A fromKey) {
+            return new RangeMap<A, B>(orderType, checkBound(fromKey), toKey);
+        }
+
+        @Override
+        public Set<Map.Entry<A, B>> entrySet() {
+            if (entrySet == null) {
+                entrySet = new RangeEntryView();
+            }
+            return entrySet;
+        }
+
+        /**
+         * The entries of the range.
+         */
+        class RangeEntryView extends AbstractSet<Map.Entry<A, B>> {
+
+            @Override
+            public int size() {
+                int size = 0;
+                for (Node<K, V> node = firstNode(); node != null && !tooHigh(node.getData(orderType));
+                        node = nextGreater(node, orderType)) {
+                    size++;
+                }
+                return size;
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return RangeMap.this.isEmpty();
+            }
+
+            @Override
+            public boolean contains(final Object obj) {
+                if (obj instanceof Map.Entry == false) {
+                    return false;
+                }
+                final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) obj;
+                final Node<K, V> node = lookupInRange(entry.getKey());
+                return node != null && getValue(node).equals(entry.getValue());
+            }
+
+            @Override
+            public boolean remove(final Object obj) {
+                if (contains(obj) == false) {
+                    return false;
+                }
+                doRedBlackDelete(lookupInRange(((Map.Entry<?, ?>) obj).getKey()));
+                return true;
+            }
+
+            @Override
+            public Iterator<Map.Entry<A, B>> iterator() {
+                return new RangeEntryIterator();
+            }
+        }
+
+        /**
+         * An iterator over the entries of the range.
+         */
+        class RangeEntryIterator implements Iterator<Map.Entry<A, B>> {
+
+            /** The last node returned by the iterator. */
+            private Node<K, V> lastReturnedNode;
+            /** The next node to be returned by the iterator. */
+            private Node<K, V> nextNode = firstNode();
+            /** The modification count. */
+            private int expectedModifications = modifications;
+
+            public boolean hasNext() {
+                return nextNode != null;
+            }
+
+            @SuppressWarnings("unchecked")
+            public Map.Entry<A, B> next() {
+                if (nextNode == null) {
+                    throw new NoSuchElementException();
+                }
+                if (modifications != expectedModifications) {
+                    throw new ConcurrentModificationException();
+                }
+                lastReturnedNode = nextNode;
+                nextNode = nextGreater(nextNode, orderType);
+                if (nextNode != null && tooHigh(nextNode.getData(orderType))) {
+                    nextNode = null;
+                }
+                if (orderType == KEY) {
+                    return (Map.Entry<A, B>) lastReturnedNode;
+                }
+                return new UnmodifiableMapEntry<A, B>(getKey(lastReturnedNode), getValue(lastReturnedNode));
+            }
+
+            public void remove() {
+                if (lastReturnedNode == null) {
+                    throw new IllegalStateException();
+                }
+                if (modifications != expectedModifications) {
+                    throw new ConcurrentModificationException();
+                }
+                doRedBlackDelete(lastReturnedNode);
+                expectedModifications = modifications;
+                lastReturnedNode = null;
+            }
+        }
+    }
+
     //-----------------------------------------------------------------------
     //-----------------------------------------------------------------------
     /**
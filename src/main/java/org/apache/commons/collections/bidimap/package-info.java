@@ -25,8 +25,11 @@
  * <p>
  * The following implementations are provided in the package:
  * <ul>
+ *   <li>ConcurrentHashBidiMap - uses two ConcurrentHashMaps and striped locks to implement a thread-safe BidiMap
+ *   <li>DictionaryBidiMap - dictionary encodes keys to dense int codes, viewed as a BidiMap
  *   <li>DualHashBidiMap - uses two HashMaps to implement BidiMap
  *   <li>DualTreeBidiMap - uses two TreeMaps to implement SortedBidiMap
+ *   <li>HashBidiMap - uses one node per mapping in two hash tables to implement BidiMap
  *   <li>TreeBidiMap - red-black tree implementation of OrderedBidiMap
  * </ul>
  * <p>
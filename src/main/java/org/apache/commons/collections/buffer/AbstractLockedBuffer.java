@@ -0,0 +1,383 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.buffer;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.collections.Buffer;
+import org.apache.commons.collections.BufferUnderflowException;
+import org.apache.commons.collections.iterators.AbstractIteratorDecorator;
+
+/**
+ * Decorates another {@link Buffer} to guard it with a {@link ReentrantLock}
+ * rather than a monitor, so that waiting threads can be parked on separate
+ * <i>not empty</i> and <i>not full</i> {@link Condition}s.
+ * <p>
+ * Every method of the decorated buffer is called while holding the lock.
+ * After elements have been added {@link #elementsAdded()} is called, and
+ * after elements have been removed {@link #elementsRemoved()}, both still
+ * holding the lock. By default these wake a single thread waiting on the
+ * matching condition, instead of waking every waiting thread.
+ * <p>
+ * Unlike {@link SynchronizedBuffer}, this class does not use the monitor of
+ * the buffer, so synchronizing on the buffer protects nothing. Iterators,
+ * and any sequence of calls that must be atomic, must be manually locked
+ * using the lock returned by {@link #getLock()}:
+ * <pre>
+ * Lock lock = buffer.getLock();
+ * lock.lock();
+ * try {
+ *   Iterator it = buffer.iterator();
+ *   // do stuff with iterator
+ * } finally {
+ *   lock.unlock();
+ * }
+ * </pre>
+ *
+ * @param <E> the type of the elements in the buffer
+ * @since 4.0
+ * @version $Id$
+ */
+public abstract class AbstractLockedBuffer<E> extends AbstractBufferDecorator<E> {
+
+    /** Serialization version */
+    private static final long serialVersionUID = 4958219283748013266L;
+
+    /** The lock guarding the decorated buffer */
+    protected transient ReentrantLock mutex;
+    /** The condition signalled when elements are added */
+    protected transient Condition notEmpty;
+    /** The condition signalled when elements are removed */
+    protected transient Condition notFull;
+
+    /**
+     * Constructor that wraps (not copies).
+     *
+     * @param buffer  the buffer to decorate, must not be null
+     * @throws IllegalArgumentException if the buffer is null
+     */
+    protected AbstractLockedBuffer(final Buffer<E> buffer) {
+        super(buffer);
+        init();
+    }
+
+    /**
+     * Creates the lock and its conditions.
+     */
+    private void init() {
+        mutex = new ReentrantLock();
+        notEmpty = mutex.newCondition();
+        notFull = mutex.newCondition();
+    }
+
+    /**
+     * Gets the lock guarding this buffer, which must be held while iterating.
+     *
+     * @return the lock
+     */
+    public Lock getLock() {
+        return mutex;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Called while holding the lock after elements have been added.
+     * This implementation wakes one thread waiting for the buffer not to be empty.
+     */
+    protected void elementsAdded() {
+        notEmpty.signal();
+    }
+
+    /**
+     * Called while holding the lock after elements have been removed.
+     * This implementation wakes one thread waiting for the buffer not to be full.
+     */
+    protected void elementsRemoved() {
+        notFull.signal();
+    }
+
+    /**
+     * Creates the exception thrown when a waiting thread is interrupted.
+     *
+     * @param ex  the interruption
+     * @return the exception to throw
+     */
+    protected static BufferUnderflowException interrupted(final InterruptedException ex) {
+        return new BufferUnderflowException("Caused by InterruptedException", ex);
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public boolean add(final E object) {
+        mutex.lock();
+        try {
+            final boolean result = decorated().add(object);
+            elementsAdded();
+            return result;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public boolean addAll(final Collection<? extends E> coll) {
+        mutex.lock();
+        try {
+            final boolean result = decorated().addAll(coll);
+            if (result) {
+                elementsAdded();
+            }
+            return result;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        mutex.lock();
+        try {
+            decorated().clear();
+            elementsRemoved();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(final Object object) {
+        mutex.lock();
+        try {
+            return decorated().contains(object);
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public boolean containsAll(final Collection<?> coll) {
+        mutex.lock();
+        try {
+            return decorated().containsAll(coll);
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        mutex.lock();
+        try {
+            return decorated().isEmpty();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    /**
+     * Iterators must be manually locked using {@link #getLock()}.
+     * Removing via the iterator wakes waiting threads in the same way as
+     * the other removal methods.
+     *
+     * @return an iterator that must be manually locked
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new NotifyingIterator(decorated().iterator());
+    }
+
+    @Override
+    public Object[] toArray() {
+        mutex.lock();
+        try {
+            return decorated().toArray();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public <T> T[] toArray(final T[] object) {
+        mutex.lock();
+        try {
+            return decorated().toArray(object);
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(final Object object) {
+        mutex.lock();
+        try {
+            final boolean result = decorated().remove(object);
+            if (result) {
+                elementsRemoved();
+            }
+            return result;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public boolean removeAll(final Collection<?> coll) {
+        mutex.lock();
+        try {
+            final boolean result = decorated().removeAll(coll);
+            if (result) {
+                elementsRemoved();
+            }
+            return result;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public boolean retainAll(final Collection<?> coll) {
+        mutex.lock();
+        try {
+            final boolean result = decorated().retainAll(coll);
+            if (result) {
+                elementsRemoved();
+            }
+            return result;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        mutex.lock();
+        try {
+            return decorated().size();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public boolean equals(final Object object) {
+        mutex.lock();
+        try {
+            if (object == this) {
+                return true;
+            }
+            return decorated().equals(object);
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        mutex.lock();
+        try {
+            return decorated().hashCode();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        mutex.lock();
+        try {
+            return decorated().toString();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public E get() {
+        mutex.lock();
+        try {
+            return decorated().get();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public E remove() {
+        mutex.lock();
+        try {
+            final E element = decorated().remove();
+            elementsRemoved();
+            return element;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Read the buffer in, recreating the lock.
+     * <p>
+     * Buffers serialized before 4.0 extended <code>SynchronizedBuffer</code>,
+     * which held the decorated buffer, so they cannot be read.
+     *
+     * @param in  the input stream
+     * @throws IOException if an I/O error occurs while reading from the input stream
+     * @throws ClassNotFoundException if the class of a serialized object can not be found
+     */
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (collection == null) {
+            throw new InvalidObjectException("Buffers serialized before 4.0 are not supported");
+        }
+        init();
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Iterator that wakes waiting threads after removal.
+     */
+    private class NotifyingIterator extends AbstractIteratorDecorator<E> {
+
+        /**
+         * Create a new {@link NotifyingIterator}.
+         *
+         * @param it the decorated {@link Iterator}
+         */
+        public NotifyingIterator(final Iterator<E> it) {
+            super(it);
+        }
+
+        @Override
+        public void remove() {
+            mutex.lock();
+            try {
+                iterator.remove();
+                elementsRemoved();
+            } finally {
+                mutex.unlock();
+            }
+        }
+    }
+
+}
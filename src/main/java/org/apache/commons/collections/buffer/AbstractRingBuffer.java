@@ -0,0 +1,410 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.buffer;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import org.apache.commons.collections.BoundedCollection;
+import org.apache.commons.collections.Buffer;
+import org.apache.commons.collections.BufferOverflowException;
+import org.apache.commons.collections.BufferUnderflowException;
+
+/**
+ * Abstract base class for lock-free ring buffers with a single consumer.
+ * <p>
+ * The buffer is an array whose length is a power of two, indexed by two
+ * ever increasing sequence counters: the <i>head</i>, the sequence of the
+ * next element to remove, and the <i>tail</i>, the sequence of the next
+ * element to add. Each counter lives in its own object, padded to fill a
+ * cache line, so that the producer and the consumer do not invalidate each
+ * other's cache lines when they update their own counter.
+ * <p>
+ * The removal operations ({@link #remove()}, {@link #poll()},
+ * {@link #drainTo(Collection)}, {@link #clear()}, and also {@link #get()} and
+ * {@link #peek()}) must only ever be called by one thread at a time, the
+ * consumer. Subclasses define how many threads may add.
+ * <p>
+ * Removing arbitrary elements, via <code>remove(Object)</code>,
+ * <code>removeAll</code>, <code>retainAll</code> or the iterator, is not
+ * supported. The iterator works on a snapshot taken when it is created, and
+ * should only be used by the consumer or when the buffer is not in use.
+ * <p>
+ * This buffer prevents null objects from being added.
+ *
+ * @since 4.0
+ * @version $Id$
+ */
+public abstract class AbstractRingBuffer<E> extends AbstractCollection<E>
+        implements Buffer<E>, BoundedCollection<E>, Serializable {
+
+    /** Serialization version */
+    private static final long serialVersionUID = -4209327486035815204L;
+
+    /** The maximum number of elements in the buffer */
+    private final int maxElements;
+
+    /**
+     * Constructor that sets the bound of the buffer.
+     *
+     * @param size  the maximum number of elements for this buffer
+     * @throws IllegalArgumentException if the size is less than 1 or too large
+     */
+    protected AbstractRingBuffer(final int size) {
+        super();
+        if (size <= 0) {
+            throw new IllegalArgumentException("The size must be greater than 0");
+        }
+        if (size > 1 << 30) {
+            throw new IllegalArgumentException("The size must not be greater than 2^30");
+        }
+        maxElements = size;
+        init();
+    }
+
+    /**
+     * Creates the storage of the buffer, called from the constructor and
+     * when deserializing.
+     */
+    protected abstract void init();
+
+    /**
+     * Gets the length of the array that should hold the elements, the
+     * smallest power of two not less than the bound.
+     *
+     * @return the array length
+     */
+    protected int capacity() {
+        int capacity = 1;
+        while (capacity < maxElements) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Adds an element to the buffer if there is room.
+     *
+     * @param element  the element to add
+     * @return true if the element was added, false if the buffer is full
+     * @throws NullPointerException if the element is null
+     */
+    public abstract boolean offer(E element);
+
+    /**
+     * Removes the next element from the buffer, if there is one.
+     * Only the consumer may call this method.
+     *
+     * @return the next element, or null if the buffer is empty
+     */
+    public abstract E poll();
+
+    /**
+     * Gets the next element from the buffer without removing it.
+     * Only the consumer may call this method.
+     *
+     * @return the next element, or null if the buffer is empty
+     */
+    public abstract E peek();
+
+    /**
+     * Removes up to the specified number of elements from the buffer and adds
+     * them to a collection, publishing the freed space to the producers once
+     * rather than once per element. Only the consumer may call this method.
+     *
+     * @param coll  the collection to add the elements to
+     * @param limit  the maximum number of elements to transfer
+     * @return the number of elements transferred
+     */
+    public abstract int drainTo(Collection<? super E> coll, int limit);
+
+    /**
+     * Adds all the elements of a collection, publishing them to the consumer
+     * at once. Either all the elements are added or none are.
+     *
+     * @param coll  the collection of elements to add
+     * @return true if the buffer changed
+     * @throws NullPointerException if the collection contains null
+     * @throws BufferOverflowException if there is not enough room for all the elements
+     */
+    @Override
+    public abstract boolean addAll(Collection<? extends E> coll);
+
+    /**
+     * Gets the number of elements in the buffer. Under concurrent use the
+     * result is only an estimate.
+     *
+     * @return the number of elements
+     */
+    @Override
+    public abstract int size();
+
+    //-----------------------------------------------------------------------
+    /**
+     * Removes all the elements from the buffer and adds them to a collection.
+     * Only the consumer may call this method.
+     *
+     * @param coll  the collection to add the elements to
+     * @return the number of elements transferred
+     */
+    public int drainTo(final Collection<? super E> coll) {
+        return drainTo(coll, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Adds the given element to this buffer.
+     *
+     * @param element  the element to add
+     * @return true, always
+     * @throws NullPointerException  if the given element is null
+     * @throws BufferOverflowException  if this buffer is full
+     */
+    @Override
+    public boolean add(final E element) {
+        if (!offer(element)) {
+            throw new BufferOverflowException("The buffer cannot hold more than " + maxElements + " objects.");
+        }
+        return true;
+    }
+
+    /**
+     * Removes the least recently inserted element from this buffer.
+     *
+     * @return the least recently inserted element
+     * @throws BufferUnderflowException  if the buffer is empty
+     */
+    public E remove() {
+        final E element = poll();
+        if (element == null) {
+            throw new BufferUnderflowException("The buffer is already empty");
+        }
+        return element;
+    }
+
+    /**
+     * Returns the least recently inserted element in this buffer.
+     *
+     * @return the least recently inserted element
+     * @throws BufferUnderflowException  if the buffer is empty
+     */
+    public E get() {
+        final E element = peek();
+        if (element == null) {
+            throw new BufferUnderflowException("The buffer is already empty");
+        }
+        return element;
+    }
+
+    /**
+     * Removes all the elements. Only the consumer may call this method.
+     */
+    @Override
+    public void clear() {
+        while (poll() != null) {
+            // discard
+        }
+    }
+
+    /**
+     * Not supported, as elements can only be removed at the head.
+     *
+     * @param object  ignored
+     * @return never
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean remove(final Object object) {
+        throw new UnsupportedOperationException("Ring buffers only support removal at the head");
+    }
+
+    /**
+     * Not supported, as elements can only be removed at the head.
+     *
+     * @param coll  ignored
+     * @return never
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean removeAll(final Collection<?> coll) {
+        throw new UnsupportedOperationException("Ring buffers only support removal at the head");
+    }
+
+    /**
+     * Not supported, as elements can only be removed at the head.
+     *
+     * @param coll  ignored
+     * @return never
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean retainAll(final Collection<?> coll) {
+        throw new UnsupportedOperationException("Ring buffers only support removal at the head");
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns true if this collection is full and no new elements can be added.
+     *
+     * @return <code>true</code> if the collection is full
+     */
+    public boolean isFull() {
+        return size() >= maxElements;
+    }
+
+    /**
+     * Gets the maximum size of the collection (the bound).
+     *
+     * @return the maximum number of elements the collection can hold
+     */
+    public int maxSize() {
+        return maxElements;
+    }
+
+    /**
+     * Gets the elements currently in the buffer, oldest first.
+     *
+     * @return a new array of the elements
+     */
+    protected abstract Object[] snapshot();
+
+    /**
+     * Returns an iterator over a snapshot of this buffer's elements.
+     * The iterator does not support removal.
+     *
+     * @return an iterator over this buffer's elements
+     */
+    @Override
+    public Iterator<E> iterator() {
+        final Object[] elements = snapshot();
+        return new Iterator<E>() {
+            private int index = 0;
+
+            public boolean hasNext() {
+                return index < elements.length;
+            }
+
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return (E) elements[index++];
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException("Ring buffers only support removal at the head");
+            }
+        };
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Checks that none of the elements to add is null.
+     *
+     * @param elements  the elements to check
+     */
+    static void checkNotNull(final Object[] elements) {
+        for (final Object element : elements) {
+            if (element == null) {
+                throw new NullPointerException("Attempted to add null object to buffer");
+            }
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Write the buffer out using a custom routine.
+     *
+     * @param out  the output stream
+     * @throws IOException if an I/O error occurs while writing to the output stream
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        final Object[] elements = snapshot();
+        out.writeInt(elements.length);
+        for (final Object element : elements) {
+            out.writeObject(element);
+        }
+    }
+
+    /**
+     * Read the buffer in using a custom routine.
+     *
+     * @param in  the input stream
+     * @throws IOException if an I/O error occurs while reading from the input stream
+     * @throws ClassNotFoundException if the class of a serialized object can not be found
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        init();
+        final int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            add((E) in.readObject());
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /** Padding before the value of a sequence. */
+    static class LeftPadding {
+        long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    /** The value of a sequence, separate from the padding so the layout is kept. */
+    static class Value extends LeftPadding {
+        /** The current value of the sequence */
+        volatile long value;
+        /** A copy of the other side's sequence, read and written only by the owner */
+        long cache;
+    }
+
+    /**
+     * A sequence counter padded on both sides to fill a cache line, so that
+     * updating it does not disturb the data around it.
+     */
+    static final class Sequence extends Value {
+        long p9, p10, p11, p12, p13, p14, p15;
+
+        /** Updater for compare and swap on the value */
+        private static final AtomicLongFieldUpdater<Value> UPDATER =
+            AtomicLongFieldUpdater.newUpdater(Value.class, "value");
+
+        /**
+         * Atomically sets the value if it currently holds the expected value.
+         *
+         * @param expect  the expected value
+         * @param update  the new value
+         * @return true if successful
+         */
+        boolean compareAndSet(final long expect, final long update) {
+            return UPDATER.compareAndSet(this, expect, update);
+        }
+    }
+
+}
@@ -16,9 +16,9 @@
  */
 package org.apache.commons.collections.buffer;
 
-import java.io.PrintWriter;
-import java.io.StringWriter;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.collections.Buffer;
 import org.apache.commons.collections.BufferUnderflowException;
@@ -31,21 +31,27 @@ import org.apache.commons.collections.BufferUnderflowException;
  * {@link Buffer}, the calling thread waits for notification that
  * an <code>add</code> or <code>addAll</code> operation has completed.
  * <p>
- * When one or more entries are added to an empty {@link Buffer},
- * all threads blocked in <code>get</code> or <code>remove</code> are notified.
- * There is no guarantee that concurrent blocked <code>get</code> or
+ * Adding wakes a single blocked thread, which in turn wakes the next one
+ * if entries remain, so that an add does not wake every blocked consumer
+ * only for all but one of them to block again.
+ * {@link #remove(int, long)} removes a batch of entries while holding the
+ * lock once. There is no guarantee that concurrent blocked <code>get</code> or
  * <code>remove</code> requests will be "unblocked" and receive data in the
  * order that they arrive.
  * <p>
+ * From 4.0 the buffer is guarded by the lock returned by {@link #getLock()}
+ * rather than by its monitor, and this class no longer extends
+ * {@link SynchronizedBuffer}. Callers must hold that lock while iterating,
+ * synchronizing on the buffer protects nothing.
+ * <p>
  * This class is Serializable from Commons Collections 3.1.
- * This class contains an extra field in 3.2, however the serialization
- * specification will handle this gracefully.
+ * Buffers serialized before 4.0 cannot be read.
  *
  * @param <E> the type of the elements in the buffer
  * @version $Id$
  * @since 3.0
  */
-public class BlockingBuffer<E> extends SynchronizedBuffer<E> {
+public class BlockingBuffer<E> extends AbstractLockedBuffer<E> {
 
     /** Serialization version. */
     private static final long serialVersionUID = 1719328905017860541L;
@@ -104,24 +110,6 @@ public class BlockingBuffer<E> extends SynchronizedBuffer<E> {
     }
 
     //-----------------------------------------------------------------------
-    @Override
-    public boolean add(final E o) {
-        synchronized (lock) {
-            final boolean result = collection.add(o);
-            lock.notifyAll();
-            return result;
-        }
-    }
-
-    @Override
-    public boolean addAll(final Collection<? extends E> c) {
-        synchronized (lock) {
-            final boolean result = collection.addAll(c);
-            lock.notifyAll();
-            return result;
-        }
-    }
-
     /**
      * Gets the next value from the buffer, waiting until an object is
      * added if the buffer is empty. This method uses the default timeout
@@ -132,21 +120,21 @@ public class BlockingBuffer<E> extends SynchronizedBuffer<E> {
      */
     @Override
     public E get() {
-        synchronized (lock) {
-            while (collection.isEmpty()) {
-                try {
-                    if (timeout <= 0) {
-                        lock.wait();
-                    } else {
-                        return get(timeout);
-                    }
-                } catch (final InterruptedException e) {
-                    final PrintWriter out = new PrintWriter(new StringWriter());
-                    e.printStackTrace(out);
-                    throw new BufferUnderflowException("Caused by InterruptedException: " + out.toString());
+        if (timeout > 0) {
+            return get(timeout);
+        }
+        mutex.lock();
+        try {
+            try {
+                while (collection.isEmpty()) {
+                    notEmpty.await();
                 }
+            } catch (final InterruptedException e) {
+                throw interrupted(e);
             }
-            return decorated().get();
+            return peekNext();
+        } finally {
+            mutex.unlock();
         }
     }
 
@@ -161,23 +149,12 @@ public class BlockingBuffer<E> extends SynchronizedBuffer<E> {
      * @since 3.2
      */
     public E get(final long timeout) {
-        synchronized (lock) {
-            final long expiration = System.currentTimeMillis() + timeout;
-            long timeLeft = expiration - System.currentTimeMillis();
-            while (timeLeft > 0 && collection.isEmpty()) {
-                try {
-                    lock.wait(timeLeft);
-                    timeLeft = expiration - System.currentTimeMillis();
-                } catch(final InterruptedException e) {
-                    final PrintWriter out = new PrintWriter(new StringWriter());
-                    e.printStackTrace(out);
-                    throw new BufferUnderflowException("Caused by InterruptedException: " + out.toString());
-                }
-            }
-            if (collection.isEmpty()) {
-                throw new BufferUnderflowException("Timeout expired");
-            }
-            return decorated().get();
+        mutex.lock();
+        try {
+            timeoutWait(timeout);
+            return peekNext();
+        } finally {
+            mutex.unlock();
         }
     }
 
@@ -191,21 +168,21 @@ public class BlockingBuffer<E> extends SynchronizedBuffer<E> {
      */
     @Override
     public E remove() {
-        synchronized (lock) {
-            while (collection.isEmpty()) {
-                try {
-                    if (timeout <= 0) {
-                        lock.wait();
-                    } else {
-                        return remove(timeout);
-                    }
-                } catch (final InterruptedException e) {
-                    final PrintWriter out = new PrintWriter(new StringWriter());
-                    e.printStackTrace(out);
-                    throw new BufferUnderflowException("Caused by InterruptedException: " + out.toString());
+        if (timeout > 0) {
+            return remove(timeout);
+        }
+        mutex.lock();
+        try {
+            try {
+                while (collection.isEmpty()) {
+                    notEmpty.await();
                 }
+            } catch (final InterruptedException e) {
+                throw interrupted(e);
             }
-            return decorated().remove();
+            return removeNext();
+        } finally {
+            mutex.unlock();
         }
     }
 
@@ -220,23 +197,108 @@ public class BlockingBuffer<E> extends SynchronizedBuffer<E> {
      * @since 3.2
      */
     public E remove(final long timeout) {
-        synchronized (lock) {
-            final long expiration = System.currentTimeMillis() + timeout;
-            long timeLeft = expiration - System.currentTimeMillis();
-            while (timeLeft > 0 && collection.isEmpty()) {
-                try {
-                    lock.wait(timeLeft);
-                    timeLeft = expiration - System.currentTimeMillis();
-                } catch(final InterruptedException e) {
-                    final PrintWriter out = new PrintWriter(new StringWriter());
-                    e.printStackTrace(out);
-                    throw new BufferUnderflowException("Caused by InterruptedException: " + out.toString());
-                }
+        mutex.lock();
+        try {
+            timeoutWait(timeout);
+            return removeNext();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    /**
+     * Removes up to the specified number of values from the buffer, waiting
+     * until an object is added for up to the specified timeout value if the
+     * buffer is empty. All the values are removed while holding the lock
+     * once, so a consumer can take a batch without competing for the lock
+     * again for every element.
+     *
+     * @param max  the maximum number of objects to remove, must be one or greater
+     * @param timeout  the timeout value in milliseconds
+     * @return the removed objects in the order they were removed, never empty
+     * @throws IllegalArgumentException if the maximum is zero or less
+     * @throws BufferUnderflowException if an interrupt is received
+     * @throws BufferUnderflowException if the timeout expires
+     * @since 4.0
+     */
+    public List<E> remove(final int max, final long timeout) {
+        if (max < 1) {
+            throw new IllegalArgumentException("The maximum must be greater than 0");
+        }
+        mutex.lock();
+        try {
+            timeoutWait(timeout);
+            final Buffer<E> buffer = decorated();
+            final int count = Math.min(max, buffer.size());
+            final List<E> removed = new ArrayList<E>(count);
+            for (int i = 0; i < count; i++) {
+                removed.add(buffer.remove());
             }
-            if (collection.isEmpty()) {
-                throw new BufferUnderflowException("Timeout expired");
+            elementsRemoved();
+            passOn();
+            return removed;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Waits up to the specified timeout period for the buffer not to be empty.
+     *
+     * @param timeout  the timeout value in milliseconds
+     * @throws BufferUnderflowException if an interrupt is received
+     * @throws BufferUnderflowException if the timeout expires
+     */
+    private void timeoutWait(final long timeout) {
+        // method locked by callers
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+        try {
+            while (collection.isEmpty()) {
+                if (nanos <= 0) {
+                    throw new BufferUnderflowException("Timeout expired");
+                }
+                nanos = notEmpty.awaitNanos(nanos);
             }
-            return decorated().remove();
+        } catch (final InterruptedException e) {
+            throw interrupted(e);
+        }
+    }
+
+    /**
+     * Gets the next value, once the buffer is known not to be empty.
+     *
+     * @return the next object in the buffer
+     */
+    private E peekNext() {
+        // method locked by callers
+        final E element = decorated().get();
+        passOn();
+        return element;
+    }
+
+    /**
+     * Removes the next value, once the buffer is known not to be empty.
+     *
+     * @return the next object in the buffer, which is also removed
+     */
+    private E removeNext() {
+        // method locked by callers
+        final E element = decorated().remove();
+        elementsRemoved();
+        passOn();
+        return element;
+    }
+
+    /**
+     * Passes the signal on to the next waiting thread if elements remain.
+     * Adding only wakes one waiting thread, which wakes the next in turn,
+     * so a batch of elements still reaches as many threads as it can serve.
+     */
+    private void passOn() {
+        // method locked by callers
+        if (!collection.isEmpty()) {
+            notEmpty.signal();
         }
     }
 
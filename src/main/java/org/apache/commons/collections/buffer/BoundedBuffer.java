@@ -16,16 +16,12 @@
  */
 package org.apache.commons.collections.buffer;
 
-import java.io.PrintWriter;
-import java.io.StringWriter;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.collections.BoundedCollection;
 import org.apache.commons.collections.Buffer;
 import org.apache.commons.collections.BufferOverflowException;
-import org.apache.commons.collections.BufferUnderflowException;
-import org.apache.commons.collections.iterators.AbstractIteratorDecorator;
 
 /**
  * Decorates another {@link Buffer} to ensure a fixed maximum size.
@@ -38,12 +34,19 @@ import org.apache.commons.collections.iterators.AbstractIteratorDecorator;
  * This alters the behaviour of the add methods when the buffer is full.
  * Normally, when the buffer is full, the add method will throw an exception.
  * With a timeout, the add methods will wait for up to the timeout period
- * to try and add the elements.
+ * to try and add the elements. Removing wakes a single waiting thread,
+ * rather than all of them.
+ * <p>
+ * From 4.0 the buffer is guarded by the lock returned by {@link #getLock()}
+ * rather than by its monitor, and this class no longer extends
+ * {@link SynchronizedBuffer}. Callers must hold that lock while iterating,
+ * synchronizing on the buffer protects nothing. Buffers serialized before
+ * 4.0 cannot be read.
  *
  * @since 3.2
  * @version $Id$
  */
-public class BoundedBuffer<E> extends SynchronizedBuffer<E> implements BoundedCollection<E> {
+public class BoundedBuffer<E> extends AbstractLockedBuffer<E> implements BoundedCollection<E> {
 
     /** The serialization version. */
     private static final long serialVersionUID = 1536432911093974264L;
@@ -52,6 +55,8 @@ public class BoundedBuffer<E> extends SynchronizedBuffer<E> implements BoundedCo
     private final int maximumSize;
     /** The timeout milliseconds. */
     private final long timeout;
+    /** The number of threads waiting to add more than one element. */
+    private transient int batchWaiters;
 
     /**
      * Factory method to create a bounded buffer.
@@ -107,34 +112,46 @@ public class BoundedBuffer<E> extends SynchronizedBuffer<E> implements BoundedCo
     }
 
     //-----------------------------------------------------------------------
-    @Override
-    public E remove() {
-        synchronized (lock) {
-            final E returnValue = decorated().remove();
-            lock.notifyAll();
-            return returnValue;
-        }
-    }
-
     @Override
     public boolean add(final E o) {
-        synchronized (lock) {
+        mutex.lock();
+        try {
             timeoutWait(1);
-            return decorated().add(o);
+            final boolean result = decorated().add(o);
+            elementsAdded();
+            return result;
+        } finally {
+            mutex.unlock();
         }
     }
 
     @Override
     public boolean addAll(final Collection<? extends E> c) {
-        synchronized (lock) {
+        mutex.lock();
+        try {
             timeoutWait(c.size());
-            return decorated().addAll(c);
+            final boolean result = decorated().addAll(c);
+            if (result) {
+                elementsAdded();
+            }
+            return result;
+        } finally {
+            mutex.unlock();
         }
     }
 
+    /**
+     * Wakes one thread waiting to add, or all of them if any is waiting to
+     * add several elements, as it may not be the first waiting thread that
+     * the freed space suits.
+     */
     @Override
-    public Iterator<E> iterator() {
-        return new NotifyingIterator(collection.iterator());
+    protected void elementsRemoved() {
+        if (batchWaiters > 0) {
+            notFull.signalAll();
+        } else {
+            notFull.signal();
+        }
     }
 
     /**
@@ -146,7 +163,7 @@ public class BoundedBuffer<E> extends SynchronizedBuffer<E> implements BoundedCo
      * or the timeout has expired
      */
     private void timeoutWait(final int nAdditions) {
-        // method synchronized by callers
+        // method locked by callers
         if (nAdditions > maximumSize) {
             throw new BufferOverflowException(
                     "Buffer size cannot exceed " + maximumSize);
@@ -159,26 +176,32 @@ public class BoundedBuffer<E> extends SynchronizedBuffer<E> implements BoundedCo
             }
             return;
         }
-        final long expiration = System.currentTimeMillis() + timeout;
-        long timeLeft = expiration - System.currentTimeMillis();
-        while (timeLeft > 0 && decorated().size() + nAdditions > maximumSize) {
-            try {
-                lock.wait(timeLeft);
-                timeLeft = expiration - System.currentTimeMillis();
-            } catch (final InterruptedException ex) {
-                final PrintWriter out = new PrintWriter(new StringWriter());
-                ex.printStackTrace(out);
-                throw new BufferUnderflowException(
-                    "Caused by InterruptedException: " + out.toString());
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+        if (nAdditions > 1) {
+            batchWaiters++;
+        }
+        try {
+            while (decorated().size() + nAdditions > maximumSize) {
+                if (nanos <= 0) {
+                    throw new BufferOverflowException("Timeout expired");
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+        } catch (final InterruptedException ex) {
+            throw interrupted(ex);
+        } finally {
+            if (nAdditions > 1) {
+                batchWaiters--;
             }
         }
-        if (decorated().size() + nAdditions > maximumSize) {
-            throw new BufferOverflowException("Timeout expired");
+        if (decorated().size() + nAdditions < maximumSize) {
+            // room remains after this addition, pass the signal on
+            notFull.signal();
         }
     }
 
     public boolean isFull() {
-        // size() is synchronized
+        // size() is locked
         return size() == maxSize();
     }
 
@@ -186,27 +209,4 @@ public class BoundedBuffer<E> extends SynchronizedBuffer<E> implements BoundedCo
         return maximumSize;
     }
 
-    //-----------------------------------------------------------------------
-    /**
-     * BoundedBuffer iterator.
-     */
-    private class NotifyingIterator extends AbstractIteratorDecorator<E> {
-
-        /**
-         * Create a new {@link NotifyingIterator}.
-         * 
-         * @param it the decorated {@link Iterator}
-         */
-        public NotifyingIterator(final Iterator<E> it) {
-            super(it);
-        }
-
-        @Override
-        public void remove() {
-            synchronized (lock) {
-                iterator.remove();
-                lock.notifyAll();
-            }
-        }
-    }
 }
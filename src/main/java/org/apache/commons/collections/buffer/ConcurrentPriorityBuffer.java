@@ -0,0 +1,587 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.buffer;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.collections.Buffer;
+import org.apache.commons.collections.BufferUnderflowException;
+import org.apache.commons.collections.comparators.ComparableComparator;
+
+/**
+ * Thread-safe <code>Buffer</code> that returns elements in approximately the
+ * order of a comparator, built as a <i>multi-queue</i>.
+ * <p>
+ * The elements are spread over several {@link PriorityBuffer}s, each guarded
+ * by its own lock. An element is added to a randomly chosen queue. To remove
+ * an element, a thread looks at the first element of a few randomly chosen
+ * queues, without locking them, and removes from the queue whose first element
+ * comes first. A thread that finds a queue locked simply tries another, so
+ * threads rarely wait for each other.
+ * <p>
+ * The price is that the element removed is not always the first of the whole
+ * buffer, only the first of the queues looked at. Two parameters trade
+ * throughput for strictness:
+ * <ul>
+ * <li><code>queues</code> - the number of queues. With a single queue the
+ *   buffer is strict, and equivalent to a synchronized <code>PriorityBuffer</code>.
+ *   About twice the number of threads removing works well.
+ * <li><code>choices</code> - the number of queues looked at to remove an
+ *   element, 2 by default. Looking at every queue gives an order that is only
+ *   disturbed by concurrent changes, at the cost of reading every queue.
+ * </ul>
+ * With the defaults, the rank of the element removed is on average within a
+ * small multiple of the number of queues from the first.
+ * <p>
+ * The {@link #get()} and {@link #remove()} methods throw a
+ * {@link BufferUnderflowException} only when every queue was found empty.
+ * The size is exact once concurrent operations have completed. The iterator
+ * works on a snapshot and its <code>remove</code> removes an equal element.
+ * <p>
+ * This buffer prevents null objects from being added.
+ *
+ * @see PriorityBuffer
+ * @since 4.0
+ * @version $Id$
+ */
+public class ConcurrentPriorityBuffer<E> extends AbstractCollection<E> implements Buffer<E>, Serializable {
+
+    /** Serialization version */
+    private static final long serialVersionUID = 7432818406923541763L;
+
+    /** The default number of queues looked at to remove an element */
+    public static final int DEFAULT_CHOICES = 2;
+
+    /** The number of queues found locked before waiting for a lock */
+    private static final int ATTEMPTS = 4;
+
+    /** The per-thread state of the random generator */
+    private static final ThreadLocal<int[]> SEED = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            final int seed = System.identityHashCode(Thread.currentThread()) ^ (int) System.nanoTime();
+            return new int[] { seed == 0 ? 1 : seed };
+        }
+    };
+
+    /**
+     * If true, the first element as determined by the sort order will
+     * be returned.  If false, the last element as determined by the
+     * sort order will be returned.
+     */
+    private final boolean ascendingOrder;
+
+    /** The comparator used to order the elements */
+    private final Comparator<? super E> comparator;
+
+    /** The number of queues looked at to remove an element */
+    private final int choices;
+
+    /** The queues */
+    private transient Queue<E>[] queues;
+
+    /** The number of elements */
+    private transient AtomicInteger size;
+
+    //-----------------------------------------------------------------------
+    /**
+     * Constructs a new empty buffer that sorts in ascending order by the
+     * natural order of the objects added, with twice as many queues as
+     * there are processors.
+     */
+    public ConcurrentPriorityBuffer() {
+        this(defaultQueues(), DEFAULT_CHOICES, true, null);
+    }
+
+    /**
+     * Constructs a new empty buffer that sorts in ascending order using the
+     * specified comparator, with twice as many queues as there are processors.
+     *
+     * @param comparator  the comparator used to order the elements,
+     *  null means use natural order
+     */
+    public ConcurrentPriorityBuffer(final Comparator<? super E> comparator) {
+        this(defaultQueues(), DEFAULT_CHOICES, true, comparator);
+    }
+
+    /**
+     * Constructs a new empty buffer specifying the sort order and comparator,
+     * with twice as many queues as there are processors.
+     *
+     * @param ascendingOrder  true to use the order imposed by the given
+     *   comparator; false to reverse that order
+     * @param comparator  the comparator used to order the elements,
+     *  null means use natural order
+     */
+    public ConcurrentPriorityBuffer(final boolean ascendingOrder, final Comparator<? super E> comparator) {
+        this(defaultQueues(), DEFAULT_CHOICES, ascendingOrder, comparator);
+    }
+
+    /**
+     * Constructs a new empty buffer specifying the strictness, the sort order
+     * and comparator.
+     *
+     * @param queues  the number of queues, 1 for a strict order
+     * @param choices  the number of queues looked at to remove an element,
+     *   reduced to the number of queues if greater
+     * @param ascendingOrder  true to use the order imposed by the given
+     *   comparator; false to reverse that order
+     * @param comparator  the comparator used to order the elements,
+     *  null means use natural order
+     * @throws IllegalArgumentException if <code>queues</code> or <code>choices</code> is less than 1
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentPriorityBuffer(final int queues, final int choices,
+                                    final boolean ascendingOrder, final Comparator<? super E> comparator) {
+        super();
+        if (queues < 1) {
+            throw new IllegalArgumentException("The number of queues must be greater than 0");
+        }
+        if (choices < 1) {
+            throw new IllegalArgumentException("The number of choices must be greater than 0");
+        }
+        this.choices = Math.min(choices, queues);
+        this.ascendingOrder = ascendingOrder;
+        this.comparator = (Comparator<? super E>) (comparator == null ? ComparableComparator.INSTANCE : comparator);
+        init(queues);
+    }
+
+    /**
+     * Creates the queues.
+     *
+     * @param count  the number of queues
+     */
+    @SuppressWarnings("unchecked")
+    private void init(final int count) {
+        queues = new Queue[count];
+        for (int i = 0; i < count; i++) {
+            queues[i] = new Queue<E>(ascendingOrder, comparator);
+        }
+        size = new AtomicInteger();
+    }
+
+    /**
+     * Gets the default number of queues, twice the number of processors.
+     *
+     * @return the number of queues
+     */
+    private static int defaultQueues() {
+        return 2 * Runtime.getRuntime().availableProcessors();
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Checks whether the order of the buffer is ascending or descending.
+     *
+     * @return true if ascending order (a min heap)
+     */
+    public boolean isAscendingOrder() {
+        return ascendingOrder;
+    }
+
+    /**
+     * Gets the comparator being used for this buffer.
+     *
+     * @return the comparator used to order the elements
+     */
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    /**
+     * Gets the number of queues the elements are spread over.
+     *
+     * @return the number of queues
+     */
+    public int queues() {
+        return queues.length;
+    }
+
+    /**
+     * Gets the number of queues looked at to remove an element.
+     *
+     * @return the number of choices
+     */
+    public int choices() {
+        return choices;
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    /**
+     * Adds an element to a randomly chosen queue.
+     *
+     * @param element  the element to be added
+     * @return true always
+     * @throws NullPointerException if the element is null
+     */
+    @Override
+    public boolean add(final E element) {
+        if (element == null) {
+            throw new NullPointerException("Attempted to add null object to buffer");
+        }
+        Queue<E> queue = queues[random(queues.length)];
+        for (int attempt = 1; !queue.tryLock(); attempt++) {
+            if (attempt == ATTEMPTS) {
+                queue.lock();
+                break;
+            }
+            queue = queues[random(queues.length)];
+        }
+        try {
+            queue.add(element);
+            size.incrementAndGet();
+        } finally {
+            queue.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Gets the first element of the first of the queues looked at, without
+     * removing it.
+     *
+     * @return the next element
+     * @throws BufferUnderflowException if the buffer is empty
+     */
+    public E get() {
+        while (true) {
+            Queue<E> queue = choose(false);
+            if (queue == null) {
+                queue = anyNonEmpty();
+                if (queue == null) {
+                    throw new BufferUnderflowException();
+                }
+            }
+            final E element = queue.top;
+            if (element != null) {
+                return element;
+            }
+            // removed by another thread since the queue was chosen
+        }
+    }
+
+    /**
+     * Removes the first element of the first of the queues looked at.
+     *
+     * @return the removed element
+     * @throws BufferUnderflowException if the buffer is empty
+     */
+    public E remove() {
+        while (true) {
+            Queue<E> queue = choose(true);
+            if (queue == null) {
+                queue = anyNonEmpty();
+                if (queue == null) {
+                    throw new BufferUnderflowException();
+                }
+                queue.lock();
+            }
+            try {
+                if (!queue.isEmpty()) {
+                    final E element = queue.remove();
+                    size.decrementAndGet();
+                    return element;
+                }
+            } finally {
+                queue.unlock();
+            }
+            // emptied by another thread since the queue was chosen
+        }
+    }
+
+    /**
+     * Removes an element equal to the given one, looking in every queue.
+     *
+     * @param object  the object to remove
+     * @return true if an element was removed
+     */
+    @Override
+    public boolean remove(final Object object) {
+        for (final Queue<E> queue : queues) {
+            queue.lock();
+            try {
+                if (queue.removeElement(object)) {
+                    size.decrementAndGet();
+                    return true;
+                }
+            } finally {
+                queue.unlock();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes all the elements, one queue at a time.
+     */
+    @Override
+    public void clear() {
+        for (final Queue<E> queue : queues) {
+            queue.lock();
+            try {
+                size.addAndGet(-queue.size());
+                queue.clear();
+            } finally {
+                queue.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the buffer's elements, taken one
+     * queue at a time, in no particular order.
+     *
+     * @return an iterator over the elements
+     */
+    @Override
+    public Iterator<E> iterator() {
+        final List<E> snapshot = new ArrayList<E>(size());
+        for (final Queue<E> queue : queues) {
+            queue.lock();
+            try {
+                snapshot.addAll(queue);
+            } finally {
+                queue.unlock();
+            }
+        }
+        final Iterator<E> it = snapshot.iterator();
+        return new Iterator<E>() {
+            private E last;
+
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            public E next() {
+                last = it.next();
+                return last;
+            }
+
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                ConcurrentPriorityBuffer.this.remove(last);
+                last = null;
+            }
+        };
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Looks at the first element of randomly chosen queues and picks the
+     * queue whose first element comes first.
+     *
+     * @param lock  whether to lock the chosen queue, retrying with other
+     *  queues a few times while the chosen one is locked by another thread
+     * @return the chosen queue, or null if all the queues looked at were empty
+     */
+    private Queue<E> choose(final boolean lock) {
+        final Queue<E>[] queues = this.queues;
+        final boolean all = choices == queues.length;
+        for (int attempt = 1; true; attempt++) {
+            Queue<E> best = null;
+            E bestTop = null;
+            final int start = all ? random(queues.length) : 0;
+            for (int i = 0; i < choices; i++) {
+                final Queue<E> queue = queues[all ? (start + i) % queues.length : random(queues.length)];
+                final E top = queue.top;
+                if (top != null && (bestTop == null || compare(top, bestTop) < 0)) {
+                    best = queue;
+                    bestTop = top;
+                }
+            }
+            if (best == null || !lock || best.tryLock()) {
+                return best;
+            }
+            if (attempt == ATTEMPTS) {
+                best.lock();
+                return best;
+            }
+        }
+    }
+
+    /**
+     * Finds a queue that is not empty, looking at every queue.
+     *
+     * @return a queue that is not empty, or null if every queue is empty
+     */
+    private Queue<E> anyNonEmpty() {
+        for (final Queue<E> queue : queues) {
+            if (queue.top != null) {
+                return queue;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compares two objects using the comparator, reversing the result for a
+     * descending order.
+     *
+     * @param a  the first object
+     * @param b  the second object
+     * @return -ve if a comes before b, 0 if equal and +ve if a comes after b
+     */
+    private int compare(final E a, final E b) {
+        return ascendingOrder ? comparator.compare(a, b) : comparator.compare(b, a);
+    }
+
+    /**
+     * Gets a random number, using a xorshift generator private to the thread.
+     *
+     * @param bound  the upper bound, exclusive
+     * @return a random number from zero to bound - 1
+     */
+    private static int random(final int bound) {
+        final int[] seed = SEED.get();
+        int x = seed[0];
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        seed[0] = x;
+        return (x & Integer.MAX_VALUE) % bound;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Write the buffer out using a custom routine.
+     *
+     * @param out  the output stream
+     * @throws IOException if an I/O error occurs while writing to the output stream
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(queues.length);
+        final List<E> snapshot = new ArrayList<E>(this);
+        out.writeInt(snapshot.size());
+        for (final E element : snapshot) {
+            out.writeObject(element);
+        }
+    }
+
+    /**
+     * Read the buffer in using a custom routine.
+     *
+     * @param in  the input stream
+     * @throws IOException if an I/O error occurs while reading from the input stream
+     * @throws ClassNotFoundException if the class of a serialized object can not be found
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        init(in.readInt());
+        final int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            add((E) in.readObject());
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * One of the queues, a priority buffer with a lock and a copy of its first
+     * element that can be read without the lock.
+     */
+    private static final class Queue<E> extends PriorityBuffer<E> {
+
+        /** Serialization version, the queues are not serialized */
+        private static final long serialVersionUID = 1L;
+
+        /** The lock guarding the queue */
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /** The first element, null if the queue is empty */
+        volatile E top;
+
+        /**
+         * Constructor.
+         *
+         * @param ascendingOrder  the sort order
+         * @param comparator  the comparator
+         */
+        Queue(final boolean ascendingOrder, final Comparator<? super E> comparator) {
+            super(ascendingOrder, comparator);
+        }
+
+        boolean tryLock() {
+            return lock.tryLock();
+        }
+
+        void lock() {
+            lock.lock();
+        }
+
+        void unlock() {
+            lock.unlock();
+        }
+
+        /**
+         * Removes an element equal to the given one, while locked.
+         *
+         * @param object  the object to remove
+         * @return true if an element was removed
+         */
+        boolean removeElement(final Object object) {
+            if (super.remove(object)) {
+                top = size == 0 ? null : elements[1];
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean add(final E element) {
+            super.add(element);
+            top = elements[1];
+            return true;
+        }
+
+        @Override
+        public E remove() {
+            final E element = super.remove();
+            top = size == 0 ? null : elements[1];
+            return element;
+        }
+
+        @Override
+        public void clear() {
+            super.clear();
+            top = null;
+        }
+    }
+
+}
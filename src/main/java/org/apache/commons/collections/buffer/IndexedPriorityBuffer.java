@@ -0,0 +1,671 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.buffer;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.collections.Buffer;
+import org.apache.commons.collections.BufferUnderflowException;
+import org.apache.commons.collections.comparators.ComparableComparator;
+
+/**
+ * Binary (or, more generally, d-ary) heap based implementation of
+ * <code>Buffer</code> whose elements can be found again, reprioritized and
+ * removed through {@link Handle}s.
+ * <p>
+ * Like {@link PriorityBuffer}, the <code>Buffer.remove()</code> method always
+ * returns the first element as determined by the sort order. Unlike it, every
+ * element is wrapped in an entry that knows its position in the heap, and
+ * {@link #insert(Object)} returns that entry as a handle. Given a handle,
+ * {@link #update(Handle, Object)} changes the element and moves it up or down
+ * to its new place, covering both decrease-key and increase-key, and
+ * {@link #delete(Handle)} removes it. Both take O(log n) time, whereas
+ * removing a given element from a <code>PriorityBuffer</code> first has to
+ * search for it.
+ * <p>
+ * Building the buffer from a collection, and adding a collection at least as
+ * large as the buffer, rearranges the whole array at once in O(n) time
+ * rather than adding the elements one by one.
+ * <p>
+ * Each node of the heap has <code>arity</code> children, 4 by default. A wider
+ * node makes the tree shallower, so that fewer levels, and fewer cache lines,
+ * are visited when an element moves, at the cost of more comparisons on the
+ * way down.
+ * <p>
+ * Note that this implementation is not synchronized. Use
+ * {@link org.apache.commons.collections.BufferUtils#synchronizedBuffer(Buffer)} or
+ * {@link org.apache.commons.collections.buffer.SynchronizedBuffer#synchronizedBuffer(Buffer)}
+ * to provide synchronized access to a <code>IndexedPriorityBuffer</code>.
+ * <p>
+ * This class is Serializable. Handles are not, the elements of a
+ * deserialized buffer have new handles.
+ *
+ * @see PriorityBuffer
+ * @since 4.0
+ * @version $Id$
+ */
+public class IndexedPriorityBuffer<E> extends AbstractCollection<E> implements Buffer<E>, Serializable {
+
+    /** Serialization version */
+    private static final long serialVersionUID = -3826351902712640437L;
+
+    /**
+     * The default capacity for the buffer.
+     */
+    private static final int DEFAULT_CAPACITY = 13;
+
+    /**
+     * The default number of children of each node.
+     */
+    public static final int DEFAULT_ARITY = 4;
+
+    /**
+     * The entries of the heap, the children of the entry at index i being at
+     * indices i * arity + 1 to i * arity + arity.
+     */
+    transient Entry<E>[] heap;
+
+    /**
+     * The number of elements currently in this buffer.
+     */
+    transient int size;
+
+    /**
+     * The number of children of each node.
+     */
+    private final int arity;
+
+    /**
+     * If true, the first element as determined by the sort order will
+     * be returned.  If false, the last element as determined by the
+     * sort order will be returned.
+     */
+    private final boolean ascendingOrder;
+
+    /**
+     * The comparator used to order the elements
+     */
+    private final Comparator<? super E> comparator;
+
+    //-----------------------------------------------------------------------
+    /**
+     * Constructs a new empty buffer that sorts in ascending order by the
+     * natural order of the objects added.
+     */
+    public IndexedPriorityBuffer() {
+        this(DEFAULT_ARITY, true, null);
+    }
+
+    /**
+     * Constructs a new empty buffer that sorts in ascending order using the
+     * specified comparator.
+     *
+     * @param comparator  the comparator used to order the elements,
+     *  null means use natural order
+     */
+    public IndexedPriorityBuffer(final Comparator<? super E> comparator) {
+        this(DEFAULT_ARITY, true, comparator);
+    }
+
+    /**
+     * Constructs a new empty buffer specifying the sort order and comparator.
+     *
+     * @param ascendingOrder  true to use the order imposed by the given
+     *   comparator; false to reverse that order
+     * @param comparator  the comparator used to order the elements,
+     *  null means use natural order
+     */
+    public IndexedPriorityBuffer(final boolean ascendingOrder, final Comparator<? super E> comparator) {
+        this(DEFAULT_ARITY, ascendingOrder, comparator);
+    }
+
+    /**
+     * Constructs a new empty buffer specifying the number of children of
+     * each node, the sort order and comparator.
+     *
+     * @param arity  the number of children of each node, 2 for a binary heap
+     * @param ascendingOrder  true to use the order imposed by the given
+     *   comparator; false to reverse that order
+     * @param comparator  the comparator used to order the elements,
+     *  null means use natural order
+     * @throws IllegalArgumentException if <code>arity</code> is less than 2
+     */
+    @SuppressWarnings("unchecked")
+    public IndexedPriorityBuffer(final int arity, final boolean ascendingOrder,
+                                 final Comparator<? super E> comparator) {
+        super();
+        if (arity < 2) {
+            throw new IllegalArgumentException("The arity must be at least 2");
+        }
+        this.arity = arity;
+        this.ascendingOrder = ascendingOrder;
+        this.comparator = (Comparator<? super E>) (comparator == null ? ComparableComparator.INSTANCE : comparator);
+        this.heap = newHeap(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a new buffer holding the elements of a collection, arranged
+     * into a heap in O(n) time.
+     *
+     * @param coll  the collection of elements to add
+     * @param arity  the number of children of each node, 2 for a binary heap
+     * @param ascendingOrder  true to use the order imposed by the given
+     *   comparator; false to reverse that order
+     * @param comparator  the comparator used to order the elements,
+     *  null means use natural order
+     * @throws IllegalArgumentException if <code>arity</code> is less than 2
+     */
+    public IndexedPriorityBuffer(final Collection<? extends E> coll, final int arity,
+                                 final boolean ascendingOrder, final Comparator<? super E> comparator) {
+        this(arity, ascendingOrder, comparator);
+        addAll(coll);
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Checks whether the order of the buffer is ascending or descending.
+     *
+     * @return true if ascending order (a min heap)
+     */
+    public boolean isAscendingOrder() {
+        return ascendingOrder;
+    }
+
+    /**
+     * Gets the comparator being used for this buffer.
+     *
+     * @return the comparator used to order the elements
+     */
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    /**
+     * Gets the number of children of each node of the heap.
+     *
+     * @return the arity
+     */
+    public int arity() {
+        return arity;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns the number of elements in this buffer.
+     *
+     * @return the number of elements in this buffer
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Clears all elements from the buffer, invalidating their handles.
+     */
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            heap[i].index = -1;
+            heap[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * Adds an element to the buffer.
+     * <p>
+     * The element added will be sorted according to the comparator in use.
+     *
+     * @param element  the element to be added
+     * @return true always
+     */
+    @Override
+    public boolean add(final E element) {
+        insert(element);
+        return true;
+    }
+
+    /**
+     * Adds all the elements of a collection to the buffer. When the collection
+     * is at least as large as the buffer, the elements are appended and the
+     * whole heap is rebuilt, which is cheaper than adding them one by one.
+     *
+     * @param coll  the collection of elements to add
+     * @return true if the buffer changed
+     */
+    @Override
+    public boolean addAll(final Collection<? extends E> coll) {
+        final int count = coll.size();
+        if (count < size || count == 0) {
+            return super.addAll(coll);
+        }
+        ensureCapacity(size + count);
+        for (final E element : coll) {
+            final Entry<E> entry = new Entry<E>(element);
+            entry.index = size;
+            heap[size++] = entry;
+        }
+        heapify();
+        return true;
+    }
+
+    /**
+     * Adds an element to the buffer, returning a handle with which the element
+     * can later be updated or deleted.
+     *
+     * @param element  the element to be added
+     * @return the handle of the element
+     */
+    public Handle<E> insert(final E element) {
+        ensureCapacity(size + 1);
+        final Entry<E> entry = new Entry<E>(element);
+        entry.index = size;
+        heap[size++] = entry;
+        siftUp(entry.index);
+        return entry;
+    }
+
+    /**
+     * Gets the next element to be removed without actually removing it (peek).
+     *
+     * @return the next element
+     * @throws BufferUnderflowException if the buffer is empty
+     */
+    public E get() {
+        return getHandle().getValue();
+    }
+
+    /**
+     * Gets the handle of the next element to be removed without removing it.
+     *
+     * @return the handle of the next element
+     * @throws BufferUnderflowException if the buffer is empty
+     */
+    public Handle<E> getHandle() {
+        if (isEmpty()) {
+            throw new BufferUnderflowException();
+        }
+        return heap[0];
+    }
+
+    /**
+     * Gets and removes the next element (pop).
+     *
+     * @return the next element
+     * @throws BufferUnderflowException if the buffer is empty
+     */
+    public E remove() {
+        final E result = get();
+        removeAt(0);
+        return result;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Checks whether the element of a handle is still in this buffer.
+     *
+     * @param handle  the handle to check
+     * @return true if the element has been neither removed nor deleted
+     */
+    public boolean isQueued(final Handle<?> handle) {
+        if (handle instanceof Entry == false) {
+            return false;
+        }
+        final int index = ((Entry<?>) handle).index;
+        return index >= 0 && index < size && heap[index] == handle;
+    }
+
+    /**
+     * Replaces the element of a handle and moves it to its place according to
+     * the new element, in O(log n) time.
+     *
+     * @param handle  the handle of the element to replace
+     * @param element  the new element
+     * @throws IllegalArgumentException if the handle's element is not in this buffer
+     */
+    public void update(final Handle<E> handle, final E element) {
+        final Entry<E> entry = checkHandle(handle);
+        entry.value = element;
+        reposition(entry.index);
+    }
+
+    /**
+     * Moves the element of a handle to its place after its priority has been
+     * changed in place, in O(log n) time.
+     *
+     * @param handle  the handle of the changed element
+     * @throws IllegalArgumentException if the handle's element is not in this buffer
+     */
+    public void update(final Handle<E> handle) {
+        reposition(checkHandle(handle).index);
+    }
+
+    /**
+     * Removes the element of a handle from the buffer, in O(log n) time.
+     *
+     * @param handle  the handle of the element to remove
+     * @return the removed element
+     * @throws IllegalArgumentException if the handle's element is not in this buffer
+     */
+    public E delete(final Handle<E> handle) {
+        final Entry<E> entry = checkHandle(handle);
+        removeAt(entry.index);
+        return entry.value;
+    }
+
+    /**
+     * Checks that a handle belongs to an element of this buffer.
+     *
+     * @param handle  the handle to check
+     * @return the handle as an entry
+     * @throws IllegalArgumentException if the handle's element is not in this buffer
+     */
+    private Entry<E> checkHandle(final Handle<E> handle) {
+        if (!isQueued(handle)) {
+            throw new IllegalArgumentException("The element is not in this buffer");
+        }
+        return (Entry<E>) handle;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Compares two objects using the comparator, reversing the result for a
+     * descending order so that the heap always keeps the smallest result at
+     * the top.
+     *
+     * @param a  the first object
+     * @param b  the second object
+     * @return -ve if a comes before b, 0 if equal and +ve if a comes after b
+     */
+    private int compare(final E a, final E b) {
+        return ascendingOrder ? comparator.compare(a, b) : comparator.compare(b, a);
+    }
+
+    /**
+     * Moves the entry at an index up towards the root until its parent
+     * comes before it.
+     *
+     * @param index  the index of the entry
+     * @return the index the entry ended at
+     */
+    private int siftUp(int index) {
+        final Entry<E> entry = heap[index];
+        while (index > 0) {
+            final int parent = (index - 1) / arity;
+            final Entry<E> parentEntry = heap[parent];
+            if (compare(entry.value, parentEntry.value) >= 0) {
+                break;
+            }
+            heap[index] = parentEntry;
+            parentEntry.index = index;
+            index = parent;
+        }
+        heap[index] = entry;
+        entry.index = index;
+        return index;
+    }
+
+    /**
+     * Moves the entry at an index down towards the leaves until none of its
+     * children comes before it.
+     *
+     * @param index  the index of the entry
+     */
+    private void siftDown(int index) {
+        final Entry<E> entry = heap[index];
+        // the last entry that has children, computed so that index * arity cannot overflow
+        final int lastParent = size < 2 ? -1 : (size - 2) / arity;
+        while (index <= lastParent) {
+            final int first = index * arity + 1;
+            final int end = Math.min(first + arity, size);
+            int child = first;
+            for (int i = first + 1; i < end; i++) {
+                if (compare(heap[i].value, heap[child].value) < 0) {
+                    child = i;
+                }
+            }
+            final Entry<E> childEntry = heap[child];
+            if (compare(childEntry.value, entry.value) >= 0) {
+                break;
+            }
+            heap[index] = childEntry;
+            childEntry.index = index;
+            index = child;
+        }
+        heap[index] = entry;
+        entry.index = index;
+    }
+
+    /**
+     * Moves the entry at an index up or down to its place.
+     *
+     * @param index  the index of the entry
+     * @return true if the entry moved up
+     */
+    private boolean reposition(final int index) {
+        if (siftUp(index) != index) {
+            return true;
+        }
+        siftDown(index);
+        return false;
+    }
+
+    /**
+     * Rearranges the whole array into a heap, in O(n) time.
+     */
+    private void heapify() {
+        for (int i = size < 2 ? -1 : (size - 2) / arity; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    /**
+     * Removes the entry at an index, filling the gap with the last entry.
+     *
+     * @param index  the index of the entry to remove
+     * @return the last entry if it moved to an index before the removed one, else null
+     */
+    private Entry<E> removeAt(final int index) {
+        heap[index].index = -1;
+        final int last = --size;
+        final Entry<E> moved = heap[last];
+        heap[last] = null;
+        if (index == last) {
+            return null;
+        }
+        heap[index] = moved;
+        moved.index = index;
+        return reposition(index) ? moved : null;
+    }
+
+    /**
+     * Ensures the heap array can hold the specified number of entries.
+     *
+     * @param capacity  the number of entries
+     */
+    private void ensureCapacity(final int capacity) {
+        if (capacity > heap.length) {
+            final Entry<E>[] array = newHeap(Math.max(capacity, heap.length * 2));
+            System.arraycopy(heap, 0, array, 0, size);
+            heap = array;
+        }
+    }
+
+    /**
+     * Creates a new heap array.
+     *
+     * @param capacity  the length of the array
+     * @return the array
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> Entry<E>[] newHeap(final int capacity) {
+        return new Entry[capacity];
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns an iterator over this buffer's elements, in no particular order.
+     *
+     * @return an iterator over this buffer's elements
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new HeapIterator();
+    }
+
+    /**
+     * Iterator over the heap array. Removing an element moves the last entry
+     * into its place, and if that entry then moves up into the part of the
+     * array already returned it is remembered and returned at the end.
+     */
+    private class HeapIterator implements Iterator<E> {
+        /** The index of the next entry to return from the array */
+        private int cursor = 0;
+        /** The last entry returned */
+        private Entry<E> last;
+        /** The entries that moved into the part of the array already returned */
+        private ArrayList<Entry<E>> forgotten;
+        /** Whether the last entry returned came from the forgotten list */
+        private boolean lastForgotten;
+
+        public boolean hasNext() {
+            return cursor < size || forgotten != null && !forgotten.isEmpty();
+        }
+
+        public E next() {
+            if (cursor < size) {
+                last = heap[cursor++];
+                lastForgotten = false;
+            } else if (forgotten != null && !forgotten.isEmpty()) {
+                last = forgotten.remove(forgotten.size() - 1);
+                lastForgotten = true;
+            } else {
+                throw new NoSuchElementException();
+            }
+            return last.value;
+        }
+
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            final Entry<E> movedUp = removeAt(last.index);
+            if (!lastForgotten) {
+                if (movedUp == null) {
+                    // the gap was filled by an entry not yet returned
+                    cursor--;
+                } else {
+                    if (forgotten == null) {
+                        forgotten = new ArrayList<Entry<E>>();
+                    }
+                    forgotten.add(movedUp);
+                }
+            }
+            last = null;
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Write the buffer out using a custom routine.
+     *
+     * @param out  the output stream
+     * @throws IOException if an I/O error occurs while writing to the output stream
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeObject(heap[i].value);
+        }
+    }
+
+    /**
+     * Read the buffer in using a custom routine.
+     *
+     * @param in  the input stream
+     * @throws IOException if an I/O error occurs while reading from the input stream
+     * @throws ClassNotFoundException if the class of a serialized object can not be found
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        final int count = in.readInt();
+        heap = newHeap(Math.max(count, DEFAULT_CAPACITY));
+        for (int i = 0; i < count; i++) {
+            final Entry<E> entry = new Entry<E>((E) in.readObject());
+            entry.index = i;
+            heap[i] = entry;
+        }
+        size = count;
+        heapify();
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * A reference to an element of an <code>IndexedPriorityBuffer</code>,
+     * valid until the element is removed or deleted.
+     */
+    public interface Handle<E> {
+
+        /**
+         * Gets the element this handle refers to.
+         *
+         * @return the element
+         */
+        E getValue();
+    }
+
+    /**
+     * An entry of the heap, which is also the handle of its element.
+     */
+    static final class Entry<E> implements Handle<E> {
+        /** The element */
+        E value;
+        /** The index of the entry in the heap, -1 once removed */
+        int index;
+
+        /**
+         * Constructor.
+         *
+         * @param value  the element
+         */
+        Entry(final E value) {
+            this.value = value;
+        }
+
+        public E getValue() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(value);
+        }
+    }
+
+}
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.buffer;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.commons.collections.BufferOverflowException;
+
+/**
+ * A lock-free bounded FIFO {@link org.apache.commons.collections.Buffer Buffer}
+ * for any number of producer threads and one consumer thread.
+ * <p>
+ * A producer claims a slot by advancing the tail sequence with a compare and
+ * swap, and then publishes its element by storing it into the slot. The
+ * consumer treats an empty slot below the tail as claimed but not yet
+ * published, and waits for it to fill. {@link #addAll(Collection)} claims all
+ * the slots it needs with a single compare and swap, so the elements of one
+ * batch are kept together, and {@link #drainTo(Collection, int)} releases the
+ * slots it has emptied with a single write.
+ * <p>
+ * The adding operations ({@link #add(Object)}, {@link #offer(Object)} and
+ * {@link #addAll(Collection)}) may be called by any thread, but the removal
+ * operations must only be called by the consumer.
+ * <p>
+ * This buffer prevents null objects from being added.
+ *
+ * @see SingleProducerRingBuffer
+ * @since 4.0
+ * @version $Id$
+ */
+public class MultiProducerRingBuffer<E> extends AbstractRingBuffer<E> {
+
+    /** Serialization version */
+    private static final long serialVersionUID = -8105834671592716438L;
+
+    /** The elements, indexed by sequence & mask, null when not published */
+    private transient AtomicReferenceArray<E> elements;
+    /** The array length less one */
+    private transient int mask;
+    /** The sequence of the next element to remove, caching the tail */
+    private transient Sequence head;
+    /** The sequence of the next slot to claim */
+    private transient Sequence tail;
+
+    /**
+     * Constructs a new buffer big enough to hold 32 elements.
+     */
+    public MultiProducerRingBuffer() {
+        this(32);
+    }
+
+    /**
+     * Constructs a new buffer big enough to hold the specified number of
+     * elements.
+     *
+     * @param size  the maximum number of elements for this buffer
+     * @throws IllegalArgumentException if the size is less than 1
+     */
+    public MultiProducerRingBuffer(final int size) {
+        super(size);
+    }
+
+    @Override
+    protected void init() {
+        elements = new AtomicReferenceArray<E>(capacity());
+        mask = elements.length() - 1;
+        head = new Sequence();
+        tail = new Sequence();
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public boolean offer(final E element) {
+        if (element == null) {
+            throw new NullPointerException("Attempted to add null object to buffer");
+        }
+        final long claimed = claim(1);
+        if (claimed < 0) {
+            return false;
+        }
+        elements.set((int) claimed & mask, element);
+        return true;
+    }
+
+    @Override
+    public boolean addAll(final Collection<? extends E> coll) {
+        final Object[] array = coll.toArray();
+        checkNotNull(array);
+        if (array.length == 0) {
+            return false;
+        }
+        final long claimed = claim(array.length);
+        if (claimed < 0) {
+            throw new BufferOverflowException("The buffer cannot hold more than " + maxSize() + " objects.");
+        }
+        for (int i = 0; i < array.length; i++) {
+            @SuppressWarnings("unchecked")
+            final E element = (E) array[i];
+            elements.set((int) (claimed + i) & mask, element);
+        }
+        return true;
+    }
+
+    /**
+     * Claims a number of consecutive slots.
+     *
+     * @param count  the number of slots to claim
+     * @return the sequence of the first slot, or -1 if there is not enough room
+     */
+    private long claim(final int count) {
+        final Sequence tail = this.tail;
+        while (true) {
+            final long next = tail.value;
+            if (next - head.value + count > maxSize()) {
+                return -1;
+            }
+            if (tail.compareAndSet(next, next + count)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Waits until a claimed slot has been published.
+     *
+     * @param index  the index of the slot
+     * @return the element in the slot
+     */
+    private E await(final int index) {
+        E element = elements.get(index);
+        while (element == null) {
+            // the producer has claimed the slot and is about to fill it
+            Thread.yield();
+            element = elements.get(index);
+        }
+        return element;
+    }
+
+    @Override
+    public E poll() {
+        final Sequence head = this.head;
+        final long next = head.value;
+        final int index = (int) next & mask;
+        E element = elements.get(index);
+        if (element == null) {
+            if (next >= tail.value) {
+                return null;
+            }
+            element = await(index);
+        }
+        elements.set(index, null);
+        head.value = next + 1;
+        return element;
+    }
+
+    @Override
+    public E peek() {
+        final long next = head.value;
+        final int index = (int) next & mask;
+        final E element = elements.get(index);
+        if (element == null && next < tail.value) {
+            return await(index);
+        }
+        return element;
+    }
+
+    @Override
+    public int drainTo(final Collection<? super E> coll, final int limit) {
+        final Sequence head = this.head;
+        final long first = head.value;
+        head.cache = tail.value;
+        final int count = (int) Math.min(head.cache - first, Math.max(limit, 0));
+        int done = 0;
+        try {
+            for (; done < count; done++) {
+                final int index = (int) (first + done) & mask;
+                coll.add(await(index));
+                elements.set(index, null);
+            }
+        } finally {
+            head.value = first + done;
+        }
+        return done;
+    }
+
+    @Override
+    public int size() {
+        while (true) {
+            final long before = head.value;
+            final long next = tail.value;
+            if (head.value == before) {
+                return (int) (next - before);
+            }
+        }
+    }
+
+    @Override
+    protected Object[] snapshot() {
+        final long first = head.value;
+        final int size = (int) (tail.value - first);
+        final Object[] array = new Object[size];
+        for (int i = 0; i < size; i++) {
+            array[i] = await((int) (first + i) & mask);
+        }
+        return array;
+    }
+
+}
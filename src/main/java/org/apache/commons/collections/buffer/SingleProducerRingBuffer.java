@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.buffer;
+
+import java.util.Collection;
+
+import org.apache.commons.collections.BufferOverflowException;
+
+/**
+ * A lock-free bounded FIFO {@link org.apache.commons.collections.Buffer Buffer}
+ * for exactly one producer thread and one consumer thread.
+ * <p>
+ * Unlike a {@link BoundedFifoBuffer} wrapped in a {@link SynchronizedBuffer},
+ * no lock is taken: the producer publishes an element by writing it into the
+ * array and then advancing the volatile tail sequence, and the consumer frees
+ * a slot by clearing it and advancing the volatile head sequence. Each side
+ * keeps a private copy of the other side's sequence and only reads the real
+ * one when the copy says the buffer is full, or empty. The batched
+ * {@link #addAll(Collection)} and {@link #drainTo(Collection, int)} move many
+ * elements with a single publication.
+ * <p>
+ * The adding operations ({@link #add(Object)}, {@link #offer(Object)} and
+ * {@link #addAll(Collection)}) must only be called by the producer, and the
+ * removal operations by the consumer. Use {@link MultiProducerRingBuffer}
+ * when several threads add.
+ * <p>
+ * This buffer prevents null objects from being added.
+ *
+ * @see MultiProducerRingBuffer
+ * @since 4.0
+ * @version $Id$
+ */
+public class SingleProducerRingBuffer<E> extends AbstractRingBuffer<E> {
+
+    /** Serialization version */
+    private static final long serialVersionUID = 2731096845619384527L;
+
+    /** The elements, indexed by sequence & mask */
+    private transient E[] elements;
+    /** The array length less one */
+    private transient int mask;
+    /** The sequence of the next element to remove, caching the tail */
+    private transient Sequence head;
+    /** The sequence of the next element to add, caching the head */
+    private transient Sequence tail;
+
+    /**
+     * Constructs a new buffer big enough to hold 32 elements.
+     */
+    public SingleProducerRingBuffer() {
+        this(32);
+    }
+
+    /**
+     * Constructs a new buffer big enough to hold the specified number of
+     * elements.
+     *
+     * @param size  the maximum number of elements for this buffer
+     * @throws IllegalArgumentException if the size is less than 1
+     */
+    public SingleProducerRingBuffer(final int size) {
+        super(size);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void init() {
+        elements = (E[]) new Object[capacity()];
+        mask = elements.length - 1;
+        head = new Sequence();
+        tail = new Sequence();
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public boolean offer(final E element) {
+        if (element == null) {
+            throw new NullPointerException("Attempted to add null object to buffer");
+        }
+        final Sequence tail = this.tail;
+        final long next = tail.value;
+        if (next - tail.cache >= maxSize()) {
+            tail.cache = head.value;
+            if (next - tail.cache >= maxSize()) {
+                return false;
+            }
+        }
+        elements[(int) next & mask] = element;
+        tail.value = next + 1;
+        return true;
+    }
+
+    @Override
+    public boolean addAll(final Collection<? extends E> coll) {
+        final Object[] array = coll.toArray();
+        checkNotNull(array);
+        if (array.length == 0) {
+            return false;
+        }
+        final Sequence tail = this.tail;
+        final long next = tail.value;
+        tail.cache = head.value;
+        if (next - tail.cache + array.length > maxSize()) {
+            throw new BufferOverflowException("The buffer cannot hold more than " + maxSize() + " objects.");
+        }
+        for (int i = 0; i < array.length; i++) {
+            @SuppressWarnings("unchecked")
+            final E element = (E) array[i];
+            elements[(int) (next + i) & mask] = element;
+        }
+        tail.value = next + array.length;
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        final Sequence head = this.head;
+        final long next = head.value;
+        if (next >= head.cache) {
+            head.cache = tail.value;
+            if (next >= head.cache) {
+                return null;
+            }
+        }
+        final int index = (int) next & mask;
+        final E element = elements[index];
+        elements[index] = null;
+        head.value = next + 1;
+        return element;
+    }
+
+    @Override
+    public E peek() {
+        final Sequence head = this.head;
+        final long next = head.value;
+        if (next >= head.cache) {
+            head.cache = tail.value;
+            if (next >= head.cache) {
+                return null;
+            }
+        }
+        return elements[(int) next & mask];
+    }
+
+    @Override
+    public int drainTo(final Collection<? super E> coll, final int limit) {
+        final Sequence head = this.head;
+        final long first = head.value;
+        head.cache = tail.value;
+        final int count = (int) Math.min(head.cache - first, Math.max(limit, 0));
+        int done = 0;
+        try {
+            for (; done < count; done++) {
+                final int index = (int) (first + done) & mask;
+                coll.add(elements[index]);
+                elements[index] = null;
+            }
+        } finally {
+            head.value = first + done;
+        }
+        return done;
+    }
+
+    @Override
+    public int size() {
+        while (true) {
+            final long before = head.value;
+            final long next = tail.value;
+            if (head.value == before) {
+                return (int) (next - before);
+            }
+        }
+    }
+
+    @Override
+    protected Object[] snapshot() {
+        final long first = head.value;
+        final int size = (int) (tail.value - first);
+        final Object[] array = new Object[size];
+        for (int i = 0; i < size; i++) {
+            array[i] = elements[(int) (first + i) & mask];
+        }
+        return array;
+    }
+
+}
@@ -21,9 +21,13 @@
  * The following implementations are provided in the package:
  * <ul>
  *   <li>PriorityBuffer - provides for removal based on a comparator ordering
+ *   <li>IndexedPriorityBuffer - provides for removal based on a comparator ordering, with handles to update or remove elements
+ *   <li>ConcurrentPriorityBuffer - provides for concurrent removal in approximately comparator order
  *   <li>BoundedFifoBuffer - implements a buffer with a fixed size that throws exceptions when full
  *   <li>CircularFifoBuffer - implements a buffer with a fixed size that discards oldest when full
  *   <li>UnboundedFifoBuffer - implements a buffer that grows in size if necessary
+ *   <li>SingleProducerRingBuffer - implements a lock-free fixed size buffer for one producer and one consumer thread
+ *   <li>MultiProducerRingBuffer - implements a lock-free fixed size buffer for many producer threads and one consumer thread
  * </ul>
  * <p>
  * The following decorators are provided in the package:
@@ -0,0 +1,528 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.iterators;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.collections.ComparatorUtils;
+
+/**
+ * Sorts a sequence of elements that may be larger than memory.
+ * <p>
+ * The input is read into runs of at most <code>maxRunSize</code> elements.
+ * Each run is sorted in memory and written to a temporary file through the
+ * {@link Codec}. When an <code>ExecutorService</code> is given, up to
+ * <code>parallelism</code> runs are sorted and written by it while the
+ * input is read on, so at most <code>maxRunSize * (parallelism + 1)</code>
+ * elements are held in memory. The runs are then merged lazily by a
+ * {@link MergingIterator}; if there are more than <code>maxFanIn</code> of
+ * them, groups are first merged into longer runs until there are not.
+ * Input that fits in a single run is sorted in memory without touching
+ * the disk.
+ * <p>
+ * The sort is stable. Run files are deleted once they have been read, or
+ * when the iterator returned by {@link #sort(Iterator)} is closed, so an
+ * iterator that is not read to the end should be closed. An
+ * <code>IOException</code> while the runs are read back is rethrown as an
+ * <code>IllegalStateException</code>.
+ *
+ * @since 4.0
+ * @version $Id$
+ */
+public class ExternalSorter<E> {
+
+    /**
+     * Writes elements to, and reads them back from, the run files.
+     */
+    public interface Codec<T> {
+
+        /**
+         * Writes an element.
+         *
+         * @param element  the element to write
+         * @param out  the output to write to
+         * @throws IOException if the element cannot be written
+         */
+        void write(T element, DataOutput out) throws IOException;
+
+        /**
+         * Reads an element written by {@link #write(Object, DataOutput)}.
+         *
+         * @param in  the input to read from
+         * @return the element
+         * @throws IOException if the element cannot be read
+         */
+        T read(DataInput in) throws IOException;
+    }
+
+    /** The default maximum number of elements in a run */
+    public static final int DEFAULT_MAX_RUN_SIZE = 100000;
+    /** The default maximum number of runs merged at once */
+    public static final int DEFAULT_MAX_FAN_IN = 64;
+    /** The size of the buffer of each run file */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** The comparator used to order the elements */
+    private final Comparator<? super E> comparator;
+    /** The codec of the run files */
+    private final Codec<E> codec;
+    /** The maximum number of elements in a run */
+    private final int maxRunSize;
+    /** The maximum number of runs merged at once */
+    private final int maxFanIn;
+    /** The directory of the run files, null for the default temporary directory */
+    private final File directory;
+    /** The executor sorting runs, null to sort them in the calling thread */
+    private final ExecutorService executor;
+    /** The maximum number of runs being sorted by the executor at once */
+    private final int parallelism;
+
+    /**
+     * Constructs a sorter that sorts runs in the calling thread, using
+     * the default limits and temporary directory.
+     *
+     * @param comparator  the comparator to use, null for natural order
+     * @param codec  the codec of the run files
+     * @throws NullPointerException if the codec is null
+     */
+    public ExternalSorter(final Comparator<? super E> comparator, final Codec<E> codec) {
+        this(comparator, codec, DEFAULT_MAX_RUN_SIZE, DEFAULT_MAX_FAN_IN, null, null, 1);
+    }
+
+    /**
+     * Constructs a sorter.
+     *
+     * @param comparator  the comparator to use, null for natural order
+     * @param codec  the codec of the run files
+     * @param maxRunSize  the maximum number of elements sorted in memory as one run
+     * @param maxFanIn  the maximum number of runs merged at once
+     * @param directory  the directory of the run files, null for the default temporary directory
+     * @param executor  the executor sorting runs, null to sort them in the calling thread
+     * @param parallelism  the maximum number of runs being sorted by the executor at once
+     * @throws NullPointerException if the codec is null
+     * @throws IllegalArgumentException if the run size or parallelism is not
+     *  positive, or the fan in is less than two
+     */
+    @SuppressWarnings("unchecked")
+    public ExternalSorter(final Comparator<? super E> comparator, final Codec<E> codec,
+            final int maxRunSize, final int maxFanIn, final File directory,
+            final ExecutorService executor, final int parallelism) {
+        super();
+        if (codec == null) {
+            throw new NullPointerException("Codec must not be null");
+        }
+        if (maxRunSize < 1) {
+            throw new IllegalArgumentException("Maximum run size must be positive");
+        }
+        if (maxFanIn < 2) {
+            throw new IllegalArgumentException("Maximum fan in must be at least two");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.comparator = comparator == null ? ComparatorUtils.NATURAL_COMPARATOR : comparator;
+        this.codec = codec;
+        this.maxRunSize = maxRunSize;
+        this.maxFanIn = maxFanIn;
+        this.directory = directory;
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Sorts the elements of an iterator.
+     * <p>
+     * The input is read to the end before this method returns. The
+     * elements are then read back from the runs as the result is iterated.
+     *
+     * @param input  the elements to sort
+     * @return an iterator over the sorted elements, to be closed if not read to the end
+     * @throws IOException if a run cannot be written or merged
+     */
+    public SortedIterator<E> sort(final Iterator<? extends E> input) throws IOException {
+        final List<Run> runs = new ArrayList<Run>();
+        final LinkedList<Future<Run>> pending = new LinkedList<Future<Run>>();
+        boolean done = false;
+        try {
+            List<E> buffer = new ArrayList<E>();
+            while (input.hasNext()) {
+                buffer.add(input.next());
+                if (buffer.size() >= maxRunSize && input.hasNext()) {
+                    spill(buffer, runs, pending);
+                    buffer = new ArrayList<E>();
+                }
+            }
+            if (runs.isEmpty() && pending.isEmpty()) {
+                Collections.sort(buffer, comparator);
+                done = true;
+                return new SortedIterator<E>(buffer.iterator(), new ArrayList<RunIterator<E>>());
+            }
+            if (buffer.isEmpty() == false) {
+                spill(buffer, runs, pending);
+            }
+            while (pending.isEmpty() == false) {
+                runs.add(await(pending.getFirst()));
+                pending.removeFirst();
+            }
+            while (runs.size() > maxFanIn) {
+                mergePass(runs);
+            }
+            final List<RunIterator<E>> sources = new ArrayList<RunIterator<E>>(runs.size());
+            try {
+                for (final Run run : runs) {
+                    sources.add(run.open(codec));
+                }
+                final SortedIterator<E> sorted =
+                    new SortedIterator<E>(new MergingIterator<E>(comparator, sources), sources);
+                done = true;
+                return sorted;
+            } finally {
+                if (done == false) {
+                    for (final RunIterator<E> source : sources) {
+                        source.close();
+                    }
+                }
+            }
+        } finally {
+            if (done == false) {
+                for (final Future<Run> future : pending) {
+                    discard(future);
+                }
+                for (final Run run : runs) {
+                    run.delete();
+                }
+            }
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Sorts and writes a full buffer, in this thread or by the executor.
+     *
+     * @param buffer  the elements of the run
+     * @param runs  the runs written so far, in input order
+     * @param pending  the runs being written by the executor, in input order
+     * @throws IOException if the run cannot be written
+     */
+    private void spill(final List<E> buffer, final List<Run> runs, final LinkedList<Future<Run>> pending)
+            throws IOException {
+        if (executor == null) {
+            runs.add(sortAndWrite(buffer));
+            return;
+        }
+        if (pending.size() >= parallelism) {
+            runs.add(await(pending.getFirst()));
+            pending.removeFirst();
+        }
+        pending.add(executor.submit(new Callable<Run>() {
+            public Run call() throws IOException {
+                return sortAndWrite(buffer);
+            }
+        }));
+    }
+
+    /**
+     * Sorts a run in memory and writes it to a file.
+     *
+     * @param buffer  the elements of the run
+     * @return the run
+     * @throws IOException if the run cannot be written
+     */
+    private Run sortAndWrite(final List<E> buffer) throws IOException {
+        Collections.sort(buffer, comparator);
+        return write(buffer.iterator());
+    }
+
+    /**
+     * Waits for a run to be written by the executor.
+     *
+     * @param future  the result of the task
+     * @return the run
+     * @throws IOException if the run could not be written
+     */
+    private Run await(final Future<Run> future) throws IOException {
+        try {
+            return future.get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a run to be written");
+        } catch (final ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Deletes the run of a task whose result is no longer needed. The task
+     * may still be writing the run, so this waits for it to finish even if
+     * the thread is interrupted, and restores the interrupt afterwards.
+     *
+     * @param future  the result of the task
+     */
+    private static void discard(final Future<Run> future) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    future.get().delete();
+                    return;
+                } catch (final InterruptedException ex) {
+                    interrupted = true;
+                } catch (final ExecutionException ex) {
+                    // the task failed, so it has no file to delete
+                    return;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Merges consecutive groups of at most <code>maxFanIn</code> runs into
+     * single runs, keeping the runs in input order.
+     *
+     * @param runs  the runs, replaced by the merged runs
+     * @throws IOException if a run cannot be read or written
+     */
+    private void mergePass(final List<Run> runs) throws IOException {
+        final List<Run> merged = new ArrayList<Run>();
+        boolean done = false;
+        try {
+            for (int i = 0; i < runs.size(); i += maxFanIn) {
+                final List<Run> group = runs.subList(i, Math.min(i + maxFanIn, runs.size()));
+                if (group.size() == 1) {
+                    merged.add(group.get(0));
+                    continue;
+                }
+                final List<RunIterator<E>> sources = new ArrayList<RunIterator<E>>(group.size());
+                try {
+                    for (final Run run : group) {
+                        sources.add(run.open(codec));
+                    }
+                    merged.add(write(new MergingIterator<E>(comparator, sources)));
+                } finally {
+                    for (final RunIterator<E> source : sources) {
+                        source.close();
+                    }
+                }
+            }
+            done = true;
+        } finally {
+            if (done == false) {
+                for (final Run run : merged) {
+                    if (runs.contains(run) == false) {
+                        run.delete();
+                    }
+                }
+            }
+        }
+        runs.clear();
+        runs.addAll(merged);
+    }
+
+    /**
+     * Writes elements to a new run file.
+     *
+     * @param elements  the elements, in order
+     * @return the run
+     * @throws IOException if the run cannot be written
+     */
+    private Run write(final Iterator<? extends E> elements) throws IOException {
+        final File file = File.createTempFile("sort", ".run", directory);
+        final FileOutputStream stream = new FileOutputStream(file);
+        long count = 0;
+        boolean written = false;
+        try {
+            final DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(stream.getChannel()), BUFFER_SIZE));
+            while (elements.hasNext()) {
+                codec.write(elements.next(), out);
+                count++;
+            }
+            out.flush();
+            written = true;
+        } finally {
+            stream.close();
+            if (written == false) {
+                file.delete();
+            }
+        }
+        return new Run(file, count);
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * A sorted run written to a file.
+     */
+    private static class Run {
+        /** The file */
+        private final File file;
+        /** The number of elements */
+        private final long count;
+
+        Run(final File file, final long count) {
+            this.file = file;
+            this.count = count;
+        }
+
+        <T> RunIterator<T> open(final Codec<T> codec) throws IOException {
+            return new RunIterator<T>(file, count, codec);
+        }
+
+        void delete() {
+            file.delete();
+        }
+    }
+
+    /**
+     * Reads a run back, deleting the file once it has been read.
+     */
+    private static class RunIterator<T> implements Iterator<T>, Closeable {
+        /** The file */
+        private final File file;
+        /** The codec */
+        private final Codec<T> codec;
+        /** The open file stream, null once closed */
+        private FileInputStream stream;
+        /** The buffered input */
+        private final DataInputStream in;
+        /** The number of elements left */
+        private long remaining;
+
+        RunIterator(final File file, final long count, final Codec<T> codec) throws IOException {
+            this.file = file;
+            this.codec = codec;
+            this.remaining = count;
+            stream = new FileInputStream(file);
+            in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(stream.getChannel()), BUFFER_SIZE));
+        }
+
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        public T next() {
+            if (remaining <= 0) {
+                throw new NoSuchElementException();
+            }
+            try {
+                final T element = codec.read(in);
+                if (--remaining == 0) {
+                    close();
+                }
+                return element;
+            } catch (final IOException ex) {
+                close();
+                throw new IllegalStateException("Cannot read run " + file, ex);
+            }
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("remove() is not supported");
+        }
+
+        public void close() {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (final IOException ex) {
+                    // the file is deleted anyway
+                }
+                stream = null;
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * The sorted elements, read lazily from the runs.
+     */
+    public static class SortedIterator<T> implements Iterator<T>, Closeable {
+        /** The merged elements */
+        private final Iterator<T> iterator;
+        /** The runs being read */
+        private final List<RunIterator<T>> sources;
+
+        SortedIterator(final Iterator<T> iterator, final List<RunIterator<T>> sources) {
+            this.iterator = iterator;
+            this.sources = sources;
+        }
+
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        public T next() {
+            return iterator.next();
+        }
+
+        /**
+         * Unsupported.
+         *
+         * @throws UnsupportedOperationException always
+         */
+        public void remove() {
+            throw new UnsupportedOperationException("remove() is not supported");
+        }
+
+        /**
+         * Closes and deletes the run files not yet read to the end.
+         */
+        public void close() {
+            for (final RunIterator<T> source : sources) {
+                source.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,344 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.iterators;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.collections.ComparatorUtils;
+
+/**
+ * Provides an ordered iteration over the elements of a number of ordered
+ * iterators, merging them through a loser tree.
+ * <p>
+ * {@link CollatingIterator} compares the head of every iterator to find
+ * each element, so merging <code>k</code> iterators costs <code>O(k)</code>
+ * comparisons per element. This iterator keeps the heads in a tournament
+ * tree whose internal nodes hold the loser of each match; replacing the
+ * winner only replays the matches on its path to the root, so each element
+ * costs <code>ceil(log2 k)</code> comparisons. It is intended for merges of
+ * many runs, such as the merge phase of an external sort.
+ * <p>
+ * Elements that compare equal are returned in the order of the iterators
+ * they come from, as with <code>CollatingIterator</code>. Two options are
+ * available:
+ * <ul>
+ * <li><i>distinct</i> - only the first of a group of elements comparing
+ *  equal is returned, across and within the iterators
+ * <li><i>batch size</i> - the number of elements read from an iterator
+ *  at a time, so that each source is drained in runs rather than one
+ *  element at a time interleaved with all the others
+ * </ul>
+ * <code>remove()</code> removes the last returned element from the iterator
+ * it came from. It is only supported with a batch size of one, and, as with
+ * {@link FilterIterator}, not after <code>hasNext()</code> has been called.
+ *
+ * @since 4.0
+ * @version $Id$
+ */
+public class MergingIterator<E> implements Iterator<E> {
+
+    /** The comparator used to order the elements */
+    private final Comparator<? super E> comparator;
+    /** The iterators to merge */
+    private final Iterator<? extends E>[] iterators;
+    /** Whether equal elements after the first are skipped */
+    private final boolean distinct;
+    /** The number of elements read from an iterator at a time */
+    private final int batchSize;
+    /** The current head of each iterator */
+    private final Object[] heads;
+    /** Whether each iterator is exhausted */
+    private final boolean[] exhausted;
+    /** The elements read ahead from each iterator, null for a batch size of one */
+    private final Object[][] buffers;
+    /** The position of the head in each buffer */
+    private final int[] positions;
+    /** The number of elements in each buffer */
+    private final int[] limits;
+    /** The tree, holding the overall winner at 0 and the loser of each match above */
+    private final int[] tree;
+    /** Whether the heads have been read */
+    private boolean started;
+    /** The iterator whose head was returned and must be advanced, or -1 */
+    private int pending = -1;
+    /** The iterator that produced the last returned element, or -1 */
+    private int lastReturned = -1;
+    /** Whether the last returned element can be removed */
+    private boolean canRemove;
+    /** The last returned element, used to skip equal elements */
+    private E last;
+
+    /**
+     * Constructs a new <code>MergingIterator</code> over a collection of
+     * iterators.
+     *
+     * @param comparator  the comparator to use, null for natural order
+     * @param iterators  the iterators to merge, each in the order of the comparator
+     * @throws NullPointerException if the collection is or contains null
+     */
+    public MergingIterator(final Comparator<? super E> comparator,
+            final Collection<? extends Iterator<? extends E>> iterators) {
+        this(comparator, iterators, false, 1);
+    }
+
+    /**
+     * Constructs a new <code>MergingIterator</code> over a collection of
+     * iterators.
+     *
+     * @param comparator  the comparator to use, null for natural order
+     * @param iterators  the iterators to merge, each in the order of the comparator
+     * @param distinct  whether elements comparing equal to the last returned one are skipped
+     * @param batchSize  the number of elements read from an iterator at a time
+     * @throws NullPointerException if the collection is or contains null
+     * @throws IllegalArgumentException if the batch size is not positive
+     */
+    @SuppressWarnings("unchecked")
+    public MergingIterator(final Comparator<? super E> comparator,
+            final Collection<? extends Iterator<? extends E>> iterators,
+            final boolean distinct, final int batchSize) {
+        super();
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.comparator = comparator == null ? ComparatorUtils.NATURAL_COMPARATOR : comparator;
+        this.iterators = iterators.toArray(new Iterator[iterators.size()]);
+        for (final Iterator<? extends E> iterator : this.iterators) {
+            if (iterator == null) {
+                throw new NullPointerException("Iterator must not be null");
+            }
+        }
+        this.distinct = distinct;
+        this.batchSize = batchSize;
+        final int k = this.iterators.length;
+        heads = new Object[k];
+        exhausted = new boolean[k];
+        buffers = batchSize == 1 ? null : new Object[k][];
+        positions = new int[k];
+        limits = new int[k];
+        tree = new int[Math.max(k, 1)];
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns <code>true</code> if any iterator has remaining elements.
+     *
+     * @return true if this iterator has remaining elements
+     */
+    public boolean hasNext() {
+        update();
+        return iterators.length > 0 && exhausted[tree[0]] == false;
+    }
+
+    /**
+     * Returns the least remaining element.
+     *
+     * @return the next element
+     * @throws NoSuchElementException if no iterator has any more elements
+     */
+    @SuppressWarnings("unchecked")
+    public E next() {
+        if (hasNext() == false) {
+            throw new NoSuchElementException();
+        }
+        final int winner = tree[0];
+        last = (E) heads[winner];
+        pending = winner;
+        lastReturned = winner;
+        canRemove = true;
+        return last;
+    }
+
+    /**
+     * Removes the last returned element from the iterator that produced it.
+     *
+     * @throws UnsupportedOperationException if the batch size is more than one
+     * @throws IllegalStateException if there is no last returned element, or
+     *  <code>hasNext()</code> has been called since it was returned
+     */
+    public void remove() {
+        if (buffers != null) {
+            throw new UnsupportedOperationException("remove() is not supported when reading in batches");
+        }
+        if (canRemove == false) {
+            throw new IllegalStateException("remove() can only be called once after next() and before hasNext()");
+        }
+        iterators[lastReturned].remove();
+        canRemove = false;
+    }
+
+    /**
+     * Returns the index of the iterator that produced the last element.
+     *
+     * @return the index of the iterator that returned the last element
+     * @throws IllegalStateException if there is no last returned element
+     */
+    public int getIteratorIndex() {
+        if (lastReturned == -1) {
+            throw new IllegalStateException("No value has been returned yet");
+        }
+        return lastReturned;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Reads the first heads on first use, and afterwards advances the
+     * iterator of the last returned element, skipping equal elements if
+     * distinct.
+     */
+    private void update() {
+        if (started == false) {
+            started = true;
+            for (int i = 0; i < iterators.length; i++) {
+                advance(i);
+            }
+            if (iterators.length > 0) {
+                tree[0] = build(1);
+            }
+        } else if (pending != -1) {
+            final int source = pending;
+            pending = -1;
+            canRemove = false;
+            advance(source);
+            replay(source);
+            if (distinct) {
+                int winner = tree[0];
+                while (exhausted[winner] == false && compare(winner, last) == 0) {
+                    advance(winner);
+                    replay(winner);
+                    winner = tree[0];
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves an iterator on to its next head, refilling its buffer if needed.
+     *
+     * @param source  the index of the iterator
+     */
+    private void advance(final int source) {
+        final Iterator<? extends E> iterator = iterators[source];
+        if (buffers == null) {
+            if (iterator.hasNext()) {
+                heads[source] = iterator.next();
+            } else {
+                heads[source] = null;
+                exhausted[source] = true;
+            }
+            return;
+        }
+        int position = positions[source] + 1;
+        if (position >= limits[source]) {
+            Object[] buffer = buffers[source];
+            if (buffer == null) {
+                buffer = new Object[batchSize];
+                buffers[source] = buffer;
+            }
+            int limit = 0;
+            while (limit < batchSize && iterator.hasNext()) {
+                buffer[limit++] = iterator.next();
+            }
+            for (int i = limit; i < limits[source]; i++) {
+                buffer[i] = null;
+            }
+            limits[source] = limit;
+            position = 0;
+            if (limit == 0) {
+                heads[source] = null;
+                exhausted[source] = true;
+                buffers[source] = null;
+                return;
+            }
+        }
+        positions[source] = position;
+        heads[source] = buffers[source][position];
+    }
+
+    /**
+     * Plays the matches of a subtree, recording the losers.
+     *
+     * @param node  the node, the leaf of iterator i being node k + i
+     * @return the winner of the subtree
+     */
+    private int build(final int node) {
+        final int k = iterators.length;
+        if (node >= k) {
+            return node - k;
+        }
+        final int left = build(node * 2);
+        final int right = build(node * 2 + 1);
+        if (beats(right, left)) {
+            tree[node] = left;
+            return right;
+        }
+        tree[node] = right;
+        return left;
+    }
+
+    /**
+     * Replays the matches from the leaf of an iterator up to the root.
+     *
+     * @param source  the index of the iterator whose head changed
+     */
+    private void replay(final int source) {
+        int winner = source;
+        for (int node = (source + iterators.length) >> 1; node > 0; node >>= 1) {
+            final int loser = tree[node];
+            if (beats(loser, winner)) {
+                tree[node] = winner;
+                winner = loser;
+            }
+        }
+        tree[0] = winner;
+    }
+
+    /**
+     * Whether the head of one iterator comes before that of another.
+     * Exhausted iterators lose, and ties go to the lower index.
+     *
+     * @param a  the index of the first iterator
+     * @param b  the index of the second iterator
+     * @return true if the head of <code>a</code> comes first
+     */
+    @SuppressWarnings("unchecked")
+    private boolean beats(final int a, final int b) {
+        if (exhausted[a]) {
+            return false;
+        }
+        if (exhausted[b]) {
+            return true;
+        }
+        final int cmp = comparator.compare((E) heads[a], (E) heads[b]);
+        return cmp < 0 || cmp == 0 && a < b;
+    }
+
+    /**
+     * Compares the head of an iterator to an element.
+     *
+     * @param source  the index of the iterator
+     * @param element  the element
+     * @return the comparator result
+     */
+    @SuppressWarnings("unchecked")
+    private int compare(final int source, final E element) {
+        return comparator.compare((E) heads[source], element);
+    }
+
+}
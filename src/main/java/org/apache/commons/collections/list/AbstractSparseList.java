@@ -0,0 +1,452 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.list;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.AbstractList;
+
+/**
+ * An abstract implementation of a sparse list, which stores its elements in
+ * fixed size pages and does not allocate pages that hold only the default
+ * value.
+ * <p>
+ * A page is an array whose type is chosen by the subclass, for example
+ * <code>Object[]</code> or <code>long[]</code>. This class manages the pages,
+ * the size of the list and the shifting of elements on insertion and removal,
+ * using <code>System.arraycopy</code> so that it works for any array type. A
+ * count of the non-default elements of each page is kept, and a page is
+ * released as soon as that count drops to zero.
+ * <p>
+ * Like {@link GrowthList}, setting or adding beyond the end of the list grows
+ * the list. The elements in between hold the default value and cost no
+ * memory unless their page is used by another element.
+ *
+ * @since 4.0
+ * @version $Id$
+ */
+public abstract class AbstractSparseList<E> extends AbstractList<E> {
+
+    /** The number of bits of an index used for the offset within a page */
+    protected static final int PAGE_SHIFT = 10;
+    /** The number of elements in a page */
+    protected static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    /** The mask of an index giving the offset within a page */
+    protected static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    /** The pages, null where a page holds only default values */
+    private transient Object[] pages;
+    /** The number of non-default elements in each page */
+    private transient int[] counts;
+    /** A page holding only default values, used to clear slots */
+    private transient Object emptyPage;
+    /** The size of the list */
+    private transient int size;
+
+    /**
+     * Constructor that does nothing intended for deserialization.
+     * <p>
+     * If this constructor is used by a serializable subclass then the init()
+     * method must be called.
+     */
+    protected AbstractSparseList() {
+        super();
+    }
+
+    /**
+     * The equivalent of a default constructor, broken out so it can be called
+     * by any constructor and by <code>readObject</code>.
+     * Subclasses which override this method should make sure they call super,
+     * so the list is initialised properly.
+     */
+    protected void init() {
+        pages = new Object[1];
+        counts = new int[1];
+        emptyPage = null;
+        size = 0;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Creates a new page holding only the default value.
+     *
+     * @return a new array of <code>PAGE_SIZE</code> default values
+     */
+    protected abstract Object createPage();
+
+    /**
+     * Checks whether an element of a page holds the default value.
+     *
+     * @param page  the page to check
+     * @param offset  the offset within the page
+     * @return true if the element is the default value
+     */
+    protected abstract boolean isDefault(Object page, int offset);
+
+    //-----------------------------------------------------------------------
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        if (size > 0) {
+            modCount++;
+            init();
+        }
+    }
+
+    /**
+     * Gets the number of elements that do not hold the default value.
+     *
+     * @return the number of non-default elements
+     */
+    public int presentCount() {
+        int total = 0;
+        for (final int count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Finds the next element that does not hold the default value, skipping
+     * absent pages without examining them.
+     *
+     * @param fromIndex  the index to start searching from
+     * @return the index of the next non-default element, or -1 if none
+     */
+    public int nextPresentIndex(final int fromIndex) {
+        return nextIndex(fromIndex, true);
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Checks whether the index is valid.
+     *
+     * @param index  the index to check
+     * @param endIndex  the last allowed index
+     */
+    protected void checkIndex(final int index, final int endIndex) {
+        if (index < 0 || index > endIndex) {
+            throw new IndexOutOfBoundsException("Invalid index:" + index + ", size=" + size);
+        }
+    }
+
+    /**
+     * Gets the page holding an index for reading.
+     *
+     * @param index  the index of the element
+     * @return the page, or null if the page holds only default values
+     */
+    protected final Object getPage(final int index) {
+        final int page = index >>> PAGE_SHIFT;
+        return page < pages.length ? pages[page] : null;
+    }
+
+    /**
+     * Gets the page holding an index for writing, creating it if necessary.
+     *
+     * @param index  the index of the element
+     * @return the page
+     */
+    protected final Object getPageForWrite(final int index) {
+        final int page = index >>> PAGE_SHIFT;
+        ensurePages(page);
+        if (pages[page] == null) {
+            pages[page] = createPage();
+        }
+        return pages[page];
+    }
+
+    /**
+     * Grows the page table so that it can hold the specified page.
+     */
+    private void ensurePages(final int page) {
+        if (page >= pages.length) {
+            int length = pages.length * 2;
+            while (length <= page) {
+                length *= 2;
+            }
+            final Object[] newPages = new Object[length];
+            System.arraycopy(pages, 0, newPages, 0, pages.length);
+            final int[] newCounts = new int[length];
+            System.arraycopy(counts, 0, newCounts, 0, counts.length);
+            pages = newPages;
+            counts = newCounts;
+        }
+    }
+
+    /**
+     * Records that an element was written, releasing its page if it now
+     * holds only default values.
+     *
+     * @param index  the index of the element
+     * @param wasDefault  whether the element held the default value before
+     */
+    protected final void written(final int index, final boolean wasDefault) {
+        final int page = index >>> PAGE_SHIFT;
+        final boolean isDefault = isDefault(pages[page], index & PAGE_MASK);
+        if (wasDefault != isDefault) {
+            counts[page] += isDefault ? -1 : 1;
+        }
+        release(page);
+    }
+
+    /**
+     * Grows the list so that it holds at least the specified number of
+     * elements, the new elements holding the default value.
+     *
+     * @param newSize  the new size of the list
+     */
+    protected final void growTo(final int newSize) {
+        if (newSize > size) {
+            modCount++;
+            size = newSize;
+        }
+    }
+
+    /**
+     * Opens a gap at an index, shifting the later elements up by one. The gap
+     * holds the default value.
+     *
+     * @param index  the index of the gap, from zero to size
+     */
+    protected final void insertGap(final int index) {
+        if (size == Integer.MAX_VALUE) {
+            throw new IllegalStateException("List is full");
+        }
+        modCount++;
+        if (index < size) {
+            final int first = index >>> PAGE_SHIFT;
+            final int last = size >>> PAGE_SHIFT;
+            ensurePages(last);
+            for (int p = last; p > first; p--) {
+                if (pages[p] != null) {
+                    // the last element of this page was carried up in the previous step
+                    shift(pages[p], p, 0, 1);
+                }
+                carryUp(p);
+                release(p);
+            }
+            if (pages[first] != null) {
+                shift(pages[first], first, index & PAGE_MASK, 1);
+                release(first);
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Removes the element at an index, shifting the later elements down by
+     * one. The caller reads the element beforehand if it needs it.
+     *
+     * @param index  the index of the element to remove
+     */
+    protected final void removeSlot(final int index) {
+        modCount++;
+        final int first = index >>> PAGE_SHIFT;
+        final int last = Math.min((size - 1) >>> PAGE_SHIFT, pages.length - 1);
+        if (first < pages.length && pages[first] != null) {
+            shift(pages[first], first, index & PAGE_MASK, -1);
+        }
+        for (int p = first + 1; p <= last; p++) {
+            final Object page = pages[p];
+            if (page != null) {
+                if (!isDefault(page, 0)) {
+                    System.arraycopy(page, 0, getPageForWrite((p - 1) << PAGE_SHIFT), PAGE_MASK, 1);
+                    counts[p - 1]++;
+                }
+                shift(page, p, 0, -1);
+            }
+            release(p - 1);
+        }
+        if (last >= first) {
+            release(last);
+        }
+        size--;
+    }
+
+    /**
+     * Finds the next index from an index whose element is, or is not, the
+     * default value.
+     *
+     * @param fromIndex  the index to start from
+     * @param present  true to find a non-default element, false for a default one
+     * @return the index found, or -1 if none
+     */
+    protected final int nextIndex(final int fromIndex, final boolean present) {
+        int index = Math.max(fromIndex, 0);
+        while (index < size) {
+            final Object page = getPage(index);
+            if (page == null) {
+                if (!present) {
+                    return index;
+                }
+                index = (index | PAGE_MASK) + 1;
+            } else {
+                final int end = Math.min((index | PAGE_MASK) + 1, size);
+                for (; index < end; index++) {
+                    if (isDefault(page, index & PAGE_MASK) != present) {
+                        return index;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the previous index from an index whose element is, or is not,
+     * the default value.
+     *
+     * @param fromIndex  the index to start from
+     * @param present  true to find a non-default element, false for a default one
+     * @return the index found, or -1 if none
+     */
+    protected final int previousIndex(final int fromIndex, final boolean present) {
+        int index = Math.min(fromIndex, size - 1);
+        while (index >= 0) {
+            final Object page = getPage(index);
+            if (page == null) {
+                if (!present) {
+                    return index;
+                }
+                index = (index & ~PAGE_MASK) - 1;
+            } else {
+                final int end = index & ~PAGE_MASK;
+                for (; index >= end; index--) {
+                    if (isDefault(page, index & PAGE_MASK) != present) {
+                        return index;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Shifts the elements of a page from an offset up or down by one,
+     * keeping the count of the page up to date. The slot vacated at the
+     * offset, or at the end of the page, is cleared.
+     */
+    private void shift(final Object page, final int pageIndex, final int offset, final int direction) {
+        if (emptyPage == null) {
+            emptyPage = createPage();
+        }
+        if (direction > 0) {
+            if (!isDefault(page, PAGE_MASK)) {
+                counts[pageIndex]--;
+            }
+            System.arraycopy(page, offset, page, offset + 1, PAGE_MASK - offset);
+            System.arraycopy(emptyPage, 0, page, offset, 1);
+        } else {
+            if (!isDefault(page, offset)) {
+                counts[pageIndex]--;
+            }
+            System.arraycopy(page, offset + 1, page, offset, PAGE_MASK - offset);
+            System.arraycopy(emptyPage, 0, page, PAGE_MASK, 1);
+        }
+    }
+
+    /**
+     * Copies the last element of the page below into the first slot of a
+     * page, which must be clear.
+     */
+    private void carryUp(final int pageIndex) {
+        final Object previous = pages[pageIndex - 1];
+        if (previous != null && !isDefault(previous, PAGE_MASK)) {
+            System.arraycopy(previous, PAGE_MASK, getPageForWrite(pageIndex << PAGE_SHIFT), 0, 1);
+            counts[pageIndex]++;
+        }
+    }
+
+    /**
+     * Releases a page if it holds only default values.
+     */
+    private void release(final int pageIndex) {
+        if (pageIndex < pages.length && counts[pageIndex] == 0) {
+            pages[pageIndex] = null;
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Serializes the size and the non-default elements of this list.
+     * <p>
+     * The first serializable subclass must call this method from
+     * <code>writeObject</code>.
+     *
+     * @param out  the output stream
+     * @throws IOException if an error occurs while writing to the stream
+     */
+    protected void doWriteObject(final ObjectOutputStream out) throws IOException {
+        out.writeInt(size);
+        out.writeInt(presentCount());
+        for (int index = nextPresentIndex(0); index != -1; index = nextPresentIndex(index + 1)) {
+            out.writeInt(index);
+            writeElement(out, getPage(index), index & PAGE_MASK);
+        }
+    }
+
+    /**
+     * Deserializes the data written by {@link #doWriteObject}.
+     * <p>
+     * The first serializable subclass must call this method from
+     * <code>readObject</code>.
+     *
+     * @param in  the input stream
+     * @throws IOException if an error occurs while reading from the stream
+     * @throws ClassNotFoundException if an object read from the stream can not be loaded
+     */
+    protected void doReadObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        init();
+        size = in.readInt();
+        final int present = in.readInt();
+        for (int i = 0; i < present; i++) {
+            final int index = in.readInt();
+            readElement(in, getPageForWrite(index), index & PAGE_MASK);
+            written(index, true);
+        }
+    }
+
+    /**
+     * Writes a single element of a page to the stream.
+     *
+     * @param out  the output stream
+     * @param page  the page holding the element
+     * @param offset  the offset of the element within the page
+     * @throws IOException if an error occurs while writing to the stream
+     */
+    protected abstract void writeElement(ObjectOutputStream out, Object page, int offset) throws IOException;
+
+    /**
+     * Reads a single element from the stream into a page.
+     *
+     * @param in  the input stream
+     * @param page  the page to store the element in
+     * @param offset  the offset of the element within the page
+     * @throws IOException if an error occurs while reading from the stream
+     * @throws ClassNotFoundException if an object read from the stream can not be loaded
+     */
+    protected abstract void readElement(ObjectInputStream in, Object page, int offset)
+            throws IOException, ClassNotFoundException;
+
+}
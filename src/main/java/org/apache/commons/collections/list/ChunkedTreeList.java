@@ -0,0 +1,811 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.list;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.collections.OrderedIterator;
+
+/**
+ * A <code>List</code> implementation that stores its elements in a B+-tree
+ * of arrays, optimised for fast insertions and removals at any index while
+ * keeping access by index and iteration close to an <code>ArrayList</code>.
+ * <p>
+ * The elements are kept in leaves of up to 128 elements that are linked to
+ * each other. The internal nodes hold the number of elements below each of
+ * their children, so an index is found by descending the tree, which is
+ * only a few levels deep even for millions of elements. Insertions and
+ * removals shift the elements of one leaf and split or merge leaves as
+ * needed, which keeps them O(log n).
+ * <p>
+ * Compared to {@link TreeList} this list uses about one object per 100
+ * elements instead of one per element, so it needs much less memory and
+ * the elements of a leaf are next to each other. Iteration walks along the
+ * leaves, and the leaf that was found last is remembered, so that a loop
+ * calling <code>get(i)</code> with increasing indices rarely descends the
+ * tree.
+ * <p>
+ * <code>ArrayList</code> is still the better choice if elements are only
+ * added and removed at the end of the list.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @see TreeList
+ * @since 4.0
+ * @version $Id$
+ */
+public class ChunkedTreeList<E> extends AbstractList<E> {
+
+    /** The maximum number of elements in a leaf */
+    private static final int LEAF_CAPACITY = 128;
+
+    /** The initial array length of a leaf */
+    private static final int INITIAL_LEAF_CAPACITY = 8;
+
+    /** The maximum number of children of a branch */
+    private static final int BRANCH_CAPACITY = 64;
+
+    /** The root node */
+    private Node root;
+
+    /** The number of branch levels above the leaves */
+    private int height;
+
+    /** The leaf that was looked up last, null if the tree changed since */
+    private Leaf finger;
+
+    /** The index of the first element of the finger leaf */
+    private int fingerStart;
+
+    //-----------------------------------------------------------------------
+    /**
+     * Constructs a new empty list.
+     */
+    public ChunkedTreeList() {
+        super();
+        root = new Leaf(INITIAL_LEAF_CAPACITY);
+    }
+
+    /**
+     * Constructs a new list that copies the specified collection.
+     *
+     * @param coll  the collection to copy
+     * @throws NullPointerException if the collection is null
+     */
+    public ChunkedTreeList(final Collection<? extends E> coll) {
+        this();
+        addAll(coll);
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Gets the element at the specified index.
+     *
+     * @param index  the index to retrieve
+     * @return the element at the specified index
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(final int index) {
+        checkInterval(index, 0, size() - 1);
+        final Leaf leaf = leafFor(index);
+        return (E) leaf.elements[index - fingerStart];
+    }
+
+    /**
+     * Gets the current size of the list.
+     *
+     * @return the current size
+     */
+    @Override
+    public int size() {
+        return root.size;
+    }
+
+    /**
+     * Gets an iterator over the list.
+     *
+     * @return an iterator over the list
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return listIterator(0);
+    }
+
+    /**
+     * Gets a ListIterator over the list.
+     *
+     * @return the new iterator
+     */
+    @Override
+    public ListIterator<E> listIterator() {
+        return listIterator(0);
+    }
+
+    /**
+     * Gets a ListIterator over the list. The iterator also implements
+     * {@link OrderedIterator}.
+     *
+     * @param fromIndex  the index to start from
+     * @return the new iterator
+     */
+    @Override
+    public ListIterator<E> listIterator(final int fromIndex) {
+        checkInterval(fromIndex, 0, size());
+        return new ChunkedTreeListIterator(fromIndex);
+    }
+
+    /**
+     * Searches for the index of an object in the list.
+     *
+     * @param object  the object to search
+     * @return the index of the object, -1 if not found
+     */
+    @Override
+    public int indexOf(final Object object) {
+        int start = 0;
+        for (Leaf leaf = firstLeaf(); leaf != null; leaf = leaf.next) {
+            final Object[] elements = leaf.elements;
+            for (int i = 0; i < leaf.size; i++) {
+                if (object == null ? elements[i] == null : object.equals(elements[i])) {
+                    return start + i;
+                }
+            }
+            start += leaf.size;
+        }
+        return -1;
+    }
+
+    /**
+     * Searches for the last index of an object in the list.
+     *
+     * @param object  the object to search
+     * @return the last index of the object, -1 if not found
+     */
+    @Override
+    public int lastIndexOf(final Object object) {
+        int end = size();
+        for (Leaf leaf = lastLeaf(); leaf != null; leaf = leaf.prev) {
+            end -= leaf.size;
+            final Object[] elements = leaf.elements;
+            for (int i = leaf.size - 1; i >= 0; i--) {
+                if (object == null ? elements[i] == null : object.equals(elements[i])) {
+                    return end + i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Searches for the presence of an object in the list.
+     *
+     * @param object  the object to check
+     * @return true if the object is found
+     */
+    @Override
+    public boolean contains(final Object object) {
+        return indexOf(object) >= 0;
+    }
+
+    /**
+     * Converts the list into an array.
+     *
+     * @return the list as an array
+     */
+    @Override
+    public Object[] toArray() {
+        final Object[] array = new Object[size()];
+        int start = 0;
+        for (Leaf leaf = firstLeaf(); leaf != null; leaf = leaf.next) {
+            System.arraycopy(leaf.elements, 0, array, start, leaf.size);
+            start += leaf.size;
+        }
+        return array;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Adds a new element to the list.
+     *
+     * @param index  the index to add before
+     * @param obj  the element to add
+     */
+    @Override
+    public void add(final int index, final E obj) {
+        checkInterval(index, 0, size());
+        modCount++;
+        finger = null;
+        final Node split = insert(root, height, index, obj);
+        if (split != null) {
+            final Branch branch = new Branch();
+            branch.children[0] = root;
+            branch.sizes[0] = root.size;
+            branch.children[1] = split;
+            branch.sizes[1] = split.size;
+            branch.count = 2;
+            branch.size = root.size + split.size;
+            root = branch;
+            height++;
+        }
+    }
+
+    /**
+     * Sets the element at the specified index.
+     *
+     * @param index  the index to set
+     * @param obj  the object to store at the specified index
+     * @return the previous object at that index
+     * @throws IndexOutOfBoundsException if the index is invalid
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public E set(final int index, final E obj) {
+        checkInterval(index, 0, size() - 1);
+        final Leaf leaf = leafFor(index);
+        final int offset = index - fingerStart;
+        final E result = (E) leaf.elements[offset];
+        leaf.elements[offset] = obj;
+        return result;
+    }
+
+    /**
+     * Removes the element at the specified index.
+     *
+     * @param index  the index to remove
+     * @return the previous object at that index
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public E remove(final int index) {
+        checkInterval(index, 0, size() - 1);
+        modCount++;
+        finger = null;
+        final Object result = remove(root, height, index);
+        if (height > 0 && ((Branch) root).count == 1) {
+            root = ((Branch) root).children[0];
+            height--;
+        }
+        return (E) result;
+    }
+
+    /**
+     * Clears the list, removing all entries.
+     */
+    @Override
+    public void clear() {
+        modCount++;
+        root = new Leaf(INITIAL_LEAF_CAPACITY);
+        height = 0;
+        finger = null;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Checks whether the index is valid.
+     *
+     * @param index  the index to check
+     * @param startIndex  the first allowed index
+     * @param endIndex  the last allowed index
+     * @throws IndexOutOfBoundsException if the index is invalid
+     */
+    private void checkInterval(final int index, final int startIndex, final int endIndex) {
+        if (index < startIndex || index > endIndex) {
+            throw new IndexOutOfBoundsException("Invalid index:" + index + ", size=" + size());
+        }
+    }
+
+    /**
+     * Finds the leaf holding the element at the given index and makes it the
+     * finger, so that the offset within the leaf is
+     * <code>index - fingerStart</code>.
+     */
+    private Leaf leafFor(int index) {
+        final Leaf leaf = finger;
+        if (leaf != null && index >= fingerStart && index - fingerStart < leaf.size) {
+            return leaf;
+        }
+        final int target = index;
+        Node node = root;
+        for (int level = height; level > 0; level--) {
+            final Branch branch = (Branch) node;
+            final int[] sizes = branch.sizes;
+            int i = 0;
+            while (index >= sizes[i]) {
+                index -= sizes[i++];
+            }
+            node = branch.children[i];
+        }
+        finger = (Leaf) node;
+        fingerStart = target - index;
+        return finger;
+    }
+
+    /**
+     * Returns the leaf with the first elements.
+     */
+    private Leaf firstLeaf() {
+        Node node = root;
+        for (int level = height; level > 0; level--) {
+            node = ((Branch) node).children[0];
+        }
+        return (Leaf) node;
+    }
+
+    /**
+     * Returns the leaf with the last elements.
+     */
+    private Leaf lastLeaf() {
+        Node node = root;
+        for (int level = height; level > 0; level--) {
+            final Branch branch = (Branch) node;
+            node = branch.children[branch.count - 1];
+        }
+        return (Leaf) node;
+    }
+
+    /**
+     * Inserts the element into the subtree of the given node.
+     *
+     * @return the new right sibling of the node if it had to be split, or null
+     */
+    private Node insert(final Node node, final int level, int index, final Object element) {
+        if (level == 0) {
+            return ((Leaf) node).insert(index, element);
+        }
+        final Branch branch = (Branch) node;
+        final int[] sizes = branch.sizes;
+        int i = 0;
+        // an index between two children goes to the end of the left one
+        while (i < branch.count - 1 && index > sizes[i]) {
+            index -= sizes[i++];
+        }
+        final Node split = insert(branch.children[i], level - 1, index, element);
+        branch.size++;
+        if (split == null) {
+            sizes[i]++;
+            return null;
+        }
+        sizes[i] = branch.children[i].size;
+        return branch.insert(i + 1, split);
+    }
+
+    /**
+     * Removes the element from the subtree of the given node and rebalances
+     * the children that became too small.
+     *
+     * @return the removed element
+     */
+    private Object remove(final Node node, final int level, int index) {
+        if (level == 0) {
+            return ((Leaf) node).remove(index);
+        }
+        final Branch branch = (Branch) node;
+        final int[] sizes = branch.sizes;
+        int i = 0;
+        while (index >= sizes[i]) {
+            index -= sizes[i++];
+        }
+        final Node child = branch.children[i];
+        final Object result = remove(child, level - 1, index);
+        sizes[i]--;
+        branch.size--;
+        if (level == 1 ? child.size < LEAF_CAPACITY / 4 : ((Branch) child).count < BRANCH_CAPACITY / 4) {
+            branch.rebalance(i, level == 1);
+        }
+        return result;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * A node of the tree.
+     */
+    abstract static class Node {
+
+        /** The number of elements in the subtree of this node */
+        int size;
+    }
+
+    /**
+     * A leaf holding a slice of the elements.
+     */
+    static final class Leaf extends Node {
+
+        /** The elements, of which the first <code>size</code> are used */
+        Object[] elements;
+
+        /** The previous leaf in list order */
+        Leaf prev;
+
+        /** The next leaf in list order */
+        Leaf next;
+
+        Leaf(final int capacity) {
+            elements = new Object[capacity];
+        }
+
+        /**
+         * Grows the element array to hold at least the given number of
+         * elements.
+         */
+        void ensureCapacity(final int capacity) {
+            if (capacity > elements.length) {
+                final Object[] grown = new Object[Math.max(capacity,
+                        Math.min(LEAF_CAPACITY, elements.length * 2))];
+                System.arraycopy(elements, 0, grown, 0, size);
+                elements = grown;
+            }
+        }
+
+        /**
+         * Inserts an element at the given offset.
+         *
+         * @return the new right sibling if the leaf had to be split, or null
+         */
+        Leaf insert(final int index, final Object element) {
+            if (size < LEAF_CAPACITY) {
+                ensureCapacity(size + 1);
+                System.arraycopy(elements, index, elements, index + 1, size - index);
+                elements[index] = element;
+                size++;
+                return null;
+            }
+
+            final Leaf right = new Leaf(LEAF_CAPACITY);
+            if (index == size && next == null) {
+                // appending to the list keeps the leaves full
+                right.elements[0] = element;
+                right.size = 1;
+            } else {
+                final int half = size / 2;
+                System.arraycopy(elements, half, right.elements, 0, size - half);
+                for (int i = half; i < size; i++) {
+                    elements[i] = null;
+                }
+                right.size = size - half;
+                size = half;
+                if (index <= half) {
+                    insert(index, element);
+                } else {
+                    right.insert(index - half, element);
+                }
+            }
+            right.prev = this;
+            right.next = next;
+            if (next != null) {
+                next.prev = right;
+            }
+            next = right;
+            return right;
+        }
+
+        /**
+         * Removes the element at the given offset.
+         */
+        Object remove(final int index) {
+            final Object result = elements[index];
+            System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+            elements[--size] = null;
+            return result;
+        }
+
+        /**
+         * Moves all elements of the next leaf into this one and unlinks it.
+         */
+        void merge(final Leaf right) {
+            ensureCapacity(size + right.size);
+            System.arraycopy(right.elements, 0, elements, size, right.size);
+            size += right.size;
+            next = right.next;
+            if (next != null) {
+                next.prev = this;
+            }
+        }
+
+        /**
+         * Moves elements between this leaf and the next one so that both
+         * hold about the same number.
+         */
+        void balance(final Leaf right) {
+            final int total = size + right.size;
+            final int leftSize = total / 2;
+            if (size > leftSize) {
+                final int move = size - leftSize;
+                right.ensureCapacity(right.size + move);
+                System.arraycopy(right.elements, 0, right.elements, move, right.size);
+                System.arraycopy(elements, leftSize, right.elements, 0, move);
+                for (int i = leftSize; i < size; i++) {
+                    elements[i] = null;
+                }
+            } else {
+                final int move = leftSize - size;
+                ensureCapacity(leftSize);
+                System.arraycopy(right.elements, 0, elements, size, move);
+                System.arraycopy(right.elements, move, right.elements, 0, right.size - move);
+                for (int i = right.size - move; i < right.size; i++) {
+                    right.elements[i] = null;
+                }
+            }
+            size = leftSize;
+            right.size = total - leftSize;
+        }
+    }
+
+    /**
+     * An internal node with the sizes of the subtrees of its children.
+     */
+    static final class Branch extends Node {
+
+        /** The children */
+        final Node[] children = new Node[BRANCH_CAPACITY];
+
+        /** The number of elements below each child */
+        final int[] sizes = new int[BRANCH_CAPACITY];
+
+        /** The number of children */
+        int count;
+
+        /**
+         * Inserts a child at the given position. The elements of the child
+         * must already be counted in the size of this branch.
+         *
+         * @return the new right sibling if the branch had to be split, or null
+         */
+        Branch insert(final int index, final Node child) {
+            if (count < BRANCH_CAPACITY) {
+                System.arraycopy(children, index, children, index + 1, count - index);
+                System.arraycopy(sizes, index, sizes, index + 1, count - index);
+                children[index] = child;
+                sizes[index] = child.size;
+                count++;
+                return null;
+            }
+
+            final Branch right = new Branch();
+            final int half = count / 2;
+            moveTail(right, count - half);
+            if (index <= half) {
+                insert(index, child);
+            } else {
+                right.insert(index - half, child);
+                right.size += child.size;
+                size -= child.size;
+            }
+            return right;
+        }
+
+        /**
+         * Merges or balances the child at the given index, which became too
+         * small, with one of its siblings.
+         */
+        void rebalance(final int index, final boolean leaves) {
+            final int left = index > 0 ? index - 1 : index;
+            final Node leftChild = children[left];
+            final Node rightChild = children[left + 1];
+            final boolean merge;
+            if (leaves) {
+                final Leaf leftLeaf = (Leaf) leftChild;
+                final Leaf rightLeaf = (Leaf) rightChild;
+                merge = leftLeaf.size + rightLeaf.size <= LEAF_CAPACITY;
+                if (merge) {
+                    leftLeaf.merge(rightLeaf);
+                } else {
+                    leftLeaf.balance(rightLeaf);
+                }
+            } else {
+                final Branch leftBranch = (Branch) leftChild;
+                final Branch rightBranch = (Branch) rightChild;
+                merge = leftBranch.count + rightBranch.count <= BRANCH_CAPACITY;
+                if (merge) {
+                    rightBranch.moveHead(leftBranch, rightBranch.count);
+                } else {
+                    final int leftCount = (leftBranch.count + rightBranch.count) / 2;
+                    if (leftBranch.count > leftCount) {
+                        leftBranch.moveTail(rightBranch, leftBranch.count - leftCount);
+                    } else {
+                        rightBranch.moveHead(leftBranch, leftCount - leftBranch.count);
+                    }
+                }
+            }
+            sizes[left] = leftChild.size;
+            if (merge) {
+                System.arraycopy(children, left + 2, children, left + 1, count - left - 2);
+                System.arraycopy(sizes, left + 2, sizes, left + 1, count - left - 2);
+                children[--count] = null;
+            } else {
+                sizes[left + 1] = rightChild.size;
+            }
+        }
+
+        /**
+         * Moves the last children of this branch to the front of the given
+         * branch.
+         */
+        void moveTail(final Branch to, final int length) {
+            final int from = count - length;
+            System.arraycopy(to.children, 0, to.children, length, to.count);
+            System.arraycopy(to.sizes, 0, to.sizes, length, to.count);
+            System.arraycopy(children, from, to.children, 0, length);
+            System.arraycopy(sizes, from, to.sizes, 0, length);
+            int moved = 0;
+            for (int i = from; i < count; i++) {
+                moved += sizes[i];
+                children[i] = null;
+            }
+            count = from;
+            size -= moved;
+            to.count += length;
+            to.size += moved;
+        }
+
+        /**
+         * Moves the first children of this branch to the end of the given
+         * branch.
+         */
+        void moveHead(final Branch to, final int length) {
+            System.arraycopy(children, 0, to.children, to.count, length);
+            System.arraycopy(sizes, 0, to.sizes, to.count, length);
+            int moved = 0;
+            for (int i = 0; i < length; i++) {
+                moved += sizes[i];
+            }
+            System.arraycopy(children, length, children, 0, count - length);
+            System.arraycopy(sizes, length, sizes, 0, count - length);
+            for (int i = count - length; i < count; i++) {
+                children[i] = null;
+            }
+            count -= length;
+            size -= moved;
+            to.count += length;
+            to.size += moved;
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * A list iterator over the list that walks along the leaves.
+     */
+    private class ChunkedTreeListIterator implements ListIterator<E>, OrderedIterator<E> {
+
+        /** The leaf of the next element, null if it has to be looked up */
+        private Leaf leaf;
+
+        /** The offset of the next element in the leaf, may be the leaf size */
+        private int offset;
+
+        /** The index of the next element */
+        private int nextIndex;
+
+        /** The index of the last element returned, -1 if there is none */
+        private int currentIndex = -1;
+
+        /** The modification count that the list is expected to have */
+        private int expectedModCount;
+
+        /**
+         * Create a ListIterator for the list.
+         *
+         * @param fromIndex  the index to start at
+         */
+        ChunkedTreeListIterator(final int fromIndex) {
+            nextIndex = fromIndex;
+            expectedModCount = modCount;
+        }
+
+        /**
+         * Checks the modification count of the list is the value that this
+         * object expects.
+         *
+         * @throws ConcurrentModificationException If the list's modification
+         * count isn't the value that was expected.
+         */
+        private void checkModCount() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        public boolean hasNext() {
+            return nextIndex < size();
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            checkModCount();
+            if (!hasNext()) {
+                throw new NoSuchElementException("No element at index " + nextIndex + ".");
+            }
+            if (leaf == null) {
+                leaf = leafFor(nextIndex);
+                offset = nextIndex - fingerStart;
+            } else if (offset == leaf.size) {
+                leaf = leaf.next;
+                offset = 0;
+            }
+            final E value = (E) leaf.elements[offset++];
+            currentIndex = nextIndex++;
+            return value;
+        }
+
+        public boolean hasPrevious() {
+            return nextIndex > 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E previous() {
+            checkModCount();
+            if (!hasPrevious()) {
+                throw new NoSuchElementException("Already at start of list.");
+            }
+            if (leaf == null) {
+                leaf = leafFor(nextIndex - 1);
+                offset = nextIndex - 1 - fingerStart;
+            } else if (offset == 0) {
+                leaf = leaf.prev;
+                offset = leaf.size - 1;
+            } else {
+                offset--;
+            }
+            final E value = (E) leaf.elements[offset];
+            currentIndex = --nextIndex;
+            return value;
+        }
+
+        public int nextIndex() {
+            return nextIndex;
+        }
+
+        public int previousIndex() {
+            return nextIndex - 1;
+        }
+
+        public void remove() {
+            checkModCount();
+            if (currentIndex == -1) {
+                throw new IllegalStateException();
+            }
+            ChunkedTreeList.this.remove(currentIndex);
+            if (currentIndex < nextIndex) {
+                nextIndex--;
+            }
+            leaf = null;
+            currentIndex = -1;
+            expectedModCount++;
+        }
+
+        public void set(final E obj) {
+            checkModCount();
+            if (currentIndex == -1) {
+                throw new IllegalStateException();
+            }
+            ChunkedTreeList.this.set(currentIndex, obj);
+        }
+
+        public void add(final E obj) {
+            checkModCount();
+            ChunkedTreeList.this.add(nextIndex++, obj);
+            leaf = null;
+            currentIndex = -1;
+            expectedModCount++;
+        }
+    }
+}
@@ -0,0 +1,593 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.list;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A thread-safe <code>NodeCachingLinkedList</code> that caches the nodes per
+ * thread and adapts the size of the caches to the observed churn.
+ * <p>
+ * All methods are synchronized on the list, including the ones that create
+ * iterators and sublists. As with
+ * {@link java.util.Collections#synchronizedList(List)}, the iterators and
+ * sublists themselves are not, and must be used while holding the lock of
+ * the list:
+ * <pre>
+ * synchronized (list) {
+ *     Iterator it = list.iterator();
+ *     // do stuff with iterator
+ * }
+ * </pre>
+ * <p>
+ * Each thread takes nodes from, and returns removed nodes to, its own cache,
+ * so no lock is needed to reuse a node. The methods that add or remove at the
+ * ends of the list, {@link #add(Object)}, {@link #addFirst(Object)},
+ * {@link #addLast(Object)}, {@link #removeFirst()} and {@link #removeLast()},
+ * take and return their node outside of the lock of the list, which only
+ * guards the linking of the node.
+ * <p>
+ * A thread cache that runs empty grows its limit and refills itself in a
+ * batch from a pool shared by all threads, and a cache that is full moves half
+ * of its nodes to the pool. This way the nodes freed by consumer threads flow
+ * to the producer threads. A cache whose nodes were not all needed for a
+ * while shrinks its limit and gives the spare nodes back to the pool. The
+ * maximum cache size limits each thread cache and the shared pool.
+ * <p>
+ * The thread caches hold on to their nodes until the thread ends or the list
+ * is garbage collected.
+ *
+ * @see NodeCachingLinkedList
+ * @since 4.0
+ * @version $Id$
+ */
+public class ConcurrentNodeCachingLinkedList<E> extends NodeCachingLinkedList<E> {
+
+    /** Serialization version */
+    private static final long serialVersionUID = -2404478396420373153L;
+
+    /**
+     * The default value for {@link #maximumCacheSize} of this class.
+     */
+    protected static final int DEFAULT_MAXIMUM_CONCURRENT_CACHE_SIZE = 1024;
+
+    /** The limit of a new thread cache */
+    private static final int INITIAL_LIMIT = 16;
+
+    /** The number of cache operations after which a thread cache adapts its limit */
+    private static final int ADAPT_INTERVAL = 1024;
+
+    /** The node cache of each thread */
+    private transient ThreadLocal<NodeCache<E>> localCache;
+
+    /** The first node of the pool shared by the threads, linked by <code>next</code> */
+    private transient Node<E> firstPooledNode;
+
+    /** The number of nodes in the shared pool */
+    private transient int poolSize;
+
+    /** The lock guarding the shared pool */
+    private transient Object poolLock;
+
+    /** The maximum cache size, read by the thread caches without the lock of the list */
+    private transient volatile int maximum;
+
+    //-----------------------------------------------------------------------
+    /**
+     * Constructor that creates.
+     */
+    public ConcurrentNodeCachingLinkedList() {
+        this(DEFAULT_MAXIMUM_CONCURRENT_CACHE_SIZE);
+    }
+
+    /**
+     * Constructor that copies the specified collection
+     *
+     * @param coll  the collection to copy
+     */
+    public ConcurrentNodeCachingLinkedList(final Collection<E> coll) {
+        this(DEFAULT_MAXIMUM_CONCURRENT_CACHE_SIZE);
+        addAll(coll);
+    }
+
+    /**
+     * Constructor that species the maximum cache size.
+     *
+     * @param maximumCacheSize  the maximum size of each thread cache and of the shared pool
+     */
+    public ConcurrentNodeCachingLinkedList(final int maximumCacheSize) {
+        super(maximumCacheSize);
+    }
+
+    /**
+     * The equivalent of a default constructor called
+     * by any constructor and by <code>readObject</code>.
+     */
+    @Override
+    protected void init() {
+        super.init();
+        localCache = new ThreadLocal<NodeCache<E>>() {
+            @Override
+            protected NodeCache<E> initialValue() {
+                return new NodeCache<E>();
+            }
+        };
+        poolLock = new Object();
+        maximum = maximumCacheSize;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Gets the maximum size of each thread cache and of the shared pool.
+     *
+     * @return the maximum cache size
+     */
+    @Override
+    protected synchronized int getMaximumCacheSize() {
+        return maximumCacheSize;
+    }
+
+    /**
+     * Sets the maximum size of each thread cache and of the shared pool.
+     * The cache of the calling thread and the pool are shrunk immediately,
+     * the caches of other threads when they are next used.
+     *
+     * @param maximumCacheSize  the new maximum cache size
+     */
+    @Override
+    protected synchronized void setMaximumCacheSize(final int maximumCacheSize) {
+        maximum = maximumCacheSize;
+        super.setMaximumCacheSize(maximumCacheSize);
+    }
+
+    /**
+     * Reduces the cache of the calling thread and the shared pool to the
+     * maximum size.
+     */
+    @Override
+    protected void shrinkCacheToMaximumSize() {
+        final NodeCache<E> cache = localCache.get();
+        final int maximum = this.maximum;
+        if (cache.limit > maximum) {
+            cache.limit = maximum;
+        }
+        while (cache.size > maximum) {
+            cache.pop();
+        }
+        synchronized (poolLock) {
+            while (poolSize > maximum) {
+                firstPooledNode = firstPooledNode.next;
+                poolSize--;
+            }
+        }
+    }
+
+    /**
+     * Gets a node from the cache of the calling thread, refilling it from the
+     * shared pool if it is empty.
+     *
+     * @return a node, or <code>null</code> if there are no nodes to reuse
+     */
+    @Override
+    protected Node<E> getNodeFromCache() {
+        final NodeCache<E> cache = localCache.get();
+        if (cache.size == 0 && refill(cache) == false) {
+            // a miss, so more nodes are needed than the limit allows
+            cache.limit = Math.min(maximum, Math.max(INITIAL_LIMIT, cache.limit * 2));
+            adapt(cache);
+            return null;
+        }
+        final Node<E> node = cache.pop();
+        if (cache.size < cache.lowWater) {
+            cache.lowWater = cache.size;
+        }
+        adapt(cache);
+        return node;
+    }
+
+    /**
+     * Checks whether the cache of the calling thread is full.
+     *
+     * @return true if the cache is full
+     */
+    @Override
+    protected boolean isCacheFull() {
+        final NodeCache<E> cache = localCache.get();
+        return cache.size >= cache.limit;
+    }
+
+    /**
+     * Adds a node to the cache of the calling thread, moving half of the
+     * cache to the shared pool if it is full.
+     *
+     * @param node  the node to add to the cache
+     */
+    @Override
+    protected void addNodeToCache(final Node<E> node) {
+        final NodeCache<E> cache = localCache.get();
+        final int maximum = this.maximum;
+        if (cache.limit > maximum) {
+            cache.limit = maximum;
+        }
+        if (cache.size >= cache.limit) {
+            release(cache, cache.size - cache.limit / 2);
+            if (cache.size >= cache.limit) {
+                // don't cache the node.
+                return;
+            }
+        }
+        cache.push(node);
+        adapt(cache);
+    }
+
+    /**
+     * Counts a cache operation and, once per interval, shrinks a cache that
+     * had nodes to spare during the whole interval.
+     */
+    private void adapt(final NodeCache<E> cache) {
+        if (++cache.operations < ADAPT_INTERVAL) {
+            return;
+        }
+        final int spare = cache.lowWater / 2;
+        if (spare > 0) {
+            cache.limit = Math.max(INITIAL_LIMIT, cache.limit - spare);
+            release(cache, spare);
+        }
+        cache.operations = 0;
+        cache.lowWater = cache.size;
+    }
+
+    /**
+     * Moves nodes from a thread cache to the shared pool, the nodes that do
+     * not fit into the pool are left to the garbage collector.
+     */
+    private void release(final NodeCache<E> cache, final int count) {
+        if (count <= 0) {
+            return;
+        }
+        final Node<E> first = cache.first;
+        Node<E> last = first;
+        for (int i = 1; i < count; i++) {
+            last = last.next;
+        }
+        cache.first = last.next;
+        cache.size -= count;
+        if (cache.lowWater > cache.size) {
+            cache.lowWater = cache.size;
+        }
+        synchronized (poolLock) {
+            if (poolSize + count <= maximum) {
+                last.next = firstPooledNode;
+                firstPooledNode = first;
+                poolSize += count;
+                return;
+            }
+        }
+        last.next = null;
+    }
+
+    /**
+     * Moves up to half the limit of a thread cache from the shared pool to
+     * the cache.
+     *
+     * @return true if any nodes were moved
+     */
+    private boolean refill(final NodeCache<E> cache) {
+        final int wanted = Math.max(1, Math.min(cache.limit, maximum) / 2);
+        synchronized (poolLock) {
+            if (poolSize == 0) {
+                return false;
+            }
+            final int count = Math.min(wanted, poolSize);
+            final Node<E> first = firstPooledNode;
+            Node<E> last = first;
+            for (int i = 1; i < count; i++) {
+                last = last.next;
+            }
+            firstPooledNode = last.next;
+            poolSize -= count;
+            last.next = cache.first;
+            cache.first = first;
+            cache.size += count;
+        }
+        return true;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Removes the node from the list without caching it.
+     */
+    private void unlinkNode(final Node<E> node) {
+        node.previous.next = node.next;
+        node.next.previous = node.previous;
+        size--;
+        modCount++;
+    }
+
+    @Override
+    public boolean add(final E value) {
+        return addLast(value);
+    }
+
+    @Override
+    public boolean addFirst(final E o) {
+        final Node<E> node = createNode(o);
+        synchronized (this) {
+            addNode(node, header.next);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean addLast(final E o) {
+        final Node<E> node = createNode(o);
+        synchronized (this) {
+            addNode(node, header);
+        }
+        return true;
+    }
+
+    @Override
+    public E removeFirst() {
+        final Node<E> node;
+        synchronized (this) {
+            node = header.next;
+            if (node == header) {
+                throw new NoSuchElementException();
+            }
+            unlinkNode(node);
+        }
+        final E oldValue = node.getValue();
+        addNodeToCache(node);
+        return oldValue;
+    }
+
+    @Override
+    public E removeLast() {
+        final Node<E> node;
+        synchronized (this) {
+            node = header.previous;
+            if (node == header) {
+                throw new NoSuchElementException();
+            }
+            unlinkNode(node);
+        }
+        final E oldValue = node.getValue();
+        addNodeToCache(node);
+        return oldValue;
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public synchronized int size() {
+        return super.size();
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return super.isEmpty();
+    }
+
+    @Override
+    public synchronized E get(final int index) {
+        return super.get(index);
+    }
+
+    /**
+     * Gets an iterator, which must be used while holding the lock of the list.
+     *
+     * @return an iterator over the list
+     */
+    @Override
+    public synchronized Iterator<E> iterator() {
+        return super.iterator();
+    }
+
+    /**
+     * Gets a list iterator, which must be used while holding the lock of the list.
+     *
+     * @return a list iterator over the list
+     */
+    @Override
+    public synchronized ListIterator<E> listIterator() {
+        return super.listIterator();
+    }
+
+    /**
+     * Gets a list iterator, which must be used while holding the lock of the list.
+     *
+     * @param fromIndex  the index to start from
+     * @return a list iterator over the list
+     */
+    @Override
+    public synchronized ListIterator<E> listIterator(final int fromIndex) {
+        return super.listIterator(fromIndex);
+    }
+
+    @Override
+    public synchronized int indexOf(final Object value) {
+        return super.indexOf(value);
+    }
+
+    @Override
+    public synchronized int lastIndexOf(final Object value) {
+        return super.lastIndexOf(value);
+    }
+
+    @Override
+    public synchronized boolean contains(final Object value) {
+        return super.contains(value);
+    }
+
+    @Override
+    public synchronized boolean containsAll(final Collection<?> coll) {
+        return super.containsAll(coll);
+    }
+
+    @Override
+    public synchronized Object[] toArray() {
+        return super.toArray();
+    }
+
+    @Override
+    public synchronized <T> T[] toArray(final T[] array) {
+        return super.toArray(array);
+    }
+
+    /**
+     * Gets a sublist, which must be used while holding the lock of the list.
+     *
+     * @param fromIndexInclusive  the index to start from
+     * @param toIndexExclusive  the index to end at
+     * @return the new sublist
+     */
+    @Override
+    public synchronized List<E> subList(final int fromIndexInclusive, final int toIndexExclusive) {
+        return super.subList(fromIndexInclusive, toIndexExclusive);
+    }
+
+    @Override
+    public synchronized void add(final int index, final E value) {
+        super.add(index, value);
+    }
+
+    @Override
+    public synchronized boolean addAll(final Collection<? extends E> coll) {
+        return super.addAll(coll);
+    }
+
+    @Override
+    public synchronized boolean addAll(final int index, final Collection<? extends E> coll) {
+        return super.addAll(index, coll);
+    }
+
+    @Override
+    public synchronized E remove(final int index) {
+        return super.remove(index);
+    }
+
+    @Override
+    public synchronized boolean remove(final Object value) {
+        return super.remove(value);
+    }
+
+    @Override
+    public synchronized boolean removeAll(final Collection<?> coll) {
+        return super.removeAll(coll);
+    }
+
+    @Override
+    public synchronized boolean retainAll(final Collection<?> coll) {
+        return super.retainAll(coll);
+    }
+
+    @Override
+    public synchronized E set(final int index, final E value) {
+        return super.set(index, value);
+    }
+
+    @Override
+    public synchronized void clear() {
+        super.clear();
+    }
+
+    @Override
+    public synchronized E getFirst() {
+        return super.getFirst();
+    }
+
+    @Override
+    public synchronized E getLast() {
+        return super.getLast();
+    }
+
+    @Override
+    public synchronized boolean equals(final Object obj) {
+        return super.equals(obj);
+    }
+
+    @Override
+    public synchronized int hashCode() {
+        return super.hashCode();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return super.toString();
+    }
+
+    /**
+     * Serializes the data held in this list while holding its lock.
+     *
+     * @param outputStream  the stream to write the object to
+     * @throws IOException  if anything goes wrong
+     */
+    @Override
+    protected synchronized void doWriteObject(final ObjectOutputStream outputStream) throws IOException {
+        super.doWriteObject(outputStream);
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * The node cache of one thread, a singly linked list of nodes.
+     */
+    static final class NodeCache<E> {
+
+        /** The first cached node, linked by <code>next</code> */
+        Node<E> first;
+
+        /** The number of cached nodes */
+        int size;
+
+        /** The current limit of the number of cached nodes */
+        int limit = INITIAL_LIMIT;
+
+        /** The lowest number of cached nodes in the current interval */
+        int lowWater;
+
+        /** The number of cache operations in the current interval */
+        int operations;
+
+        /**
+         * Takes the first node, the cache must not be empty.
+         */
+        Node<E> pop() {
+            final Node<E> node = first;
+            first = node.next;
+            node.next = null;
+            size--;
+            return node;
+        }
+
+        /**
+         * Clears a node and adds it to the cache.
+         */
+        void push(final Node<E> node) {
+            node.previous = null;
+            node.next = first;
+            node.setValue(null);
+            first = node;
+            size++;
+        }
+    }
+}
@@ -20,9 +20,12 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.List;
@@ -49,6 +52,14 @@ import java.util.ListIterator;
  * For most purposes, simply modify the iterator and list at will, and then let
  * the garbage collector to the rest.
  * <p>
+ * Each cursor is registered at the nodes it is positioned at, so a change to
+ * the list only notifies the cursors next to the changed node, however many
+ * cursors are open. The other cursors recalculate their index when it is next
+ * asked for. Unlike earlier versions the list no longer has the protected
+ * <code>cursors</code> field, subclasses register cursors through
+ * {@link #registerCursor(Cursor)} and receive the changes through the
+ * <code>broadcast</code> methods.
+ * <p>
  * <b>Note that this implementation is not synchronized.</b>
  *
  * @see java.util.LinkedList
@@ -60,8 +71,11 @@ public class CursorableLinkedList<E> extends AbstractLinkedList<E> implements Se
     /** Ensure serialization compatibility */
     private static final long serialVersionUID = 8836393098519411393L;
 
-    /** A list of the cursor currently open on this list */
-    protected transient List<WeakReference<Cursor<E>>> cursors;
+    /** The queue of the references to cursors that have been garbage collected */
+    private transient ReferenceQueue<Cursor<E>> cursorQueue;
+
+    /** The number of nodes removed from this list, for the cursors that are not notified */
+    transient int removeCount;
 
     //-----------------------------------------------------------------------
     /**
@@ -88,7 +102,7 @@ public class CursorableLinkedList<E> extends AbstractLinkedList<E> implements Se
     @Override
     protected void init() {
         super.init();
-        cursors = new ArrayList<WeakReference<Cursor<E>>>();
+        cursorQueue = new ReferenceQueue<Cursor<E>>();
     }
 
     //-----------------------------------------------------------------------
@@ -207,6 +221,30 @@ public class CursorableLinkedList<E> extends AbstractLinkedList<E> implements Se
         return cursor;
     }
 
+    //-----------------------------------------------------------------------
+    /**
+     * Creates the header node, which can have cursors registered at it.
+     *
+     * @return the new header node
+     */
+    @Override
+    protected Node<E> createHeaderNode() {
+        return new CursorableNode<E>();
+    }
+
+    /**
+     * Creates a new node, which can have cursors registered at it.
+     * Subclasses that override this method must return a
+     * <code>CursorableNode</code>.
+     *
+     * @param value  value of the new node
+     * @return a new node containing the value
+     */
+    @Override
+    protected Node<E> createNode(final E value) {
+        return new CursorableNode<E>(value);
+    }
+
     //-----------------------------------------------------------------------
     /**
      * Updates the node with a new value.
@@ -244,6 +282,7 @@ public class CursorableLinkedList<E> extends AbstractLinkedList<E> implements Se
     @Override
     protected void removeNode(final Node<E> node) {
         super.removeNode(node);
+        removeCount++;
         broadcastNodeRemoved(node);
     }
 
@@ -269,15 +308,11 @@ public class CursorableLinkedList<E> extends AbstractLinkedList<E> implements Se
      * @param cursor  the cursor to register
      */
     protected void registerCursor(final Cursor<E> cursor) {
-        // We take this opportunity to clean the cursors list
-        // of WeakReference objects to garbage-collected cursors.
-        for (final Iterator<WeakReference<Cursor<E>>> it = cursors.iterator(); it.hasNext();) {
-            final WeakReference<Cursor<E>> ref = it.next();
-            if (ref.get() == null) {
-                it.remove();
-            }
-        }
-        cursors.add(new WeakReference<Cursor<E>>(cursor));
+        // We take this opportunity to clean the nodes
+        // of the registrations of garbage-collected cursors.
+        purgeCursors();
+        cursor.ref = new CursorRef<E>(cursor, cursorQueue);
+        reindexCursor(cursor);
     }
 
     /**
@@ -286,77 +321,131 @@ public class CursorableLinkedList<E> extends AbstractLinkedList<E> implements Se
      * @param cursor  the cursor to deregister
      */
     protected void unregisterCursor(final Cursor<E> cursor) {
-        for (final Iterator<WeakReference<Cursor<E>>> it = cursors.iterator(); it.hasNext();) {
-            final WeakReference<Cursor<E>> ref = it.next();
-            final Cursor<E> cur = ref.get();
-            if (cur == null) {
-                // some other unrelated cursor object has been 
-                // garbage-collected; let's take the opportunity to
-                // clean up the cursors list anyway..
-                it.remove();
-            } else if (cur == cursor) {
-                ref.clear();
-                it.remove();
-                break;
+        purgeCursors();
+        final CursorRef<E> ref = cursor.ref;
+        if (ref != null) {
+            ref.unlink();
+            ref.clear();
+            cursor.ref = null;
+        }
+    }
+
+    /**
+     * Moves the registrations of a cursor to the nodes it is positioned at
+     * now, that is its last returned node and its next node.
+     *
+     * @param cursor  the cursor that may have moved
+     */
+    void reindexCursor(final Cursor<E> cursor) {
+        final CursorRef<E> ref = cursor.ref;
+        if (ref != null) {
+            if (cursor.current != null && ref.next.node == cursor.current) {
+                // moved forward, the next node has become the current one
+                final Anchor<E> anchor = ref.current;
+                ref.current = ref.next;
+                ref.next = anchor;
             }
+            ref.current.link((CursorableNode<E>) cursor.current);
+            ref.next.link(cursor.next == cursor.current ? null : (CursorableNode<E>) cursor.next);
         }
     }
 
+    /**
+     * Removes the registrations of the cursors that have been garbage
+     * collected.
+     */
+    @SuppressWarnings("unchecked")
+    private void purgeCursors() {
+        Reference<? extends Cursor<E>> ref;
+        while ((ref = cursorQueue.poll()) != null) {
+            ((CursorRef<E>) ref).unlink();
+        }
+    }
+
+    /**
+     * Gets the open cursors that are registered at either of the nodes.
+     *
+     * @param node  the first node
+     * @param other  the second node, may be null
+     * @return the cursors, each of them once
+     */
+    private List<Cursor<E>> cursorsAt(final Node<E> node, final Node<E> other) {
+        purgeCursors();
+        final Anchor<E> first = ((CursorableNode<E>) node).cursors;
+        final Anchor<E> second = other == null ? null : ((CursorableNode<E>) other).cursors;
+        if (first == null && second == null) {
+            return Collections.emptyList();
+        }
+        final List<Cursor<E>> result = new ArrayList<Cursor<E>>();
+        for (Anchor<E> anchor = first; anchor != null; anchor = anchor.next) {
+            final Cursor<E> cursor = anchor.ref.get();
+            if (cursor != null) {
+                result.add(cursor);
+            }
+        }
+        final int firstCount = result.size();
+        for (Anchor<E> anchor = second; anchor != null; anchor = anchor.next) {
+            final Cursor<E> cursor = anchor.ref.get();
+            // a cursor between the two nodes is registered at both
+            if (cursor != null && (firstCount == 0 || !containsCursor(result, firstCount, cursor))) {
+                result.add(cursor);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks whether the first cursors of the list include the cursor.
+     */
+    private static <E> boolean containsCursor(final List<Cursor<E>> cursors, final int count, final Cursor<E> cursor) {
+        for (int i = 0; i < count; i++) {
+            if (cursors.get(i) == cursor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     //-----------------------------------------------------------------------
     /**
-     * Informs all of my registered cursors that the specified
+     * Informs the cursors positioned at the specified node that its
      * element was changed.
      * 
      * @param node  the node that was changed
      */
     protected void broadcastNodeChanged(final Node<E> node) {
-        final Iterator<WeakReference<Cursor<E>>> it = cursors.iterator();
-        while (it.hasNext()) {
-            final WeakReference<Cursor<E>> ref = it.next();
-            final Cursor<E> cursor = ref.get();
-            if (cursor == null) {
-                it.remove(); // clean up list
-            } else {
-                cursor.nodeChanged(node);
-            }
+        for (final Cursor<E> cursor : cursorsAt(node, null)) {
+            cursor.nodeChanged(node);
         }
     }
 
     /**
-     * Informs all of my registered cursors that the specified
-     * element was just removed from my list.
+     * Informs the cursors positioned at the specified node that it
+     * was just removed from my list.
+     * <p>
+     * The other cursors notice the change through the modification count.
      * 
      * @param node  the node that was changed
      */
     protected void broadcastNodeRemoved(final Node<E> node) {
-        final Iterator<WeakReference<Cursor<E>>> it = cursors.iterator();
-        while (it.hasNext()) {
-            final WeakReference<Cursor<E>> ref = it.next();
-            final Cursor<E> cursor = ref.get();
-            if (cursor == null) {
-                it.remove(); // clean up list
-            } else {
-                cursor.nodeRemoved(node);
-            }
+        for (final Cursor<E> cursor : cursorsAt(node, null)) {
+            cursor.nodeRemoved(node);
+            reindexCursor(cursor);
         }
     }
 
     /**
-     * Informs all of my registered cursors that the specified
-     * element was just added to my list.
+     * Informs the cursors positioned next to the specified node that it
+     * was just added to my list.
+     * <p>
+     * The other cursors notice the change through the modification count.
      * 
      * @param node  the node that was changed
      */
     protected void broadcastNodeInserted(final Node<E> node) {
-        final Iterator<WeakReference<Cursor<E>>> it = cursors.iterator();
-        while (it.hasNext()) {
-            final WeakReference<Cursor<E>> ref = it.next();
-            final Cursor<E> cursor = ref.get();
-            if (cursor == null) {
-                it.remove(); // clean up list
-            } else {
-                cursor.nodeInserted(node);
-            }
+        for (final Cursor<E> cursor : cursorsAt(node.previous, node.next)) {
+            cursor.nodeInserted(node);
+            reindexCursor(cursor);
         }
     }
 
@@ -404,6 +493,12 @@ public class CursorableLinkedList<E> extends AbstractLinkedList<E> implements Se
         boolean nextIndexValid = true;
         /** Flag to indicate if the current element was removed by another object. */
         boolean currentRemovedByAnother = false;
+        /** The remove count of the list when the current element was removed by another object */
+        int currentRemovedCount;
+        /** The modification count of the list for which the next index was last known */
+        int indexModCount;
+        /** The registration of this cursor in the list, null if not registered */
+        CursorRef<E> ref;
         
         /**
          * Constructs a new cursor.
@@ -414,6 +509,50 @@ public class CursorableLinkedList<E> extends AbstractLinkedList<E> implements Se
         protected Cursor(final CursorableLinkedList<E> parent, final int index) {
             super(parent, index);
             valid = true;
+            indexModCount = parent.modCount;
+        }
+
+        /**
+         * Gets the next element from the list.
+         *
+         * @return the next element
+         */
+        @Override
+        public E next() {
+            final E value = super.next();
+            moved();
+            return value;
+        }
+
+        /**
+         * Gets the previous element from the list.
+         *
+         * @return the previous element
+         */
+        @Override
+        public E previous() {
+            final E value = super.previous();
+            moved();
+            return value;
+        }
+
+        /**
+         * Updates the registration of this cursor after it moved.
+         */
+        private void moved() {
+            if (ref != null) {
+                ((CursorableLinkedList<E>) parent).reindexCursor(this);
+            }
+        }
+
+        /**
+         * Keeps the next index valid after a change of the list that this
+         * cursor has been notified of, if it was valid before.
+         */
+        private void keepIndexValid() {
+            if (indexModCount == parent.modCount - 1) {
+                indexModCount = parent.modCount;
+            }
         }
 
         /**
@@ -431,16 +570,20 @@ public class CursorableLinkedList<E> extends AbstractLinkedList<E> implements Se
         public void remove() {
             // overridden, as the nodeRemoved() method updates the iterator
             // state in the parent.removeNode() call below
-            if (current == null && currentRemovedByAnother) {
+            if (current == null && currentRemovedByAnother
+                    && currentRemovedCount == ((CursorableLinkedList<E>) parent).removeCount) {
                 // quietly ignore, as the last returned node was removed
                 // by the list or some other iterator
                 // by ignoring it, we keep this iterator independent from
                 // other changes as much as possible
+                // a later removal elsewhere in the list is not reported to
+                // this cursor, so the remove count tells if there was one
             } else {
                 checkModCount();
                 parent.removeNode(getLastNodeReturned());
             }
             currentRemovedByAnother = false;
+            moved();
         }
 
         /**
@@ -456,6 +599,7 @@ public class CursorableLinkedList<E> extends AbstractLinkedList<E> implements Se
             // matches the (next.previous == node) clause in nodeInserted()
             // thus next gets changed - reset it again here
             next = next.next;
+            moved();
         }
         
         // set is not overridden, as it works ok
@@ -470,7 +614,7 @@ public class CursorableLinkedList<E> extends AbstractLinkedList<E> implements Se
          */
         @Override
         public int nextIndex() {
-            if (nextIndexValid == false) {
+            if (nextIndexValid == false || indexModCount != parent.modCount) {
                 if (next == parent.header) {
                     nextIndex = parent.size();
                 } else {
@@ -483,6 +627,7 @@ public class CursorableLinkedList<E> extends AbstractLinkedList<E> implements Se
                     nextIndex = pos;
                 }
                 nextIndexValid = true;
+                indexModCount = parent.modCount;
             }
             return nextIndex;
         }
@@ -505,25 +650,35 @@ public class CursorableLinkedList<E> extends AbstractLinkedList<E> implements Se
             if (node == next && node == current) {
                 // state where next() followed by previous()
                 next = node.next;
-                current = null;
-                currentRemovedByAnother = true;
+                currentRemoved();
+                keepIndexValid();
             } else if (node == next) {
                 // state where next() not followed by previous()
                 // and we are matching next node
                 next = node.next;
                 currentRemovedByAnother = false;
+                keepIndexValid();
             } else if (node == current) {
                 // state where next() not followed by previous()
                 // and we are matching current (last returned) node
-                current = null;
-                currentRemovedByAnother = true;
+                currentRemoved();
                 nextIndex--;
+                keepIndexValid();
             } else {
                 nextIndexValid = false;
                 currentRemovedByAnother = false;
             }
         }
 
+        /**
+         * Records that the current element was removed by another object.
+         */
+        private void currentRemoved() {
+            current = null;
+            currentRemovedByAnother = true;
+            currentRemovedCount = ((CursorableLinkedList<E>) parent).removeCount;
+        }
+
         /**
          * Handle event from the list when a node has been added.
          * 
@@ -532,8 +687,10 @@ public class CursorableLinkedList<E> extends AbstractLinkedList<E> implements Se
         protected void nodeInserted(final Node<E> node) {
             if (node.previous == current) {
                 next = node;
+                keepIndexValid();
             } else if (next.previous == node) {
                 next = node;
+                keepIndexValid();
             } else {
                 nextIndexValid = false;
             }
@@ -565,6 +722,119 @@ public class CursorableLinkedList<E> extends AbstractLinkedList<E> implements Se
         }
     }
 
+    //-----------------------------------------------------------------------
+    /**
+     * A node that keeps the cursors positioned at it.
+     */
+    protected static class CursorableNode<E> extends Node<E> {
+
+        /** The first registration of a cursor at this node */
+        Anchor<E> cursors;
+
+        /**
+         * Constructs a new header node.
+         */
+        protected CursorableNode() {
+            super();
+        }
+
+        /**
+         * Constructs a new node.
+         *
+         * @param value  the value to store
+         */
+        protected CursorableNode(final E value) {
+            super(value);
+        }
+    }
+
+    /**
+     * The weak reference to a registered cursor, which is enqueued once the
+     * cursor has been garbage collected.
+     */
+    static final class CursorRef<E> extends WeakReference<Cursor<E>> {
+
+        /** The registration at the last node returned by the cursor */
+        Anchor<E> current = new Anchor<E>(this);
+
+        /** The registration at the next node of the cursor */
+        Anchor<E> next = new Anchor<E>(this);
+
+        CursorRef(final Cursor<E> cursor, final ReferenceQueue<Cursor<E>> queue) {
+            super(cursor, queue);
+        }
+
+        /**
+         * Removes both registrations.
+         */
+        void unlink() {
+            current.unlink();
+            next.unlink();
+        }
+    }
+
+    /**
+     * A registration of a cursor at a node, the registrations at a node
+     * form a doubly linked list.
+     */
+    static final class Anchor<E> {
+
+        /** The reference to the cursor */
+        final CursorRef<E> ref;
+
+        /** The node this is registered at, null if not registered */
+        CursorableNode<E> node;
+
+        /** The previous registration at the same node */
+        Anchor<E> previous;
+
+        /** The next registration at the same node */
+        Anchor<E> next;
+
+        Anchor(final CursorRef<E> ref) {
+            this.ref = ref;
+        }
+
+        /**
+         * Moves this registration to the given node.
+         *
+         * @param target  the node to register at, null to only unregister
+         */
+        void link(final CursorableNode<E> target) {
+            if (target == node) {
+                return;
+            }
+            unlink();
+            if (target != null) {
+                node = target;
+                next = target.cursors;
+                if (next != null) {
+                    next.previous = this;
+                }
+                target.cursors = this;
+            }
+        }
+
+        /**
+         * Removes this registration from its node.
+         */
+        void unlink() {
+            if (node != null) {
+                if (previous == null) {
+                    node.cursors = next;
+                } else {
+                    previous.next = next;
+                }
+                if (next != null) {
+                    next.previous = previous;
+                }
+                node = null;
+                previous = null;
+                next = null;
+            }
+        }
+    }
+
     //-----------------------------------------------------------------------
     /**
      * A cursor for the sublist based on LinkedSubListIterator.
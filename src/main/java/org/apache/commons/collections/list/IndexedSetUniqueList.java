@@ -0,0 +1,981 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.list;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.commons.collections.set.UnmodifiableSet;
+
+/**
+ * A <code>List</code> that rejects duplicates, like {@link SetUniqueList},
+ * but which also knows the position of every element.
+ * <p>
+ * <code>SetUniqueList</code> decorates an arbitrary list and uses a set only
+ * to detect duplicates, so <code>indexOf</code>, <code>remove(Object)</code>
+ * and <code>set</code> still have to scan the list. This class instead keeps
+ * its elements in an AVL tree where every node records the size of its
+ * subtree, together with a hash map from each element to its node. The
+ * position of an element is found by walking from its node up to the root.
+ * <p>
+ * The following table shows the cost of the main operations:
+ * <pre>
+ *              get  add  insert  remove  indexOf  contains
+ * ArrayList      1    1       n       n        n         n
+ * SetUniqueList  1    1       n       n        n         1
+ * this class   log  log     log     log      log         1
+ * </pre>
+ * Bulk operations (<code>addAll</code>, <code>removeAll</code> and
+ * <code>retainAll</code>) on large collections rebuild the tree in a single
+ * linear pass instead of performing one update per element.
+ * <p>
+ * The same violations of the <code>List</code> contract as in
+ * <code>SetUniqueList</code> apply: adding a duplicate is ignored, setting a
+ * value that is already present elsewhere removes the other occurrence, and
+ * <code>ListIterator.set</code> is not supported. Bear in mind that the
+ * elements must be immutable with respect to <code>equals</code> and
+ * <code>hashCode</code>. Null elements are permitted.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @see SetUniqueList
+ * @since 4.0
+ * @version $Id$
+ */
+public class IndexedSetUniqueList<E> extends AbstractList<E> implements Serializable {
+
+    /** Serialization version */
+    private static final long serialVersionUID = -6185418862553012745L;
+
+    /** Bulk operations smaller than size / BULK_THRESHOLD update the tree in place */
+    private static final int BULK_THRESHOLD = 16;
+
+    /** The root of the tree */
+    private transient Node<E> root;
+    /** The node holding each element */
+    private transient Map<Object, Node<E>> nodes;
+
+    /**
+     * Constructs a new empty list.
+     */
+    public IndexedSetUniqueList() {
+        super();
+        nodes = new HashMap<Object, Node<E>>();
+    }
+
+    /**
+     * Constructs a new list that copies the specified collection, keeping the
+     * first occurrence of any duplicate.
+     *
+     * @param coll  the collection to copy
+     * @throws NullPointerException if the collection is null
+     */
+    public IndexedSetUniqueList(final Collection<? extends E> coll) {
+        super();
+        nodes = new HashMap<Object, Node<E>>((int) (coll.size() / 0.75f) + 1);
+        addAll(coll);
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Gets an unmodifiable view as a Set.
+     *
+     * @return an unmodifiable set view
+     */
+    public Set<E> asSet() {
+        @SuppressWarnings("unchecked") // the keys are all instances of E
+        final Set<E> keys = (Set<E>) nodes.keySet();
+        return UnmodifiableSet.unmodifiableSet(keys);
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public E get(final int index) {
+        checkIndex(index, size() - 1);
+        return getNode(index).value;
+    }
+
+    @Override
+    public boolean contains(final Object object) {
+        return nodes.containsKey(object);
+    }
+
+    /**
+     * Searches for the index of an object in the list.
+     * <p>
+     * The index is computed from the position of the element in the tree,
+     * taking O(log n) time.
+     *
+     * @param object  the object to search for
+     * @return the index of the object, -1 if not found
+     */
+    @Override
+    public int indexOf(final Object object) {
+        final Node<E> node = nodes.get(object);
+        return node == null ? -1 : rank(node);
+    }
+
+    /**
+     * Searches for the last index of an object in the list, which is the
+     * same as the first index as the list holds no duplicates.
+     *
+     * @param object  the object to search for
+     * @return the index of the object, -1 if not found
+     */
+    @Override
+    public int lastIndexOf(final Object object) {
+        return indexOf(object);
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Adds an element to the end of the list if it is not already present.
+     * <p>
+     * <i>(Violation)</i> The <code>List</code> interface requires that this
+     * method returns <code>true</code> always. However this class may return
+     * <code>false</code> because of the <code>Set</code> behaviour.
+     *
+     * @param object  the object to add
+     * @return true if object was added
+     */
+    @Override
+    public boolean add(final E object) {
+        if (nodes.containsKey(object)) {
+            return false;
+        }
+        insert(size(), object);
+        return true;
+    }
+
+    /**
+     * Adds an element at a specific index in the list if it is not already
+     * present.
+     * <p>
+     * <i>(Violation)</i> The <code>List</code> interface makes the assumption
+     * that the element is always inserted. This may not happen with this
+     * implementation.
+     *
+     * @param index  the index to insert at
+     * @param object  the object to add
+     */
+    @Override
+    public void add(final int index, final E object) {
+        checkIndex(index, size());
+        if (nodes.containsKey(object) == false) {
+            insert(index, object);
+        }
+    }
+
+    /**
+     * Adds a collection of objects to the end of the list avoiding duplicates.
+     *
+     * @param coll  the collection to add in iterator order
+     * @return true if this collection changed
+     */
+    @Override
+    public boolean addAll(final Collection<? extends E> coll) {
+        return addAll(size(), coll);
+    }
+
+    /**
+     * Adds a collection of objects at a specific index in the list avoiding
+     * duplicates.
+     * <p>
+     * Only elements that are not already in this list will be added, and
+     * duplicates from the specified collection will be ignored. When many
+     * elements are added the tree is rebuilt in linear time.
+     *
+     * @param index  the index to insert at
+     * @param coll  the collection to add in iterator order
+     * @return true if this collection changed
+     */
+    @Override
+    public boolean addAll(final int index, final Collection<? extends E> coll) {
+        checkIndex(index, size());
+        final int size = size();
+        if (coll.size() < BULK_THRESHOLD || coll.size() < size / BULK_THRESHOLD) {
+            int pos = index;
+            for (final E e : coll) {
+                if (nodes.containsKey(e) == false) {
+                    insert(pos++, e);
+                }
+            }
+            return pos != index;
+        }
+        final Object[] existing = new Object[size];
+        copyNodes(root, existing);
+        final Object[] values = new Object[size + coll.size()];
+        System.arraycopy(existing, 0, values, 0, index);
+        int pos = index;
+        for (final E e : coll) {
+            if (nodes.containsKey(e) == false) {
+                final Node<E> node = new Node<E>(e);
+                nodes.put(e, node);
+                values[pos++] = node;
+            }
+        }
+        if (pos == index) {
+            return false;
+        }
+        System.arraycopy(existing, index, values, pos, size - index);
+        final int added = pos - index;
+        rebuild(values, size + added);
+        return true;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Sets the value at the specified index avoiding duplicates.
+     * <p>
+     * The object is set into the specified index. If the object was already
+     * present at another index, that occurrence is removed, so the size of
+     * the list decreases by one.
+     *
+     * @param index  the index to set
+     * @param object  the object to set
+     * @return the previous object
+     */
+    @Override
+    public E set(final int index, final E object) {
+        checkIndex(index, size() - 1);
+        final Node<E> node = getNode(index);
+        final E removed = node.value;
+        final Node<E> duplicate = nodes.get(object);
+        if (duplicate == node) {
+            node.value = object;
+            return removed;
+        }
+        nodes.remove(removed);
+        node.value = object;
+        nodes.put(object, node);
+        if (duplicate != null) {
+            // may move the value of node into duplicate, which keeps the map right
+            delete(duplicate);
+        }
+        return removed;
+    }
+
+    @Override
+    public E remove(final int index) {
+        checkIndex(index, size() - 1);
+        final Node<E> node = getNode(index);
+        final E value = node.value;
+        nodes.remove(value);
+        delete(node);
+        return value;
+    }
+
+    @Override
+    public boolean remove(final Object object) {
+        final Node<E> node = nodes.remove(object);
+        if (node == null) {
+            return false;
+        }
+        delete(node);
+        return true;
+    }
+
+    /**
+     * Removes all the elements contained in the specified collection.
+     * <p>
+     * Small collections are removed one element at a time, otherwise the list
+     * is filtered in a single linear pass.
+     *
+     * @param coll  the collection of elements to remove
+     * @return true if this list changed
+     */
+    @Override
+    public boolean removeAll(final Collection<?> coll) {
+        if (coll.size() < size() / BULK_THRESHOLD) {
+            boolean result = false;
+            for (final Object object : coll) {
+                result |= remove(object);
+            }
+            return result;
+        }
+        return filter(toLookup(coll), false);
+    }
+
+    /**
+     * Retains only the elements contained in the specified collection,
+     * filtering the list in a single linear pass.
+     *
+     * @param coll  the collection of elements to retain
+     * @return true if this list changed
+     */
+    @Override
+    public boolean retainAll(final Collection<?> coll) {
+        return filter(toLookup(coll), true);
+    }
+
+    @Override
+    public void clear() {
+        if (root != null) {
+            modCount++;
+            root = null;
+            nodes.clear();
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public Iterator<E> iterator() {
+        return listIterator(0);
+    }
+
+    @Override
+    public ListIterator<E> listIterator() {
+        return listIterator(0);
+    }
+
+    /**
+     * Gets a list iterator starting at the specified index.
+     * <p>
+     * <i>(Violation)</i> The iterator does not support <code>set</code>, as
+     * with <code>SetUniqueList</code>, and ignores attempts to add
+     * duplicates.
+     *
+     * @param fromIndex  the index to start from
+     * @return a list iterator
+     */
+    @Override
+    public ListIterator<E> listIterator(final int fromIndex) {
+        checkIndex(fromIndex, size());
+        return new IndexedListIterator(fromIndex);
+    }
+
+    /**
+     * Gets a sub list of this list.
+     * <p>
+     * The sub list ignores attempts to add an element that is present
+     * anywhere in this list, not only in the sub list. Setting an element
+     * present elsewhere removes that occurrence, as with
+     * {@link #set(int, Object)}, and the sub list keeps covering the same
+     * elements.
+     *
+     * @param fromIndex  the start index, inclusive
+     * @param toIndex  the end index, exclusive
+     * @return the sub list
+     */
+    @Override
+    public List<E> subList(final int fromIndex, final int toIndex) {
+        checkSubList(fromIndex, toIndex, size());
+        return new SubList(null, fromIndex, toIndex - fromIndex);
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Checks whether the index is valid.
+     *
+     * @param index  the index to check
+     * @param endIndex  the last allowed index
+     */
+    private void checkIndex(final int index, final int endIndex) {
+        if (index < 0 || index > endIndex) {
+            throw new IndexOutOfBoundsException("Invalid index:" + index + ", size=" + size());
+        }
+    }
+
+    /**
+     * Checks whether the range of a sub list is valid.
+     *
+     * @param fromIndex  the start index, inclusive
+     * @param toIndex  the end index, exclusive
+     * @param size  the size of the list
+     */
+    private static void checkSubList(final int fromIndex, final int toIndex, final int size) {
+        if (fromIndex < 0 || toIndex > size) {
+            throw new IndexOutOfBoundsException("Invalid range:" + fromIndex + "-" + toIndex + ", size=" + size);
+        }
+        if (fromIndex > toIndex) {
+            throw new IllegalArgumentException("fromIndex(" + fromIndex + ") > toIndex(" + toIndex + ")");
+        }
+    }
+
+    /**
+     * Converts a collection into one with a fast <code>contains</code>.
+     */
+    private static Collection<?> toLookup(final Collection<?> coll) {
+        return coll instanceof Set || coll.size() < 8 ? coll : new HashSet<Object>(coll);
+    }
+
+    /**
+     * Keeps the elements whose presence in <code>lookup</code> equals
+     * <code>retain</code>, rebuilding the tree from the survivors.
+     */
+    private boolean filter(final Collection<?> lookup, final boolean retain) {
+        final int size = size();
+        final Object[] values = new Object[size];
+        copyNodes(root, values);
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            @SuppressWarnings("unchecked")
+            final Node<E> node = (Node<E>) values[i];
+            if (lookup.contains(node.value) == retain) {
+                values[count++] = node;
+            } else {
+                nodes.remove(node.value);
+            }
+        }
+        if (count == size) {
+            return false;
+        }
+        rebuild(values, count);
+        return true;
+    }
+
+    /**
+     * Copies the nodes of a tree, in order, into an array.
+     *
+     * @param node  the root of the tree, may be null
+     * @param values  the array to fill
+     */
+    private static void copyNodes(final Node<?> node, final Object[] values) {
+        int pos = 0;
+        Node<?> next = node == null ? null : first(node);
+        while (next != null) {
+            values[pos++] = next;
+            next = next.next();
+        }
+    }
+
+    /**
+     * Replaces the tree with a perfectly balanced tree of the given nodes.
+     */
+    private void rebuild(final Object[] values, final int count) {
+        modCount++;
+        root = build(values, 0, count, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node<E> build(final Object[] values, final int from, final int to, final Node<E> parent) {
+        if (from >= to) {
+            return null;
+        }
+        final int mid = (from + to) >>> 1;
+        final Node<E> node = (Node<E>) values[mid];
+        node.parent = parent;
+        node.left = build(values, from, mid, node);
+        node.right = build(values, mid + 1, to, node);
+        node.recalc();
+        return node;
+    }
+
+    /**
+     * Finds the node at the given index, which must be valid.
+     */
+    private Node<E> getNode(int index) {
+        Node<E> node = root;
+        while (true) {
+            final int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Computes the index of a node by walking up to the root.
+     */
+    private static int rank(Node<?> node) {
+        int rank = size(node.left);
+        while (node.parent != null) {
+            if (node == node.parent.right) {
+                rank += size(node.parent.left) + 1;
+            }
+            node = node.parent;
+        }
+        return rank;
+    }
+
+    /**
+     * Inserts a new element, which must not already be present.
+     */
+    private void insert(final int index, final E object) {
+        final Node<E> node = new Node<E>(object);
+        nodes.put(object, node);
+        modCount++;
+        if (root == null) {
+            root = node;
+            return;
+        }
+        Node<E> parent;
+        if (index == size()) {
+            parent = last(root);
+            parent.right = node;
+        } else {
+            parent = getNode(index);
+            if (parent.left == null) {
+                parent.left = node;
+            } else {
+                parent = last(parent.left);
+                parent.right = node;
+            }
+        }
+        node.parent = parent;
+        rebalance(parent);
+    }
+
+    /**
+     * Unlinks a node from the tree, leaving the element map untouched except
+     * when a value has to be moved to a different node.
+     */
+    private void delete(final Node<E> node) {
+        modCount++;
+        Node<E> target = node;
+        if (node.left != null && node.right != null) {
+            // move the successor's value here and unlink the successor instead
+            target = first(node.right);
+            node.value = target.value;
+            nodes.put(node.value, node);
+        }
+        final Node<E> child = target.left != null ? target.left : target.right;
+        final Node<E> parent = target.parent;
+        if (child != null) {
+            child.parent = parent;
+        }
+        replaceChild(parent, target, child);
+        target.value = null;
+        rebalance(parent);
+    }
+
+    /**
+     * Restores the AVL invariant and the subtree sizes from a node up to the
+     * root.
+     */
+    private void rebalance(Node<E> node) {
+        while (node != null) {
+            node.recalc();
+            final int balance = height(node.left) - height(node.right);
+            if (balance > 1) {
+                if (height(node.left.left) < height(node.left.right)) {
+                    rotateLeft(node.left);
+                }
+                node = rotateRight(node);
+            } else if (balance < -1) {
+                if (height(node.right.right) < height(node.right.left)) {
+                    rotateRight(node.right);
+                }
+                node = rotateLeft(node);
+            }
+            node = node.parent;
+        }
+    }
+
+    private Node<E> rotateLeft(final Node<E> node) {
+        final Node<E> pivot = node.right;
+        node.right = pivot.left;
+        if (pivot.left != null) {
+            pivot.left.parent = node;
+        }
+        pivot.parent = node.parent;
+        replaceChild(node.parent, node, pivot);
+        pivot.left = node;
+        node.parent = pivot;
+        node.recalc();
+        pivot.recalc();
+        return pivot;
+    }
+
+    private Node<E> rotateRight(final Node<E> node) {
+        final Node<E> pivot = node.left;
+        node.left = pivot.right;
+        if (pivot.right != null) {
+            pivot.right.parent = node;
+        }
+        pivot.parent = node.parent;
+        replaceChild(node.parent, node, pivot);
+        pivot.right = node;
+        node.parent = pivot;
+        node.recalc();
+        pivot.recalc();
+        return pivot;
+    }
+
+    private void replaceChild(final Node<E> parent, final Node<E> oldChild, final Node<E> newChild) {
+        if (parent == null) {
+            root = newChild;
+        } else if (parent.left == oldChild) {
+            parent.left = newChild;
+        } else {
+            parent.right = newChild;
+        }
+    }
+
+    private static int size(final Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int height(final Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static <T> Node<T> first(Node<T> node) {
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node;
+    }
+
+    private static <T> Node<T> last(Node<T> node) {
+        while (node.right != null) {
+            node = node.right;
+        }
+        return node;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Write the list out using a custom routine.
+     *
+     * @param out  the output stream
+     * @throws IOException if an error occurs while writing to the stream
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size());
+        for (final E e : this) {
+            out.writeObject(e);
+        }
+    }
+
+    /**
+     * Read the list in using a custom routine.
+     *
+     * @param in  the input stream
+     * @throws IOException if an error occurs while reading from the stream
+     * @throws ClassNotFoundException if an object read from the stream can not be loaded
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        final int size = in.readInt();
+        nodes = new HashMap<Object, Node<E>>((int) (size / 0.75f) + 1);
+        final Object[] values = new Object[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            final E e = (E) in.readObject();
+            if (nodes.containsKey(e) == false) {
+                final Node<E> node = new Node<E>(e);
+                nodes.put(e, node);
+                values[count++] = node;
+            }
+        }
+        rebuild(values, count);
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * A node in the tree, holding one element.
+     */
+    static class Node<E> {
+        /** The element */
+        E value;
+        /** The left child */
+        Node<E> left;
+        /** The right child */
+        Node<E> right;
+        /** The parent, null for the root */
+        Node<E> parent;
+        /** The height of this subtree */
+        int height;
+        /** The number of nodes in this subtree */
+        int size;
+
+        Node(final E value) {
+            this.value = value;
+            this.height = 1;
+            this.size = 1;
+        }
+
+        void recalc() {
+            height = Math.max(IndexedSetUniqueList.height(left), IndexedSetUniqueList.height(right)) + 1;
+            size = IndexedSetUniqueList.size(left) + IndexedSetUniqueList.size(right) + 1;
+        }
+
+        Node<E> next() {
+            if (right != null) {
+                return first(right);
+            }
+            Node<E> node = this;
+            while (node.parent != null && node == node.parent.right) {
+                node = node.parent;
+            }
+            return node.parent;
+        }
+
+        Node<E> previous() {
+            if (left != null) {
+                return last(left);
+            }
+            Node<E> node = this;
+            while (node.parent != null && node == node.parent.left) {
+                node = node.parent;
+            }
+            return node.parent;
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * A list iterator that walks the tree via the parent links.
+     */
+    private class IndexedListIterator implements ListIterator<E> {
+        /** The node to be returned by next(), null at the end */
+        private Node<E> next;
+        /** The index of next */
+        private int nextIndex;
+        /** The index last returned by next() or previous(), -1 if none */
+        private int lastIndex = -1;
+        /** The modification count the iterator expects */
+        private int expectedModCount;
+
+        IndexedListIterator(final int fromIndex) {
+            nextIndex = fromIndex;
+            next = fromIndex < size() ? getNode(fromIndex) : null;
+            expectedModCount = modCount;
+        }
+
+        private void checkModCount() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        public boolean hasNext() {
+            return nextIndex < size();
+        }
+
+        public E next() {
+            checkModCount();
+            if (!hasNext()) {
+                throw new NoSuchElementException("No element at index " + nextIndex + ".");
+            }
+            final E value = next.value;
+            lastIndex = nextIndex++;
+            next = next.next();
+            return value;
+        }
+
+        public boolean hasPrevious() {
+            return nextIndex > 0;
+        }
+
+        public E previous() {
+            checkModCount();
+            if (!hasPrevious()) {
+                throw new NoSuchElementException("Already at start of list.");
+            }
+            next = next == null ? last(root) : next.previous();
+            lastIndex = --nextIndex;
+            return next.value;
+        }
+
+        public int nextIndex() {
+            return nextIndex;
+        }
+
+        public int previousIndex() {
+            return nextIndex - 1;
+        }
+
+        public void remove() {
+            checkModCount();
+            if (lastIndex == -1) {
+                throw new IllegalStateException();
+            }
+            IndexedSetUniqueList.this.remove(lastIndex);
+            if (lastIndex < nextIndex) {
+                nextIndex--;
+            }
+            // values may have moved between nodes, so look the node up again
+            next = nextIndex < size() ? getNode(nextIndex) : null;
+            lastIndex = -1;
+            expectedModCount = modCount;
+        }
+
+        public void set(final E object) {
+            throw new UnsupportedOperationException("ListIterator does not support set");
+        }
+
+        public void add(final E object) {
+            checkModCount();
+            if (nodes.containsKey(object) == false) {
+                insert(nextIndex++, object);
+            }
+            lastIndex = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * A view of a range of the list that checks for duplicates against the
+     * whole list.
+     */
+    private class SubList extends AbstractList<E> {
+        /** The enclosing sub list, null if this is a view of the list itself */
+        private final SubList parent;
+        /** The index of the first element in the list */
+        private int offset;
+        /** The number of elements */
+        private int size;
+        /** The modification count of the list the view expects */
+        private int expectedModCount;
+
+        SubList(final SubList parent, final int offset, final int size) {
+            this.parent = parent;
+            this.offset = offset;
+            this.size = size;
+            expectedModCount = IndexedSetUniqueList.this.modCount;
+        }
+
+        private void checkModCount() {
+            if (IndexedSetUniqueList.this.modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        private void checkIndex(final int index, final int endIndex) {
+            if (index < 0 || index > endIndex) {
+                throw new IndexOutOfBoundsException("Invalid index:" + index + ", size=" + size);
+            }
+        }
+
+        /**
+         * Updates this view and the enclosing ones after a change made
+         * through this view.
+         *
+         * @param index  the index in the list of the element added or removed, -1 if none
+         * @param added  whether the element was added rather than removed
+         */
+        private void changed(final int index, final boolean added) {
+            for (SubList sub = this; sub != null; sub = sub.parent) {
+                if (index != -1) {
+                    if (index < sub.offset) {
+                        sub.offset += added ? 1 : -1;
+                    } else if (added || index < sub.offset + sub.size) {
+                        sub.size += added ? 1 : -1;
+                    }
+                    sub.modCount++;
+                }
+                sub.expectedModCount = IndexedSetUniqueList.this.modCount;
+            }
+        }
+
+        @Override
+        public int size() {
+            checkModCount();
+            return size;
+        }
+
+        @Override
+        public E get(final int index) {
+            checkModCount();
+            checkIndex(index, size - 1);
+            return IndexedSetUniqueList.this.get(offset + index);
+        }
+
+        @Override
+        public boolean contains(final Object object) {
+            return indexOf(object) != -1;
+        }
+
+        @Override
+        public int indexOf(final Object object) {
+            checkModCount();
+            final int index = IndexedSetUniqueList.this.indexOf(object) - offset;
+            return index >= 0 && index < size ? index : -1;
+        }
+
+        @Override
+        public int lastIndexOf(final Object object) {
+            return indexOf(object);
+        }
+
+        @Override
+        public boolean add(final E object) {
+            checkModCount();
+            if (nodes.containsKey(object)) {
+                return false;
+            }
+            add(size, object);
+            return true;
+        }
+
+        @Override
+        public void add(final int index, final E object) {
+            checkModCount();
+            checkIndex(index, size);
+            if (nodes.containsKey(object) == false) {
+                insert(offset + index, object);
+                changed(offset + index, true);
+            }
+        }
+
+        @Override
+        public E set(final int index, final E object) {
+            checkModCount();
+            checkIndex(index, size - 1);
+            final Node<E> duplicate = nodes.get(object);
+            final int duplicateIndex = duplicate == null ? -1 : rank(duplicate);
+            final E removed = IndexedSetUniqueList.this.set(offset + index, object);
+            changed(duplicateIndex == offset + index ? -1 : duplicateIndex, false);
+            return removed;
+        }
+
+        @Override
+        public E remove(final int index) {
+            checkModCount();
+            checkIndex(index, size - 1);
+            final E removed = IndexedSetUniqueList.this.remove(offset + index);
+            changed(offset + index, false);
+            return removed;
+        }
+
+        @Override
+        public List<E> subList(final int fromIndex, final int toIndex) {
+            checkModCount();
+            checkSubList(fromIndex, toIndex, size);
+            return new SubList(this, offset + fromIndex, toIndex - fromIndex);
+        }
+    }
+
+}
@@ -0,0 +1,310 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.list;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A sparse <code>List</code> of primitive <code>double</code> values.
+ * <p>
+ * Values are stored in pages of 1024 <code>double</code>s and pages that hold
+ * only the default value are never allocated. Setting or adding at an index
+ * larger than the size grows the list, as with {@link GrowthList}, and the
+ * values in between read as the default value, which plays the part of the
+ * factory of a {@link LazyList}. Reading an unset value does not allocate.
+ * <p>
+ * The primitive methods, such as {@link #getDouble(int)} and
+ * {@link #setDouble(int, double)}, avoid boxing. The <code>List</code> methods
+ * box and unbox, and reject <code>null</code>.
+ * <p>
+ * Values are compared as by {@link Double#equals(Object)}, so a default
+ * value of <code>NaN</code> may be used to mark missing samples, and
+ * <code>-0.0</code> is distinct from <code>0.0</code>.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @see SparseList
+ * @since 4.0
+ * @version $Id$
+ */
+public class SparseDoubleList extends AbstractSparseList<Double> implements Serializable {
+
+    /** Serialization version */
+    private static final long serialVersionUID = 5019243578263508871L;
+
+    /** The value of the elements that have not been set */
+    private final double defaultValue;
+
+    /**
+     * Constructs a new empty list whose default value is zero.
+     */
+    public SparseDoubleList() {
+        this(0.0);
+    }
+
+    /**
+     * Constructs a new empty list with the specified default value.
+     *
+     * @param defaultValue  the value of the elements that have not been set
+     */
+    public SparseDoubleList(final double defaultValue) {
+        super();
+        this.defaultValue = defaultValue;
+        init();
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Gets the value of the elements that have not been set.
+     *
+     * @return the default value
+     */
+    public double getDefaultValue() {
+        return defaultValue;
+    }
+
+    /**
+     * Gets the value at an index without boxing.
+     *
+     * @param index  the index to retrieve
+     * @return the value at the index
+     * @throws IndexOutOfBoundsException if the index is invalid
+     */
+    public double getDouble(final int index) {
+        checkIndex(index, size() - 1);
+        final double[] page = (double[]) getPage(index);
+        return page == null ? defaultValue : page[index & PAGE_MASK];
+    }
+
+    /**
+     * Sets the value at an index, growing the list if the index is larger
+     * than the size.
+     *
+     * @param index  the index to set
+     * @param value  the value to set
+     * @return the value previously at the index
+     * @throws IndexOutOfBoundsException if the index is negative
+     */
+    public double setDouble(final int index, final double value) {
+        checkIndex(index, Integer.MAX_VALUE - 1);
+        growTo(index + 1);
+        double[] page = (double[]) getPage(index);
+        if (page == null) {
+            if (same(value, defaultValue)) {
+                return defaultValue;
+            }
+            page = (double[]) getPageForWrite(index);
+        }
+        final int offset = index & PAGE_MASK;
+        final double old = page[offset];
+        page[offset] = value;
+        written(index, same(old, defaultValue));
+        return old;
+    }
+
+    /**
+     * Adds a value to the end of the list.
+     *
+     * @param value  the value to add
+     */
+    public void addDouble(final double value) {
+        setDouble(size(), value);
+    }
+
+    /**
+     * Adds a value at an index, shifting later values up and growing the
+     * list if the index is larger than the size.
+     *
+     * @param index  the index to add at
+     * @param value  the value to add
+     * @throws IndexOutOfBoundsException if the index is negative
+     */
+    public void addDouble(final int index, final double value) {
+        checkIndex(index, Integer.MAX_VALUE - 1);
+        growTo(index);
+        insertGap(index);
+        setDouble(index, value);
+    }
+
+    /**
+     * Removes the value at an index, shifting later values down.
+     *
+     * @param index  the index to remove
+     * @return the value removed
+     * @throws IndexOutOfBoundsException if the index is invalid
+     */
+    public double removeDouble(final int index) {
+        final double old = getDouble(index);
+        removeSlot(index);
+        return old;
+    }
+
+    /**
+     * Gets the index of the first occurrence of a value.
+     *
+     * @param value  the value to search for
+     * @return the index of the value, -1 if not found
+     */
+    public int indexOfDouble(final double value) {
+        if (same(value, defaultValue)) {
+            return nextIndex(0, false);
+        }
+        for (int index = nextIndex(0, true); index != -1; index = nextIndex(index + 1, true)) {
+            if (same(((double[]) getPage(index))[index & PAGE_MASK], value)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the index of the last occurrence of a value.
+     *
+     * @param value  the value to search for
+     * @return the index of the value, -1 if not found
+     */
+    public int lastIndexOfDouble(final double value) {
+        if (same(value, defaultValue)) {
+            return previousIndex(size() - 1, false);
+        }
+        for (int index = previousIndex(size() - 1, true); index != -1; index = previousIndex(index - 1, true)) {
+            if (same(((double[]) getPage(index))[index & PAGE_MASK], value)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Copies the values of the list into a new array.
+     *
+     * @return an array of the values in list order
+     */
+    public double[] toDoubleArray() {
+        final int size = size();
+        final double[] array = new double[size];
+        for (int start = 0; start < size; start += PAGE_SIZE) {
+            final int length = Math.min(PAGE_SIZE, size - start);
+            final double[] page = (double[]) getPage(start);
+            if (page == null) {
+                Arrays.fill(array, start, start + length, defaultValue);
+            } else {
+                System.arraycopy(page, 0, array, start, length);
+            }
+        }
+        return array;
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public Double get(final int index) {
+        return Double.valueOf(getDouble(index));
+    }
+
+    @Override
+    public Double set(final int index, final Double element) {
+        return Double.valueOf(setDouble(index, element.doubleValue()));
+    }
+
+    @Override
+    public void add(final int index, final Double element) {
+        addDouble(index, element.doubleValue());
+    }
+
+    @Override
+    public Double remove(final int index) {
+        return Double.valueOf(removeDouble(index));
+    }
+
+    @Override
+    public int indexOf(final Object object) {
+        return object instanceof Double ? indexOfDouble(((Double) object).doubleValue()) : -1;
+    }
+
+    @Override
+    public int lastIndexOf(final Object object) {
+        return object instanceof Double ? lastIndexOfDouble(((Double) object).doubleValue()) : -1;
+    }
+
+    @Override
+    public boolean contains(final Object object) {
+        return indexOf(object) != -1;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Compares two values in the same way as <code>Double.equals</code>.
+     */
+    private static boolean same(final double value1, final double value2) {
+        return Double.doubleToLongBits(value1) == Double.doubleToLongBits(value2);
+    }
+
+    @Override
+    protected Object createPage() {
+        final double[] page = new double[PAGE_SIZE];
+        if (!same(defaultValue, 0.0)) {
+            Arrays.fill(page, defaultValue);
+        }
+        return page;
+    }
+
+    @Override
+    protected boolean isDefault(final Object page, final int offset) {
+        return same(((double[]) page)[offset], defaultValue);
+    }
+
+    @Override
+    protected void writeElement(final ObjectOutputStream out, final Object page, final int offset)
+            throws IOException {
+        out.writeDouble(((double[]) page)[offset]);
+    }
+
+    @Override
+    protected void readElement(final ObjectInputStream in, final Object page, final int offset)
+            throws IOException {
+        ((double[]) page)[offset] = in.readDouble();
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Serializes the data held in this object to the stream specified.
+     *
+     * @param out  the output stream
+     * @throws IOException if an error occurs while writing to the stream
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        doWriteObject(out);
+    }
+
+    /**
+     * Deserializes the data held in this object to the stream specified.
+     *
+     * @param in  the input stream
+     * @throws IOException if an error occurs while reading from the stream
+     * @throws ClassNotFoundException if an object read from the stream can not be loaded
+     */
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        doReadObject(in);
+    }
+
+}
@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.list;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import org.apache.commons.collections.Factory;
+
+/**
+ * A <code>List</code> for sparse data that combines the growth behaviour of
+ * {@link GrowthList} with the lazy behaviour of {@link LazyList}, without
+ * storing the padding.
+ * <p>
+ * Elements are stored in pages of 1024 references and pages that hold only
+ * <code>null</code> are never allocated. Setting or adding at an index larger
+ * than the size grows the list, as with <code>GrowthList</code>, but the
+ * elements in between cost no memory.
+ * <p>
+ * When a factory is supplied, the list also behaves like a
+ * <code>LazyList</code>: getting a <code>null</code> element, or an element
+ * beyond the end of the list, stores and returns a new object from the
+ * factory. Without a factory, <code>get</code> returns <code>null</code> for
+ * an unset element without allocating anything. Note that iterating over a
+ * list with a factory creates objects for every unset element, so
+ * {@link #nextPresentIndex(int)} should be used to visit only the elements
+ * that have been set.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @see GrowthList
+ * @see LazyList
+ * @since 4.0
+ * @version $Id$
+ */
+public class SparseList<E> extends AbstractSparseList<E> implements Serializable {
+
+    /** Serialization version */
+    private static final long serialVersionUID = 2398762519843759201L;
+
+    /** The factory to use to lazily instantiate the objects, may be null */
+    protected final Factory<? extends E> factory;
+
+    /**
+     * Constructs a new empty list with growth behaviour only.
+     */
+    public SparseList() {
+        this(null);
+    }
+
+    /**
+     * Constructs a new empty list that uses a factory to create the elements
+     * that have not been set.
+     *
+     * @param factory  the factory to use for creation, null for none
+     */
+    public SparseList(final Factory<? extends E> factory) {
+        super();
+        this.factory = factory;
+        init();
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Gets the element at an index.
+     * <p>
+     * If the element has not been set, <code>null</code> is returned, unless
+     * the list has a factory, in which case a new object is created, set and
+     * returned. With a factory, indices beyond the end of the list grow the
+     * list.
+     *
+     * @param index  the index to retrieve
+     * @return the element at the given index
+     */
+    @Override
+    public E get(final int index) {
+        if (factory == null) {
+            checkIndex(index, size() - 1);
+        } else {
+            checkIndex(index, Integer.MAX_VALUE);
+        }
+        E object = null;
+        if (index < size()) {
+            object = getRaw(index);
+        }
+        if (object == null && factory != null) {
+            object = factory.create();
+            growTo(index + 1);
+            setRaw(index, object);
+        }
+        return object;
+    }
+
+    /**
+     * Sets the element at an index, growing the list if the index is larger
+     * than the size.
+     *
+     * @param index  the index to set
+     * @param element  the object to set at the specified index
+     * @return the object previously at that index
+     */
+    @Override
+    public E set(final int index, final E element) {
+        checkIndex(index, Integer.MAX_VALUE - 1);
+        growTo(index + 1);
+        return setRaw(index, element);
+    }
+
+    /**
+     * Adds an element at an index, growing the list if the index is larger
+     * than the size.
+     *
+     * @param index  the index to add at
+     * @param element  the object to add at the specified index
+     */
+    @Override
+    public void add(final int index, final E element) {
+        checkIndex(index, Integer.MAX_VALUE - 1);
+        growTo(index);
+        insertGap(index);
+        setRaw(index, element);
+    }
+
+    @Override
+    public E remove(final int index) {
+        checkIndex(index, size() - 1);
+        final E old = getRaw(index);
+        removeSlot(index);
+        return old;
+    }
+
+    /**
+     * Searches for the first index of an object without creating objects
+     * for unset elements.
+     *
+     * @param object  the object to search for
+     * @return the index of the object, -1 if not found
+     */
+    @Override
+    public int indexOf(final Object object) {
+        if (object == null) {
+            return nextIndex(0, false);
+        }
+        for (int index = nextIndex(0, true); index != -1; index = nextIndex(index + 1, true)) {
+            if (object.equals(getRaw(index))) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Searches for the last index of an object without creating objects
+     * for unset elements.
+     *
+     * @param object  the object to search for
+     * @return the index of the object, -1 if not found
+     */
+    @Override
+    public int lastIndexOf(final Object object) {
+        if (object == null) {
+            return previousIndex(size() - 1, false);
+        }
+        for (int index = previousIndex(size() - 1, true); index != -1; index = previousIndex(index - 1, true)) {
+            if (object.equals(getRaw(index))) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean contains(final Object object) {
+        return indexOf(object) != -1;
+    }
+
+    //-----------------------------------------------------------------------
+    @SuppressWarnings("unchecked")
+    private E getRaw(final int index) {
+        final Object[] page = (Object[]) getPage(index);
+        return page == null ? null : (E) page[index & PAGE_MASK];
+    }
+
+    @SuppressWarnings("unchecked")
+    private E setRaw(final int index, final E element) {
+        Object[] page = (Object[]) getPage(index);
+        if (page == null) {
+            if (element == null) {
+                return null;
+            }
+            page = (Object[]) getPageForWrite(index);
+        }
+        final int offset = index & PAGE_MASK;
+        final E old = (E) page[offset];
+        page[offset] = element;
+        written(index, old == null);
+        return old;
+    }
+
+    @Override
+    protected Object createPage() {
+        return new Object[PAGE_SIZE];
+    }
+
+    @Override
+    protected boolean isDefault(final Object page, final int offset) {
+        return ((Object[]) page)[offset] == null;
+    }
+
+    @Override
+    protected void writeElement(final ObjectOutputStream out, final Object page, final int offset)
+            throws IOException {
+        out.writeObject(((Object[]) page)[offset]);
+    }
+
+    @Override
+    protected void readElement(final ObjectInputStream in, final Object page, final int offset)
+            throws IOException, ClassNotFoundException {
+        ((Object[]) page)[offset] = in.readObject();
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Serializes the data held in this object to the stream specified.
+     *
+     * @param out  the output stream
+     * @throws IOException if an error occurs while writing to the stream
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        doWriteObject(out);
+    }
+
+    /**
+     * Deserializes the data held in this object to the stream specified.
+     *
+     * @param in  the input stream
+     * @throws IOException if an error occurs while reading from the stream
+     * @throws ClassNotFoundException if an object read from the stream can not be loaded
+     */
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        doReadObject(in);
+    }
+
+}
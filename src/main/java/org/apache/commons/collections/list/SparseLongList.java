@@ -0,0 +1,299 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.list;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A sparse <code>List</code> of primitive <code>long</code> values.
+ * <p>
+ * Values are stored in pages of 1024 <code>long</code>s and pages that hold
+ * only the default value are never allocated. Setting or adding at an index
+ * larger than the size grows the list, as with {@link GrowthList}, and the
+ * values in between read as the default value, which plays the part of the
+ * factory of a {@link LazyList}. Reading an unset value does not allocate.
+ * <p>
+ * The primitive methods, such as {@link #getLong(int)} and
+ * {@link #setLong(int, long)}, avoid boxing. The <code>List</code> methods
+ * box and unbox, and reject <code>null</code>.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @see SparseList
+ * @since 4.0
+ * @version $Id$
+ */
+public class SparseLongList extends AbstractSparseList<Long> implements Serializable {
+
+    /** Serialization version */
+    private static final long serialVersionUID = -2659207532410826843L;
+
+    /** The value of the elements that have not been set */
+    private final long defaultValue;
+
+    /**
+     * Constructs a new empty list whose default value is zero.
+     */
+    public SparseLongList() {
+        this(0L);
+    }
+
+    /**
+     * Constructs a new empty list with the specified default value.
+     *
+     * @param defaultValue  the value of the elements that have not been set
+     */
+    public SparseLongList(final long defaultValue) {
+        super();
+        this.defaultValue = defaultValue;
+        init();
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Gets the value of the elements that have not been set.
+     *
+     * @return the default value
+     */
+    public long getDefaultValue() {
+        return defaultValue;
+    }
+
+    /**
+     * Gets the value at an index without boxing.
+     *
+     * @param index  the index to retrieve
+     * @return the value at the index
+     * @throws IndexOutOfBoundsException if the index is invalid
+     */
+    public long getLong(final int index) {
+        checkIndex(index, size() - 1);
+        final long[] page = (long[]) getPage(index);
+        return page == null ? defaultValue : page[index & PAGE_MASK];
+    }
+
+    /**
+     * Sets the value at an index, growing the list if the index is larger
+     * than the size.
+     *
+     * @param index  the index to set
+     * @param value  the value to set
+     * @return the value previously at the index
+     * @throws IndexOutOfBoundsException if the index is negative
+     */
+    public long setLong(final int index, final long value) {
+        checkIndex(index, Integer.MAX_VALUE - 1);
+        growTo(index + 1);
+        long[] page = (long[]) getPage(index);
+        if (page == null) {
+            if (value == defaultValue) {
+                return defaultValue;
+            }
+            page = (long[]) getPageForWrite(index);
+        }
+        final int offset = index & PAGE_MASK;
+        final long old = page[offset];
+        page[offset] = value;
+        written(index, old == defaultValue);
+        return old;
+    }
+
+    /**
+     * Adds a value to the end of the list.
+     *
+     * @param value  the value to add
+     */
+    public void addLong(final long value) {
+        setLong(size(), value);
+    }
+
+    /**
+     * Adds a value at an index, shifting later values up and growing the
+     * list if the index is larger than the size.
+     *
+     * @param index  the index to add at
+     * @param value  the value to add
+     * @throws IndexOutOfBoundsException if the index is negative
+     */
+    public void addLong(final int index, final long value) {
+        checkIndex(index, Integer.MAX_VALUE - 1);
+        growTo(index);
+        insertGap(index);
+        setLong(index, value);
+    }
+
+    /**
+     * Removes the value at an index, shifting later values down.
+     *
+     * @param index  the index to remove
+     * @return the value removed
+     * @throws IndexOutOfBoundsException if the index is invalid
+     */
+    public long removeLong(final int index) {
+        final long old = getLong(index);
+        removeSlot(index);
+        return old;
+    }
+
+    /**
+     * Gets the index of the first occurrence of a value.
+     *
+     * @param value  the value to search for
+     * @return the index of the value, -1 if not found
+     */
+    public int indexOfLong(final long value) {
+        if (value == defaultValue) {
+            return nextIndex(0, false);
+        }
+        for (int index = nextIndex(0, true); index != -1; index = nextIndex(index + 1, true)) {
+            if (((long[]) getPage(index))[index & PAGE_MASK] == value) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the index of the last occurrence of a value.
+     *
+     * @param value  the value to search for
+     * @return the index of the value, -1 if not found
+     */
+    public int lastIndexOfLong(final long value) {
+        if (value == defaultValue) {
+            return previousIndex(size() - 1, false);
+        }
+        for (int index = previousIndex(size() - 1, true); index != -1; index = previousIndex(index - 1, true)) {
+            if (((long[]) getPage(index))[index & PAGE_MASK] == value) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Copies the values of the list into a new array.
+     *
+     * @return an array of the values in list order
+     */
+    public long[] toLongArray() {
+        final int size = size();
+        final long[] array = new long[size];
+        for (int start = 0; start < size; start += PAGE_SIZE) {
+            final int length = Math.min(PAGE_SIZE, size - start);
+            final long[] page = (long[]) getPage(start);
+            if (page == null) {
+                Arrays.fill(array, start, start + length, defaultValue);
+            } else {
+                System.arraycopy(page, 0, array, start, length);
+            }
+        }
+        return array;
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public Long get(final int index) {
+        return Long.valueOf(getLong(index));
+    }
+
+    @Override
+    public Long set(final int index, final Long element) {
+        return Long.valueOf(setLong(index, element.longValue()));
+    }
+
+    @Override
+    public void add(final int index, final Long element) {
+        addLong(index, element.longValue());
+    }
+
+    @Override
+    public Long remove(final int index) {
+        return Long.valueOf(removeLong(index));
+    }
+
+    @Override
+    public int indexOf(final Object object) {
+        return object instanceof Long ? indexOfLong(((Long) object).longValue()) : -1;
+    }
+
+    @Override
+    public int lastIndexOf(final Object object) {
+        return object instanceof Long ? lastIndexOfLong(((Long) object).longValue()) : -1;
+    }
+
+    @Override
+    public boolean contains(final Object object) {
+        return indexOf(object) != -1;
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    protected Object createPage() {
+        final long[] page = new long[PAGE_SIZE];
+        if (defaultValue != 0L) {
+            Arrays.fill(page, defaultValue);
+        }
+        return page;
+    }
+
+    @Override
+    protected boolean isDefault(final Object page, final int offset) {
+        return ((long[]) page)[offset] == defaultValue;
+    }
+
+    @Override
+    protected void writeElement(final ObjectOutputStream out, final Object page, final int offset)
+            throws IOException {
+        out.writeLong(((long[]) page)[offset]);
+    }
+
+    @Override
+    protected void readElement(final ObjectInputStream in, final Object page, final int offset)
+            throws IOException {
+        ((long[]) page)[offset] = in.readLong();
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Serializes the data held in this object to the stream specified.
+     *
+     * @param out  the output stream
+     * @throws IOException if an error occurs while writing to the stream
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        doWriteObject(out);
+    }
+
+    /**
+     * Deserializes the data held in this object to the stream specified.
+     *
+     * @param in  the input stream
+     * @throws IOException if an error occurs while reading from the stream
+     * @throws ClassNotFoundException if an object read from the stream can not be loaded
+     */
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        doReadObject(in);
+    }
+
+}
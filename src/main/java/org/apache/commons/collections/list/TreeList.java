@@ -49,6 +49,12 @@ import org.apache.commons.collections.OrderedIterator;
  * <code>LinkedList</code> is rarely a good choice of implementation.
  * <code>TreeList</code> is almost always a good replacement for it, although it
  * does use slightly more memory.
+ * <p>
+ * Ranges of elements are handled as whole subtrees. Creating a list from a
+ * collection is O(n), inserting a collection with {@link #addAll(int, Collection)}
+ * is O(log n + k), removing a range through <code>subList(from, to).clear()</code>
+ * is O(log n), and a list can be cut in two with {@link #split(int)} or joined
+ * with another one by {@link #concatenate(TreeList)} in O(log n).
  *
  * @since 3.1
  * @version $Id$
@@ -84,6 +90,19 @@ public class TreeList<E> extends AbstractList<E> {
         addAll(coll);
     }
 
+    /**
+     * Constructs a new list that copies the specified array.
+     *
+     * @param array  the array to copy
+     * @throws NullPointerException if the array is null
+     * @since 4.0
+     */
+    public TreeList(final E[] array) {
+        super();
+        root = build(array, array.length);
+        size = array.length;
+    }
+
     //-----------------------------------------------------------------------
     /**
      * Gets the element at the specified index.
@@ -246,6 +265,145 @@ public class TreeList<E> extends AbstractList<E> {
         size = 0;
     }
 
+    //-----------------------------------------------------------------------
+    /**
+     * Appends all of the elements in the specified collection to the end of
+     * this list in the order of its iterator.
+     *
+     * @param coll  the collection to add
+     * @return true if the list changed
+     * @throws NullPointerException if the collection is null
+     */
+    @Override
+    public boolean addAll(final Collection<? extends E> coll) {
+        return addAll(size, coll);
+    }
+
+    /**
+     * Inserts all of the elements in the specified collection at the index.
+     * <p>
+     * The elements are built into a balanced subtree first, which is then
+     * joined with the two parts of this list, so this is O(log n + k) for a
+     * collection of size k.
+     *
+     * @param index  the index to insert at
+     * @param coll  the collection to add
+     * @return true if the list changed
+     * @throws IndexOutOfBoundsException if the index is invalid
+     * @throws NullPointerException if the collection is null
+     */
+    @Override
+    public boolean addAll(final int index, final Collection<? extends E> coll) {
+        checkInterval(index, 0, size());
+        final Object[] array = coll.toArray();
+        if (array.length == 0) {
+            return false;
+        }
+        modCount++;
+        final AVLNode<E> inserted = build(array, array.length);
+        final AVLNode<E>[] parts = split(root, size, index);
+        root = concat(concat(parts[0], index, inserted, array.length), index + array.length,
+                      parts[1], size - index);
+        size += array.length;
+        fixEnds(root);
+        return true;
+    }
+
+    /**
+     * Removes the elements from <code>fromIndex</code> (inclusive) to
+     * <code>toIndex</code> (exclusive) in O(log n), this is used by
+     * <code>subList(fromIndex, toIndex).clear()</code>.
+     *
+     * @param fromIndex  the index of the first element to remove
+     * @param toIndex  the index after the last element to remove
+     */
+    @Override
+    protected void removeRange(final int fromIndex, final int toIndex) {
+        if (fromIndex >= toIndex) {
+            return;
+        }
+        modCount++;
+        final AVLNode<E>[] tail = split(root, size, toIndex);
+        final AVLNode<E>[] head = split(tail[0], toIndex, fromIndex);
+        root = concat(head[0], fromIndex, tail[1], size - toIndex);
+        size -= toIndex - fromIndex;
+        fixEnds(root);
+    }
+
+    /**
+     * Removes all elements that are contained in the specified collection.
+     * <p>
+     * The remaining elements are rebuilt into a new tree in one pass.
+     *
+     * @param coll  the collection of elements to remove
+     * @return true if the list changed
+     * @throws NullPointerException if the collection is null
+     */
+    @Override
+    public boolean removeAll(final Collection<?> coll) {
+        return filter(coll, false);
+    }
+
+    /**
+     * Retains only the elements that are contained in the specified collection.
+     * <p>
+     * The remaining elements are rebuilt into a new tree in one pass.
+     *
+     * @param coll  the collection of elements to keep
+     * @return true if the list changed
+     * @throws NullPointerException if the collection is null
+     */
+    @Override
+    public boolean retainAll(final Collection<?> coll) {
+        return filter(coll, true);
+    }
+
+    /**
+     * Removes the elements from the index to the end of this list and returns
+     * them as a new list in O(log n).
+     *
+     * @param index  the index of the first element of the new list
+     * @return a new list with the elements from the index onwards
+     * @throws IndexOutOfBoundsException if the index is invalid
+     * @since 4.0
+     */
+    public TreeList<E> split(final int index) {
+        checkInterval(index, 0, size());
+        modCount++;
+        final AVLNode<E>[] parts = split(root, size, index);
+        final TreeList<E> tail = new TreeList<E>();
+        tail.root = parts[1];
+        tail.size = size - index;
+        fixEnds(tail.root);
+        root = parts[0];
+        size = index;
+        fixEnds(root);
+        return tail;
+    }
+
+    /**
+     * Moves all elements of the specified list to the end of this list in
+     * O(log n), leaving the specified list empty.
+     *
+     * @param list  the list to append and clear
+     * @throws NullPointerException if the list is null
+     * @throws IllegalArgumentException if the list is this list
+     * @since 4.0
+     */
+    public void concatenate(final TreeList<E> list) {
+        if (list == this) {
+            throw new IllegalArgumentException("Cannot concatenate a list with itself");
+        }
+        if (list.size == 0) {
+            return;
+        }
+        modCount++;
+        root = concat(root, size, list.root, list.size);
+        size += list.size;
+        fixEnds(root);
+        list.clear();
+    }
+
     //-----------------------------------------------------------------------
     /**
      * Checks whether the index is valid.
@@ -261,6 +419,213 @@ public class TreeList<E> extends AbstractList<E> {
         }
     }
 
+    /**
+     * Removes the elements that are (not) contained in the collection by
+     * rebuilding the tree from the remaining ones.
+     */
+    private boolean filter(final Collection<?> coll, final boolean retain) {
+        final Object[] array = toArray();
+        int count = 0;
+        for (final Object element : array) {
+            if (coll.contains(element) == retain) {
+                array[count++] = element;
+            }
+        }
+        if (count == size) {
+            return false;
+        }
+        modCount++;
+        root = build(array, count);
+        size = count;
+        return true;
+    }
+
+    //-----------------------------------------------------------------------
+    // The bulk operations work on detached subtrees whose root holds its
+    // absolute position, which is the size of its left subtree, like the
+    // root of the list. The links to the previous and next node at the ends
+    // of the result must be cleared by fixEnds() once the operation is done.
+
+    /**
+     * Builds a balanced tree of the first <code>length</code> elements of the
+     * array in O(n).
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> AVLNode<E> build(final Object[] array, final int length) {
+        if (length == 0) {
+            return null;
+        }
+        final AVLNode<E>[] nodes = new AVLNode[length];
+        for (int i = 0; i < length; i++) {
+            nodes[i] = new AVLNode<E>(0, (E) array[i], null, null);
+        }
+        return build(nodes, 0, length);
+    }
+
+    /**
+     * Builds the nodes from <code>from</code> (inclusive) to <code>to</code>
+     * (exclusive) into a balanced tree linked to its neighbours in the array.
+     */
+    private static <E> AVLNode<E> build(final AVLNode<E>[] nodes, final int from, final int to) {
+        final int mid = (from + to) >>> 1;
+        final AVLNode<E> node = nodes[mid];
+        if (from < mid) {
+            final AVLNode<E> left = build(nodes, from, mid);
+            left.relativePosition -= mid - from;
+            node.setLeft(left, null);
+        } else {
+            node.setLeft(null, mid > 0 ? nodes[mid - 1] : null);
+        }
+        if (mid + 1 < to) {
+            final AVLNode<E> right = build(nodes, mid + 1, to);
+            right.relativePosition++;
+            node.setRight(right, null);
+        } else {
+            node.setRight(null, mid + 1 < nodes.length ? nodes[mid + 1] : null);
+        }
+        node.relativePosition = mid - from;
+        return node;
+    }
+
+    /**
+     * Clears the links to the previous node of the first node and to the next
+     * node of the last node of a tree.
+     */
+    private static <E> void fixEnds(final AVLNode<E> root) {
+        if (root != null) {
+            root.min().left = null;
+            root.max().right = null;
+        }
+    }
+
+    /**
+     * Splits a detached tree into the nodes before the index and the nodes
+     * from the index onwards, both detached, in O(log n).
+     *
+     * @param node  the root of the tree, may be null
+     * @param size  the size of the tree
+     * @param index  the index of the first node of the second part
+     * @return the two parts, either may be null
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> AVLNode<E>[] split(final AVLNode<E> node, final int size, final int index) {
+        if (node == null) {
+            return new AVLNode[2];
+        }
+        final int leftSize = node.relativePosition;
+        final int rightSize = size - leftSize - 1;
+        final AVLNode<E> left = node.getLeftSubTree();
+        if (left != null) {
+            left.relativePosition += leftSize;
+        }
+        final AVLNode<E> right = node.getRightSubTree();
+        if (right != null) {
+            right.relativePosition--;
+        }
+        // the neighbours of the node keep their threads, so the links of
+        // the node itself are all that is needed to join around it again
+        final AVLNode<E> previous = left == null ? node.left : null;
+        final AVLNode<E> next = right == null ? node.right : null;
+        node.setLeft(null, null);
+        node.setRight(null, null);
+
+        final AVLNode<E>[] parts;
+        if (index <= leftSize) {
+            parts = split(left, leftSize, index);
+            parts[1] = joinTrees(parts[1], leftSize - index, node, right, rightSize, previous, next);
+        } else {
+            parts = split(right, rightSize, index - leftSize - 1);
+            parts[0] = joinTrees(left, leftSize, node, parts[0], index - leftSize - 1, previous, next);
+        }
+        return parts;
+    }
+
+    /**
+     * Joins two detached trees in O(log n).
+     *
+     * @return the root of the joined tree, may be null
+     */
+    private static <E> AVLNode<E> concat(final AVLNode<E> left, final int leftSize,
+                                         final AVLNode<E> right, final int rightSize) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        final AVLNode<E>[] parts = split(right, rightSize, 1);
+        return join(left, leftSize, parts[0], parts[1], rightSize - 1);
+    }
+
+    /**
+     * Joins two detached trees with a single node between them in O(log n),
+     * finding the last node of the left tree and the first node of the right
+     * tree to link them to the middle node.
+     *
+     * @return the root of the joined tree
+     */
+    private static <E> AVLNode<E> join(final AVLNode<E> left, final int leftSize, final AVLNode<E> middle,
+                                       final AVLNode<E> right, final int rightSize) {
+        final AVLNode<E> leftMax = left == null ? null : left.max();
+        final AVLNode<E> rightMin = right == null ? null : right.min();
+        if (leftMax != null) {
+            leftMax.right = middle;
+        }
+        if (rightMin != null) {
+            rightMin.left = middle;
+        }
+        return joinTrees(left, leftSize, middle, right, rightSize, leftMax, rightMin);
+    }
+
+    /**
+     * Joins two detached trees with a single node between them, descending
+     * along the spine of the higher tree. The last node of the left tree and
+     * the first node of the right tree are only used to thread the middle
+     * node when it ends up without a left or right subtree.
+     */
+    private static <E> AVLNode<E> joinTrees(final AVLNode<E> left, final int leftSize, final AVLNode<E> middle,
+                                            final AVLNode<E> right, final int rightSize,
+                                            final AVLNode<E> leftMax, final AVLNode<E> rightMin) {
+        final int leftHeight = left == null ? -1 : left.height;
+        final int rightHeight = right == null ? -1 : right.height;
+        if (leftHeight > rightHeight + 1) {
+            final int innerSize = leftSize - left.relativePosition - 1;
+            final AVLNode<E> inner = left.getRightSubTree();
+            if (inner != null) {
+                inner.relativePosition--;
+            }
+            final AVLNode<E> joined = joinTrees(inner, innerSize, middle, right, rightSize,
+                                                inner == null ? left : leftMax, rightMin);
+            joined.relativePosition++;
+            left.setRight(joined, null);
+            return left.balance();
+        }
+        if (rightHeight > leftHeight + 1) {
+            final int innerSize = right.relativePosition;
+            final AVLNode<E> inner = right.getLeftSubTree();
+            if (inner != null) {
+                inner.relativePosition += innerSize;
+            }
+            final int joinedSize = leftSize + 1 + innerSize;
+            final AVLNode<E> joined = joinTrees(left, leftSize, middle, inner, innerSize,
+                                                leftMax, inner == null ? right : rightMin);
+            joined.relativePosition -= joinedSize;
+            right.setLeft(joined, null);
+            right.relativePosition = joinedSize;
+            return right.balance();
+        }
+        if (left != null) {
+            left.relativePosition -= leftSize;
+        }
+        middle.setLeft(left, leftMax);
+        if (right != null) {
+            right.relativePosition++;
+        }
+        middle.setRight(right, rightMin);
+        middle.relativePosition = leftSize;
+        return middle;
+    }
+
     //-----------------------------------------------------------------------
     /**
      * Implements an AVLNode which keeps the offset updated.
@@ -20,8 +20,13 @@
  * The following implementations are provided in the package:
  * <ul>
  *   <li>TreeList - a list that is optimised for insertions and removals at any index in the list</li>
+ *   <li>ChunkedTreeList - a list that stores its elements in a tree of arrays, for fast insertions and removals with near array speed access</li>
  *   <li>CursorableLinkedList - a list that can be modified while the listIterator (cursor) is being used</li>
  *   <li>NodeCachingLinkedList - a linked list that caches the storage nodes for a performance gain</li>
+ *   <li>ConcurrentNodeCachingLinkedList - a thread-safe linked list that caches the storage nodes per thread</li>
+ *   <li>IndexedSetUniqueList - a list that avoids duplicate entries like a Set and finds the index of any element quickly</li>
+ *   <li>SparseList - a list that grows on set and add like GrowthList, optionally lazy like LazyList, storing only the pages that hold elements</li>
+ *   <li>SparseLongList and SparseDoubleList - sparse lists of primitive values that store only the pages holding non-default values</li>
  * </ul>
  * <p>
  * The following decorators are provided in the package:
@@ -55,6 +55,27 @@ public class CharArrayKeyAnalyzer extends AbstractKeyAnalyzer<char[]> {
         return LENGTH;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int compare(final char[] o1, final char[] o2) {
+        if (o1 == null) {
+            return o2 == null ? 0 : -1;
+        } else if (o2 == null) {
+            return 1;
+        }
+
+        final int length = Math.min(o1.length, o2.length);
+        for (int i = 0; i < length; i++) {
+            final int diff = o1[i] - o2[i];
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return o1.length - o2.length;
+    }
+
     /**
      * {@inheritDoc}
      */
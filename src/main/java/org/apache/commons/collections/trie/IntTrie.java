@@ -0,0 +1,286 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.trie;
+
+import java.io.Serializable;
+import java.util.NoSuchElementException;
+
+/**
+ * A crit-bit {@link org.apache.commons.collections.Trie Trie} with primitive
+ * <code>int</code> keys.
+ * <p>
+ * The keys are stored sign-extended in a {@link LongTrie}, which keeps them in
+ * their natural order and finds the branching bit of two keys with
+ * {@link Long#numberOfLeadingZeros(long)}. No key is ever boxed.
+ * <p>
+ * Prefixes are counted from the most significant bit of the <code>int</code>,
+ * {@link #getPrefixedByBits(int, int)} with a length of 24 returns all keys
+ * that differ from the given key in the lowest 8 bits only.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @param <V> the type of the values in the trie
+ * @since 4.0
+ * @version $Id$
+ */
+public class IntTrie<V> implements Serializable {
+
+    private static final long serialVersionUID = -1757432818340434946L;
+
+    /** The number of bits in a key */
+    private static final int LENGTH = Integer.SIZE;
+
+    /** The trie holding the sign-extended keys */
+    private final LongTrie<V> trie;
+
+    /**
+     * Constructs an empty trie.
+     */
+    public IntTrie() {
+        this(new LongTrie<V>());
+    }
+
+    /**
+     * Constructs a trie on top of the given (view of a) {@link LongTrie}.
+     */
+    private IntTrie(final LongTrie<V> trie) {
+        this.trie = trie;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Gets the number of keys in this trie or view.
+     *
+     * @return the number of keys
+     * @see LongTrie#size()
+     */
+    public int size() {
+        return trie.size();
+    }
+
+    /**
+     * Checks whether this trie or view contains no keys.
+     *
+     * @return true if there are no keys
+     */
+    public boolean isEmpty() {
+        return trie.isEmpty();
+    }
+
+    /**
+     * Checks whether the given key is stored in this trie or view.
+     *
+     * @param key  the key to look up
+     * @return true if the key is stored
+     */
+    public boolean containsKey(final int key) {
+        return trie.containsKey(key);
+    }
+
+    /**
+     * Gets the value stored for the given key.
+     *
+     * @param key  the key to look up
+     * @return the value, or null if the key is not stored
+     */
+    public V get(final int key) {
+        return trie.get(key);
+    }
+
+    /**
+     * Stores the value for the given key.
+     *
+     * @param key  the key to store
+     * @param value  the value to store, may be null
+     * @return the previous value of the key, or null if there was none
+     * @throws IllegalArgumentException if this is a prefix view and the key
+     *   does not start with its prefix
+     */
+    public V put(final int key, final V value) {
+        return trie.put(key, value);
+    }
+
+    /**
+     * Removes the given key.
+     *
+     * @param key  the key to remove
+     * @return the value of the removed key, or null if the key was not stored
+     */
+    public V remove(final int key) {
+        return trie.remove(key);
+    }
+
+    /**
+     * Removes all keys from this trie or view.
+     */
+    public void clear() {
+        trie.clear();
+    }
+
+    /**
+     * Gets the smallest key of this trie or view.
+     *
+     * @return the smallest key
+     * @throws NoSuchElementException if there are no keys
+     */
+    public int firstKey() {
+        return (int) trie.firstKey();
+    }
+
+    /**
+     * Gets the largest key of this trie or view.
+     *
+     * @return the largest key
+     * @throws NoSuchElementException if there are no keys
+     */
+    public int lastKey() {
+        return (int) trie.lastKey();
+    }
+
+    /**
+     * Returns a view of all keys that share the first <code>lengthInBits</code>
+     * bits with the given key. The view is backed by this trie, changes to
+     * either of them are reflected by the other.
+     *
+     * @param key  the key that holds the prefix
+     * @param lengthInBits  the number of significant bits, from 0 to 32
+     * @return a view of all keys with the given prefix
+     * @throws IllegalArgumentException if the length is out of range, or if
+     *   this is a prefix view and the prefix is not within it
+     * @see LongTrie#getPrefixedByBits(long, int)
+     */
+    public IntTrie<V> getPrefixedByBits(final int key, final int lengthInBits) {
+        if (lengthInBits < 0 || lengthInBits > LENGTH) {
+            throw new IllegalArgumentException("lengthInBits=" + lengthInBits);
+        }
+        // the upper half of a sign-extended key repeats the sign bit
+        final int longLengthInBits = lengthInBits == 0 ? 0 : Long.SIZE - LENGTH + lengthInBits;
+        return new IntTrie<V>(trie.getPrefixedByBits(key, longLengthInBits));
+    }
+
+    /**
+     * Gets an iterator over the keys of this trie or view in ascending order.
+     *
+     * @return an iterator over the keys and values
+     */
+    public EntryIterator<V> iterator() {
+        return new TrieIterator<V>(trie.iterator());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return trie.toString();
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Defines an iterator over the keys of an {@link IntTrie} that does not
+     * box the keys.
+     *
+     * @param <V> the type of the values
+     * @see LongTrie.EntryIterator
+     */
+    public interface EntryIterator<V> {
+
+        /**
+         * Checks to see if there are more keys still to be iterated.
+         *
+         * @return <code>true</code> if the iterator has more keys
+         */
+        boolean hasNext();
+
+        /**
+         * Gets the next key.
+         *
+         * @return the next key in the iteration
+         * @throws NoSuchElementException if the iteration is finished
+         */
+        int next();
+
+        /**
+         * Gets the current key, which is the key returned by the last call
+         * to <code>next()</code>.
+         *
+         * @return the current key
+         * @throws IllegalStateException if <code>next()</code> has not yet been called
+         */
+        int getKey();
+
+        /**
+         * Gets the value of the current key.
+         *
+         * @return the current value
+         * @throws IllegalStateException if <code>next()</code> has not yet been called
+         */
+        V getValue();
+
+        /**
+         * Sets the value of the current key.
+         *
+         * @param value  the new value
+         * @return the previous value
+         * @throws IllegalStateException if <code>next()</code> has not yet been called
+         */
+        V setValue(V value);
+
+        /**
+         * Removes the current key.
+         *
+         * @throws IllegalStateException if <code>next()</code> has not yet been called
+         */
+        void remove();
+    }
+
+    /**
+     * Narrows the keys of a {@link LongTrie.EntryIterator}.
+     */
+    private static class TrieIterator<V> implements EntryIterator<V> {
+
+        private final LongTrie.EntryIterator<V> iterator;
+
+        TrieIterator(final LongTrie.EntryIterator<V> iterator) {
+            this.iterator = iterator;
+        }
+
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        public int next() {
+            return (int) iterator.next();
+        }
+
+        public int getKey() {
+            return (int) iterator.getKey();
+        }
+
+        public V getValue() {
+            return iterator.getValue();
+        }
+
+        public V setValue(final V value) {
+            return iterator.setValue(value);
+        }
+
+        public void remove() {
+            iterator.remove();
+        }
+    }
+}
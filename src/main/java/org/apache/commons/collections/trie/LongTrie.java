@@ -0,0 +1,628 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.trie;
+
+import java.io.Serializable;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+
+/**
+ * A crit-bit {@link org.apache.commons.collections.Trie Trie} with primitive
+ * <code>long</code> keys.
+ * <p>
+ * Unlike a {@link PatriciaTrie} with a {@link LongKeyAnalyzer} this class
+ * never boxes its keys and does not go through a {@link KeyAnalyzer} to
+ * inspect them. The bit that decides between two keys is computed directly
+ * by {@link Long#numberOfLeadingZeros(long)} of the XOR of both keys, and the
+ * lookup tests a single bit per branch.
+ * <p>
+ * The keys are kept in their natural (signed) order, so iteration and
+ * {@link #firstKey()} / {@link #lastKey()} behave like a sorted map of
+ * <code>long</code>s. Prefixes are counted from the most significant bit,
+ * {@link #getPrefixedByBits(long, int)} with a length of 48 returns all
+ * keys that differ from the given key in the lowest 16 bits only.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @param <V> the type of the values in the trie
+ * @since 4.0
+ * @version $Id$
+ */
+public class LongTrie<V> implements Serializable {
+
+    private static final long serialVersionUID = 3594741364939813539L;
+
+    /** The number of bits in a key */
+    private static final int LENGTH = Long.SIZE;
+
+    /** The trie that holds the nodes, this for the trie itself */
+    private final LongTrie<V> owner;
+
+    /** The prefix all keys of this view share */
+    private final long prefix;
+
+    /** The number of significant prefix bits, 0 for the trie itself */
+    private final int prefixLength;
+
+    /** The root node, only used by the owner */
+    private Node root;
+
+    /** The number of keys, only used by the owner */
+    private int size;
+
+    /** The modification count, only used by the owner */
+    private transient int modCount;
+
+    /**
+     * Constructs an empty trie.
+     */
+    public LongTrie() {
+        this.owner = this;
+        this.prefix = 0L;
+        this.prefixLength = 0;
+    }
+
+    /**
+     * Constructs a prefix view of the given trie.
+     */
+    private LongTrie(final LongTrie<V> owner, final long prefix, final int prefixLength) {
+        this.owner = owner;
+        this.prefix = prefix;
+        this.prefixLength = prefixLength;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns whether the bit at the given index (counted from the most
+     * significant bit) of the key is set, with the sign bit inverted so
+     * that negative keys are ordered before positive ones.
+     */
+    static boolean isBitSet(final long key, final int bitIndex) {
+        return ((key ^ Long.MIN_VALUE) << bitIndex) < 0L;
+    }
+
+    /**
+     * Returns the index of the first bit in which both keys differ, counted
+     * from the most significant bit, or {@link #LENGTH} if they are equal.
+     */
+    static int bitIndex(final long key, final long other) {
+        return Long.numberOfLeadingZeros(key ^ other);
+    }
+
+    /**
+     * Returns whether the first <code>lengthInBits</code> bits of both keys are equal.
+     */
+    static boolean isPrefix(final long prefix, final int lengthInBits, final long key) {
+        return lengthInBits == 0 || bitIndex(prefix, key) >= lengthInBits;
+    }
+
+    /**
+     * Returns true if the key belongs to this view.
+     */
+    private boolean inRange(final long key) {
+        return isPrefix(prefix, prefixLength, key);
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Gets the number of keys in this trie or view.
+     * <p>
+     * This is a constant time operation for the trie itself and requires
+     * iterating the keys of a prefix view.
+     *
+     * @return the number of keys
+     */
+    public int size() {
+        if (owner == this) {
+            return size;
+        }
+        int count = 0;
+        for (final EntryIterator<V> it = iterator(); it.hasNext(); it.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Checks whether this trie or view contains no keys.
+     *
+     * @return true if there are no keys
+     */
+    public boolean isEmpty() {
+        return subtree() == null;
+    }
+
+    /**
+     * Checks whether the given key is stored in this trie or view.
+     *
+     * @param key  the key to look up
+     * @return true if the key is stored
+     */
+    public boolean containsKey(final long key) {
+        return inRange(key) && owner.getLeaf(key) != null;
+    }
+
+    /**
+     * Gets the value stored for the given key.
+     *
+     * @param key  the key to look up
+     * @return the value, or null if the key is not stored
+     */
+    public V get(final long key) {
+        if (!inRange(key)) {
+            return null;
+        }
+        final Leaf<V> leaf = owner.getLeaf(key);
+        return leaf != null ? leaf.value : null;
+    }
+
+    /**
+     * Stores the value for the given key.
+     *
+     * @param key  the key to store
+     * @param value  the value to store, may be null
+     * @return the previous value of the key, or null if there was none
+     * @throws IllegalArgumentException if this is a prefix view and the key
+     *   does not start with its prefix
+     */
+    public V put(final long key, final V value) {
+        if (!inRange(key)) {
+            throw new IllegalArgumentException("Key is out of range: " + key);
+        }
+        return owner.putImpl(key, value);
+    }
+
+    /**
+     * Removes the given key.
+     *
+     * @param key  the key to remove
+     * @return the value of the removed key, or null if the key was not stored
+     */
+    public V remove(final long key) {
+        if (!inRange(key)) {
+            return null;
+        }
+        return owner.removeImpl(key);
+    }
+
+    /**
+     * Removes all keys from this trie or view.
+     */
+    public void clear() {
+        if (owner == this) {
+            root = null;
+            size = 0;
+            modCount++;
+        } else {
+            for (final EntryIterator<V> it = iterator(); it.hasNext();) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Gets the smallest key of this trie or view.
+     *
+     * @return the smallest key
+     * @throws NoSuchElementException if there are no keys
+     */
+    public long firstKey() {
+        final Node node = subtree();
+        if (node == null) {
+            throw new NoSuchElementException();
+        }
+        return firstLeaf(node).key;
+    }
+
+    /**
+     * Gets the largest key of this trie or view.
+     *
+     * @return the largest key
+     * @throws NoSuchElementException if there are no keys
+     */
+    public long lastKey() {
+        Node node = subtree();
+        if (node == null) {
+            throw new NoSuchElementException();
+        }
+        while (node instanceof Branch) {
+            node = ((Branch) node).right;
+        }
+        return ((Leaf<?>) node).key;
+    }
+
+    /**
+     * Returns a view of all keys that share the first <code>lengthInBits</code>
+     * bits with the given key. The view is backed by this trie, changes to
+     * either of them are reflected by the other.
+     * <p>
+     * Lookups in the view check the prefix and then descend the trie, they
+     * take the same time as in the trie itself. {@link #size()} has to
+     * iterate the keys of the view.
+     *
+     * @param key  the key that holds the prefix
+     * @param lengthInBits  the number of significant bits, from 0 to 64
+     * @return a view of all keys with the given prefix
+     * @throws IllegalArgumentException if the length is out of range, or if
+     *   this is a prefix view and the prefix is not within it
+     */
+    public LongTrie<V> getPrefixedByBits(final long key, final int lengthInBits) {
+        if (lengthInBits < 0 || lengthInBits > LENGTH) {
+            throw new IllegalArgumentException("lengthInBits=" + lengthInBits);
+        }
+        if (lengthInBits <= prefixLength) {
+            if (!isPrefix(prefix, lengthInBits, key)) {
+                throw new IllegalArgumentException("Prefix is out of range: " + key);
+            }
+            return this;
+        }
+        if (!inRange(key)) {
+            throw new IllegalArgumentException("Prefix is out of range: " + key);
+        }
+        return new LongTrie<V>(owner, key, lengthInBits);
+    }
+
+    /**
+     * Gets an iterator over the keys of this trie or view in ascending order.
+     *
+     * @return an iterator over the keys and values
+     */
+    public EntryIterator<V> iterator() {
+        return new TrieIterator();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("Trie[").append(size()).append("]={\n");
+        for (final EntryIterator<V> it = iterator(); it.hasNext();) {
+            buffer.append("  ").append(it.next()).append("=").append(it.getValue()).append("\n");
+        }
+        buffer.append("}\n");
+        return buffer.toString();
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns the leaf of the given key, or null if the key is not stored.
+     * Only called on the owner.
+     */
+    @SuppressWarnings("unchecked")
+    private Leaf<V> getLeaf(final long key) {
+        Node node = root;
+        if (node == null) {
+            return null;
+        }
+        while (node instanceof Branch) {
+            final Branch branch = (Branch) node;
+            node = isBitSet(key, branch.bitIndex) ? branch.right : branch.left;
+        }
+        final Leaf<V> leaf = (Leaf<V>) node;
+        return leaf.key == key ? leaf : null;
+    }
+
+    /**
+     * Stores the key and value. Only called on the owner.
+     */
+    @SuppressWarnings("unchecked")
+    private V putImpl(final long key, final V value) {
+        if (root == null) {
+            root = new Leaf<V>(key, value);
+            size++;
+            modCount++;
+            return null;
+        }
+
+        // find the closest key, it decides where the new key branches off
+        Node node = root;
+        while (node instanceof Branch) {
+            final Branch branch = (Branch) node;
+            node = isBitSet(key, branch.bitIndex) ? branch.right : branch.left;
+        }
+        final Leaf<V> closest = (Leaf<V>) node;
+        if (closest.key == key) {
+            final V previous = closest.value;
+            closest.value = value;
+            return previous;
+        }
+
+        final int bitIndex = bitIndex(key, closest.key);
+        final Leaf<V> leaf = new Leaf<V>(key, value);
+        final boolean right = isBitSet(key, bitIndex);
+
+        // descend again until the new branch bit is reached
+        Branch parent = null;
+        node = root;
+        while (node instanceof Branch && ((Branch) node).bitIndex < bitIndex) {
+            parent = (Branch) node;
+            node = isBitSet(key, parent.bitIndex) ? parent.right : parent.left;
+        }
+
+        final Branch branch = right ? new Branch(bitIndex, node, leaf) : new Branch(bitIndex, leaf, node);
+        if (parent == null) {
+            root = branch;
+        } else if (isBitSet(key, parent.bitIndex)) {
+            parent.right = branch;
+        } else {
+            parent.left = branch;
+        }
+        size++;
+        modCount++;
+        return null;
+    }
+
+    /**
+     * Removes the key. Only called on the owner.
+     */
+    @SuppressWarnings("unchecked")
+    private V removeImpl(final long key) {
+        Node node = root;
+        if (node == null) {
+            return null;
+        }
+        Branch grandParent = null;
+        Branch parent = null;
+        while (node instanceof Branch) {
+            grandParent = parent;
+            parent = (Branch) node;
+            node = isBitSet(key, parent.bitIndex) ? parent.right : parent.left;
+        }
+        final Leaf<V> leaf = (Leaf<V>) node;
+        if (leaf.key != key) {
+            return null;
+        }
+
+        if (parent == null) {
+            root = null;
+        } else {
+            final Node sibling = parent.left == leaf ? parent.right : parent.left;
+            if (grandParent == null) {
+                root = sibling;
+            } else if (grandParent.left == parent) {
+                grandParent.left = sibling;
+            } else {
+                grandParent.right = sibling;
+            }
+        }
+        size--;
+        modCount++;
+        return leaf.value;
+    }
+
+    /**
+     * Returns the node that holds all keys of this view, or null if there
+     * are none.
+     */
+    private Node subtree() {
+        Node node = owner.root;
+        if (node == null || prefixLength == 0) {
+            return node;
+        }
+        while (node instanceof Branch && ((Branch) node).bitIndex < prefixLength) {
+            final Branch branch = (Branch) node;
+            node = isBitSet(prefix, branch.bitIndex) ? branch.right : branch.left;
+        }
+        // all keys below the node share the bits up to its branch bit
+        return inRange(firstLeaf(node).key) ? node : null;
+    }
+
+    /**
+     * Returns the leftmost leaf below the given node.
+     */
+    @SuppressWarnings("unchecked")
+    private Leaf<V> firstLeaf(Node node) {
+        while (node instanceof Branch) {
+            node = ((Branch) node).left;
+        }
+        return (Leaf<V>) node;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * A node of the trie, either a {@link Branch} or a {@link Leaf}.
+     */
+    abstract static class Node implements Serializable {
+        private static final long serialVersionUID = -3349164713985409617L;
+    }
+
+    /**
+     * An internal node that branches on a single bit.
+     */
+    static final class Branch extends Node {
+        private static final long serialVersionUID = 8185062282154823398L;
+
+        /** The index of the bit this node branches on */
+        final int bitIndex;
+
+        /** The keys with the bit not set */
+        Node left;
+
+        /** The keys with the bit set */
+        Node right;
+
+        Branch(final int bitIndex, final Node left, final Node right) {
+            this.bitIndex = bitIndex;
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    /**
+     * An external node holding a key and its value.
+     */
+    static final class Leaf<V> extends Node {
+        private static final long serialVersionUID = 6372938374108253498L;
+
+        /** The key */
+        final long key;
+
+        /** The value */
+        V value;
+
+        Leaf(final long key, final V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Defines an iterator over the keys of a {@link LongTrie} that does not
+     * box the keys. It works like a {@link org.apache.commons.collections.MapIterator
+     * MapIterator}, after each call to {@link #next()} the value of the key
+     * can be read and changed.
+     *
+     * @param <V> the type of the values
+     */
+    public interface EntryIterator<V> {
+
+        /**
+         * Checks to see if there are more keys still to be iterated.
+         *
+         * @return <code>true</code> if the iterator has more keys
+         */
+        boolean hasNext();
+
+        /**
+         * Gets the next key.
+         *
+         * @return the next key in the iteration
+         * @throws NoSuchElementException if the iteration is finished
+         */
+        long next();
+
+        /**
+         * Gets the current key, which is the key returned by the last call
+         * to <code>next()</code>.
+         *
+         * @return the current key
+         * @throws IllegalStateException if <code>next()</code> has not yet been called
+         */
+        long getKey();
+
+        /**
+         * Gets the value of the current key.
+         *
+         * @return the current value
+         * @throws IllegalStateException if <code>next()</code> has not yet been called
+         */
+        V getValue();
+
+        /**
+         * Sets the value of the current key.
+         *
+         * @param value  the new value
+         * @return the previous value
+         * @throws IllegalStateException if <code>next()</code> has not yet been called
+         */
+        V setValue(V value);
+
+        /**
+         * Removes the current key.
+         *
+         * @throws IllegalStateException if <code>next()</code> has not yet been called
+         */
+        void remove();
+    }
+
+    /**
+     * In-order iterator over the leaves of a subtree. The stack holds the
+     * branches whose right subtree has not been visited yet.
+     */
+    private class TrieIterator implements EntryIterator<V> {
+
+        private final Branch[] stack = new Branch[LENGTH];
+        private int depth = 0;
+        private Leaf<V> next;
+        private Leaf<V> current;
+        private int expectedModCount = owner.modCount;
+
+        TrieIterator() {
+            final Node node = subtree();
+            if (node != null) {
+                next = descend(node);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Leaf<V> descend(Node node) {
+            while (node instanceof Branch) {
+                final Branch branch = (Branch) node;
+                stack[depth++] = branch;
+                node = branch.left;
+            }
+            return (Leaf<V>) node;
+        }
+
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        public long next() {
+            if (expectedModCount != owner.modCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            current = next;
+            next = depth > 0 ? descend(stack[--depth].right) : null;
+            return current.key;
+        }
+
+        public long getKey() {
+            if (current == null) {
+                throw new IllegalStateException();
+            }
+            return current.key;
+        }
+
+        public V getValue() {
+            if (current == null) {
+                throw new IllegalStateException();
+            }
+            return current.value;
+        }
+
+        public V setValue(final V value) {
+            if (current == null) {
+                throw new IllegalStateException();
+            }
+            final V previous = current.value;
+            current.value = value;
+            return previous;
+        }
+
+        public void remove() {
+            if (current == null) {
+                throw new IllegalStateException();
+            }
+            if (expectedModCount != owner.modCount) {
+                throw new ConcurrentModificationException();
+            }
+            // the pending branches stay valid, removing a leaf only
+            // replaces its parent branch with the sibling subtree
+            owner.removeImpl(current.key);
+            current = null;
+            expectedModCount = owner.modCount;
+        }
+    }
+}
@@ -21,12 +21,15 @@ import java.util.AbstractSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.collections.Trie;
+import org.apache.commons.collections.Trie.Cursor.Decision;
 
 /**
  * <h3>PATRICIA {@link Trie}</h3>
@@ -82,6 +85,79 @@ public class PatriciaTrie<K, V> extends PatriciaTrieBase<K, V> implements Trie<K
         super(keyAnalyzer, m);
     }
     
+    /**
+     * Creates a new {@link PatriciaTrie} from entries that are sorted in the 
+     * order of the {@link Trie}, which is the order of the key bits as seen by
+     * the {@link KeyAnalyzer}.
+     * <p>
+     * Instead of looking up the position of every key from the root, the
+     * entries are linked in a single pass from the bit indices at which 
+     * adjacent keys differ. The resulting {@link Trie} is identical to one
+     * built by adding the entries one by one, later entries with an equal
+     * key replace earlier ones.
+     * 
+     * @param <K>  the key type
+     * @param <V>  the value type
+     * @param keyAnalyzer  the {@link KeyAnalyzer} of the new {@link Trie}
+     * @param entries  the sorted entries
+     * @return a new {@link PatriciaTrie} holding the entries
+     * @throws IllegalArgumentException if the entries are not sorted
+     * @throws NullPointerException if a key is null
+     */
+    public static <K, V> PatriciaTrie<K, V> fromSortedEntries(final KeyAnalyzer<? super K> keyAnalyzer,
+            final Iterator<? extends Map.Entry<? extends K, ? extends V>> entries) {
+        final PatriciaTrie<K, V> trie = new PatriciaTrie<K, V>(keyAnalyzer);
+        trie.putAllSorted(entries);
+        return trie;
+    }
+    
+    /**
+     * Creates a new {@link PatriciaTrie} from entries that are sorted in the 
+     * order of the {@link Trie}.
+     * 
+     * @param <K>  the key type
+     * @param <V>  the value type
+     * @param keyAnalyzer  the {@link KeyAnalyzer} of the new {@link Trie}
+     * @param entries  the sorted entries
+     * @return a new {@link PatriciaTrie} holding the entries
+     * @throws IllegalArgumentException if the entries are not sorted
+     * @throws NullPointerException if a key is null
+     * @see #fromSortedEntries(KeyAnalyzer, Iterator)
+     */
+    public static <K, V> PatriciaTrie<K, V> fromSortedEntries(final KeyAnalyzer<? super K> keyAnalyzer,
+            final Iterable<? extends Map.Entry<? extends K, ? extends V>> entries) {
+        return fromSortedEntries(keyAnalyzer, entries.iterator());
+    }
+    
+    /**
+     * Creates a new {@link PatriciaTrie} from entries that are sorted in the 
+     * order of the {@link Trie}, building sub-tries in parallel.
+     * <p>
+     * The list is split into slices that are linked into sub-tries by tasks
+     * of the given executor. The sub-tries are then joined in the calling 
+     * thread, which takes at most one step per key bit and sub-trie. The 
+     * list must allow fast random access and must not change while the
+     * {@link Trie} is built.
+     * 
+     * @param <K>  the key type
+     * @param <V>  the value type
+     * @param keyAnalyzer  the {@link KeyAnalyzer} of the new {@link Trie}
+     * @param entries  the sorted entries
+     * @param executor  the executor that runs the tasks
+     * @return a new {@link PatriciaTrie} holding the entries
+     * @throws IllegalArgumentException if the entries are not sorted
+     * @throws NullPointerException if a key is null
+     * @throws IllegalStateException if the thread is interrupted while waiting for the tasks
+     * @see #fromSortedEntries(KeyAnalyzer, Iterator)
+     */
+    public static <K, V> PatriciaTrie<K, V> fromSortedEntries(final KeyAnalyzer<? super K> keyAnalyzer,
+            final List<? extends Map.Entry<? extends K, ? extends V>> entries, 
+            final ExecutorService executor) {
+        final PatriciaTrie<K, V> trie = new PatriciaTrie<K, V>(keyAnalyzer);
+        trie.putAllSorted(entries, executor);
+        return trie;
+    }
+    
     /**
      * {@inheritDoc}
      */
@@ -559,6 +635,260 @@ public class PatriciaTrie<K, V> extends PatriciaTrieBase<K, V> implements Trie<K
         }
     }
     
+    /**
+     * Traverses all entries whose key is within the given Levenshtein 
+     * (edit) distance of the provided key. The distance is measured in key 
+     * elements as reported by {@link KeyAnalyzer#bitsPerElement()}, that is 
+     * in characters for the {@link StringKeyAnalyzer} and the 
+     * {@link CharArrayKeyAnalyzer}.
+     * <p>
+     * Unlike checking every key of the {@link Trie}, the search computes one 
+     * row of the edit distance matrix per key element while it descends the 
+     * {@link Trie} and shares the rows between all keys of a subtree. A subtree 
+     * is skipped as soon as every cell of its last row exceeds the maximum 
+     * distance, so only a small part of the {@link Trie} is visited for small 
+     * distances.
+     * <p>
+     * {@link Decision#EXIT} stops the search, {@link Decision#CONTINUE} 
+     * continues with the next match and {@link Decision#REMOVE_AND_EXIT} 
+     * removes the current entry and stops the search.
+     * <p>
+     * Note: The {@link Decision#REMOVE} operation is not supported.
+     * 
+     * @param key  the key to search for
+     * @param maxDistance  the maximum edit distance of a match, must not be negative
+     * @param cursor  the cursor called for every match
+     * @return the entry the cursor returned {@link Decision#EXIT} on, or null 
+     *   if it continued till the end
+     * @throws NullPointerException if the key or cursor is null
+     * @throws IllegalArgumentException if the maximum distance is negative
+     */
+    public Map.Entry<K, V> traverseWithinDistance(final K key, final int maxDistance,
+            final Cursor<? super K, ? super V> cursor) {
+        if (key == null) {
+            throw new NullPointerException("Key cannot be null");
+        }
+        if (cursor == null) {
+            throw new NullPointerException("Cursor cannot be null");
+        }
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("maxDistance must not be negative: " + maxDistance);
+        }
+        
+        final int[] elements = new int[lengthInElements(key)];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = elementAt(key, i);
+        }
+        
+        final DistanceMatrix matrix = new DistanceMatrix(elements, maxDistance);
+        final Reference<Map.Entry<K, V>> reference = new Reference<Map.Entry<K, V>>();
+        traverseWithinDistanceR(root.left, -1, matrix, cursor, reference);
+        return reference.get();
+    }
+    
+    /**
+     * Returns all entries whose key is within the given Levenshtein (edit) 
+     * distance of the provided key.
+     * <p>
+     * The returned {@link SortedMap} is a copy and not a view of this 
+     * {@link Trie}, changes to either of them are not reflected by the other.
+     * 
+     * @param key  the key to search for
+     * @param maxDistance  the maximum edit distance of a match, must not be negative
+     * @return a {@link SortedMap} with all entries within the given distance
+     * @see #traverseWithinDistance(Object, int, Cursor)
+     */
+    public SortedMap<K, V> getWithinDistance(final K key, final int maxDistance) {
+        final PatriciaTrie<K, V> matches = new PatriciaTrie<K, V>(keyAnalyzer);
+        traverseWithinDistance(key, maxDistance, new Cursor<K, V>() {
+            public Decision select(final Map.Entry<? extends K, ? extends V> entry) {
+                matches.put(entry.getKey(), entry.getValue());
+                return Decision.CONTINUE;
+            }
+        });
+        return matches;
+    }
+    
+    /**
+     * Descends the subtree of the given entry and calls the {@link Cursor} on
+     * every entry within the maximum distance. Returns false if the traversal 
+     * must stop.
+     */
+    private boolean traverseWithinDistanceR(final TrieEntry<K, V> h, final int bitIndex,
+            final DistanceMatrix matrix,
+            final Cursor<? super K, ? super V> cursor,
+            final Reference<Map.Entry<K, V>> reference) {
+        
+        if (h.bitIndex <= bitIndex) {
+            if (!h.isEmpty() && matrix.distance(h.key) <= matrix.maxDistance) {
+                final Decision decision = cursor.select(h);
+                switch(decision) {
+                    case REMOVE:
+                        throw new UnsupportedOperationException("Cannot remove during traverseWithinDistance");
+                    case EXIT:
+                        reference.set(h);
+                        return false;
+                    case REMOVE_AND_EXIT:
+                        final TrieEntry<K, V> entry = new TrieEntry<K, V>(
+                                h.getKey(), h.getValue(), -1);
+                        reference.set(entry);
+                        removeEntry(h);
+                        return false;
+                    case CONTINUE:
+                        // fall through.
+                    default:
+                        break;
+                }
+            }
+            return true;
+        }
+        
+        // All keys below h share the elements in front of h's bit index,
+        // so the rows for them are computed only once for the subtree.
+        final int depth = matrix.depth;
+        final int prefixLength = Math.min(h.bitIndex / bitsPerElement(), lengthInElements(h.key));
+        if (!matrix.extend(h.key, prefixLength)) {
+            matrix.depth = depth;
+            return true;
+        }
+        
+        boolean proceed = traverseWithinDistanceR(h.left, h.bitIndex, matrix, cursor, reference);
+        if (proceed) {
+            proceed = traverseWithinDistanceR(h.right, h.bitIndex, matrix, cursor, reference);
+        }
+        matrix.depth = depth;
+        return proceed;
+    }
+    
+    /**
+     * Returns the length of the given key in elements.
+     */
+    private int lengthInElements(final K key) {
+        return lengthInBits(key) / bitsPerElement();
+    }
+    
+    /**
+     * Returns the element at the given index of the key. {@link String} and
+     * {@code char[]} keys are read directly, all other keys are assembled 
+     * from their bits.
+     */
+    private int elementAt(final K key, final int index) {
+        final int bitsPerElement = bitsPerElement();
+        if (bitsPerElement == Character.SIZE) {
+            if (key instanceof String) {
+                return ((String) key).charAt(index);
+            } else if (key instanceof char[]) {
+                return ((char[]) key)[index];
+            }
+        }
+        
+        final int lengthInBits = lengthInBits(key);
+        int element = 0;
+        for (int i = index * bitsPerElement, end = i + bitsPerElement; i < end; i++) {
+            element <<= 1;
+            if (isBitSet(key, i, lengthInBits)) {
+                element |= 1;
+            }
+        }
+        return element;
+    }
+    
+    /**
+     * The rows of the Levenshtein distance matrix of a search key and the 
+     * elements of the current path through the {@link Trie}. Row i holds
+     * the distances between the first i elements of the path and every 
+     * prefix of the search key.
+     */
+    private class DistanceMatrix {
+        
+        /** The elements of the search key */
+        private final int[] elements;
+        
+        /** The maximum distance of a match */
+        private final int maxDistance;
+        
+        /** The rows, row 0 is the distance to the empty path */
+        private int[][] rows;
+        
+        /** The number of path elements the rows are computed for */
+        private int depth = 0;
+        
+        public DistanceMatrix(final int[] elements, final int maxDistance) {
+            this.elements = elements;
+            this.maxDistance = maxDistance;
+            
+            rows = new int[16][];
+            rows[0] = new int[elements.length + 1];
+            for (int i = 0; i <= elements.length; i++) {
+                rows[0][i] = i;
+            }
+        }
+        
+        /**
+         * Computes the rows for the elements of the key up to the given
+         * length. Returns false if no key that starts with these elements
+         * can be within the maximum distance.
+         */
+        public boolean extend(final K key, final int length) {
+            while (depth < length) {
+                if (!addRow(elementAt(key, depth))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        /**
+         * Returns the distance between the given key and the search key,
+         * or a value greater than the maximum distance if the key is not 
+         * a match. The key must start with the elements of the current path.
+         */
+        public int distance(final K key) {
+            final int length = lengthInElements(key);
+            if (length <= depth) {
+                return rows[length][elements.length];
+            }
+            
+            final int previous = depth;
+            final int distance = extend(key, length) ? rows[length][elements.length] : maxDistance + 1;
+            depth = previous;
+            return distance;
+        }
+        
+        /**
+         * Computes the next row for the given path element. Returns false
+         * if every cell of the new row exceeds the maximum distance.
+         */
+        private boolean addRow(final int element) {
+            if (depth + 1 == rows.length) {
+                final int[][] tmp = new int[rows.length * 2][];
+                System.arraycopy(rows, 0, tmp, 0, rows.length);
+                rows = tmp;
+            }
+            
+            final int[] previous = rows[depth];
+            int[] row = rows[depth + 1];
+            if (row == null) {
+                row = new int[elements.length + 1];
+                rows[depth + 1] = row;
+            }
+            
+            row[0] = previous[0] + 1;
+            int min = row[0];
+            for (int i = 1; i <= elements.length; i++) {
+                final int cost = elements[i - 1] == element ? 0 : 1;
+                final int value = Math.min(Math.min(row[i - 1], previous[i]) + 1, previous[i - 1] + cost);
+                row[i] = value;
+                if (value < min) {
+                    min = value;
+                }
+            }
+            
+            depth++;
+            return min <= maxDistance;
+        }
+    }
+    
     /**
      * A range view of the {@link Trie}
      */
@@ -1435,10 +1765,10 @@ public class PatriciaTrie<K, V> extends PatriciaTrieBase<K, V> implements Trie<K
                     subtree = subtree(prefix, offset, lengthInBits);
                 }
                 
-                // If the subtree's bitIndex is less than the
-                // length of our prefix, it's the last item
-                // in the prefix tree.
-                if (lengthInBits >= subtree.bitIndex) {
+                // If there is no subtree left or its bitIndex is
+                // less than the length of our prefix, it's the 
+                // last item in the prefix tree.
+                if (subtree == null || lengthInBits >= subtree.bitIndex) {
                     lastOne = true;
                 }
             }
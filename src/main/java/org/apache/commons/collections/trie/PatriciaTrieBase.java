@@ -18,12 +18,18 @@ package org.apache.commons.collections.trie;
 
 import java.util.AbstractCollection;
 import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.commons.collections.Trie.Cursor.Decision;
 
@@ -37,11 +43,16 @@ import org.apache.commons.collections.Trie.Cursor.Decision;
 abstract class PatriciaTrieBase<K, V> extends AbstractTrie<K, V> {
     
     private static final long serialVersionUID = 5155253417231339498L;
+    
+    /**
+     * The minimum number of entries per task of a parallel bulk build.
+     */
+    private static final int MIN_SLICE_SIZE = 8192;
 
     /**
      * The root node of the {@link Trie}. 
      */
-    final TrieEntry<K, V> root = new TrieEntry<K, V>(null, null, -1);
+    final TrieEntry<K, V> root = createEntry(null, null, -1);
     
     /**
      * Each of these fields are initialized to contain an instance of the
@@ -174,7 +185,7 @@ abstract class PatriciaTrieBase<K, V> extends AbstractTrie<K, V> {
         if (!AbstractKeyAnalyzer.isOutOfBoundsIndex(bitIndex)) {
             if (AbstractKeyAnalyzer.isValidBitIndex(bitIndex)) { // in 99.999...9% the case
                 /* NEW KEY+VALUE TUPLE */
-                final TrieEntry<K, V> t = new TrieEntry<K, V>(key, value, bitIndex);
+                final TrieEntry<K, V> t = createEntry(key, value, bitIndex);
                 addEntry(t, lengthInBits);
                 incrementSize();
                 return null;
@@ -204,6 +215,17 @@ abstract class PatriciaTrieBase<K, V> extends AbstractTrie<K, V> {
         throw new IndexOutOfBoundsException("Failed to put: " + key + " -> " + value + ", " + bitIndex);
     }
     
+    /**
+     * Creates the {@link TrieEntry} that holds a new key, including the root.
+     * Subclasses may return entries that carry additional fields.
+     * <p>
+     * Note: this is called from the field initializer of the root, before
+     * the fields of a subclass are initialized.
+     */
+    TrieEntry<K, V> createEntry(final K key, final V value, final int bitIndex) {
+        return new TrieEntry<K, V>(key, value, bitIndex);
+    }
+
     /**
      * Adds the given {@link TrieEntry} to the {@link Trie}
      */
@@ -252,6 +274,347 @@ abstract class PatriciaTrieBase<K, V> extends AbstractTrie<K, V> {
         }
     }
     
+    /**
+     * Adds entries that are sorted in the order of this {@link Trie} in a
+     * single pass. The {@link Trie} must be empty.
+     * <p>
+     * The structure of a PATRICIA {@link Trie} is determined by the bit
+     * indices at which adjacent keys differ. With sorted input every new
+     * entry branches off right of the previous one, so the nodes are linked 
+     * with a stack holding the rightmost path instead of a lookup from the 
+     * root. The result is identical to adding the entries one by one with 
+     * {@link #put(Object, Object)}.
+     * 
+     * @throws IllegalArgumentException if the entries are not sorted
+     */
+    void putAllSorted(final Iterator<? extends Map.Entry<? extends K, ? extends V>> entries) {
+        final SortedRun run = new SortedRun();
+        TrieEntry<K, V> previous = null;
+        while (entries.hasNext()) {
+            final Map.Entry<? extends K, ? extends V> entry = entries.next();
+            final K key = entry.getKey();
+            if (previous == null) {
+                if (putIntoRoot(key, entry.getValue())) {
+                    continue;
+                }
+                previous = root;
+            }
+            previous = run.add(key, entry.getValue(), previous);
+        }
+        finishSorted(run);
+    }
+    
+    /**
+     * Adds entries that are sorted in the order of this {@link Trie}, 
+     * splitting the work between the tasks of the given executor. The
+     * {@link Trie} must be empty.
+     * <p>
+     * Every task computes the bit indices of a slice of the entries and 
+     * links them into a sub-trie. The sub-tries are then joined along their 
+     * leftmost and rightmost paths, which takes at most one step per key bit.
+     * 
+     * @throws IllegalArgumentException if the entries are not sorted
+     */
+    void putAllSorted(final List<? extends Map.Entry<? extends K, ? extends V>> entries, 
+            final ExecutorService executor) {
+        final int slices = Math.min(entries.size() / MIN_SLICE_SIZE, 
+                Runtime.getRuntime().availableProcessors() * 4);
+        putAllSorted(entries, executor, slices);
+    }
+    
+    /**
+     * Adds sorted entries using the given number of tasks.
+     * 
+     * @see #putAllSorted(List, ExecutorService)
+     */
+    void putAllSorted(final List<? extends Map.Entry<? extends K, ? extends V>> entries, 
+            final ExecutorService executor, final int maxSlices) {
+        
+        // keys without any set bits go to the root and must come first
+        int start = 0;
+        while (start < entries.size()) {
+            final Map.Entry<? extends K, ? extends V> entry = entries.get(start);
+            if (!putIntoRoot(entry.getKey(), entry.getValue())) {
+                break;
+            }
+            start++;
+        }
+        
+        final int remaining = entries.size() - start;
+        final int slices = Math.max(1, Math.min(remaining, maxSlices));
+        final List<Future<SortedRun>> futures = new ArrayList<Future<SortedRun>>(slices);
+        for (int i = 0; i < slices; i++) {
+            final int from = start + (int) ((long) remaining * i / slices);
+            final int to = start + (int) ((long) remaining * (i + 1) / slices);
+            final boolean first = i == 0;
+            futures.add(executor.submit(new Callable<SortedRun>() {
+                public SortedRun call() {
+                    return createSortedRun(entries, first, from, to);
+                }
+            }));
+        }
+        
+        SortedRun run = null;
+        try {
+            for (final Future<SortedRun> future : futures) {
+                final SortedRun next = future.get();
+                run = run == null ? next : run.join(next);
+            }
+        } catch (final InterruptedException e) {
+            for (final Future<SortedRun> future : futures) {
+                future.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while building the Trie");
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        finishSorted(run);
+    }
+    
+    /**
+     * Links the entries from index <code>from</code> (inclusive) to 
+     * <code>to</code> (exclusive) into a new {@link SortedRun}, the first
+     * run follows the root. Entries at 
+     * the start that are equal to their predecessor are left to the run 
+     * before, which continues past its end until it reaches a new key.
+     */
+    private SortedRun createSortedRun(
+            final List<? extends Map.Entry<? extends K, ? extends V>> entries, 
+            final boolean first, int from, int to) {
+        
+        if (!first) {
+            while (from < to && isEqualBits(entries.get(from - 1).getKey(), entries.get(from).getKey())) {
+                from++;
+            }
+        }
+        final SortedRun run = new SortedRun();
+        if (from >= to) {
+            return run;
+        }
+        while (to < entries.size() && isEqualBits(entries.get(to - 1).getKey(), entries.get(to).getKey())) {
+            to++;
+        }
+        
+        // the first entry is linked to the run before when the runs are joined
+        final Map.Entry<? extends K, ? extends V> entry = entries.get(from);
+        final K previousKey = first ? root.key : entries.get(from - 1).getKey();
+        TrieEntry<K, V> previous = run.add(entry.getKey(), entry.getValue(), 
+                bitIndexOfSorted(previousKey, entry.getKey()), first ? root : null);
+        for (int i = from + 1; i < to; i++) {
+            final Map.Entry<? extends K, ? extends V> next = entries.get(i);
+            previous = run.add(next.getKey(), next.getValue(), previous);
+        }
+        return run;
+    }
+    
+    /**
+     * Returns true if both keys have the same bits and end up in the same node.
+     */
+    private boolean isEqualBits(final K key, final K other) {
+        return compareKeys(key, other) || AbstractKeyAnalyzer.isEqualBitKey(bitIndex(other, key));
+    }
+    
+    /**
+     * Stores the key in the root if it has no set bits, like 
+     * {@link #put(Object, Object)} does. Returns false for all other keys.
+     */
+    private boolean putIntoRoot(final K key, final V value) {
+        if (key == null) {
+            throw new NullPointerException("Key cannot be null");
+        }
+        if (lengthInBits(key) != 0 
+                && !AbstractKeyAnalyzer.isNullBitKey(bitIndex(key, root.key))) {
+            return false;
+        }
+        if (root.isEmpty()) {
+            incrementSize();
+        } else {
+            incrementModCount();
+        }
+        root.setKeyValue(key, value);
+        return true;
+    }
+    
+    /**
+     * Returns the bit index of the key relative to the previous key of the
+     * sorted input, checking that the keys are in ascending order.
+     */
+    private int bitIndexOfSorted(final K previous, final K key) {
+        if (key == null) {
+            throw new NullPointerException("Key cannot be null");
+        }
+        final int bitIndex = bitIndex(key, previous);
+        if (AbstractKeyAnalyzer.isValidBitIndex(bitIndex)) {
+            if (!isBitSet(key, bitIndex, lengthInBits(key))) {
+                throw new IllegalArgumentException("Keys are not sorted: " + previous + ", " + key);
+            }
+        } else if (AbstractKeyAnalyzer.isNullBitKey(bitIndex)) {
+            throw new IllegalArgumentException("Keys are not sorted: " + previous + ", " + key);
+        } else if (!AbstractKeyAnalyzer.isEqualBitKey(bitIndex)) {
+            throw new IndexOutOfBoundsException("Failed to put: " + key + ", " + bitIndex);
+        }
+        return bitIndex;
+    }
+    
+    /**
+     * Attaches the nodes of the run to the root and updates the size.
+     */
+    private void finishSorted(final SortedRun run) {
+        if (run.depth > 0) {
+            final TrieEntry<K, V> top = run.stack[0];
+            top.parent = root;
+            root.left = top;
+            size += run.size;
+            incrementModCount();
+        }
+    }
+    
+    /**
+     * Sorted entries that are linked into a sub-trie. The stack holds the
+     * rightmost path of the sub-trie, the spine holds the nodes on its 
+     * leftmost path whose left side is not known until the run is joined 
+     * with the run before.
+     */
+    private final class SortedRun {
+        
+        /** The rightmost path, ordered by ascending bit index */
+        @SuppressWarnings("unchecked")
+        private TrieEntry<K, V>[] stack = new TrieEntry[32];
+        
+        /** The number of nodes on the stack */
+        private int depth = 0;
+        
+        /** The leftmost path of a run that does not start at the root */
+        private final List<TrieEntry<K, V>> spine = new ArrayList<TrieEntry<K, V>>();
+        
+        /** The first and the last node */
+        private TrieEntry<K, V> first;
+        private TrieEntry<K, V> last;
+        
+        /** The number of nodes */
+        private int size = 0;
+        
+        /**
+         * Adds the next key of the sorted input. Returns the node that holds 
+         * the key.
+         */
+        TrieEntry<K, V> add(final K key, final V value, final TrieEntry<K, V> previous) {
+            final int bitIndex = bitIndexOfSorted(previous.key, key);
+            if (AbstractKeyAnalyzer.isEqualBitKey(bitIndex)) {
+                previous.setKeyValue(key, value);
+                return previous;
+            }
+            return add(key, value, bitIndex, previous);
+        }
+        
+        /**
+         * Adds a key with the given bit index. The previous node becomes
+         * the left uplink of the new node if it does not get a subtree, a
+         * null previous node marks the start of a run.
+         */
+        TrieEntry<K, V> add(final K key, final V value, final int bitIndex, 
+                final TrieEntry<K, V> previous) {
+            final TrieEntry<K, V> entry = createEntry(key, value, bitIndex);
+            
+            // all nodes with a higher bit index become the left subtree
+            TrieEntry<K, V> subtree = null;
+            while (depth > 0 && stack[depth - 1].bitIndex > bitIndex) {
+                subtree = stack[--depth];
+            }
+            if (subtree != null) {
+                entry.left = subtree;
+                subtree.parent = entry;
+            } else if (previous != null) {
+                entry.left = previous;
+                previous.predecessor = entry;
+            } else {
+                entry.left = null;
+            }
+            
+            // the key itself is the uplink on the right until
+            // a node with a higher bit index follows
+            entry.right = entry;
+            if (depth > 0) {
+                final TrieEntry<K, V> parent = stack[depth - 1];
+                parent.right = entry;
+                entry.parent = parent;
+            } else {
+                spine.add(entry);
+            }
+            
+            if (depth == stack.length) {
+                @SuppressWarnings("unchecked")
+                final TrieEntry<K, V>[] tmp = new TrieEntry[stack.length * 2];
+                System.arraycopy(stack, 0, tmp, 0, depth);
+                stack = tmp;
+            }
+            stack[depth++] = entry;
+            
+            if (first == null) {
+                first = entry;
+            }
+            last = entry;
+            size++;
+            return entry;
+        }
+        
+        /**
+         * Joins the given run, which holds the entries after this run, to 
+         * this run. The nodes on the leftmost path of the other run are 
+         * linked as if they were added to this run one by one.
+         */
+        SortedRun join(final SortedRun other) {
+            if (other.size == 0) {
+                return this;
+            }
+            
+            TrieEntry<K, V> previous = null;
+            for (final TrieEntry<K, V> entry : other.spine) {
+                TrieEntry<K, V> subtree = null;
+                while (depth > 0 && stack[depth - 1].bitIndex > entry.bitIndex) {
+                    subtree = stack[--depth];
+                }
+                if (subtree != null) {
+                    entry.left = subtree;
+                    subtree.parent = entry;
+                } else if (previous != null) {
+                    entry.left = previous;
+                    previous.parent = entry;
+                } else {
+                    entry.left = last;
+                    last.predecessor = entry;
+                }
+                
+                if (depth > 0) {
+                    final TrieEntry<K, V> parent = stack[depth - 1];
+                    parent.right = entry;
+                    entry.parent = parent;
+                } else {
+                    entry.parent = null;
+                }
+                previous = entry;
+            }
+            
+            if (depth + other.depth > stack.length) {
+                @SuppressWarnings("unchecked")
+                final TrieEntry<K, V>[] tmp = new TrieEntry[depth + other.depth];
+                System.arraycopy(stack, 0, tmp, 0, depth);
+                stack = tmp;
+            }
+            System.arraycopy(other.stack, 0, stack, depth, other.depth);
+            depth += other.depth;
+            last = other.last;
+            size += other.size;
+            return this;
+        }
+    }
+    
     /**
      * {@inheritDoc}
      */
@@ -836,7 +1199,7 @@ abstract class PatriciaTrieBase<K, V> extends AbstractTrie<K, V> {
      * wise there's no difference (except for the need to load the 
      * {@link Reference} Class but that happens only once).
      */
-    private static class Reference<E> {
+    static class Reference<E> {
         
         private E item;
         
@@ -0,0 +1,1384 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.trie;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+
+import org.apache.commons.collections.Trie;
+
+/**
+ * A compressed radix {@link Trie} for {@link String} keys that does not
+ * store the keys themselves.
+ * <p>
+ * Every node holds the label of the edge that leads to it, and the key of an
+ * entry is the concatenation of the labels on the path from the root. Keys
+ * that share a prefix share the nodes of that prefix, so the prefix is only
+ * stored once. This makes the trie much smaller than a {@link PatriciaTrie}
+ * for keys with long common prefixes such as URLs or file names.
+ * <p>
+ * The labels are slices of two shared arenas instead of separate objects:
+ * labels that consist of ISO-8859-1 characters only are kept in a
+ * <code>byte[]</code>, all others in a <code>char[]</code>. A node refers to
+ * its label by offset and length, and splitting a node just splits the slice.
+ * Labels that are no longer used are reclaimed by compacting the arenas once
+ * they make up half of them, {@link #trimToSize()} compacts on request.
+ * <p>
+ * Keys are rebuilt from the labels only when they are requested, so the
+ * {@link Map.Entry} objects of the entry set are light-weight views of the
+ * nodes. The keys are kept in their natural {@link String} order and the
+ * {@link #comparator()} is therefore <code>null</code>. Range views and
+ * prefix views are backed by the trie.
+ * <p>
+ * This trie does not accept <code>null</code> keys. It is not thread-safe.
+ *
+ * @param <V> the type of the values in the trie
+ * @since 4.0
+ * @version $Id$
+ */
+public class RadixTrie<V> extends AbstractTrie<String, V> {
+
+    private static final long serialVersionUID = -3224631937465632466L;
+
+    /** The initial capacity of the byte arena */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** The highest character that is kept in the byte arena */
+    private static final int MAX_NARROW_CHAR = 0xFF;
+
+    /** The root node, its label is empty and it holds the empty key */
+    private transient Node<V> root;
+
+    /** The arena of labels with ISO-8859-1 characters only */
+    private transient byte[] bytes;
+
+    /** The used part of the byte arena */
+    private transient int bytesLength;
+
+    /** The arena of labels with wider characters */
+    private transient char[] chars;
+
+    /** The used part of the char arena */
+    private transient int charsLength;
+
+    /** The number of arena elements that are not used by a label anymore */
+    private transient int garbage;
+
+    /** The number of keys */
+    private transient int size;
+
+    /** The modification count */
+    private transient int modCount;
+
+    /** The entry set view */
+    private transient volatile Set<Map.Entry<String, V>> entrySet;
+
+    /**
+     * Constructs an empty trie.
+     */
+    public RadixTrie() {
+        super(StringKeyAnalyzer.INSTANCE);
+        init();
+    }
+
+    /**
+     * Constructs a trie holding the entries of the given map.
+     *
+     * @param map  the map to copy
+     * @throws NullPointerException if the map contains a null key
+     */
+    public RadixTrie(final Map<? extends String, ? extends V> map) {
+        this();
+        putAll(map);
+    }
+
+    /**
+     * Resets all fields to an empty trie.
+     */
+    private void init() {
+        root = new Node<V>(null, 0, 0);
+        bytes = new byte[INITIAL_CAPACITY];
+        bytesLength = 0;
+        chars = new char[0];
+        charsLength = 0;
+        garbage = 0;
+        size = 0;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsKey(final Object key) {
+        return getEntryNode(key) != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public V get(final Object key) {
+        final Node<V> node = getEntryNode(key);
+        return node != null ? node.value : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Only the part of the key that is not shared with a key in the trie is
+     * added to the arenas.
+     *
+     * @throws NullPointerException if the key is null
+     */
+    @Override
+    public V put(final String key, final V value) {
+        if (key == null) {
+            throw new NullPointerException("Key cannot be null");
+        }
+
+        final int length = key.length();
+        Node<V> node = root;
+        int depth = 0;
+        while (depth < length) {
+            final int index = indexOf(node, key.charAt(depth));
+            if (index < 0) {
+                final Node<V> leaf = new Node<V>(node, store(key, depth, length), length - depth);
+                leaf.hasValue = true;
+                leaf.value = value;
+                insertChild(node, -index - 1, leaf);
+                size++;
+                modCount++;
+                return null;
+            }
+
+            final Node<V> child = node.children[index];
+            final int matched = matchLength(child, key, depth);
+            node = matched < child.length ? split(child, index, matched) : child;
+            depth += matched;
+        }
+
+        final V previous = node.value;
+        node.value = value;
+        if (!node.hasValue) {
+            node.hasValue = true;
+            size++;
+            modCount++;
+        }
+        return previous;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public V remove(final Object key) {
+        final Node<V> node = getEntryNode(key);
+        if (node == null) {
+            return null;
+        }
+        final V value = node.value;
+        removeNode(node);
+        return value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        init();
+        modCount++;
+    }
+
+    /**
+     * Compacts the label arenas to the size that is actually used.
+     * <p>
+     * This is useful after building a trie that will not change anymore.
+     */
+    public void trimToSize() {
+        compact();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Map.Entry<String, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet(null);
+        }
+        return entrySet;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns null as the keys are kept in their natural order.
+     *
+     * @return null
+     */
+    public Comparator<? super String> comparator() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String firstKey() {
+        final Node<V> node = firstEntry(root);
+        if (node == null) {
+            throw new NoSuchElementException();
+        }
+        return keyOf(node);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String lastKey() {
+        final Node<V> node = lastEntry(root);
+        if (node == null) {
+            throw new NoSuchElementException();
+        }
+        return keyOf(node);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SortedMap<String, V> headMap(final String toKey) {
+        return new RangeMap(null, null, checkKey(toKey));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SortedMap<String, V> subMap(final String fromKey, final String toKey) {
+        if (checkKey(fromKey).compareTo(checkKey(toKey)) > 0) {
+            throw new IllegalArgumentException("FromKey is greater than toKey: " + fromKey + ", " + toKey);
+        }
+        return new RangeMap(null, fromKey, toKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SortedMap<String, V> tailMap(final String fromKey) {
+        return new RangeMap(null, checkKey(fromKey), null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SortedMap<String, V> getPrefixedBy(final String key) {
+        return getPrefixedBy(key, 0, checkKey(key).length());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SortedMap<String, V> getPrefixedBy(final String key, final int length) {
+        return getPrefixedBy(key, 0, length);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The view finds the node below which all keys with the prefix are
+     * stored, it does not compare keys while iterating.
+     */
+    public SortedMap<String, V> getPrefixedBy(final String key, final int offset, final int length) {
+        if (offset + length > checkKey(key).length()) {
+            throw new IllegalArgumentException(offset + " + " + length + " > " + key.length());
+        }
+        if (length == 0) {
+            return this;
+        }
+        return new RangeMap(key.substring(offset, offset + length), null, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException if the length is not a multiple of
+     *   the bits per character
+     */
+    public SortedMap<String, V> getPrefixedByBits(final String key, final int lengthInBits) {
+        return getPrefixedByBits(key, 0, lengthInBits);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException if the offset or the length is not a
+     *   multiple of the bits per character
+     */
+    public SortedMap<String, V> getPrefixedByBits(final String key, final int offsetInBits,
+            final int lengthInBits) {
+        final int bitsPerElement = bitsPerElement();
+        if (offsetInBits % bitsPerElement != 0 || lengthInBits % bitsPerElement != 0) {
+            throw new IllegalArgumentException(
+                    "The offsets and lengths must be at Character boundaries");
+        }
+        return getPrefixedBy(key, offsetInBits / bitsPerElement, lengthInBits / bitsPerElement);
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     *
+     * The keys are compared character by character, a key that is shorter
+     * than the other is padded with zero characters.
+     */
+    public Map.Entry<String, V> select(final String key) {
+        return select(key, new Cursor<String, V>() {
+            public Decision select(final Map.Entry<? extends String, ? extends V> entry) {
+                return Decision.EXIT;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The keys are compared character by character, a key that is shorter
+     * than the other is padded with zero characters.
+     */
+    public Map.Entry<String, V> select(final String key, final Cursor<? super String, ? super V> cursor) {
+        final List<Visit<V>> stack = new ArrayList<Visit<V>>();
+        stack.add(new Visit<V>(root, 0, false));
+        while (!stack.isEmpty()) {
+            final Visit<V> visit = stack.remove(stack.size() - 1);
+            final Node<V> node = visit.node;
+            if (visit.entry) {
+                final NodeEntry entry = new NodeEntry(node);
+                switch (cursor.select(entry)) {
+                    case EXIT:
+                        return entry;
+                    case REMOVE:
+                        throw new UnsupportedOperationException("Cannot remove during select");
+                    case REMOVE_AND_EXIT:
+                        entry.getKey();
+                        removeNode(node);
+                        return entry;
+                    case CONTINUE: // do nothing.
+                    default:
+                        break;
+                }
+                continue;
+            }
+
+            // order the entry of the node, which ends with a virtual zero,
+            // and the children by the XOR of their first character
+            final int c = key != null && visit.depth < key.length() ? key.charAt(visit.depth) : 0;
+            final int count = node.children != null ? node.children.length : 0;
+            final long[] order = new long[count + 1];
+            int n = 0;
+            if (node.hasValue) {
+                order[n++] = (long) c << Integer.SIZE;
+            }
+            for (int i = 0; i < count; i++) {
+                order[n++] = (long) (c ^ charAt(node.children[i], 0)) << Integer.SIZE | (i + 1);
+            }
+            Arrays.sort(order, 0, n);
+            for (int i = n - 1; i >= 0; i--) {
+                final int index = (int) order[i] - 1;
+                if (index < 0) {
+                    stack.add(new Visit<V>(node, visit.depth, true));
+                } else {
+                    final Node<V> child = node.children[index];
+                    stack.add(new Visit<V>(child, visit.depth + child.length, false));
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Map.Entry<String, V> traverse(final Cursor<? super String, ? super V> cursor) {
+        final EntryIterator iterator = new EntryIterator(firstEntry(root), null);
+        while (iterator.hasNext()) {
+            final Map.Entry<String, V> entry = iterator.next();
+            switch (cursor.select(entry)) {
+                case EXIT:
+                    return entry;
+                case REMOVE:
+                    iterator.remove();
+                    break;
+                case REMOVE_AND_EXIT:
+                    iterator.remove();
+                    return entry;
+                case CONTINUE: // do nothing.
+                default:
+                    break;
+            }
+        }
+        return null;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Checks that a key argument is not null.
+     */
+    private static String checkKey(final String key) {
+        if (key == null) {
+            throw new NullPointerException("Key cannot be null");
+        }
+        return key;
+    }
+
+    /**
+     * Returns the node that holds the given key, or null if the key is not
+     * stored.
+     */
+    private Node<V> getEntryNode(final Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        final String string = (String) key;
+        final int length = string.length();
+        Node<V> node = root;
+        int depth = 0;
+        while (depth < length) {
+            final int index = indexOf(node, string.charAt(depth));
+            if (index < 0) {
+                return null;
+            }
+            node = node.children[index];
+            if (matchLength(node, string, depth) < node.length) {
+                return null;
+            }
+            depth += node.length;
+        }
+        return node.hasValue ? node : null;
+    }
+
+    /**
+     * Returns the node that holds the smallest key greater than or equal to
+     * the given key, or null if there is none.
+     */
+    private Node<V> ceilingEntry(final String key) {
+        final int length = key.length();
+        Node<V> node = root;
+        int depth = 0;
+        while (depth < length) {
+            final char c = key.charAt(depth);
+            final int index = indexOf(node, c);
+            if (index < 0) {
+                final int insert = -index - 1;
+                if (node.children != null && insert < node.children.length) {
+                    return firstEntry(node.children[insert]);
+                }
+                return nextSubtree(node);
+            }
+
+            final Node<V> child = node.children[index];
+            final int matched = matchLength(child, key, depth);
+            if (matched < child.length) {
+                // the key ends within the label or differs from it
+                if (depth + matched == length || key.charAt(depth + matched) < charAt(child, matched)) {
+                    return firstEntry(child);
+                }
+                return nextSubtree(child);
+            }
+            node = child;
+            depth += matched;
+        }
+        return firstEntry(node);
+    }
+
+    /**
+     * Returns the node below which all keys starting with the given prefix
+     * are stored, or null if there is no such key.
+     */
+    private Node<V> prefixNode(final String prefix) {
+        final int length = prefix.length();
+        Node<V> node = root;
+        int depth = 0;
+        while (depth < length) {
+            final int index = indexOf(node, prefix.charAt(depth));
+            if (index < 0) {
+                return null;
+            }
+            node = node.children[index];
+            final int matched = matchLength(node, prefix, depth);
+            if (matched < node.length && depth + matched < length) {
+                return null;
+            }
+            depth += matched;
+        }
+        return node;
+    }
+
+    /**
+     * Returns the first entry node within the given subtree.
+     */
+    private Node<V> firstEntry(Node<V> node) {
+        while (!node.hasValue) {
+            if (node.children == null) {
+                return null; // an empty root
+            }
+            node = node.children[0];
+        }
+        return node;
+    }
+
+    /**
+     * Returns the last entry node within the given subtree.
+     */
+    private Node<V> lastEntry(Node<V> node) {
+        while (node.children != null) {
+            node = node.children[node.children.length - 1];
+        }
+        return node.hasValue ? node : null;
+    }
+
+    /**
+     * Returns the entry node following the given node in key order.
+     */
+    private Node<V> nextEntry(final Node<V> node) {
+        if (node.children != null) {
+            return firstEntry(node.children[0]);
+        }
+        return nextSubtree(node);
+    }
+
+    /**
+     * Returns the first entry node after all keys of the given subtree.
+     */
+    private Node<V> nextSubtree(Node<V> node) {
+        while (node.parent != null) {
+            final Node<V> parent = node.parent;
+            final int index = indexOf(parent, charAt(node, 0)) + 1;
+            if (index < parent.children.length) {
+                return firstEntry(parent.children[index]);
+            }
+            node = parent;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the entry node preceding the given node in key order.
+     */
+    private Node<V> previousEntry(Node<V> node) {
+        while (node.parent != null) {
+            final Node<V> parent = node.parent;
+            final int index = indexOf(parent, charAt(node, 0));
+            if (index > 0) {
+                return lastEntry(parent.children[index - 1]);
+            }
+            if (parent.hasValue) {
+                return parent;
+            }
+            node = parent;
+        }
+        return null;
+    }
+
+    /**
+     * Rebuilds the key of the given node from the labels on its path.
+     */
+    private String keyOf(final Node<V> node) {
+        int length = 0;
+        for (Node<V> n = node; n != null; n = n.parent) {
+            length += n.length;
+        }
+        final char[] key = new char[length];
+        for (Node<V> n = node; n != null; n = n.parent) {
+            length -= n.length;
+            for (int i = 0; i < n.length; i++) {
+                key[length + i] = charAt(n, i);
+            }
+        }
+        return new String(key);
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Finds the child whose label starts with the given character with a
+     * binary search.
+     *
+     * @return the index of the child, or <code>(-(insertion point) - 1)</code>
+     */
+    private int indexOf(final Node<V> node, final char c) {
+        final Node<V>[] children = node.children;
+        if (children == null) {
+            return -1;
+        }
+        int low = 0;
+        int high = children.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final char first = charAt(children[mid], 0);
+            if (first < c) {
+                low = mid + 1;
+            } else if (first > c) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Counts the characters of the node's label that match the key at the
+     * given position. The first character is known to match.
+     */
+    private int matchLength(final Node<V> node, final String key, final int depth) {
+        final int max = Math.min(node.length, key.length() - depth);
+        int matched = 1;
+        while (matched < max && charAt(node, matched) == key.charAt(depth + matched)) {
+            matched++;
+        }
+        return matched;
+    }
+
+    /**
+     * Splits the label of the child at the given index after the given number
+     * of characters and returns the new node that holds the first part.
+     */
+    private Node<V> split(final Node<V> node, final int index, final int length) {
+        final Node<V> parent = node.parent;
+        final Node<V> middle = new Node<V>(parent, node.offset, length);
+        middle.children = newNodes(1);
+        middle.children[0] = node;
+        parent.children[index] = middle;
+        node.parent = middle;
+        node.offset = advance(node.offset, length);
+        node.length -= length;
+        return middle;
+    }
+
+    /**
+     * Merges a node without an entry into its only child. The child keeps
+     * its identity, which keeps iterators valid.
+     */
+    private void merge(final Node<V> node) {
+        final Node<V> child = node.children[0];
+        if (advance(node.offset, node.length) != child.offset) {
+            child.offset = concat(node, child);
+            garbage += node.length + child.length;
+        } else {
+            child.offset = node.offset;
+        }
+        child.length += node.length;
+        child.parent = node.parent;
+        final Node<V>[] siblings = node.parent.children;
+        siblings[indexOf(node.parent, charAt(child, 0))] = child;
+    }
+
+    /**
+     * Removes the entry of the given node and the nodes that are not needed
+     * anymore.
+     */
+    private void removeNode(final Node<V> node) {
+        node.hasValue = false;
+        node.value = null;
+        size--;
+        modCount++;
+
+        if (node != root) {
+            if (node.children == null) {
+                final Node<V> parent = node.parent;
+                removeChild(parent, indexOf(parent, charAt(node, 0)));
+                garbage += node.length;
+                if (parent != root && !parent.hasValue && parent.children.length == 1) {
+                    merge(parent);
+                }
+            } else if (node.children.length == 1) {
+                merge(node);
+            }
+        }
+
+        if (garbage > INITIAL_CAPACITY && garbage > (bytesLength + charsLength) / 2) {
+            compact();
+        }
+    }
+
+    /**
+     * Inserts a child at the given index.
+     */
+    private static <V> void insertChild(final Node<V> node, final int index, final Node<V> child) {
+        final Node<V>[] children = node.children;
+        final int length = children != null ? children.length : 0;
+        final Node<V>[] result = newNodes(length + 1);
+        if (length > 0) {
+            System.arraycopy(children, 0, result, 0, index);
+            System.arraycopy(children, index, result, index + 1, length - index);
+        }
+        result[index] = child;
+        node.children = result;
+    }
+
+    /**
+     * Removes the child at the given index.
+     */
+    private static <V> void removeChild(final Node<V> node, final int index) {
+        final Node<V>[] children = node.children;
+        if (children.length == 1) {
+            node.children = null;
+            return;
+        }
+        final Node<V>[] result = newNodes(children.length - 1);
+        System.arraycopy(children, 0, result, 0, index);
+        System.arraycopy(children, index + 1, result, index, result.length - index);
+        node.children = result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Node<V>[] newNodes(final int length) {
+        return new Node[length];
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Moves an arena offset by the given number of characters. Offsets into
+     * the byte arena are positive, offsets into the char arena are stored
+     * as their complement.
+     */
+    private static int advance(final int offset, final int count) {
+        return offset >= 0 ? offset + count : offset - count;
+    }
+
+    /**
+     * Returns the character at the given index of the node's label.
+     */
+    private char charAt(final Node<V> node, final int index) {
+        final int offset = node.offset;
+        if (offset >= 0) {
+            return (char) (bytes[offset + index] & MAX_NARROW_CHAR);
+        }
+        return chars[~offset + index];
+    }
+
+    /**
+     * Appends a part of the key to the matching arena.
+     *
+     * @return the offset of the stored label
+     */
+    private int store(final String key, final int from, final int to) {
+        final int length = to - from;
+        for (int i = from; i < to; i++) {
+            if (key.charAt(i) > MAX_NARROW_CHAR) {
+                ensureChars(length);
+                key.getChars(from, to, chars, charsLength);
+                charsLength += length;
+                return ~(charsLength - length);
+            }
+        }
+        ensureBytes(length);
+        for (int i = from; i < to; i++) {
+            bytes[bytesLength++] = (byte) key.charAt(i);
+        }
+        return bytesLength - length;
+    }
+
+    /**
+     * Appends the concatenated labels of two nodes to the matching arena.
+     *
+     * @return the offset of the stored label
+     */
+    private int concat(final Node<V> first, final Node<V> second) {
+        final int length = first.length + second.length;
+        if (first.offset >= 0 && second.offset >= 0) {
+            ensureBytes(length);
+            System.arraycopy(bytes, first.offset, bytes, bytesLength, first.length);
+            System.arraycopy(bytes, second.offset, bytes, bytesLength + first.length, second.length);
+            bytesLength += length;
+            return bytesLength - length;
+        }
+        ensureChars(length);
+        for (int i = 0; i < first.length; i++) {
+            chars[charsLength++] = charAt(first, i);
+        }
+        for (int i = 0; i < second.length; i++) {
+            chars[charsLength++] = charAt(second, i);
+        }
+        return ~(charsLength - length);
+    }
+
+    /**
+     * Grows the byte arena to hold the given number of additional bytes.
+     */
+    private void ensureBytes(final int count) {
+        final int required = bytesLength + count;
+        if (required < 0) {
+            throw new IllegalStateException("The byte arena is full");
+        }
+        if (required > bytes.length) {
+            final byte[] grown = new byte[Math.max(required, bytes.length + (bytes.length >> 1))];
+            System.arraycopy(bytes, 0, grown, 0, bytesLength);
+            bytes = grown;
+        }
+    }
+
+    /**
+     * Grows the char arena to hold the given number of additional chars.
+     */
+    private void ensureChars(final int count) {
+        final int required = charsLength + count;
+        if (required < 0) {
+            throw new IllegalStateException("The char arena is full");
+        }
+        if (required > chars.length) {
+            final char[] grown = new char[Math.max(Math.max(required, INITIAL_CAPACITY),
+                    chars.length + (chars.length >> 1))];
+            System.arraycopy(chars, 0, grown, 0, charsLength);
+            chars = grown;
+        }
+    }
+
+    /**
+     * Copies all labels in use to new arenas of the exact size.
+     */
+    private void compact() {
+        int narrow = 0;
+        int wide = 0;
+        final List<Node<V>> stack = new ArrayList<Node<V>>();
+        stack.add(root);
+        while (!stack.isEmpty()) {
+            final Node<V> node = stack.remove(stack.size() - 1);
+            if (node.offset >= 0) {
+                narrow += node.length;
+            } else {
+                wide += node.length;
+            }
+            if (node.children != null) {
+                stack.addAll(Arrays.asList(node.children));
+            }
+        }
+
+        final byte[] newBytes = new byte[Math.max(narrow, INITIAL_CAPACITY)];
+        final char[] newChars = new char[wide];
+        int bytesOffset = 0;
+        int charsOffset = 0;
+        stack.add(root);
+        while (!stack.isEmpty()) {
+            final Node<V> node = stack.remove(stack.size() - 1);
+            if (node.offset >= 0) {
+                System.arraycopy(bytes, node.offset, newBytes, bytesOffset, node.length);
+                node.offset = bytesOffset;
+                bytesOffset += node.length;
+            } else {
+                System.arraycopy(chars, ~node.offset, newChars, charsOffset, node.length);
+                node.offset = ~charsOffset;
+                charsOffset += node.length;
+            }
+            if (node.children != null) {
+                stack.addAll(Arrays.asList(node.children));
+            }
+        }
+
+        bytes = newBytes;
+        bytesLength = bytesOffset;
+        chars = newChars;
+        charsLength = charsOffset;
+        garbage = 0;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Writes the trie out as a list of keys and values.
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size);
+        for (final Map.Entry<String, V> entry : entrySet()) {
+            out.writeObject(entry.getKey());
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    /**
+     * Reads the trie in from a list of keys and values.
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        init();
+        final int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            final String key = (String) in.readObject();
+            final V value = (V) in.readObject();
+            put(key, value);
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * A node of the trie. The label is a slice of one of the arenas.
+     */
+    private static final class Node<V> {
+
+        /** The parent node, null for the root */
+        Node<V> parent;
+
+        /** The children ordered by the first character of their label, or null */
+        Node<V>[] children;
+
+        /** The offset of the label, complemented for the char arena */
+        int offset;
+
+        /** The number of characters in the label */
+        int length;
+
+        /** Whether this node holds an entry */
+        boolean hasValue;
+
+        /** The value of the entry */
+        V value;
+
+        Node(final Node<V> parent, final int offset, final int length) {
+            this.parent = parent;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * A pending step of {@link RadixTrie#select(String, Cursor)}.
+     */
+    private static final class Visit<V> {
+
+        final Node<V> node;
+
+        /** The length of the key of the node */
+        final int depth;
+
+        /** Whether to select the entry of the node rather than its children */
+        final boolean entry;
+
+        Visit(final Node<V> node, final int depth, final boolean entry) {
+            this.node = node;
+            this.depth = depth;
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * A {@link Map.Entry} view of a node that rebuilds the key on demand.
+     */
+    private final class NodeEntry implements Map.Entry<String, V> {
+
+        private final Node<V> node;
+
+        private String key;
+
+        NodeEntry(final Node<V> node) {
+            this.node = node;
+        }
+
+        public String getKey() {
+            if (key == null) {
+                key = keyOf(node);
+            }
+            return key;
+        }
+
+        public V getValue() {
+            return node.value;
+        }
+
+        public V setValue(final V value) {
+            final V previous = node.value;
+            node.value = value;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (obj == this) {
+                return true;
+            } else if (!(obj instanceof Map.Entry)) {
+                return false;
+            }
+            final Map.Entry<?, ?> other = (Map.Entry<?, ?>) obj;
+            return compare(getKey(), other.getKey()) && compare(getValue(), other.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            final V value = getValue();
+            return getKey().hashCode() ^ (value != null ? value.hashCode() : 0);
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+
+    /**
+     * An iterator over the entry nodes from a first node up to, but not
+     * including, an end node.
+     */
+    private abstract class NodeIterator<E> implements Iterator<E> {
+
+        private final Node<V> end;
+
+        private Node<V> next;
+
+        private Node<V> current;
+
+        private int expectedModCount = modCount;
+
+        NodeIterator(final Node<V> first, final Node<V> end) {
+            this.end = end;
+            this.next = first != end ? first : null;
+        }
+
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        Node<V> nextNode() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            current = next;
+            next = nextEntry(current);
+            if (next == end) {
+                next = null;
+            }
+            return current;
+        }
+
+        public void remove() {
+            if (current == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            removeNode(current);
+            current = null;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * An iterator over the entries that keeps the key of a removed entry.
+     */
+    private final class EntryIterator extends NodeIterator<Map.Entry<String, V>> {
+
+        private NodeEntry entry;
+
+        EntryIterator(final Node<V> first, final Node<V> end) {
+            super(first, end);
+        }
+
+        public Map.Entry<String, V> next() {
+            entry = new NodeEntry(nextNode());
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            if (entry != null) {
+                entry.getKey(); // the labels of a removed node may be reused
+            }
+            super.remove();
+            entry = null;
+        }
+    }
+
+    /**
+     * The entry set of the trie or of a {@link RangeMap}.
+     */
+    private final class EntrySet extends AbstractSet<Map.Entry<String, V>> {
+
+        /** The range, null for the whole trie */
+        private final RangeMap range;
+
+        EntrySet(final RangeMap range) {
+            this.range = range;
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, V>> iterator() {
+            if (range == null) {
+                return new EntryIterator(firstEntry(root), null);
+            }
+            return range.iterator();
+        }
+
+        @Override
+        public int size() {
+            return range == null ? size : range.size();
+        }
+
+        @Override
+        public boolean contains(final Object o) {
+            return getNode(o) != null;
+        }
+
+        @Override
+        public boolean remove(final Object o) {
+            final Node<V> node = getNode(o);
+            if (node == null) {
+                return false;
+            }
+            removeNode(node);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            if (range == null) {
+                RadixTrie.this.clear();
+            } else {
+                super.clear();
+            }
+        }
+
+        /**
+         * Returns the node of the given entry if it is in this set.
+         */
+        private Node<V> getNode(final Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return null;
+            }
+            final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            if (range != null && !range.inRange(entry.getKey())) {
+                return null;
+            }
+            final Node<V> node = getEntryNode(entry.getKey());
+            return node != null && compare(node.value, entry.getValue()) ? node : null;
+        }
+    }
+
+    /**
+     * A view of the keys within a range and/or with a prefix. The range
+     * includes the from key and excludes the to key.
+     */
+    private final class RangeMap extends AbstractMap<String, V> implements SortedMap<String, V> {
+
+        /** The prefix of all keys, or null */
+        private final String prefix;
+
+        /** The lowest key, or null */
+        private final String fromKey;
+
+        /** The key above all keys, or null */
+        private final String toKey;
+
+        private transient volatile Set<Map.Entry<String, V>> entrySet;
+
+        RangeMap(final String prefix, final String fromKey, final String toKey) {
+            this.prefix = prefix;
+            this.fromKey = fromKey;
+            this.toKey = toKey;
+        }
+
+        /**
+         * Checks whether the given key is within this view.
+         */
+        boolean inRange(final Object key) {
+            if (!(key instanceof String)) {
+                return false;
+            }
+            final String string = (String) key;
+            return (prefix == null || string.startsWith(prefix))
+                    && (fromKey == null || string.compareTo(fromKey) >= 0)
+                    && (toKey == null || string.compareTo(toKey) < 0);
+        }
+
+        /**
+         * Checks whether the given key may bound a view of this view.
+         */
+        private boolean inRange2(final String key) {
+            return (prefix == null || key.startsWith(prefix))
+                    && (fromKey == null || key.compareTo(fromKey) >= 0)
+                    && (toKey == null || key.compareTo(toKey) <= 0);
+        }
+
+        /**
+         * Returns the first node of the view, which may be at or after
+         * {@link #end()} if the view is empty.
+         */
+        private Node<V> first() {
+            String lower = fromKey;
+            if (prefix != null && (lower == null || lower.compareTo(prefix) < 0)) {
+                lower = prefix;
+            }
+            return lower != null ? ceilingEntry(lower) : firstEntry(root);
+        }
+
+        /**
+         * Returns the first node after the view, or null.
+         */
+        private Node<V> end() {
+            Node<V> end = null;
+            if (prefix != null) {
+                final Node<V> node = prefixNode(prefix);
+                end = node != null ? nextSubtree(node) : ceilingEntry(prefix);
+            }
+            if (toKey != null) {
+                final Node<V> node = ceilingEntry(toKey);
+                if (end == null || node != null && keyOf(node).compareTo(keyOf(end)) < 0) {
+                    end = node;
+                }
+            }
+            return end;
+        }
+
+        /**
+         * Returns an iterator over the entries of this view.
+         */
+        Iterator<Map.Entry<String, V>> iterator() {
+            Node<V> first = first();
+            final Node<V> end = end();
+            if (first != null && end != null && keyOf(first).compareTo(keyOf(end)) > 0) {
+                first = end;
+            }
+            return new EntryIterator(first, end);
+        }
+
+        public Comparator<? super String> comparator() {
+            return null;
+        }
+
+        @Override
+        public Set<Map.Entry<String, V>> entrySet() {
+            if (entrySet == null) {
+                entrySet = new EntrySet(this);
+            }
+            return entrySet;
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (final Iterator<Map.Entry<String, V>> it = iterator(); it.hasNext(); it.next()) {
+                size++;
+            }
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return !iterator().hasNext();
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return inRange(key) && RadixTrie.this.containsKey(key);
+        }
+
+        @Override
+        public V get(final Object key) {
+            return inRange(key) ? RadixTrie.this.get(key) : null;
+        }
+
+        @Override
+        public V put(final String key, final V value) {
+            if (!inRange(key)) {
+                throw new IllegalArgumentException("Key is out of range: " + key);
+            }
+            return RadixTrie.this.put(key, value);
+        }
+
+        @Override
+        public V remove(final Object key) {
+            return inRange(key) ? RadixTrie.this.remove(key) : null;
+        }
+
+        public String firstKey() {
+            final Iterator<Map.Entry<String, V>> iterator = iterator();
+            if (!iterator.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return iterator.next().getKey();
+        }
+
+        public String lastKey() {
+            final Node<V> end = end();
+            final Node<V> last = end != null ? previousEntry(end) : lastEntry(root);
+            if (last == null) {
+                throw new NoSuchElementException();
+            }
+            final String key = keyOf(last);
+            if (!inRange(key)) {
+                throw new NoSuchElementException();
+            }
+            return key;
+        }
+
+        public SortedMap<String, V> subMap(final String fromKey, final String toKey) {
+            if (!inRange2(checkKey(fromKey))) {
+                throw new IllegalArgumentException("FromKey is out of range: " + fromKey);
+            }
+            if (!inRange2(checkKey(toKey))) {
+                throw new IllegalArgumentException("ToKey is out of range: " + toKey);
+            }
+            if (fromKey.compareTo(toKey) > 0) {
+                throw new IllegalArgumentException("FromKey is greater than toKey: " + fromKey + ", " + toKey);
+            }
+            return new RangeMap(prefix, fromKey, toKey);
+        }
+
+        public SortedMap<String, V> headMap(final String toKey) {
+            if (!inRange2(checkKey(toKey))) {
+                throw new IllegalArgumentException("ToKey is out of range: " + toKey);
+            }
+            return new RangeMap(prefix, fromKey, toKey);
+        }
+
+        public SortedMap<String, V> tailMap(final String fromKey) {
+            if (!inRange2(checkKey(fromKey))) {
+                throw new IllegalArgumentException("FromKey is out of range: " + fromKey);
+            }
+            return new RangeMap(prefix, fromKey, toKey);
+        }
+    }
+}
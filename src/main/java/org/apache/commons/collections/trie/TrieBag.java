@@ -0,0 +1,510 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.trie;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+
+import org.apache.commons.collections.Bag;
+import org.apache.commons.collections.SortedBag;
+import org.apache.commons.collections.bag.AbstractBag;
+import org.apache.commons.collections.set.UnmodifiableSet;
+
+/**
+ * A {@link SortedBag} that is backed by a {@link PatriciaTrie}.
+ * <p>
+ * The count of an element is kept in the trie entry of the element itself,
+ * so unlike {@link org.apache.commons.collections.bag.TreeBag TreeBag} the bag
+ * does not need a separate counter object per element. Besides the bag
+ * operations it offers the prefix views of the trie through
+ * {@link #getPrefixedBy(Object)} and its variants and counts the occurrences
+ * of all elements with a prefix through {@link #prefixCount(Object)}.
+ * <p>
+ * The elements are ordered by the {@link KeyAnalyzer} of the bag, which is
+ * also its {@link #comparator()}. The bag does not accept <code>null</code>
+ * elements.
+ * <p>
+ * A {@link Bag} stores each object in the collection together with a count
+ * of occurrences. Extra methods on the interface allow multiple copies of an
+ * object to be added or removed at once. It is important to read the interface
+ * javadoc carefully as several methods violate the {@link Collection}
+ * interface specification.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @param <E> the type of the elements in the bag
+ * @see TrieSet
+ * @since 4.0
+ * @version $Id$
+ */
+public class TrieBag<E> extends AbstractBag<E> implements SortedBag<E>, Serializable {
+
+    private static final long serialVersionUID = 6148431796549011352L;
+
+    /** The trie holding the elements as keys and the counts in its entries */
+    private final CountingTrie<E> trie;
+
+    /** The total number of occurrences */
+    private int size;
+
+    /** The modification count */
+    private transient int modCount;
+
+    /** The unique set view */
+    private transient Set<E> uniqueSet;
+
+    /**
+     * Constructs an empty bag that uses the given {@link KeyAnalyzer}.
+     *
+     * @param keyAnalyzer  the key analyzer of the elements
+     * @throws NullPointerException if the key analyzer is null
+     */
+    public TrieBag(final KeyAnalyzer<? super E> keyAnalyzer) {
+        trie = new CountingTrie<E>(keyAnalyzer);
+    }
+
+    /**
+     * Constructs a bag that uses the given {@link KeyAnalyzer} and holds the
+     * elements of the given collection.
+     *
+     * @param keyAnalyzer  the key analyzer of the elements
+     * @param coll  the collection to copy into the bag
+     * @throws NullPointerException if the key analyzer or an element is null
+     */
+    public TrieBag(final KeyAnalyzer<? super E> keyAnalyzer, final Collection<? extends E> coll) {
+        this(keyAnalyzer);
+        addAll(coll);
+    }
+
+    /**
+     * Returns the {@link KeyAnalyzer} of this bag.
+     *
+     * @return the key analyzer
+     */
+    public KeyAnalyzer<? super E> getKeyAnalyzer() {
+        return trie.getKeyAnalyzer();
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    public int getCount(final Object object) {
+        final CountEntry<E> entry = trie.getEntry(object);
+        return entry != null ? entry.count : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains(final Object object) {
+        return trie.getEntry(object) != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException if the element is null
+     */
+    @Override
+    public boolean add(final E object) {
+        return add(object, 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException if the element is null
+     */
+    public boolean add(final E object, final int nCopies) {
+        modCount++;
+        if (nCopies > 0) {
+            size += nCopies;
+            final CountEntry<E> entry = trie.getEntry(object);
+            if (entry == null) {
+                trie.put(object, null);
+                trie.getEntry(object).count = nCopies;
+                return true;
+            }
+            entry.count += nCopies;
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove(final Object object) {
+        final CountEntry<E> entry = trie.getEntry(object);
+        if (entry == null) {
+            return false;
+        }
+        modCount++;
+        size -= entry.count;
+        trie.removeEntry(entry);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean remove(final Object object, final int nCopies) {
+        final CountEntry<E> entry = trie.getEntry(object);
+        if (entry == null || nCopies <= 0) {
+            return false;
+        }
+        modCount++;
+        if (nCopies < entry.count) {
+            entry.count -= nCopies;
+            size -= nCopies;
+        } else {
+            size -= entry.count;
+            trie.removeEntry(entry);
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        modCount++;
+        trie.clear();
+        size = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new BagIterator(trie.entrySet().iterator());
+    }
+
+    /**
+     * Returns an unmodifiable view of the unique elements of this bag.
+     *
+     * @return the set of unique elements in this bag
+     */
+    public Set<E> uniqueSet() {
+        if (uniqueSet == null) {
+            uniqueSet = UnmodifiableSet.<E> unmodifiableSet(trie.keySet());
+        }
+        return uniqueSet;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns the {@link KeyAnalyzer} of this bag.
+     *
+     * @return the key analyzer
+     */
+    public Comparator<? super E> comparator() {
+        return trie.comparator();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public E first() {
+        if (trie.isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return trie.firstKey();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public E last() {
+        if (trie.isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return trie.lastKey();
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns a view of all elements that are prefixed by the given key.
+     *
+     * @param key  the prefix
+     * @return a view of the elements with the prefix
+     * @see PatriciaTrie#getPrefixedBy(Object)
+     */
+    public SortedBag<E> getPrefixedBy(final E key) {
+        return getPrefixedByBits(key, trie.lengthInBits(key));
+    }
+
+    /**
+     * Returns a view of all elements that are prefixed by the first
+     * <code>length</code> elements of the given key.
+     *
+     * @param key  the key that holds the prefix
+     * @param length  the length of the prefix
+     * @return a view of the elements with the prefix
+     * @see PatriciaTrie#getPrefixedBy(Object, int)
+     */
+    public SortedBag<E> getPrefixedBy(final E key, final int length) {
+        return getPrefixedByBits(key, length * trie.bitsPerElement());
+    }
+
+    /**
+     * Returns a view of all elements that are prefixed by the first
+     * <code>lengthInBits</code> bits of the given key.
+     *
+     * @param key  the key that holds the prefix
+     * @param lengthInBits  the number of significant key bits
+     * @return a view of the elements with the prefix
+     * @see PatriciaTrie#getPrefixedByBits(Object, int)
+     */
+    public SortedBag<E> getPrefixedByBits(final E key, final int lengthInBits) {
+        if (lengthInBits == 0) {
+            return this;
+        }
+        return new PrefixBag(key, lengthInBits, trie.getPrefixedByBits(key, lengthInBits));
+    }
+
+    /**
+     * Counts the occurrences of all elements that are prefixed by the given
+     * key.
+     *
+     * @param key  the prefix
+     * @return the number of occurrences of the elements with the prefix
+     */
+    public int prefixCount(final E key) {
+        return getPrefixedBy(key).size();
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * A {@link PatriciaTrie} whose entries hold a count.
+     */
+    private static class CountingTrie<E> extends PatriciaTrie<E, Object> {
+
+        private static final long serialVersionUID = -7211519358131713462L;
+
+        CountingTrie(final KeyAnalyzer<? super E> keyAnalyzer) {
+            super(keyAnalyzer);
+        }
+
+        @Override
+        CountEntry<E> createEntry(final E key, final Object value, final int bitIndex) {
+            return new CountEntry<E>(key, bitIndex);
+        }
+
+        @Override
+        CountEntry<E> getEntry(final Object key) {
+            return (CountEntry<E>) super.getEntry(key);
+        }
+    }
+
+    /**
+     * A trie entry with the number of occurrences of its key.
+     */
+    private static class CountEntry<E> extends PatriciaTrieBase.TrieEntry<E, Object> {
+
+        private static final long serialVersionUID = 2391709418325532549L;
+
+        /** The number of occurrences */
+        int count;
+
+        CountEntry(final E key, final int bitIndex) {
+            super(key, null, bitIndex);
+        }
+    }
+
+    /**
+     * An iterator that returns each element as often as it occurs.
+     */
+    private class BagIterator implements Iterator<E> {
+
+        private final Iterator<Map.Entry<E, Object>> entryIterator;
+
+        private final int mods = modCount;
+
+        private CountEntry<E> current;
+
+        private int itemCount;
+
+        private boolean canRemove;
+
+        BagIterator(final Iterator<Map.Entry<E, Object>> entryIterator) {
+            this.entryIterator = entryIterator;
+        }
+
+        public boolean hasNext() {
+            return itemCount > 0 || entryIterator.hasNext();
+        }
+
+        public E next() {
+            if (modCount != mods) {
+                throw new ConcurrentModificationException();
+            }
+            if (itemCount == 0) {
+                current = (CountEntry<E>) entryIterator.next();
+                itemCount = current.count;
+            }
+            canRemove = true;
+            itemCount--;
+            return current.getKey();
+        }
+
+        public void remove() {
+            if (modCount != mods) {
+                throw new ConcurrentModificationException();
+            }
+            if (!canRemove) {
+                throw new IllegalStateException();
+            }
+            if (current.count > 1) {
+                current.count--;
+            } else {
+                entryIterator.remove();
+            }
+            size--;
+            canRemove = false;
+        }
+    }
+
+    /**
+     * A view of the elements of the bag with a prefix.
+     */
+    private class PrefixBag extends AbstractBag<E> implements SortedBag<E> {
+
+        private final E prefix;
+
+        private final int lengthInBits;
+
+        private final SortedMap<E, Object> map;
+
+        PrefixBag(final E prefix, final int lengthInBits, final SortedMap<E, Object> map) {
+            this.prefix = prefix;
+            this.lengthInBits = lengthInBits;
+            this.map = map;
+        }
+
+        /**
+         * Checks whether the given element has the prefix of this view.
+         */
+        private boolean inRange(final Object object) {
+            return object != null
+                && trie.getKeyAnalyzer().isPrefix(prefix, 0, lengthInBits, trie.castKey(object));
+        }
+
+        public int getCount(final Object object) {
+            return inRange(object) ? TrieBag.this.getCount(object) : 0;
+        }
+
+        @Override
+        public int size() {
+            int count = 0;
+            for (final Map.Entry<E, Object> entry : map.entrySet()) {
+                count += ((CountEntry<E>) entry).count;
+            }
+            return count;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return map.isEmpty();
+        }
+
+        @Override
+        public boolean contains(final Object object) {
+            return inRange(object) && TrieBag.this.contains(object);
+        }
+
+        @Override
+        public boolean add(final E object) {
+            return add(object, 1);
+        }
+
+        public boolean add(final E object, final int nCopies) {
+            if (!inRange(object)) {
+                throw new IllegalArgumentException("Key is out of range: " + object);
+            }
+            return TrieBag.this.add(object, nCopies);
+        }
+
+        @Override
+        public boolean remove(final Object object) {
+            return inRange(object) && TrieBag.this.remove(object);
+        }
+
+        public boolean remove(final Object object, final int nCopies) {
+            return inRange(object) && TrieBag.this.remove(object, nCopies);
+        }
+
+        @Override
+        public void clear() {
+            final Iterator<Map.Entry<E, Object>> it = map.entrySet().iterator();
+            while (it.hasNext()) {
+                size -= ((CountEntry<E>) it.next()).count;
+                it.remove();
+            }
+            modCount++;
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return new BagIterator(map.entrySet().iterator());
+        }
+
+        public Set<E> uniqueSet() {
+            return UnmodifiableSet.<E> unmodifiableSet(map.keySet());
+        }
+
+        public Comparator<? super E> comparator() {
+            return map.comparator();
+        }
+
+        public E first() {
+            return map.firstKey();
+        }
+
+        public E last() {
+            return map.lastKey();
+        }
+
+    }
+}
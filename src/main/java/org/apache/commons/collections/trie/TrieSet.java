@@ -0,0 +1,337 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.trie;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+/**
+ * A {@link SortedSet} that is backed by a {@link PatriciaTrie}.
+ * <p>
+ * The elements are the keys of the trie, whose values are always
+ * <code>null</code>. The trie nodes still have a value field, so the set
+ * needs as much memory as a {@link PatriciaTrie} holding the same keys.
+ * In addition to the sorted set operations the set offers the prefix views
+ * of the trie through {@link #getPrefixedBy(Object)} and its variants and
+ * counts the elements with a prefix through {@link #prefixCount(Object)}.
+ * <p>
+ * The elements are ordered by the {@link KeyAnalyzer} of the set, which is
+ * also its {@link #comparator()}. The set does not accept <code>null</code>
+ * elements.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @param <E> the type of the elements in the set
+ * @see TrieBag
+ * @since 4.0
+ * @version $Id$
+ */
+public class TrieSet<E> extends AbstractSet<E> implements SortedSet<E>, Serializable {
+
+    private static final long serialVersionUID = -1581364816437512383L;
+
+    /** The trie holding the elements as keys */
+    private final PatriciaTrie<E, Object> trie;
+
+    /**
+     * Constructs an empty set that uses the given {@link KeyAnalyzer}.
+     *
+     * @param keyAnalyzer  the key analyzer of the elements
+     * @throws NullPointerException if the key analyzer is null
+     */
+    public TrieSet(final KeyAnalyzer<? super E> keyAnalyzer) {
+        trie = new PatriciaTrie<E, Object>(keyAnalyzer);
+    }
+
+    /**
+     * Constructs a set that uses the given {@link KeyAnalyzer} and holds the
+     * elements of the given collection.
+     *
+     * @param keyAnalyzer  the key analyzer of the elements
+     * @param coll  the collection to copy into the set
+     * @throws NullPointerException if the key analyzer or an element is null
+     */
+    public TrieSet(final KeyAnalyzer<? super E> keyAnalyzer, final Collection<? extends E> coll) {
+        this(keyAnalyzer);
+        addAll(coll);
+    }
+
+    /**
+     * Returns the {@link KeyAnalyzer} of this set.
+     *
+     * @return the key analyzer
+     */
+    public KeyAnalyzer<? super E> getKeyAnalyzer() {
+        return trie.getKeyAnalyzer();
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return trie.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty() {
+        return trie.isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains(final Object object) {
+        return trie.containsKey(object);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException if the element is null
+     */
+    @Override
+    public boolean add(final E object) {
+        final int size = trie.size();
+        trie.put(object, null);
+        return trie.size() != size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove(final Object object) {
+        final PatriciaTrieBase.TrieEntry<E, Object> entry = trie.getEntry(object);
+        if (entry == null) {
+            return false;
+        }
+        trie.removeEntry(entry);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        trie.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return trie.keySet().iterator();
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns the {@link KeyAnalyzer} of this set.
+     *
+     * @return the key analyzer
+     */
+    public Comparator<? super E> comparator() {
+        return trie.comparator();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public E first() {
+        if (trie.isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return trie.firstKey();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public E last() {
+        if (trie.isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return trie.lastKey();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SortedSet<E> subSet(final E fromElement, final E toElement) {
+        return new KeySet<E>(trie.subMap(fromElement, toElement));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SortedSet<E> headSet(final E toElement) {
+        return new KeySet<E>(trie.headMap(toElement));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SortedSet<E> tailSet(final E fromElement) {
+        return new KeySet<E>(trie.tailMap(fromElement));
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns a view of all elements that are prefixed by the given key.
+     *
+     * @param key  the prefix
+     * @return a view of the elements with the prefix
+     * @see PatriciaTrie#getPrefixedBy(Object)
+     */
+    public SortedSet<E> getPrefixedBy(final E key) {
+        return new KeySet<E>(trie.getPrefixedBy(key));
+    }
+
+    /**
+     * Returns a view of all elements that are prefixed by the first
+     * <code>length</code> elements of the given key.
+     *
+     * @param key  the key that holds the prefix
+     * @param length  the length of the prefix
+     * @return a view of the elements with the prefix
+     * @see PatriciaTrie#getPrefixedBy(Object, int)
+     */
+    public SortedSet<E> getPrefixedBy(final E key, final int length) {
+        return new KeySet<E>(trie.getPrefixedBy(key, length));
+    }
+
+    /**
+     * Returns a view of all elements that are prefixed by the first
+     * <code>lengthInBits</code> bits of the given key.
+     *
+     * @param key  the key that holds the prefix
+     * @param lengthInBits  the number of significant key bits
+     * @return a view of the elements with the prefix
+     * @see PatriciaTrie#getPrefixedByBits(Object, int)
+     */
+    public SortedSet<E> getPrefixedByBits(final E key, final int lengthInBits) {
+        return new KeySet<E>(trie.getPrefixedByBits(key, lengthInBits));
+    }
+
+    /**
+     * Counts the elements that are prefixed by the given key.
+     * <p>
+     * The elements with the prefix are visited on each call. Callers that
+     * count the same prefix repeatedly should keep the view returned by
+     * {@link #getPrefixedBy(Object)}, which caches its size until the set
+     * changes.
+     *
+     * @param key  the prefix
+     * @return the number of elements with the prefix
+     */
+    public int prefixCount(final E key) {
+        return trie.getPrefixedBy(key).size();
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * A {@link SortedSet} view of the keys of a {@link SortedMap}.
+     */
+    static class KeySet<E> extends AbstractSet<E> implements SortedSet<E> {
+
+        private final SortedMap<E, Object> map;
+
+        KeySet(final SortedMap<E, Object> map) {
+            this.map = map;
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return map.isEmpty();
+        }
+
+        @Override
+        public boolean contains(final Object object) {
+            return map.containsKey(object);
+        }
+
+        @Override
+        public boolean add(final E object) {
+            if (map.containsKey(object)) {
+                return false;
+            }
+            map.put(object, null);
+            return true;
+        }
+
+        @Override
+        public boolean remove(final Object object) {
+            if (!map.containsKey(object)) {
+                return false;
+            }
+            map.remove(object);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return map.keySet().iterator();
+        }
+
+        public Comparator<? super E> comparator() {
+            return map.comparator();
+        }
+
+        public E first() {
+            return map.firstKey();
+        }
+
+        public E last() {
+            return map.lastKey();
+        }
+
+        public SortedSet<E> subSet(final E fromElement, final E toElement) {
+            return new KeySet<E>(map.subMap(fromElement, toElement));
+        }
+
+        public SortedSet<E> headSet(final E toElement) {
+            return new KeySet<E>(map.headMap(toElement));
+        }
+
+        public SortedSet<E> tailSet(final E fromElement) {
+            return new KeySet<E>(map.tailMap(fromElement));
+        }
+    }
+}
@@ -25,6 +25,11 @@
  * The following implementations are provided in the package:
  * <ul>
  *   <li>PatriciaTrie - an implementation of a PATRICIA trie
+ *   <li>LongTrie - a crit-bit trie with primitive long keys
+ *   <li>IntTrie - a crit-bit trie with primitive int keys
+ *   <li>RadixTrie - a compressed radix trie for String keys with shared label storage
+ *   <li>TrieSet - a sorted set backed by a PATRICIA trie
+ *   <li>TrieBag - a sorted bag backed by a PATRICIA trie
  * </ul>
  * <p>
  * The following decorators are provided:
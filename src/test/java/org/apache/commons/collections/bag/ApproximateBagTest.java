@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.bag;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Test;
+
+import org.apache.commons.collections.AbstractObjectTest;
+import org.apache.commons.collections.Bag;
+import org.apache.commons.collections.BulkTest;
+
+/**
+ * Test class for {@link ApproximateBag}. The bag cannot remove elements, so
+ * the {@link AbstractBagTest} cases do not apply.
+ *
+ * @version $Id$
+ */
+public class ApproximateBagTest<T> extends AbstractObjectTest {
+
+    public ApproximateBagTest(final String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return BulkTest.makeSuite(ApproximateBagTest.class);
+    }
+
+    @Override
+    public Bag<T> makeObject() {
+        return new ApproximateBag<T>();
+    }
+
+    @Override
+    public String getCompatibilityVersion() {
+        return "4";
+    }
+
+    @Override
+    protected boolean skipSerializedCanonicalTests() {
+        return true;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Adds a skewed stream of integers to a bag and to an exact bag.
+     */
+    private static void addStream(final Random random, final int count,
+            final Bag<Integer> bag, final Bag<Integer> exact) {
+        for (int i = 0; i < count; i++) {
+            // about half the stream is the ten heavy hitters, the rest is spread thin
+            final int value = random.nextBoolean() ? random.nextInt(10) : 10 + random.nextInt(100000);
+            bag.add(Integer.valueOf(value));
+            exact.add(Integer.valueOf(value));
+        }
+    }
+
+    public void testExactBelowCapacity() {
+        final ApproximateBag<String> bag = new ApproximateBag<String>(0.01, 0.01, 10);
+        bag.addAll(Arrays.asList("A", "A", "B", null, "C", "C", "C"));
+        bag.add("D", 5);
+        assertEquals(12, bag.size());
+        assertEquals(2, bag.getCount("A"));
+        assertEquals(1, bag.getCount(null));
+        assertEquals(3, bag.getCount("C"));
+        assertEquals(5, bag.getCount("D"));
+        assertEquals(0, bag.getCount("E"));
+        assertFalse(bag.contains("E"));
+        assertEquals(0, bag.getErrorBound());
+        assertEquals(Arrays.asList("D", "C", "A"), bag.getMostFrequent(3));
+
+        final HashBag<String> exact = new HashBag<String>(bag);
+        assertEquals(exact, bag);
+        assertEquals(bag, exact);
+        assertEquals(exact.hashCode(), bag.hashCode());
+    }
+
+    public void testErrorBounds() {
+        final ApproximateBag<Integer> bag = new ApproximateBag<Integer>(0.001, 0.01, 50);
+        final HashBag<Integer> exact = new HashBag<Integer>();
+        addStream(new Random(42), 200000, bag, exact);
+        assertEquals(exact.size(), bag.size());
+
+        final long bound = bag.getErrorBound();
+        assertTrue(bound > 0);
+        assertTrue(bound <= bag.size() / bag.getCapacity());
+        for (final Integer value : exact.uniqueSet()) {
+            final int count = bag.getCount(value);
+            assertTrue(count >= exact.getCount(value));
+            assertTrue(count <= exact.getCount(value) + bound);
+        }
+        for (int i = 0; i < 10; i++) {
+            assertTrue(bag.uniqueSet().contains(Integer.valueOf(i)));
+        }
+        assertEquals(10, bag.getMostFrequent(10).size());
+        for (final Integer value : bag.getMostFrequent(10)) {
+            assertTrue(value.intValue() < 10);
+        }
+    }
+
+    public void testMerge() {
+        final ApproximateBag<Integer> part1 = new ApproximateBag<Integer>(0.001, 0.01, 50);
+        final ApproximateBag<Integer> part2 = new ApproximateBag<Integer>(0.001, 0.01, 50);
+        final HashBag<Integer> exact = new HashBag<Integer>();
+        final Random random = new Random(7);
+        addStream(random, 50000, part1, exact);
+        addStream(random, 80000, part2, exact);
+
+        part1.merge(part2);
+        assertEquals(exact.size(), part1.size());
+        final long bound = part1.size() / part1.getCapacity();
+        for (final Integer value : exact.uniqueSet()) {
+            final int count = part1.getCount(value);
+            assertTrue(count >= exact.getCount(value));
+            assertTrue(count <= exact.getCount(value) + bound);
+        }
+        for (int i = 0; i < 10; i++) {
+            assertTrue(part1.uniqueSet().contains(Integer.valueOf(i)));
+        }
+        try {
+            part1.merge(new ApproximateBag<Integer>(0.01, 0.01, 50));
+            fail();
+        } catch (final IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    public void testRemoveNotSupported() {
+        final ApproximateBag<String> bag = new ApproximateBag<String>();
+        bag.add("A");
+        try {
+            bag.remove("A");
+            fail();
+        } catch (final UnsupportedOperationException ex) {
+            // expected
+        }
+        try {
+            bag.uniqueSet().remove("A");
+            fail();
+        } catch (final UnsupportedOperationException ex) {
+            // expected
+        }
+        bag.clear();
+        assertTrue(bag.isEmpty());
+        assertEquals(0, bag.getCount("A"));
+    }
+
+    public void testSerializedCounts() throws Exception {
+        final ApproximateBag<Integer> bag = new ApproximateBag<Integer>(0.01, 0.05, 20);
+        addStream(new Random(3), 10000, bag, new HashBag<Integer>());
+        @SuppressWarnings("unchecked")
+        final ApproximateBag<Integer> copy = (ApproximateBag<Integer>) serializeDeserialize(bag);
+        assertEquals(bag, copy);
+        assertEquals(bag.getMostFrequent(20), copy.getMostFrequent(20));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(bag.getCount(Integer.valueOf(i)), copy.getCount(Integer.valueOf(i)));
+        }
+    }
+
+}
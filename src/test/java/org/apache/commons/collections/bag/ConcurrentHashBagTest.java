@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.bag;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.Test;
+
+import org.apache.commons.collections.Bag;
+import org.apache.commons.collections.BulkTest;
+
+/**
+ * Extension of {@link AbstractBagTest} for exercising the {@link ConcurrentHashBag}
+ * implementation.
+ *
+ * @version $Id$
+ */
+public class ConcurrentHashBagTest<T> extends AbstractBagTest<T> {
+
+    public ConcurrentHashBagTest(final String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return BulkTest.makeSuite(ConcurrentHashBagTest.class);
+    }
+
+    @Override
+    public Bag<T> makeObject() {
+        return new ConcurrentHashBag<T>();
+    }
+
+    @Override
+    public String getCompatibilityVersion() {
+        return "4";
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * The iterators are weakly consistent rather than fail fast.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void testIteratorFail() {
+        final Bag<T> bag = makeObject();
+        bag.add((T) "A");
+        bag.add((T) "A");
+        bag.add((T) "B");
+        final Iterator<T> it = bag.iterator();
+        it.next();
+        bag.remove("A");
+        final List<T> rest = new ArrayList<T>();
+        while (it.hasNext()) {
+            rest.add(it.next());
+        }
+        assertFalse(rest.contains("A"));
+        assertTrue(rest.size() <= 1);
+    }
+
+    public void testNullElement() {
+        final Bag<String> bag = new ConcurrentHashBag<String>();
+        assertTrue(bag.add(null, 2));
+        assertFalse(bag.add(null));
+        assertEquals(3, bag.getCount(null));
+        assertTrue(bag.uniqueSet().contains(null));
+        assertEquals(null, bag.iterator().next());
+        assertTrue(bag.remove(null, 3));
+        assertFalse(bag.contains(null));
+        assertTrue(bag.isEmpty());
+    }
+
+    public void testConcurrentCounting() throws InterruptedException {
+        final ConcurrentHashBag<Integer> bag = new ConcurrentHashBag<Integer>(4);
+        final int threads = 8;
+        final int rounds = 20000;
+        final List<Thread> workers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            workers.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < rounds; i++) {
+                        final Integer value = Integer.valueOf((i + offset) % 10);
+                        bag.add(value, 3);
+                        bag.remove(value, 2);
+                        bag.add(Integer.valueOf(-1 - offset));
+                        bag.remove(Integer.valueOf(-1 - offset));
+                    }
+                }
+            });
+        }
+        for (final Thread worker : workers) {
+            worker.start();
+        }
+        for (final Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(threads * rounds, bag.size());
+        assertEquals(10, bag.uniqueSet().size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(threads * rounds / 10, bag.getCount(Integer.valueOf(i)));
+        }
+        assertEquals(0, bag.getCount(Integer.valueOf(-1)));
+    }
+
+//    public void testCreate() throws Exception {
+//        Bag bag = makeObject();
+//        writeExternalFormToDisk((Serializable) bag, "D:/dev/collections/data/test/ConcurrentHashBag.emptyCollection.version4.obj");
+//        bag = makeObject();
+//        bag.add("A");
+//        bag.add("A");
+//        bag.add("B");
+//        bag.add("B");
+//        bag.add("C");
+//        writeExternalFormToDisk((Serializable) bag, "D:/dev/collections/data/test/ConcurrentHashBag.fullCollection.version4.obj");
+//    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.bag;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.Test;
+
+import org.apache.commons.collections.Bag;
+import org.apache.commons.collections.BulkTest;
+
+/**
+ * Extension of {@link AbstractBagTest} for exercising the {@link OpenHashBag}
+ * implementation.
+ *
+ * @version $Id$
+ */
+public class OpenHashBagTest<T> extends AbstractBagTest<T> {
+
+    public OpenHashBagTest(final String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return BulkTest.makeSuite(OpenHashBagTest.class);
+    }
+
+    @Override
+    public Bag<T> makeObject() {
+        return new OpenHashBag<T>();
+    }
+
+    @Override
+    public String getCompatibilityVersion() {
+        return "4";
+    }
+
+    //-----------------------------------------------------------------------
+    public void testLongCounts() {
+        final OpenHashBag<String> bag = new OpenHashBag<String>();
+        bag.add("A", 3);
+        bag.add("B", Integer.MAX_VALUE);
+        assertEquals(Integer.MAX_VALUE, bag.size());
+        assertEquals(Integer.MAX_VALUE + 3L, bag.longSize());
+
+        bag.add("B", 10L);
+        assertEquals(Integer.MAX_VALUE, bag.getCount("B"));
+        assertEquals(Integer.MAX_VALUE + 10L, bag.getLongCount("B"));
+        assertEquals(3, bag.getCount("A"));
+
+        assertTrue(bag.remove("B", 20));
+        assertEquals(Integer.MAX_VALUE - 10L, bag.getLongCount("B"));
+        assertEquals(Integer.MAX_VALUE - 7L, bag.longSize());
+        assertEquals(Integer.MAX_VALUE - 7, bag.size());
+
+        final OpenHashBag<String> copy = new OpenHashBag<String>(bag);
+        assertEquals(bag, copy);
+        assertEquals(bag.longSize(), copy.longSize());
+    }
+
+    public void testAddAllAggregatesRuns() {
+        final OpenHashBag<String> bag = new OpenHashBag<String>();
+        final List<String> list = Arrays.asList("A", "A", "A", null, null, "B", "A", "A");
+        assertTrue(bag.addAll(list));
+        assertEquals(5, bag.getCount("A"));
+        assertEquals(2, bag.getCount(null));
+        assertEquals(1, bag.getCount("B"));
+        assertEquals(8, bag.size());
+        assertEquals(new HashBag<String>(list), bag);
+        assertFalse(bag.addAll(new ArrayList<String>()));
+
+        final HashBag<String> other = new HashBag<String>();
+        other.add("B", 4);
+        other.add("C", 2);
+        assertTrue(bag.addAll(other));
+        assertEquals(5, bag.getCount("B"));
+        assertEquals(2, bag.getCount("C"));
+        assertEquals(14, bag.size());
+    }
+
+    public void testRemovedSlotsAreReused() {
+        final OpenHashBag<Integer> bag = new OpenHashBag<Integer>();
+        final HashBag<Integer> expected = new HashBag<Integer>();
+        for (int round = 0; round < 50; round++) {
+            for (int i = 0; i < 100; i++) {
+                final Integer value = Integer.valueOf(round * 100 + i);
+                bag.add(value, i + 1);
+                expected.add(value, i + 1);
+            }
+            for (int i = 0; i < 100; i += 2) {
+                final Integer value = Integer.valueOf(round * 100 + i);
+                bag.remove(value);
+                expected.remove(value);
+            }
+            for (final Iterator<Integer> it = bag.uniqueSet().iterator(); it.hasNext();) {
+                if (it.next().intValue() % 3 == 0) {
+                    it.remove();
+                }
+            }
+            for (final Integer value : new ArrayList<Integer>(expected.uniqueSet())) {
+                if (value.intValue() % 3 == 0) {
+                    expected.remove(value);
+                }
+            }
+            assertEquals(expected, bag);
+        }
+        assertEquals(expected.uniqueSet(), bag.uniqueSet());
+        assertEquals(expected.hashCode(), bag.hashCode());
+    }
+
+    public void testIteratorRemoveDecrementsCount() {
+        final OpenHashBag<String> bag = new OpenHashBag<String>();
+        bag.add("A", 3);
+        bag.add("B", 2);
+        final Iterator<String> it = bag.iterator();
+        int removed = 0;
+        while (it.hasNext()) {
+            if ("A".equals(it.next()) && removed++ < 2) {
+                it.remove();
+            }
+        }
+        assertEquals(1, bag.getCount("A"));
+        assertEquals(2, bag.getCount("B"));
+        assertEquals(3, bag.size());
+    }
+
+//    public void testCreate() throws Exception {
+//        Bag bag = makeObject();
+//        writeExternalFormToDisk((Serializable) bag, "D:/dev/collections/data/test/OpenHashBag.emptyCollection.version4.obj");
+//        bag = makeObject();
+//        bag.add("A");
+//        bag.add("A");
+//        bag.add("B");
+//        bag.add("B");
+//        bag.add("C");
+//        writeExternalFormToDisk((Serializable) bag, "D:/dev/collections/data/test/OpenHashBag.fullCollection.version4.obj");
+//    }
+}
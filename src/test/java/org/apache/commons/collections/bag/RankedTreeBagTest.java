@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.bag;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.Test;
+
+import org.apache.commons.collections.Bag;
+import org.apache.commons.collections.BulkTest;
+import org.apache.commons.collections.SortedBag;
+
+/**
+ * Extension of {@link AbstractSortedBagTest} for exercising the {@link RankedTreeBag}
+ * implementation.
+ *
+ * @version $Id$
+ */
+public class RankedTreeBagTest<T> extends AbstractSortedBagTest<T> {
+
+    public RankedTreeBagTest(final String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return BulkTest.makeSuite(RankedTreeBagTest.class);
+    }
+
+    @Override
+    public SortedBag<T> makeObject() {
+        return new RankedTreeBag<T>();
+    }
+
+    @Override
+    public String getCompatibilityVersion() {
+        return "4";
+    }
+
+    //-----------------------------------------------------------------------
+    public void testNotComparable() {
+        final Bag<Object> bag = new RankedTreeBag<Object>();
+        try {
+            bag.add(new Object());
+            fail("IllegalArgumentException expected");
+        } catch (final IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testOrdering() {
+        final SortedBag<T> bag = makeObject();
+        bag.add((T) "C");
+        bag.add((T) "A");
+        bag.add((T) "B");
+        bag.add((T) "D");
+        bag.add((T) "A");
+        assertEquals("A", bag.toArray()[0]);
+        assertEquals("A", bag.toArray()[1]);
+        assertEquals("B", bag.toArray()[2]);
+        assertEquals("C", bag.toArray()[3]);
+        assertEquals("A", bag.first());
+        assertEquals("D", bag.last());
+        assertEquals("[2:A,1:B,1:C,1:D]", bag.toString());
+    }
+
+    public void testOrderStatistics() {
+        final RankedTreeBag<Integer> bag = new RankedTreeBag<Integer>();
+        final List<Integer> sorted = new ArrayList<Integer>();
+        final Random random = new Random(11);
+        for (int i = 0; i < 2000; i++) {
+            final Integer value = Integer.valueOf(random.nextInt(300));
+            final int copies = 1 + random.nextInt(3);
+            bag.add(value, copies);
+            for (int j = 0; j < copies; j++) {
+                sorted.add(value);
+            }
+            if (i % 3 == 0) {
+                final Integer removed = Integer.valueOf(random.nextInt(300));
+                if (bag.remove(removed, 2)) {
+                    sorted.remove(removed);
+                    sorted.remove(removed);
+                }
+            }
+        }
+        Collections.sort(sorted);
+        assertEquals(sorted.size(), bag.size());
+        assertEquals(sorted, new ArrayList<Integer>(bag));
+        for (int i = 0; i < sorted.size(); i += 7) {
+            assertEquals(sorted.get(i), bag.select(i));
+        }
+        for (int value = -1; value <= 300; value++) {
+            int less = 0;
+            while (less < sorted.size() && sorted.get(less).intValue() < value) {
+                less++;
+            }
+            assertEquals(less, bag.rank(Integer.valueOf(value)));
+        }
+        assertEquals(bag.rank(Integer.valueOf(200)) - bag.rank(Integer.valueOf(100)),
+                bag.count(Integer.valueOf(100), Integer.valueOf(200)));
+        assertEquals(0, bag.count(Integer.valueOf(5), Integer.valueOf(5)));
+        try {
+            bag.count(Integer.valueOf(6), Integer.valueOf(5));
+            fail();
+        } catch (final IllegalArgumentException ex) {
+            // expected
+        }
+        try {
+            bag.select(bag.size());
+            fail();
+        } catch (final IndexOutOfBoundsException ex) {
+            // expected
+        }
+    }
+
+    public void testPercentile() {
+        final RankedTreeBag<Integer> bag = new RankedTreeBag<Integer>();
+        try {
+            bag.percentile(50);
+            fail();
+        } catch (final NoSuchElementException ex) {
+            // expected
+        }
+        for (int i = 1; i <= 100; i++) {
+            bag.add(Integer.valueOf(i));
+        }
+        assertEquals(Integer.valueOf(1), bag.percentile(0));
+        assertEquals(Integer.valueOf(50), bag.percentile(50));
+        assertEquals(Integer.valueOf(99), bag.percentile(99));
+        assertEquals(Integer.valueOf(100), bag.percentile(99.5));
+        assertEquals(Integer.valueOf(100), bag.percentile(100));
+        bag.add(Integer.valueOf(1000), 100);
+        assertEquals(Integer.valueOf(100), bag.percentile(50));
+        assertEquals(Integer.valueOf(1000), bag.percentile(50.5));
+        try {
+            bag.percentile(101);
+            fail();
+        } catch (final IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    public void testIteratorRemoveAcrossRebalancing() {
+        final RankedTreeBag<Integer> bag = new RankedTreeBag<Integer>(Collections.reverseOrder());
+        for (int i = 0; i < 500; i++) {
+            bag.add(Integer.valueOf(i), 2);
+        }
+        int seen = 0;
+        for (final Iterator<Integer> it = bag.iterator(); it.hasNext();) {
+            final Integer value = it.next();
+            assertEquals(499 - seen / 2, value.intValue());
+            if (value.intValue() % 5 != 0) {
+                it.remove();
+            }
+            seen++;
+        }
+        assertEquals(1000, seen);
+        assertEquals(200, bag.size());
+        assertEquals(100, bag.uniqueSet().size());
+        assertEquals(Integer.valueOf(495), bag.first());
+        assertEquals(Integer.valueOf(0), bag.last());
+        assertEquals(4, bag.rank(Integer.valueOf(485)));
+    }
+
+    public void testUniqueSetView() {
+        final RankedTreeBag<String> bag = new RankedTreeBag<String>();
+        final Set<String> unique = bag.uniqueSet();
+        assertSame(unique, bag.uniqueSet());
+        bag.add("B", 3);
+        bag.add("A");
+        assertEquals(2, unique.size());
+        assertEquals("A", unique.iterator().next());
+        try {
+            unique.remove("A");
+            fail();
+        } catch (final UnsupportedOperationException ex) {}
+        final Iterator<String> it = unique.iterator();
+        it.next();
+        try {
+            it.remove();
+            fail();
+        } catch (final UnsupportedOperationException ex) {}
+        bag.remove("B");
+        assertEquals(1, unique.size());
+    }
+
+//    public void testCreate() throws Exception {
+//        Bag bag = makeObject();
+//        writeExternalFormToDisk((Serializable) bag, "D:/dev/collections/data/test/RankedTreeBag.emptyCollection.version4.obj");
+//        bag = makeObject();
+//        bag.add("A");
+//        bag.add("A");
+//        bag.add("B");
+//        bag.add("B");
+//        bag.add("C");
+//        writeExternalFormToDisk((Serializable) bag, "D:/dev/collections/data/test/RankedTreeBag.fullCollection.version4.obj");
+//    }
+}
@@ -476,6 +476,11 @@ public abstract class AbstractBidiMapTest<K, V> extends AbstractIterableMapTest<
             return main.isRemoveSupported();
         }
 
+        @Override
+        public boolean isFailFastExpected() {
+            return main.isFailFastExpected();
+        }
+
     }
 
     //-----------------------------------------------------------------------
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.bidimap;
+
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.Test;
+
+import org.apache.commons.collections.BulkTest;
+
+/**
+ * JUnit tests.
+ *
+ * @version $Id$
+ */
+public class ConcurrentHashBidiMapTest<K, V> extends AbstractBidiMapTest<K, V> {
+
+    public static Test suite() {
+        return BulkTest.makeSuite(ConcurrentHashBidiMapTest.class);
+    }
+
+    public ConcurrentHashBidiMapTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ConcurrentHashBidiMap<K, V> makeObject() {
+        return new ConcurrentHashBidiMap<K, V>();
+    }
+
+    /**
+     * Override to prevent infinite recursion of tests.
+     */
+    @Override
+    public String[] ignoredTests() {
+        return new String[] { "ConcurrentHashBidiMapTest.bulkTestInverseMap.bulkTestInverseMap" };
+    }
+
+    @Override
+    public boolean isAllowNullKey() {
+        return false;
+    }
+
+    @Override
+    public boolean isAllowNullValue() {
+        return false;
+    }
+
+    @Override
+    public boolean isFailFastExpected() {
+        return false;
+    }
+
+    @Override
+    public String getCompatibilityVersion() {
+        return "4";
+    }
+
+    //-----------------------------------------------------------------------
+    public void testConcurrentUpdatesKeepBothDirections() throws Exception {
+        final ConcurrentHashBidiMap<Integer, Integer> map = new ConcurrentHashBidiMap<Integer, Integer>(16, 4);
+        final Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            final int seed = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    final Random random = new Random(seed);
+                    for (int i = 0; i < 20000; i++) {
+                        final Integer key = Integer.valueOf(random.nextInt(200));
+                        final Integer value = Integer.valueOf(random.nextInt(200));
+                        switch (random.nextInt(4)) {
+                        case 0:
+                            map.remove(key);
+                            break;
+                        case 1:
+                            map.removeValue(value);
+                            break;
+                        case 2:
+                            map.inverseBidiMap().put(value, key);
+                            break;
+                        default:
+                            map.put(key, value);
+                            break;
+                        }
+                        map.getKey(value);
+                    }
+                }
+            };
+        }
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(map.size(), map.inverseBidiMap().size());
+        for (final Map.Entry<Integer, Integer> entry : map.entrySet()) {
+            assertEquals(entry.getKey(), map.getKey(entry.getValue()));
+        }
+        for (final Map.Entry<Integer, Integer> entry : map.inverseBidiMap().entrySet()) {
+            assertEquals(entry.getKey(), map.get(entry.getValue()));
+        }
+    }
+
+    public void testNullsRejected() {
+        final ConcurrentHashBidiMap<String, String> map = new ConcurrentHashBidiMap<String, String>();
+        try {
+            map.put("A", null);
+            fail();
+        } catch (final NullPointerException ex) {
+            // expected
+        }
+        assertNull(map.get(null));
+        assertNull(map.getKey(null));
+        assertNull(map.remove(null));
+        assertNull(map.removeValue(null));
+    }
+
+//    public void testCreate() throws Exception {
+//        resetEmpty();
+//        writeExternalFormToDisk((Serializable) map, "D:/dev/collections/data/test/ConcurrentHashBidiMap.emptyCollection.version4.obj");
+//        resetFull();
+//        writeExternalFormToDisk((Serializable) map, "D:/dev/collections/data/test/ConcurrentHashBidiMap.fullCollection.version4.obj");
+//    }
+}
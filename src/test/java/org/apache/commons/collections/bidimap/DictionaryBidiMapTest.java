@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.bidimap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Test;
+
+import org.apache.commons.collections.BidiMap;
+import org.apache.commons.collections.BulkTest;
+
+/**
+ * JUnit tests. The sample values are the codes the sample keys are given
+ * by encoding them in order.
+ *
+ * @version $Id$
+ */
+public class DictionaryBidiMapTest<K, V> extends AbstractBidiMapTest<K, V> {
+
+    public static Test suite() {
+        return BulkTest.makeSuite(DictionaryBidiMapTest.class);
+    }
+
+    public DictionaryBidiMapTest(final String testName) {
+        super(testName);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public BidiMap<K, V> makeObject() {
+        return (BidiMap<K, V>) new DictionaryBidiMap<K>();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public BidiMap<K, V> makeFullMap() {
+        final DictionaryBidiMap<K> map = new DictionaryBidiMap<K>();
+        for (final K key : getSampleKeys()) {
+            map.encode(key);
+        }
+        return (BidiMap<K, V>) map;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V[] getSampleValues() {
+        final Object[] codes = new Object[getSampleKeys().length];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = Integer.valueOf(i);
+        }
+        return (V[]) codes;
+    }
+
+    /**
+     * Override to prevent infinite recursion of tests.
+     */
+    @Override
+    public String[] ignoredTests() {
+        return new String[] { "DictionaryBidiMapTest.bulkTestInverseMap.bulkTestInverseMap" };
+    }
+
+    @Override
+    public boolean isAllowNullKey() {
+        return false;
+    }
+
+    @Override
+    public boolean isAllowNullValue() {
+        return false;
+    }
+
+    @Override
+    public boolean isPutAddSupported() {
+        return false;
+    }
+
+    @Override
+    public boolean isPutChangeSupported() {
+        return false;
+    }
+
+    @Override
+    public boolean isRemoveSupported() {
+        return false;
+    }
+
+    @Override
+    public String getCompatibilityVersion() {
+        return "4";
+    }
+
+    //-----------------------------------------------------------------------
+    public void testEncodeDecode() {
+        final DictionaryBidiMap<String> dictionary = new DictionaryBidiMap<String>(0);
+        final List<String> column = new ArrayList<String>();
+        for (int i = 0; i < 5000; i++) {
+            column.add("value" + (i * 7919 % 1000));
+        }
+        final int[] codes = new int[column.size()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = dictionary.encode(column.get(i));
+        }
+        assertEquals(1000, dictionary.size());
+        for (int i = 0; i < codes.length; i++) {
+            assertEquals(column.get(i), dictionary.getKey(codes[i]));
+            assertEquals(codes[i], dictionary.indexOf(column.get(i)));
+        }
+        // codes are dense and given in order of first appearance
+        assertEquals(0, dictionary.indexOf("value0"));
+        assertEquals(1, dictionary.indexOf("value919"));
+        assertEquals(-1, dictionary.indexOf("absent"));
+        assertEquals(-1, dictionary.indexOf(null));
+        assertEquals(Integer.valueOf(1), dictionary.get("value919"));
+        assertEquals("value919", dictionary.getKey(Integer.valueOf(1)));
+        assertEquals("value919", dictionary.inverseBidiMap().get(Integer.valueOf(1)));
+        assertNull(dictionary.getKey(Integer.valueOf(1000)));
+        try {
+            dictionary.getKey(1000);
+            fail();
+        } catch (final IndexOutOfBoundsException ex) {
+            // expected
+        }
+        try {
+            dictionary.encode(null);
+            fail();
+        } catch (final NullPointerException ex) {
+            // expected
+        }
+    }
+
+    public void testSerializedCodes() throws Exception {
+        final DictionaryBidiMap<String> dictionary = new DictionaryBidiMap<String>();
+        for (final String key : Arrays.asList("C", "A", "B", "A")) {
+            dictionary.encode(key);
+        }
+        @SuppressWarnings("unchecked")
+        final DictionaryBidiMap<String> copy = (DictionaryBidiMap<String>) serializeDeserialize(dictionary);
+        assertEquals(dictionary, copy);
+        assertEquals("C", copy.getKey(0));
+        assertEquals(2, copy.indexOf("B"));
+        assertEquals(3, copy.encode("D"));
+    }
+
+//    public void testCreate() throws Exception {
+//        resetEmpty();
+//        writeExternalFormToDisk((Serializable) map, "D:/dev/collections/data/test/DictionaryBidiMap.emptyCollection.version4.obj");
+//        resetFull();
+//        writeExternalFormToDisk((Serializable) map, "D:/dev/collections/data/test/DictionaryBidiMap.fullCollection.version4.obj");
+//    }
+}
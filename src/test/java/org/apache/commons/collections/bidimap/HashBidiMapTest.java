@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.bidimap;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+
+import junit.framework.Test;
+import org.apache.commons.collections.BulkTest;
+import org.apache.commons.collections.MapIterator;
+
+/**
+ * JUnit tests.
+ *
+ * @version $Id$
+ */
+public class HashBidiMapTest<K, V> extends AbstractBidiMapTest<K, V> {
+
+    public static Test suite() {
+        return BulkTest.makeSuite(HashBidiMapTest.class);
+    }
+
+    public HashBidiMapTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public HashBidiMap<K, V> makeObject() {
+        return new HashBidiMap<K, V>();
+    }
+
+    /**
+     * Override to prevent infinite recursion of tests.
+     */
+    @Override
+    public String[] ignoredTests() {
+        return new String[] { "HashBidiMapTest.bulkTestInverseMap.bulkTestInverseMap" };
+    }
+
+    @Override
+    public String getCompatibilityVersion() {
+        return "4";
+    }
+
+    //-----------------------------------------------------------------------
+    public void testGrowKeepsBothDirections() {
+        final HashBidiMap<Integer, String> map = new HashBidiMap<Integer, String>(0);
+        for (int i = 0; i < 1000; i++) {
+            map.put(Integer.valueOf(i), "v" + i);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            assertEquals(Integer.valueOf(i), map.removeValue("v" + i));
+        }
+        assertEquals(500, map.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 2 == 1 ? "v" + i : null, map.get(Integer.valueOf(i)));
+            assertEquals(i % 2 == 1 ? Integer.valueOf(i) : null, map.getKey("v" + i));
+        }
+        // moving a value to another key drops the old mapping of the key and of the value
+        assertEquals("v3", map.put(Integer.valueOf(3), "v5"));
+        assertEquals(499, map.size());
+        assertFalse(map.containsKey(Integer.valueOf(5)));
+        assertFalse(map.containsValue("v3"));
+        assertEquals(Integer.valueOf(7), map.inverseBidiMap().put("v7", Integer.valueOf(9)));
+        assertEquals(498, map.size());
+        assertEquals("v7", map.get(Integer.valueOf(9)));
+        assertNull(map.get(Integer.valueOf(7)));
+    }
+
+    public void testReplacingValueFailsFast() {
+        final HashBidiMap<Integer, String> map = new HashBidiMap<Integer, String>();
+        for (int i = 0; i < 100; i++) {
+            map.put(Integer.valueOf(i), "v" + i);
+        }
+        final MapIterator<String, Integer> inverse = map.inverseBidiMap().mapIterator();
+        final Iterator<String> values = map.values().iterator();
+        inverse.next();
+        values.next();
+        // moves the node to the bucket of the new value without changing the size
+        map.put(Integer.valueOf(50), "replaced");
+        try {
+            inverse.next();
+            fail();
+        } catch (final ConcurrentModificationException ex) {}
+        try {
+            values.next();
+            fail();
+        } catch (final ConcurrentModificationException ex) {}
+
+        final Iterator<String> others = map.values().iterator();
+        others.next();
+        final Iterator<Map.Entry<Integer, String>> entries = map.entrySet().iterator();
+        int count = 0;
+        while (entries.hasNext()) {
+            final Map.Entry<Integer, String> entry = entries.next();
+            entry.setValue("w" + entry.getKey());
+            count++;
+        }
+        assertEquals(100, count);
+        assertEquals(Integer.valueOf(50), map.getKey("w50"));
+        try {
+            others.next();
+            fail();
+        } catch (final ConcurrentModificationException ex) {}
+    }
+
+    public void testSetValueOfRemovedEntry() {
+        final HashBidiMap<Integer, String> map = new HashBidiMap<Integer, String>();
+        for (int i = 0; i < 10; i++) {
+            map.put(Integer.valueOf(i), "v" + i);
+        }
+        final Iterator<Map.Entry<Integer, String>> entries = map.entrySet().iterator();
+        final Map.Entry<Integer, String> entry = entries.next();
+        entries.remove();
+        try {
+            entry.setValue("removed");
+            fail();
+        } catch (final IllegalStateException ex) {}
+        assertEquals(9, map.size());
+        assertFalse(map.containsValue("removed"));
+        int count = 0;
+        while (entries.hasNext()) {
+            entries.next();
+            count++;
+        }
+        assertEquals(9, count);
+
+        final Map.Entry<String, Integer> inverse = map.inverseBidiMap().entrySet().iterator().next();
+        map.clear();
+        try {
+            inverse.setValue(Integer.valueOf(-1));
+            fail();
+        } catch (final IllegalStateException ex) {}
+        assertTrue(map.isEmpty());
+    }
+
+//    public void testCreate() throws Exception {
+//        resetEmpty();
+//        writeExternalFormToDisk((Serializable) map, "D:/dev/collections/data/test/HashBidiMap.emptyCollection.version4.obj");
+//        resetFull();
+//        writeExternalFormToDisk((Serializable) map, "D:/dev/collections/data/test/HashBidiMap.fullCollection.version4.obj");
+//    }
+}
@@ -16,6 +16,13 @@
  */
 package org.apache.commons.collections.bidimap;
 
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.SortedMap;
 import java.util.TreeMap;
 
 import junit.framework.Test;
@@ -75,6 +82,150 @@ public class TreeBidiMapTest<K extends Comparable<K>, V extends Comparable<V>> e
         return "3.3";
     }
 
+    //-----------------------------------------------------------------------
+    /**
+     * Builds a map of even keys to negated values, so the value order is
+     * the reverse of the key order.
+     */
+    private static TreeBidiMap<Integer, Integer> makeNumbers(final int count) {
+        final TreeBidiMap<Integer, Integer> map = new TreeBidiMap<Integer, Integer>();
+        for (int i = 0; i < count; i++) {
+            map.put(Integer.valueOf(i * 2), Integer.valueOf(-i * 2));
+        }
+        return map;
+    }
+
+    public void testCeilingFloor() {
+        final TreeBidiMap<Integer, Integer> map = makeNumbers(50);
+        assertEquals(Integer.valueOf(10), map.ceilingKey(Integer.valueOf(10)));
+        assertEquals(Integer.valueOf(12), map.ceilingKey(Integer.valueOf(11)));
+        assertEquals(Integer.valueOf(0), map.ceilingKey(Integer.valueOf(-5)));
+        assertNull(map.ceilingKey(Integer.valueOf(99)));
+        assertEquals(Integer.valueOf(10), map.floorKey(Integer.valueOf(11)));
+        assertEquals(Integer.valueOf(98), map.floorKey(Integer.valueOf(500)));
+        assertNull(map.floorKey(Integer.valueOf(-1)));
+
+        assertEquals(Integer.valueOf(-10), map.ceilingValue(Integer.valueOf(-11)));
+        assertEquals(Integer.valueOf(-12), map.floorValue(Integer.valueOf(-11)));
+        assertEquals(Integer.valueOf(0), map.floorValue(Integer.valueOf(7)));
+        assertNull(map.ceilingValue(Integer.valueOf(1)));
+        assertNull(map.floorValue(Integer.valueOf(-99)));
+        try {
+            map.ceilingKey(null);
+            fail();
+        } catch (final NullPointerException ex) {
+            // expected
+        }
+    }
+
+    public void testRangeViewsMatchTreeMap() {
+        final TreeBidiMap<Integer, Integer> map = new TreeBidiMap<Integer, Integer>();
+        final TreeMap<Integer, Integer> keys = new TreeMap<Integer, Integer>();
+        final TreeMap<Integer, Integer> values = new TreeMap<Integer, Integer>();
+        final Random random = new Random(5);
+        for (int i = 0; i < 300; i++) {
+            final Integer key = Integer.valueOf(random.nextInt(1000));
+            final Integer value = Integer.valueOf(random.nextInt(1000));
+            if (map.containsKey(key) == false && map.containsValue(value) == false) {
+                map.put(key, value);
+                keys.put(key, value);
+                values.put(value, key);
+            }
+        }
+        for (int i = 0; i < 50; i++) {
+            final int a = random.nextInt(1100) - 50;
+            final int b = a + random.nextInt(400);
+            final Integer from = Integer.valueOf(a);
+            final Integer to = Integer.valueOf(b);
+            assertEquals(keys.subMap(from, to), map.subMap(from, to));
+            assertEquals(new ArrayList<Integer>(keys.subMap(from, to).keySet()),
+                    new ArrayList<Integer>(map.subMap(from, to).keySet()));
+            assertEquals(keys.headMap(to), map.headMap(to));
+            assertEquals(keys.tailMap(from).size(), map.tailMap(from).size());
+            assertEquals(values.subMap(from, to), map.inverseSubMap(from, to));
+            assertEquals(new ArrayList<Integer>(values.subMap(from, to).values()),
+                    new ArrayList<Integer>(map.inverseSubMap(from, to).values()));
+            assertEquals(values.headMap(to), map.inverseHeadMap(to));
+            assertEquals(values.tailMap(from), map.inverseTailMap(from));
+            if (keys.subMap(from, to).isEmpty() == false) {
+                assertEquals(keys.subMap(from, to).firstKey(), map.subMap(from, to).firstKey());
+                assertEquals(keys.subMap(from, to).lastKey(), map.subMap(from, to).lastKey());
+            }
+        }
+    }
+
+    public void testRangeViewIsBacked() {
+        final TreeBidiMap<Integer, Integer> map = makeNumbers(20);
+        final SortedMap<Integer, Integer> range = map.subMap(Integer.valueOf(10), Integer.valueOf(20));
+        assertEquals(5, range.size());
+        assertEquals(Integer.valueOf(10), range.firstKey());
+        assertEquals(Integer.valueOf(18), range.lastKey());
+        assertFalse(range.containsKey(Integer.valueOf(20)));
+        assertNull(range.get(Integer.valueOf(8)));
+        assertEquals(Integer.valueOf(-12), range.get(Integer.valueOf(12)));
+
+        assertNull(range.put(Integer.valueOf(11), Integer.valueOf(-11)));
+        assertEquals(Integer.valueOf(11), map.getKey(Integer.valueOf(-11)));
+        try {
+            range.put(Integer.valueOf(20), Integer.valueOf(-20));
+            fail();
+        } catch (final IllegalArgumentException ex) {
+            // expected
+        }
+        assertEquals(Integer.valueOf(-14), range.remove(Integer.valueOf(14)));
+        assertFalse(map.containsKey(Integer.valueOf(14)));
+        assertNull(range.remove(Integer.valueOf(2)));
+        assertTrue(map.containsKey(Integer.valueOf(2)));
+
+        final SortedMap<Integer, Integer> inner = range.tailMap(Integer.valueOf(16));
+        assertEquals(2, inner.size());
+        try {
+            range.headMap(Integer.valueOf(22));
+            fail();
+        } catch (final IllegalArgumentException ex) {
+            // expected
+        }
+
+        for (final Iterator<Map.Entry<Integer, Integer>> it = range.entrySet().iterator(); it.hasNext();) {
+            if (it.next().getKey().intValue() % 4 == 0) {
+                it.remove();
+            }
+        }
+        assertEquals(3, range.size());
+        assertEquals(18, map.size());
+        range.clear();
+        assertTrue(range.isEmpty());
+        assertEquals(15, map.size());
+        try {
+            range.firstKey();
+            fail();
+        } catch (final NoSuchElementException ex) {
+            // expected
+        }
+
+        final SortedMap<Integer, Integer> values = map.inverseHeadMap(Integer.valueOf(-30));
+        assertEquals(Integer.valueOf(-38), values.firstKey());
+        assertEquals(Integer.valueOf(-32), values.lastKey());
+        values.remove(Integer.valueOf(-38));
+        assertFalse(map.containsKey(Integer.valueOf(38)));
+
+        final Iterator<Integer> it = values.keySet().iterator();
+        it.next();
+        map.put(Integer.valueOf(100), Integer.valueOf(-100));
+        try {
+            it.next();
+            fail();
+        } catch (final ConcurrentModificationException ex) {
+            // expected
+        }
+        try {
+            map.subMap(Integer.valueOf(5), Integer.valueOf(4));
+            fail();
+        } catch (final IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
 //    public void testCreate() throws Exception {
 //        resetEmpty();
 //        writeExternalFormToDisk((java.io.Serializable) map, "/tmp/TreeBidiMap.emptyCollection.version3.3.obj");
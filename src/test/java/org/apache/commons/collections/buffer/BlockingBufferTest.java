@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -406,6 +407,62 @@ public class BlockingBufferTest<E> extends AbstractObjectTest {
         }
     }
 
+    public void testRemoveBatch() {
+        final BlockingBuffer<E> buffer = new BlockingBuffer<E>(new MyBuffer<E>());
+        final List<E> objs = new ArrayList<E>();
+        for (int i = 0; i < 5; i++) {
+            objs.add(makeElement());
+        }
+        buffer.addAll(objs);
+        assertEquals(objs.subList(0, 3), buffer.remove(3, 100));
+        assertEquals(objs.subList(3, 5), buffer.remove(10, 100));
+        assertTrue(buffer.isEmpty());
+        try {
+            buffer.remove(10, 100);
+            fail("Remove should have timed out.");
+        } catch (final BufferUnderflowException e) {
+        }
+        try {
+            buffer.remove(0, 100);
+            fail();
+        } catch (final IllegalArgumentException e) {
+        }
+    }
+
+    public void testRemoveBatchWithAddAll() {
+        final BlockingBuffer<E> buffer = new BlockingBuffer<E>(new MyBuffer<E>());
+        final E obj = makeElement();
+        new DelayedAddAll<E>(buffer, obj, 100).start();
+
+        // verify does not throw BufferUnderflowException; should block until other thread has added to the buffer .
+        assertEquals(Collections.singletonList(obj), buffer.remove(10, 500));
+    }
+
+    /**
+     * Tests that adding a collection wakes as many blocked threads as it has
+     * objects, even though each add only signals one of them.
+     */
+    public void testBlockedRemoveWithAddAllMany() throws InterruptedException {
+        final Buffer<E> blockingBuffer = makeObject();
+        final Set<E> objs = Collections.synchronizedSet(new HashSet<E>());
+        final Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            objs.add(makeElement());
+            threads[i] = new ReadThread<E>(blockingBuffer, objs, "remove");
+            threads[i].start();
+        }
+
+        // give hungry read threads ample time to hang
+        delay();
+        blockingBuffer.addAll(new ArrayList<E>(objs));
+
+        for (final Thread thread : threads) {
+            thread.join(1000);
+            assertFalse("Thread should have completed", thread.isAlive());
+        }
+        assertEquals("All objects were removed", 0, objs.size());
+    }
+
     protected static class DelayedAdd<E> extends Thread {
 
         Buffer<E> buffer;
@@ -552,20 +609,29 @@ public class BlockingBufferTest<E> extends AbstractObjectTest {
         }
     }
 
+    @SuppressWarnings("unchecked")
+    public void testSerializedForm() throws Exception {
+        final Buffer<E> buffer = (Buffer<E>) readExternalFormFromDisk(getCanonicalFullCollectionName(makeObject()));
+        assertFalse(buffer instanceof SynchronizedBuffer);
+        assertEquals("A", buffer.remove());
+        buffer.add((E) "D");
+        assertEquals(3, buffer.size());
+    }
+
     @Override
     public String getCompatibilityVersion() {
-        return "3.1";
+        return "4";
     }
 
     //    public void testCreate() throws Exception {
     //        Buffer buffer = BlockingBuffer.decorate(new UnboundedFifoBuffer());
     //        writeExternalFormToDisk((java.io.Serializable) buffer,
-    //        "D:/dev/collections/data/test/BlockingBuffer.emptyCollection.version3.1.obj");
+    //        "D:/dev/collections/data/test/BlockingBuffer.emptyCollection.version4.obj");
     //        buffer = BlockingBuffer.decorate(new UnboundedFifoBuffer());
     //        buffer.add("A");
     //        buffer.add("B");
     //        buffer.add("C");
     //        writeExternalFormToDisk((java.io.Serializable) buffer,
-    //        "D:/dev/collections/data/test/BlockingBuffer.fullCollection.version3.1.obj");
+    //        "D:/dev/collections/data/test/BlockingBuffer.fullCollection.version4.obj");
     //    }
 }
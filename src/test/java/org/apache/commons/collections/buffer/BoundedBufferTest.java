@@ -33,7 +33,7 @@ public class BoundedBufferTest<E> extends AbstractObjectTest {
 
     @Override
     public String getCompatibilityVersion() {
-        return "3.2";
+        return "4";
     }
 
     @Override
@@ -156,6 +156,44 @@ public class BoundedBufferTest<E> extends AbstractObjectTest {
         }
     }
 
+    /**
+     * Tests that a thread waiting to add one element is woken even when a
+     * thread waiting to add several elements was waiting first.
+     */
+    @SuppressWarnings("unchecked")
+    public void testAddAfterBatchWaiterWithTimeout() throws InterruptedException {
+        final Buffer<E> bounded = BoundedBuffer.boundedBuffer(new UnboundedFifoBuffer<E>(), 2, 1000);
+        bounded.add((E) "Hello");
+        bounded.add((E) "World");
+        final Thread batch = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    bounded.addAll(Arrays.asList((E[]) new String[] { "Foo", "Bar" }));
+                } catch (final BufferOverflowException e) {
+                }
+            }
+        };
+        batch.start();
+        Thread.sleep(100);
+        final Thread single = new Thread() {
+            @Override
+            public void run() {
+                bounded.add((E) "!");
+            }
+        };
+        single.start();
+        Thread.sleep(100);
+
+        final long start = System.currentTimeMillis();
+        bounded.remove();
+        single.join(1000);
+        assertFalse("Thread should have completed", single.isAlive());
+        assertTrue("Thread should not have waited for the timeout", System.currentTimeMillis() - start < 500);
+        batch.join(2000);
+        assertEquals(Arrays.asList("World", "!"), Arrays.asList(bounded.toArray()));
+    }
+
     private class DelayedIteratorRemove extends Thread {
 
         private final Buffer<?> buffer;
@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.buffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Test;
+
+import org.apache.commons.collections.Buffer;
+import org.apache.commons.collections.BufferUnderflowException;
+import org.apache.commons.collections.BulkTest;
+import org.apache.commons.collections.collection.AbstractCollectionTest;
+
+/**
+ * Tests the ConcurrentPriorityBuffer.
+ *
+ * @version $Id$
+ */
+@SuppressWarnings("boxing")
+public class ConcurrentPriorityBufferTest<E> extends AbstractCollectionTest<E> {
+
+    public ConcurrentPriorityBufferTest(final String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return BulkTest.makeSuite(ConcurrentPriorityBufferTest.class);
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Overridden because ConcurrentPriorityBuffer isn't fail fast.
+     * @return false
+     */
+    @Override
+    public boolean isFailFastSupported() {
+        return false;
+    }
+
+    /**
+     * Overridden because ConcurrentPriorityBuffer doesn't allow null elements.
+     * @return false
+     */
+    @Override
+    public boolean isNullSupported() {
+        return false;
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public Collection<E> makeConfirmedCollection() {
+        return new ArrayList<E>();
+    }
+
+    @Override
+    public Collection<E> makeConfirmedFullCollection() {
+        final ArrayList<E> list = new ArrayList<E>();
+        list.addAll(Arrays.asList(getFullElements()));
+        return list;
+    }
+
+    /**
+     * Return a new, empty {@link Object} to used for testing.
+     */
+    @Override
+    public Buffer<E> makeObject() {
+        return new ConcurrentPriorityBuffer<E>(4, 2, true, null);
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    @SuppressWarnings("unchecked")
+    public E[] getFullElements() {
+        return (E[]) getFullNonNullStringElements();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E[] getOtherElements() {
+        return (E[]) getOtherNonNullStringElements();
+    }
+
+    //-----------------------------------------------------------------------
+    public void testBufferEmpty() {
+        resetEmpty();
+        final Buffer<E> buffer = getCollection();
+
+        assertEquals(0, buffer.size());
+        assertEquals(true, buffer.isEmpty());
+        try {
+            buffer.get();
+            fail();
+        } catch (final BufferUnderflowException ex) {}
+
+        try {
+            buffer.remove();
+            fail();
+        } catch (final BufferUnderflowException ex) {}
+    }
+
+    public void testConstructorException() {
+        try {
+            new ConcurrentPriorityBuffer<Integer>(0, 1, true, null);
+            fail();
+        } catch (final IllegalArgumentException ex) {}
+        try {
+            new ConcurrentPriorityBuffer<Integer>(1, 0, true, null);
+            fail();
+        } catch (final IllegalArgumentException ex) {}
+        assertEquals(3, new ConcurrentPriorityBuffer<Integer>(3, 5, true, null).choices());
+    }
+
+    /**
+     * A single queue, or looking at every queue, gives a strict order
+     * when used by one thread.
+     */
+    public void testStrictOrder() {
+        final Random random = new Random(1);
+        for (final int queues : new int[] { 1, 8 }) {
+            for (final boolean ascending : new boolean[] { true, false }) {
+                final ConcurrentPriorityBuffer<Integer> buffer =
+                    new ConcurrentPriorityBuffer<Integer>(queues, queues, ascending, null);
+                final List<Integer> confirmed = new ArrayList<Integer>();
+                for (int i = 0; i < 500; i++) {
+                    final Integer value = random.nextInt(100);
+                    buffer.add(value);
+                    confirmed.add(value);
+                }
+                Collections.sort(confirmed);
+                if (!ascending) {
+                    Collections.reverse(confirmed);
+                }
+                for (final Integer expected : confirmed) {
+                    assertEquals(expected, buffer.get());
+                    assertEquals(expected, buffer.remove());
+                }
+                assertTrue(buffer.isEmpty());
+            }
+        }
+    }
+
+    /**
+     * With few choices the order is relaxed, but every element is returned
+     * and the elements come out roughly in order.
+     */
+    public void testRelaxedOrder() {
+        final ConcurrentPriorityBuffer<Integer> buffer = new ConcurrentPriorityBuffer<Integer>(8, 2, true, null);
+        final int count = 10000;
+        for (int i = count - 1; i >= 0; i--) {
+            buffer.add(i);
+        }
+        final boolean[] seen = new boolean[count];
+        long rankError = 0;
+        for (int i = 0; i < count; i++) {
+            final int value = buffer.remove();
+            assertFalse(seen[value]);
+            seen[value] = true;
+            rankError += Math.abs(value - i);
+        }
+        assertTrue(buffer.isEmpty());
+        assertTrue("Average rank error " + rankError / count, rankError / count < 100);
+        try {
+            buffer.remove();
+            fail();
+        } catch (final BufferUnderflowException ex) {}
+    }
+
+    public void testConcurrentAddAndRemove() throws InterruptedException {
+        final ConcurrentPriorityBuffer<Integer> buffer = new ConcurrentPriorityBuffer<Integer>(8, 2, false, null);
+        final int threads = 4;
+        final int count = 20000;
+        final AtomicInteger removed = new AtomicInteger();
+        final int[] seen = new int[threads * count];
+        final Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int base = t * count;
+            workers[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < count; i++) {
+                        buffer.add(base + i);
+                        if (i % 2 == 1) {
+                            take(buffer, seen, removed);
+                            take(buffer, seen, removed);
+                        }
+                    }
+                }
+            };
+            workers[t].start();
+        }
+        for (final Thread worker : workers) {
+            worker.join();
+        }
+        while (!buffer.isEmpty()) {
+            take(buffer, seen, removed);
+        }
+        assertEquals(threads * count, removed.get());
+        for (final int s : seen) {
+            assertEquals(1, s);
+        }
+    }
+
+    /**
+     * Removes an element if there is one, recording it.
+     */
+    static void take(final Buffer<Integer> buffer, final int[] seen, final AtomicInteger removed) {
+        try {
+            final int value = buffer.remove();
+            synchronized (seen) {
+                seen[value]++;
+            }
+            removed.incrementAndGet();
+        } catch (final BufferUnderflowException ex) {
+            // taken by other threads
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testSerialization() throws Exception {
+        final ConcurrentPriorityBuffer<Integer> buffer = new ConcurrentPriorityBuffer<Integer>(3, 3, false, null);
+        for (int i = 0; i < 100; i++) {
+            buffer.add(i);
+        }
+        final ConcurrentPriorityBuffer<Integer> restored =
+            (ConcurrentPriorityBuffer<Integer>) readExternalFormFromBytes(writeExternalFormToBytes(buffer));
+        assertEquals(3, restored.queues());
+        assertEquals(3, restored.choices());
+        assertFalse(restored.isAscendingOrder());
+        for (int i = 99; i >= 0; i--) {
+            assertEquals(i, restored.remove().intValue());
+        }
+        assertTrue(restored.isEmpty());
+    }
+
+    @Override
+    public String getCompatibilityVersion() {
+        return "4";
+    }
+
+//    public void testCreate() throws Exception {
+//        resetEmpty();
+//        writeExternalFormToDisk((java.io.Serializable) getCollection(),
+//            "src/test/resources/data/test/ConcurrentPriorityBuffer.emptyCollection.version4.obj");
+//        resetFull();
+//        writeExternalFormToDisk((java.io.Serializable) getCollection(),
+//            "src/test/resources/data/test/ConcurrentPriorityBuffer.fullCollection.version4.obj");
+//    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ConcurrentPriorityBuffer<E> getCollection() {
+        return (ConcurrentPriorityBuffer<E>) super.getCollection();
+    }
+}
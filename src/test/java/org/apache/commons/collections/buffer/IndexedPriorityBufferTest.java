@@ -0,0 +1,377 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.buffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.Test;
+
+import org.apache.commons.collections.Buffer;
+import org.apache.commons.collections.BufferUnderflowException;
+import org.apache.commons.collections.BulkTest;
+import org.apache.commons.collections.ComparatorUtils;
+import org.apache.commons.collections.collection.AbstractCollectionTest;
+import org.apache.commons.collections.buffer.IndexedPriorityBuffer.Handle;
+
+/**
+ * Tests the IndexedPriorityBuffer.
+ *
+ * @version $Id$
+ */
+@SuppressWarnings("boxing")
+public class IndexedPriorityBufferTest<E> extends AbstractCollectionTest<E> {
+
+    public IndexedPriorityBufferTest(final String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return BulkTest.makeSuite(IndexedPriorityBufferTest.class);
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public void verify() {
+        super.verify();
+        checkHeap(getCollection());
+    }
+
+    /**
+     * Checks the heap order and that every entry knows its index.
+     */
+    protected <T> void checkHeap(final IndexedPriorityBuffer<T> heap) {
+        Comparator<? super T> c = heap.comparator();
+        if (!heap.isAscendingOrder()) {
+            c = ComparatorUtils.reversedComparator(c);
+        }
+        for (int i = 0; i < heap.size; i++) {
+            assertEquals("Entry knows its index", i, heap.heap[i].index);
+            if (i > 0) {
+                final int parent = (i - 1) / heap.arity();
+                assertTrue("Parent is less than or equal to its child",
+                        c.compare(heap.heap[parent].value, heap.heap[i].value) <= 0);
+            }
+        }
+        for (int i = heap.size; i < heap.heap.length; i++) {
+            assertNull(heap.heap[i]);
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Overridden because IndexedPriorityBuffer isn't fail fast.
+     * @return false
+     */
+    @Override
+    public boolean isFailFastSupported() {
+        return false;
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public Collection<E> makeConfirmedCollection() {
+        return new ArrayList<E>();
+    }
+
+    @Override
+    public Collection<E> makeConfirmedFullCollection() {
+        final ArrayList<E> list = new ArrayList<E>();
+        list.addAll(Arrays.asList(getFullElements()));
+        return list;
+    }
+
+    /**
+     * Return a new, empty {@link Object} to used for testing.
+     */
+    @Override
+    public Buffer<E> makeObject() {
+        return new IndexedPriorityBuffer<E>();
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    @SuppressWarnings("unchecked")
+    public E[] getFullElements() {
+        return (E[]) getFullNonNullStringElements();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E[] getOtherElements() {
+        return (E[]) getOtherNonNullStringElements();
+    }
+
+    //-----------------------------------------------------------------------
+    public void testBufferEmpty() {
+        resetEmpty();
+        final Buffer<E> buffer = getCollection();
+
+        assertEquals(0, buffer.size());
+        assertEquals(true, buffer.isEmpty());
+        try {
+            buffer.get();
+            fail();
+        } catch (final BufferUnderflowException ex) {}
+
+        try {
+            buffer.remove();
+            fail();
+        } catch (final BufferUnderflowException ex) {}
+    }
+
+    public void testConstructorException() {
+        try {
+            new IndexedPriorityBuffer<Integer>(1, true, null);
+            fail();
+        } catch (final IllegalArgumentException ex) {}
+    }
+
+    public void testHandles() {
+        final IndexedPriorityBuffer<Integer> heap = new IndexedPriorityBuffer<Integer>();
+        final List<Handle<Integer>> handles = new ArrayList<Handle<Integer>>();
+        for (int i = 0; i < 10; i++) {
+            handles.add(heap.insert(i * 10));
+        }
+        assertSame(handles.get(0), heap.getHandle());
+
+        // decrease key
+        heap.update(handles.get(7), -5);
+        assertEquals(-5, heap.get().intValue());
+        assertSame(handles.get(7), heap.getHandle());
+        checkHeap(heap);
+
+        // increase key
+        heap.update(handles.get(7), 1000);
+        assertEquals(0, heap.get().intValue());
+        checkHeap(heap);
+
+        assertEquals(50, heap.delete(handles.get(5)).intValue());
+        assertFalse(heap.isQueued(handles.get(5)));
+        assertTrue(heap.isQueued(handles.get(6)));
+        assertEquals(9, heap.size());
+        checkHeap(heap);
+        try {
+            heap.delete(handles.get(5));
+            fail();
+        } catch (final IllegalArgumentException ex) {}
+        try {
+            heap.update(handles.get(5), 1);
+            fail();
+        } catch (final IllegalArgumentException ex) {}
+
+        final IndexedPriorityBuffer<Integer> other = new IndexedPriorityBuffer<Integer>();
+        other.add(0);
+        assertFalse(other.isQueued(handles.get(0)));
+        try {
+            other.delete(handles.get(0));
+            fail();
+        } catch (final IllegalArgumentException ex) {}
+
+        assertEquals(0, heap.remove().intValue());
+        assertFalse(heap.isQueued(handles.get(0)));
+        heap.clear();
+        assertFalse(heap.isQueued(handles.get(1)));
+    }
+
+    public void testUpdateInPlace() {
+        final IndexedPriorityBuffer<int[]> heap = new IndexedPriorityBuffer<int[]>(new Comparator<int[]>() {
+            public int compare(final int[] a, final int[] b) {
+                return a[0] - b[0];
+            }
+        });
+        final List<Handle<int[]>> handles = new ArrayList<Handle<int[]>>();
+        for (int i = 0; i < 20; i++) {
+            handles.add(heap.insert(new int[] { i }));
+        }
+        handles.get(15).getValue()[0] = -1;
+        heap.update(handles.get(15));
+        assertSame(handles.get(15), heap.getHandle());
+        handles.get(15).getValue()[0] = 100;
+        heap.update(handles.get(15));
+        checkHeap(heap);
+        int last = Integer.MIN_VALUE;
+        while (!heap.isEmpty()) {
+            final int value = heap.remove()[0];
+            assertTrue(value >= last);
+            last = value;
+        }
+        assertEquals(100, last);
+    }
+
+    public void testHeapify() {
+        final Random random = new Random(7);
+        for (int arity = 2; arity <= 5; arity++) {
+            final List<Integer> values = new ArrayList<Integer>();
+            for (int i = 0; i < 200; i++) {
+                values.add(random.nextInt(100));
+            }
+            final IndexedPriorityBuffer<Integer> heap =
+                new IndexedPriorityBuffer<Integer>(values, arity, false, null);
+            checkHeap(heap);
+            assertEquals(200, heap.size());
+
+            // a collection smaller than the buffer is added one by one, a larger one in bulk
+            heap.addAll(values.subList(0, 10));
+            checkHeap(heap);
+            heap.addAll(values);
+            heap.addAll(values);
+            checkHeap(heap);
+            assertEquals(610, heap.size());
+
+            final List<Integer> expected = new ArrayList<Integer>();
+            for (int i = 0; i < 3; i++) {
+                expected.addAll(values);
+            }
+            expected.addAll(values.subList(0, 10));
+            Collections.sort(expected, Collections.reverseOrder());
+            final List<Integer> actual = new ArrayList<Integer>();
+            while (!heap.isEmpty()) {
+                actual.add(heap.remove());
+            }
+            assertEquals(expected, actual);
+        }
+    }
+
+    /**
+     * Removes every other element through the iterator, which moves later
+     * elements into the part of the heap already iterated over, and checks
+     * that every element is still returned exactly once.
+     */
+    public void testIteratorRemove() {
+        final Random random = new Random(11);
+        for (int round = 0; round < 50; round++) {
+            final IndexedPriorityBuffer<Integer> heap =
+                new IndexedPriorityBuffer<Integer>(2 + round % 4, round % 2 == 0, null);
+            for (int i = 0; i < 100; i++) {
+                heap.add(random.nextInt(1000) * 1000 + i);
+            }
+            final Set<Integer> seen = new HashSet<Integer>();
+            final Set<Integer> kept = new HashSet<Integer>();
+            final Iterator<Integer> it = heap.iterator();
+            while (it.hasNext()) {
+                final Integer value = it.next();
+                assertTrue("Element returned once", seen.add(value));
+                if (random.nextBoolean()) {
+                    it.remove();
+                } else {
+                    kept.add(value);
+                }
+            }
+            assertEquals(100, seen.size());
+            assertEquals(kept, new HashSet<Integer>(heap));
+            checkHeap(heap);
+        }
+    }
+
+    /**
+     * Performs random operations, with handles, on heaps of different arity
+     * and compares the order of removal with a sorted list.
+     */
+    public void testRandom() {
+        final Random random = new Random(3);
+        for (int round = 0; round < 40; round++) {
+            final boolean ascending = round % 2 == 0;
+            final IndexedPriorityBuffer<Integer> heap =
+                new IndexedPriorityBuffer<Integer>(2 + round % 7, ascending, null);
+            final List<Handle<Integer>> handles = new ArrayList<Handle<Integer>>();
+            final List<Integer> confirmed = new ArrayList<Integer>();
+            for (int op = 0; op < 500; op++) {
+                final int choice = random.nextInt(10);
+                if (choice < 4 || handles.isEmpty()) {
+                    final Integer value = random.nextInt(200);
+                    handles.add(heap.insert(value));
+                    confirmed.add(value);
+                } else if (choice < 7) {
+                    final Handle<Integer> handle = handles.get(random.nextInt(handles.size()));
+                    final Integer value = random.nextInt(200);
+                    confirmed.remove(handle.getValue());
+                    confirmed.add(value);
+                    heap.update(handle, value);
+                } else if (choice < 8) {
+                    final Handle<Integer> handle = handles.remove(random.nextInt(handles.size()));
+                    confirmed.remove(heap.delete(handle));
+                } else {
+                    final Handle<Integer> handle = heap.getHandle();
+                    assertEquals(ascending ? Collections.min(confirmed) : Collections.max(confirmed),
+                            heap.remove());
+                    assertTrue(handles.remove(handle));
+                    confirmed.remove(handle.getValue());
+                }
+                assertEquals(confirmed.size(), heap.size());
+            }
+            checkHeap(heap);
+            Collections.sort(confirmed);
+            if (!ascending) {
+                Collections.reverse(confirmed);
+            }
+            final List<Integer> actual = new ArrayList<Integer>();
+            while (!heap.isEmpty()) {
+                actual.add(heap.remove());
+            }
+            assertEquals(confirmed, actual);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testSerialization() throws Exception {
+        final Random random = new Random(5);
+        final IndexedPriorityBuffer<Integer> heap = new IndexedPriorityBuffer<Integer>(3, false, null);
+        for (int i = 0; i < 100; i++) {
+            heap.add(random.nextInt(100));
+        }
+        final IndexedPriorityBuffer<Integer> restored =
+            (IndexedPriorityBuffer<Integer>) readExternalFormFromBytes(writeExternalFormToBytes(heap));
+        assertEquals(3, restored.arity());
+        assertFalse(restored.isAscendingOrder());
+        checkHeap(restored);
+        while (!heap.isEmpty()) {
+            assertEquals(heap.remove(), restored.remove());
+        }
+        assertTrue(restored.isEmpty());
+    }
+
+    @Override
+    public String getCompatibilityVersion() {
+        return "4";
+    }
+
+//    public void testCreate() throws Exception {
+//        resetEmpty();
+//        writeExternalFormToDisk((java.io.Serializable) getCollection(),
+//            "src/test/resources/data/test/IndexedPriorityBuffer.emptyCollection.version4.obj");
+//        resetFull();
+//        writeExternalFormToDisk((java.io.Serializable) getCollection(),
+//            "src/test/resources/data/test/IndexedPriorityBuffer.fullCollection.version4.obj");
+//    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IndexedPriorityBuffer<E> getCollection() {
+        return (IndexedPriorityBuffer<E>) super.getCollection();
+    }
+}
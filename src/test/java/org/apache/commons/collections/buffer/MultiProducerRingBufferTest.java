@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.buffer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+
+import org.apache.commons.collections.BulkTest;
+
+/**
+ * Test cases for MultiProducerRingBuffer, which must also pass all the
+ * single producer tests.
+ *
+ * @version $Id$
+ */
+public class MultiProducerRingBufferTest<E> extends SingleProducerRingBufferTest<E> {
+
+    public MultiProducerRingBufferTest(final String n) {
+        super(n);
+    }
+
+    public static Test suite() {
+        return BulkTest.makeSuite(MultiProducerRingBufferTest.class);
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public AbstractRingBuffer<E> makeObject() {
+        return new MultiProducerRingBuffer<E>(100);
+    }
+
+    @Override
+    public AbstractRingBuffer<Integer> makeBuffer(final int size) {
+        return new MultiProducerRingBuffer<Integer>(size);
+    }
+
+    //-----------------------------------------------------------------------
+    public void testManyProducers() throws InterruptedException {
+        final AbstractRingBuffer<Integer> buffer = makeBuffer(128);
+        final int producers = 4;
+        final int count = 50000;
+        final Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int base = p * count;
+            threads[p] = new Thread() {
+                @Override
+                public void run() {
+                    final List<Integer> batch = new ArrayList<Integer>();
+                    for (int i = 0; i < count; i += 2) {
+                        if (i % 100 == 0) {
+                            // a batch of two, which must stay together
+                            batch.clear();
+                            batch.add(Integer.valueOf(base + i));
+                            batch.add(Integer.valueOf(base + i + 1));
+                            while (!fits(buffer, batch)) {
+                                Thread.yield();
+                            }
+                        } else {
+                            for (int j = i; j < i + 2; j++) {
+                                while (!buffer.offer(Integer.valueOf(base + j))) {
+                                    Thread.yield();
+                                }
+                            }
+                        }
+                    }
+                }
+            };
+            threads[p].start();
+        }
+        final int[] next = new int[producers];
+        final List<Integer> drained = new ArrayList<Integer>();
+        int received = 0;
+        while (received < producers * count) {
+            drained.clear();
+            if (buffer.drainTo(drained, 50) == 0) {
+                Thread.yield();
+            }
+            for (int i = 0; i < drained.size(); i++) {
+                final int value = drained.get(i).intValue();
+                final int producer = value / count;
+                assertEquals("elements of one producer must stay in order",
+                        next[producer]++, value % count);
+                received++;
+            }
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(buffer.isEmpty());
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.buffer;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.commons.collections.Buffer;
+import org.apache.commons.collections.BufferUtils;
+
+/**
+ * <code>PriorityBufferPerformance</code> compares the throughput of a
+ * synchronized {@link PriorityBuffer} with {@link ConcurrentPriorityBuffer}
+ * as the number of threads sharing the buffer grows.
+ * <p>
+ * Each thread repeatedly removes the first element and adds a new one, as the
+ * workers of a scheduler would, on a buffer that starts with
+ * {@link #ELEMENTS} elements.
+ *
+ * @version $Id$
+ */
+public class PriorityBufferPerformance {
+
+    /** The number of elements in the buffer */
+    private static final int ELEMENTS = 10000;
+
+    /** The number of remove and add pairs per test, shared by the threads */
+    private static final int OPERATIONS = 4000000;
+
+    /**
+     * Main method
+     */
+    public static void main(final String[] args) throws InterruptedException {
+        final int[] threadCounts = { 1, 2, 4, 8, 16, 32 };
+        // warm up
+        for (int i = 0; i < 3; i++) {
+            test(BufferUtils.synchronizedBuffer(new PriorityBuffer<Integer>()), 4);
+            test(new ConcurrentPriorityBuffer<Integer>(), 4);
+        }
+        for (final int threads : threadCounts) {
+            System.out.println(threads + " threads");
+            System.out.println("  synchronized PriorityBuffer           "
+                    + test(BufferUtils.synchronizedBuffer(new PriorityBuffer<Integer>()), threads) + " ms");
+            System.out.println("  ConcurrentPriorityBuffer, 1 queue     "
+                    + test(new ConcurrentPriorityBuffer<Integer>(1, 1, true, null), threads) + " ms");
+            final int queues = 2 * threads;
+            System.out.println("  ConcurrentPriorityBuffer, " + queues + " queues, 2 choices  "
+                    + test(new ConcurrentPriorityBuffer<Integer>(queues, 2, true, null), threads) + " ms");
+        }
+    }
+
+    /**
+     * Runs the remove and add pairs on a buffer.
+     *
+     * @param buffer  the thread-safe buffer to test
+     * @param threads  the number of threads
+     * @return the elapsed time in milliseconds
+     */
+    private static long test(final Buffer<Integer> buffer, final int threads) throws InterruptedException {
+        final Random random = new Random(0);
+        for (int i = 0; i < ELEMENTS; i++) {
+            buffer.add(Integer.valueOf(random.nextInt()));
+        }
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread() {
+                @Override
+                public void run() {
+                    final Random random = new Random();
+                    try {
+                        start.await();
+                    } catch (final InterruptedException ex) {
+                        return;
+                    }
+                    for (int i = OPERATIONS / threads; i > 0; i--) {
+                        final int value = buffer.remove().intValue();
+                        buffer.add(Integer.valueOf(value + random.nextInt(1000)));
+                    }
+                }
+            };
+            workers[t].start();
+        }
+        final long startTime = System.currentTimeMillis();
+        start.countDown();
+        for (final Thread worker : workers) {
+            worker.join();
+        }
+        return System.currentTimeMillis() - startTime;
+    }
+
+}
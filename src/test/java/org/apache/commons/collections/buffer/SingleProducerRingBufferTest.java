@@ -0,0 +1,347 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.buffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.Test;
+
+import org.apache.commons.collections.BufferOverflowException;
+import org.apache.commons.collections.BufferUnderflowException;
+import org.apache.commons.collections.BulkTest;
+import org.apache.commons.collections.collection.AbstractCollectionTest;
+
+/**
+ * Test cases for SingleProducerRingBuffer.
+ *
+ * @version $Id$
+ */
+public class SingleProducerRingBufferTest<E> extends AbstractCollectionTest<E> {
+
+    public SingleProducerRingBufferTest(final String n) {
+        super(n);
+    }
+
+    public static Test suite() {
+        return BulkTest.makeSuite(SingleProducerRingBufferTest.class);
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     *  Runs through the regular verifications, but also verifies that
+     *  the buffer contains the same elements in the same sequence as the
+     *  list.
+     */
+    @Override
+    public void verify() {
+        super.verify();
+        final Iterator<E> iterator1 = getCollection().iterator();
+        final Iterator<E> iterator2 = getConfirmed().iterator();
+        while (iterator2.hasNext()) {
+            assertTrue(iterator1.hasNext());
+            final E o1 = iterator1.next();
+            final E o2 = iterator2.next();
+            assertEquals(o1, o2);
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Overridden because ring buffers don't allow null elements.
+     * @return false
+     */
+    @Override
+    public boolean isNullSupported() {
+        return false;
+    }
+
+    /**
+     * Overridden because ring buffers aren't fail fast.
+     * @return false
+     */
+    @Override
+    public boolean isFailFastSupported() {
+        return false;
+    }
+
+    /**
+     * Overridden because ring buffers only remove at the head.
+     * @return false
+     */
+    @Override
+    public boolean isRemoveSupported() {
+        return false;
+    }
+
+    /**
+     * Overridden because clear is supported, by removing at the head.
+     */
+    @Override
+    public void testUnsupportedRemove() {
+        resetFull();
+        try {
+            getCollection().remove(getFullElements()[0]);
+            fail("remove should raise UnsupportedOperationException");
+        } catch (final UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            getCollection().removeAll(getConfirmed());
+            fail("removeAll should raise UnsupportedOperationException");
+        } catch (final UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            getCollection().retainAll(getConfirmed());
+            fail("retainAll should raise UnsupportedOperationException");
+        } catch (final UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            final Iterator<E> iterator = getCollection().iterator();
+            iterator.next();
+            iterator.remove();
+            fail("iterator.remove should raise UnsupportedOperationException");
+        } catch (final UnsupportedOperationException e) {
+            // expected
+        }
+        verify();
+
+        getCollection().clear();
+        getConfirmed().clear();
+        verify();
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     *  Returns an empty ArrayList.
+     *
+     *  @return an empty ArrayList
+     */
+    @Override
+    public List<E> makeConfirmedCollection() {
+        return new ArrayList<E>();
+    }
+
+    /**
+     *  Returns a full ArrayList.
+     *
+     *  @return a full ArrayList
+     */
+    @Override
+    public List<E> makeConfirmedFullCollection() {
+        final List<E> c = makeConfirmedCollection();
+        c.addAll(Arrays.asList(getFullElements()));
+        return c;
+    }
+
+    /**
+     *  Returns an empty buffer that won't overflow.
+     *
+     *  @return an empty buffer
+     */
+    @Override
+    public AbstractRingBuffer<E> makeObject() {
+        return new SingleProducerRingBuffer<E>(100);
+    }
+
+    /**
+     * Creates a buffer with the specified bound.
+     *
+     * @param size  the bound
+     * @return an empty buffer
+     */
+    public AbstractRingBuffer<Integer> makeBuffer(final int size) {
+        return new SingleProducerRingBuffer<Integer>(size);
+    }
+
+    @Override
+    public AbstractRingBuffer<E> getCollection() {
+        return (AbstractRingBuffer<E>) super.getCollection();
+    }
+
+    @Override
+    public List<E> getConfirmed() {
+        return (List<E>) super.getConfirmed();
+    }
+
+    @Override
+    public String getCompatibilityVersion() {
+        return "4";
+    }
+
+//    public void testCreate() throws Exception {
+//        resetEmpty();
+//        writeExternalFormToDisk((java.io.Serializable) getCollection(),
+//            "src/test/resources/data/test/SingleProducerRingBuffer.emptyCollection.version4.obj");
+//        resetFull();
+//        writeExternalFormToDisk((java.io.Serializable) getCollection(),
+//            "src/test/resources/data/test/SingleProducerRingBuffer.fullCollection.version4.obj");
+//    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Tests that the removal operation actually removes the first element.
+     */
+    public void testRingBufferRemove() {
+        resetFull();
+        final int size = getConfirmed().size();
+        for (int i = 0; i < size; i++) {
+            assertEquals(getConfirmed().get(0), getCollection().get());
+            final E o1 = getCollection().remove();
+            final E o2 = getConfirmed().remove(0);
+            assertEquals("Removed objects should be equal", o1, o2);
+            verify();
+        }
+
+        try {
+            getCollection().remove();
+            fail("Empty buffer should raise Underflow.");
+        } catch (final BufferUnderflowException e) {
+            // expected
+        }
+        assertNull(getCollection().poll());
+        assertNull(getCollection().peek());
+    }
+
+    /**
+     * Tests that the constructor correctly throws an exception.
+     */
+    public void testConstructorException() {
+        try {
+            makeBuffer(0);
+            fail();
+        } catch (final IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    public void testBoundAndWrapAround() {
+        final AbstractRingBuffer<Integer> buffer = makeBuffer(3);
+        assertEquals(3, buffer.maxSize());
+        int next = 0;
+        for (int round = 0; round < 10; round++) {
+            while (!buffer.isFull()) {
+                assertTrue(buffer.offer(Integer.valueOf(next++)));
+            }
+            assertFalse(buffer.offer(Integer.valueOf(-1)));
+            try {
+                buffer.add(Integer.valueOf(-1));
+                fail();
+            } catch (final BufferOverflowException ex) {
+                // expected
+            }
+            assertEquals(3, buffer.size());
+            assertEquals(next - 3, buffer.remove().intValue());
+            assertEquals(next - 2, buffer.poll().intValue());
+        }
+        assertEquals(Arrays.asList(Integer.valueOf(next - 1)), new ArrayList<Integer>(buffer));
+    }
+
+    public void testBatchOperations() {
+        final AbstractRingBuffer<Integer> buffer = makeBuffer(10);
+        final List<Integer> batch = new ArrayList<Integer>();
+        for (int i = 0; i < 7; i++) {
+            batch.add(Integer.valueOf(i));
+        }
+        assertTrue(buffer.addAll(batch));
+        try {
+            buffer.addAll(batch);
+            fail();
+        } catch (final BufferOverflowException ex) {
+            // expected, and nothing was added
+        }
+        assertEquals(7, buffer.size());
+        try {
+            buffer.addAll(Arrays.asList(Integer.valueOf(1), null));
+            fail();
+        } catch (final NullPointerException ex) {
+            // expected, and nothing was added
+        }
+        assertEquals(7, buffer.size());
+
+        final List<Integer> drained = new ArrayList<Integer>();
+        assertEquals(3, buffer.drainTo(drained, 3));
+        assertEquals(batch.subList(0, 3), drained);
+        assertTrue(buffer.addAll(batch.subList(0, 6)));
+        assertEquals(10, buffer.size());
+        assertTrue(buffer.isFull());
+        drained.clear();
+        assertEquals(10, buffer.drainTo(drained));
+        assertEquals(batch.subList(3, 7), drained.subList(0, 4));
+        assertEquals(batch.subList(0, 6), drained.subList(4, 10));
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.drainTo(drained));
+    }
+
+    public void testProducerAndConsumer() throws InterruptedException {
+        final AbstractRingBuffer<Integer> buffer = makeBuffer(64);
+        final int count = 200000;
+        final Thread producer = new Thread() {
+            @Override
+            public void run() {
+                final List<Integer> batch = new ArrayList<Integer>();
+                for (int i = 0; i < count; i++) {
+                    if (i % 1000 < 10) {
+                        // a few small batches among the single adds
+                        batch.clear();
+                        batch.add(Integer.valueOf(i));
+                        while (!fits(buffer, batch)) {
+                            Thread.yield();
+                        }
+                    } else {
+                        while (!buffer.offer(Integer.valueOf(i))) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            }
+        };
+        producer.start();
+        final List<Integer> drained = new ArrayList<Integer>();
+        int expected = 0;
+        while (expected < count) {
+            final Integer value = expected % 3 == 0 ? buffer.poll() : null;
+            if (value != null) {
+                assertEquals(expected++, value.intValue());
+            } else {
+                drained.clear();
+                buffer.drainTo(drained, 10);
+                for (final Integer drainedValue : drained) {
+                    assertEquals(expected++, drainedValue.intValue());
+                }
+            }
+        }
+        producer.join();
+        assertTrue(buffer.isEmpty());
+    }
+
+    /**
+     * Adds a batch if there is room for it.
+     */
+    static boolean fits(final AbstractRingBuffer<Integer> buffer, final List<Integer> batch) {
+        try {
+            return buffer.addAll(batch);
+        } catch (final BufferOverflowException ex) {
+            return false;
+        }
+    }
+
+}
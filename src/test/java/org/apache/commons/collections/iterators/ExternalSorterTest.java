@@ -0,0 +1,311 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.iterators;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the ExternalSorter.
+ *
+ * @version $Id$
+ */
+@SuppressWarnings("boxing")
+public class ExternalSorterTest extends TestCase {
+
+    private static final ExternalSorter.Codec<Integer> INT_CODEC = new ExternalSorter.Codec<Integer>() {
+        public void write(final Integer element, final DataOutput out) throws IOException {
+            out.writeInt(element);
+        }
+        public Integer read(final DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    private File directory;
+
+    public ExternalSorterTest(final String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = File.createTempFile("sorter", "test");
+        directory.delete();
+        assertTrue(directory.mkdir());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private static List<Integer> randomList(final int size, final long seed) {
+        final Random random = new Random(seed);
+        final List<Integer> list = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(random.nextInt(1000));
+        }
+        return list;
+    }
+
+    private static <T> List<T> drain(final Iterator<T> iterator) {
+        final List<T> result = new ArrayList<T>();
+        while (iterator.hasNext()) {
+            result.add(iterator.next());
+        }
+        return result;
+    }
+
+    private ExternalSorter<Integer> makeSorter(final ExecutorService executor) {
+        return new ExternalSorter<Integer>(null, INT_CODEC, 100, 3, directory, executor, 2);
+    }
+
+    //-----------------------------------------------------------------------
+    public void testSortInCallingThread() throws IOException {
+        final List<Integer> input = randomList(5000, 1);
+        final List<Integer> expected = new ArrayList<Integer>(input);
+        Collections.sort(expected);
+        assertEquals(expected, drain(makeSorter(null).sort(input.iterator())));
+        assertEquals(0, directory.list().length);
+    }
+
+    public void testSortWithExecutor() throws IOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final List<Integer> input = randomList(5000, 2);
+            final List<Integer> expected = new ArrayList<Integer>(input);
+            Collections.sort(expected);
+            assertEquals(expected, drain(makeSorter(executor).sort(input.iterator())));
+            assertEquals(0, directory.list().length);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testSmallInputStaysInMemory() throws IOException {
+        final ExternalSorter<Integer> sorter = makeSorter(null);
+        final ExternalSorter.SortedIterator<Integer> empty = sorter.sort(new ArrayList<Integer>().iterator());
+        assertFalse(empty.hasNext());
+
+        final List<Integer> input = randomList(100, 3);
+        final ExternalSorter.SortedIterator<Integer> sorted = sorter.sort(input.iterator());
+        assertEquals(0, directory.list().length);
+        Collections.sort(input);
+        assertEquals(input, drain(sorted));
+    }
+
+    public void testStable() throws IOException {
+        final Comparator<Integer> byTens = new Comparator<Integer>() {
+            public int compare(final Integer a, final Integer b) {
+                return a / 10 - b / 10;
+            }
+        };
+        final List<Integer> input = randomList(3000, 4);
+        final List<Integer> expected = new ArrayList<Integer>(input);
+        Collections.sort(expected, byTens);
+        final ExternalSorter<Integer> sorter =
+            new ExternalSorter<Integer>(byTens, INT_CODEC, 50, 2, directory, null, 1);
+        assertEquals(expected, drain(sorter.sort(input.iterator())));
+    }
+
+    public void testCloseDeletesRuns() throws IOException {
+        final ExternalSorter.SortedIterator<Integer> sorted =
+            makeSorter(null).sort(randomList(1000, 5).iterator());
+        assertTrue(directory.list().length > 0);
+        sorted.next();
+        sorted.close();
+        assertEquals(0, directory.list().length);
+    }
+
+    public void testWriteFailureDeletesRuns() {
+        final ExternalSorter.Codec<Integer> failing = new ExternalSorter.Codec<Integer>() {
+            public void write(final Integer element, final DataOutput out) throws IOException {
+                if (element == 999) {
+                    throw new IOException("test");
+                }
+                out.writeInt(element);
+            }
+            public Integer read(final DataInput in) throws IOException {
+                return in.readInt();
+            }
+        };
+        final List<Integer> input = randomList(1000, 6);
+        input.set(700, 999);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            new ExternalSorter<Integer>(null, failing, 100, 3, directory, executor, 2).sort(input.iterator());
+            fail();
+        } catch (final IOException ex) {
+            assertEquals("test", ex.getMessage());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(0, directory.list().length);
+    }
+
+    public void testReadFailureDuringMergeDeletesRuns() throws IOException {
+        final int[] reads = new int[1];
+        final ExternalSorter.Codec<Integer> failing = new ExternalSorter.Codec<Integer>() {
+            public void write(final Integer element, final DataOutput out) throws IOException {
+                out.writeInt(element);
+            }
+            public Integer read(final DataInput in) throws IOException {
+                if (++reads[0] == 150) {
+                    throw new IOException("test");
+                }
+                return in.readInt();
+            }
+        };
+        // the second merge pass fails after writing its first run
+        try {
+            new ExternalSorter<Integer>(null, failing, 10, 2, directory, null, 1).sort(randomList(100, 7).iterator());
+            fail();
+        } catch (final IllegalStateException ex) {
+            assertEquals("test", ex.getCause().getMessage());
+        }
+        assertEquals(150, reads[0]);
+        assertEquals(0, directory.list().length);
+    }
+
+    public void testOpenFailureDeletesRuns() {
+        final String[] firstRun = new String[1];
+        final int[] writes = new int[1];
+        final ExternalSorter.Codec<Integer> codec = new ExternalSorter.Codec<Integer>() {
+            public void write(final Integer element, final DataOutput out) throws IOException {
+                writes[0]++;
+                if (writes[0] == 1) {
+                    firstRun[0] = directory.list()[0];
+                } else if (writes[0] == 101) {
+                    // the second run can no longer be opened
+                    for (final File file : directory.listFiles()) {
+                        if (file.getName().equals(firstRun[0]) == false) {
+                            assertTrue(file.delete());
+                        }
+                    }
+                }
+                out.writeInt(element);
+            }
+            public Integer read(final DataInput in) throws IOException {
+                return in.readInt();
+            }
+        };
+        try {
+            new ExternalSorter<Integer>(null, codec, 100, 3, directory, null, 1).sort(randomList(300, 8).iterator());
+            fail();
+        } catch (final IOException ex) {
+            // expected
+        }
+        assertEquals(0, directory.list().length);
+    }
+
+    public void testInterruptDeletesRuns() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExternalSorter.Codec<Integer> slow = new ExternalSorter.Codec<Integer>() {
+            public void write(final Integer element, final DataOutput out) throws IOException {
+                if (started.getCount() > 0) {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (final InterruptedException ex) {
+                        throw new InterruptedIOException();
+                    }
+                }
+                out.writeInt(element);
+            }
+            public Integer read(final DataInput in) throws IOException {
+                return in.readInt();
+            }
+        };
+        final Thread sorting = Thread.currentThread();
+        final Thread interrupter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    started.await();
+                } catch (final InterruptedException ex) {
+                    return;
+                }
+                sorting.interrupt();
+                release.countDown();
+            }
+        };
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            interrupter.start();
+            new ExternalSorter<Integer>(null, slow, 100, 3, directory, executor, 1).sort(randomList(300, 9).iterator());
+            fail();
+        } catch (final IOException ex) {
+            assertTrue(ex instanceof InterruptedIOException);
+            assertTrue(Thread.interrupted());
+        } finally {
+            executor.shutdown();
+            interrupter.join();
+        }
+        // the run being written when the interrupt came was deleted once written
+        assertEquals(0, directory.list().length);
+    }
+
+    public void testInvalidArguments() {
+        try {
+            new ExternalSorter<Integer>(null, null);
+            fail();
+        } catch (final NullPointerException ex) {
+            // expected
+        }
+        try {
+            new ExternalSorter<Integer>(null, INT_CODEC, 0, 2, null, null, 1);
+            fail();
+        } catch (final IllegalArgumentException ex) {
+            // expected
+        }
+        try {
+            new ExternalSorter<Integer>(null, INT_CODEC, 10, 1, null, null, 1);
+            fail();
+        } catch (final IllegalArgumentException ex) {
+            // expected
+        }
+        try {
+            new ExternalSorter<Integer>(null, INT_CODEC, 10, 2, null, null, 0);
+            fail();
+        } catch (final IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.iterators;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.apache.commons.collections.comparators.ComparableComparator;
+
+/**
+ * Unit test suite for {@link MergingIterator}.
+ *
+ * @version $Id$
+ */
+@SuppressWarnings("boxing")
+public class MergingIteratorTest extends AbstractIteratorTest<Integer> {
+
+    public MergingIteratorTest(final String testName) {
+        super(testName);
+    }
+
+    private Comparator<Integer> comparator = null;
+    private ArrayList<Integer> evens = null;
+    private ArrayList<Integer> odds = null;
+    private ArrayList<Integer> fib = null;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        comparator = new ComparableComparator<Integer>();
+        evens = new ArrayList<Integer>();
+        odds = new ArrayList<Integer>();
+        for (int i = 0; i < 20; i++) {
+            if (0 == i % 2) {
+                evens.add(i);
+            } else {
+                odds.add(i);
+            }
+        }
+        fib = new ArrayList<Integer>(Arrays.asList(1, 1, 2, 3, 5, 8, 13, 21));
+    }
+
+    @Override
+    public MergingIterator<Integer> makeEmptyIterator() {
+        return new MergingIterator<Integer>(comparator, new ArrayList<Iterator<Integer>>());
+    }
+
+    @Override
+    public MergingIterator<Integer> makeObject() {
+        return new MergingIterator<Integer>(comparator,
+                Arrays.asList(evens.iterator(), odds.iterator(), fib.iterator()));
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Makes k sorted runs of random length, adding all their elements to
+     * the expected list.
+     */
+    private static List<Iterator<Integer>> makeRuns(final Random random, final int k, final List<Integer> all) {
+        final List<Iterator<Integer>> runs = new ArrayList<Iterator<Integer>>();
+        for (int i = 0; i < k; i++) {
+            final List<Integer> run = new ArrayList<Integer>();
+            final int length = random.nextInt(40);
+            for (int j = 0; j < length; j++) {
+                run.add(random.nextInt(500));
+            }
+            Collections.sort(run);
+            all.addAll(run);
+            runs.add(run.iterator());
+        }
+        Collections.sort(all);
+        return runs;
+    }
+
+    private static List<Integer> drain(final Iterator<Integer> iterator) {
+        final List<Integer> result = new ArrayList<Integer>();
+        while (iterator.hasNext()) {
+            result.add(iterator.next());
+        }
+        return result;
+    }
+
+    public void testMergeMatchesSort() {
+        final Random random = new Random(17);
+        for (final int k : new int[] { 1, 2, 3, 5, 16, 17, 300 }) {
+            for (final int batchSize : new int[] { 1, 7 }) {
+                final List<Integer> expected = new ArrayList<Integer>();
+                final List<Iterator<Integer>> runs = makeRuns(random, k, expected);
+                final MergingIterator<Integer> iter = new MergingIterator<Integer>(null, runs, false, batchSize);
+                assertEquals(expected, drain(iter));
+            }
+        }
+    }
+
+    public void testDistinct() {
+        final Random random = new Random(3);
+        for (final int batchSize : new int[] { 1, 4 }) {
+            final List<Integer> all = new ArrayList<Integer>();
+            final List<Iterator<Integer>> runs = makeRuns(random, 40, all);
+            final MergingIterator<Integer> iter = new MergingIterator<Integer>(comparator, runs, true, batchSize);
+            assertEquals(new ArrayList<Integer>(new TreeSet<Integer>(all)), drain(iter));
+        }
+        final MergingIterator<Integer> iter = new MergingIterator<Integer>(comparator,
+                Arrays.asList(fib.iterator(), odds.iterator()), true, 1);
+        assertEquals(Arrays.asList(1, 2, 3, 5, 7, 8, 9, 11, 13, 15, 17, 19, 21), drain(iter));
+    }
+
+    public void testTiesFollowIteratorOrder() {
+        final MergingIterator<Integer> iter = new MergingIterator<Integer>(comparator,
+                Arrays.asList(evens.iterator(), odds.iterator(), fib.iterator()));
+        assertEquals(Integer.valueOf(0), iter.next());
+        assertEquals(0, iter.getIteratorIndex());
+        assertEquals(Integer.valueOf(1), iter.next());
+        assertEquals(1, iter.getIteratorIndex());
+        assertEquals(Integer.valueOf(1), iter.next());
+        assertEquals(2, iter.getIteratorIndex());
+        assertEquals(Integer.valueOf(1), iter.next());
+        assertEquals(2, iter.getIteratorIndex());
+        assertEquals(Integer.valueOf(2), iter.next());
+        assertEquals(0, iter.getIteratorIndex());
+    }
+
+    public void testRemoveFromSource() {
+        final MergingIterator<Integer> iter = new MergingIterator<Integer>(comparator,
+                Arrays.asList(evens.iterator(), odds.iterator()));
+        while (iter.hasNext()) {
+            if (iter.next() % 3 == 0) {
+                iter.remove();
+            }
+        }
+        assertEquals(Arrays.asList(2, 4, 8, 10, 14, 16), evens);
+        assertEquals(Arrays.asList(1, 5, 7, 11, 13, 17, 19), odds);
+
+        final MergingIterator<Integer> afterHasNext = makeObject();
+        afterHasNext.next();
+        afterHasNext.hasNext();
+        try {
+            afterHasNext.remove();
+            fail();
+        } catch (final IllegalStateException ex) {
+            // expected
+        }
+        final MergingIterator<Integer> batched = new MergingIterator<Integer>(comparator,
+                Arrays.asList(evens.iterator()), false, 2);
+        batched.next();
+        try {
+            batched.remove();
+            fail();
+        } catch (final UnsupportedOperationException ex) {
+            // expected
+        }
+    }
+
+}
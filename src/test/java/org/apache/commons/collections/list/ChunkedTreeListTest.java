@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.list;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Random;
+
+import junit.framework.Test;
+
+import org.apache.commons.collections.BulkTest;
+import org.apache.commons.collections.OrderedIterator;
+
+/**
+ * Extension of {@link AbstractListTest} for exercising the
+ * {@link ChunkedTreeList} implementation.
+ *
+ * @since 4.0
+ * @version $Id$
+ */
+public class ChunkedTreeListTest<E> extends AbstractListTest<E> {
+
+    public ChunkedTreeListTest(final String name) {
+        super(name);
+    }
+
+//    public static void main(String[] args) {
+//        System.out.println("         add; toArray; iterator; insert; get; indexOf; remove");
+//        System.out.print("ChunkedTreeList = ");
+//        TreeListTest.benchmark(new ChunkedTreeList<Integer>());
+//        System.out.print("\n      TreeList = ");
+//        TreeListTest.benchmark(new TreeList<Integer>());
+//        System.out.print("\n     ArrayList = ");
+//        TreeListTest.benchmark(new java.util.ArrayList<Integer>());
+//    }
+
+    public static Test suite() {
+        return BulkTest.makeSuite(ChunkedTreeListTest.class);
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public ChunkedTreeList<E> makeObject() {
+        return new ChunkedTreeList<E>();
+    }
+
+    //-----------------------------------------------------------------------
+    public void testAppendAndGetLarge() {
+        final List<Integer> list = new ChunkedTreeList<Integer>();
+        for (int i = 0; i < 100000; i++) {
+            list.add(Integer.valueOf(i));
+        }
+        assertEquals(100000, list.size());
+        for (int i = 0; i < 100000; i++) {
+            assertEquals(i, list.get(i).intValue());
+        }
+        int expected = 0;
+        for (final Integer i : list) {
+            assertEquals(expected++, i.intValue());
+        }
+        assertEquals(99999, list.indexOf(Integer.valueOf(99999)));
+        assertEquals(50000, list.lastIndexOf(Integer.valueOf(50000)));
+        assertEquals(-1, list.indexOf(Integer.valueOf(100000)));
+    }
+
+    public void testRandomOperations() {
+        final Random random = new Random(31);
+        final List<Integer> list = new ChunkedTreeList<Integer>();
+        final List<Integer> expected = new ArrayList<Integer>();
+        for (int round = 0; round < 3; round++) {
+            // grow to a few levels, then shrink back to almost nothing
+            for (int i = 0; i < 30000; i++) {
+                final int index = random.nextInt(expected.size() + 1);
+                final Integer value = Integer.valueOf(random.nextInt());
+                list.add(index, value);
+                expected.add(index, value);
+            }
+            assertEquals(expected, list);
+            for (int i = 0; i < 1000; i++) {
+                final int index = random.nextInt(expected.size());
+                final Integer value = Integer.valueOf(random.nextInt());
+                assertEquals(expected.set(index, value), list.set(index, value));
+            }
+            while (expected.size() > 10) {
+                final int index = random.nextInt(expected.size());
+                assertEquals(expected.remove(index), list.remove(index));
+            }
+            assertEquals(expected, list);
+        }
+        assertTrue(Arrays.equals(expected.toArray(), list.toArray()));
+    }
+
+    public void testRemoveFromEnds() {
+        final List<Integer> list = new ChunkedTreeList<Integer>();
+        for (int i = 0; i < 20000; i++) {
+            list.add(0, Integer.valueOf(i));
+        }
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(19999 - i, list.remove(0).intValue());
+            assertEquals(i, list.remove(list.size() - 1).intValue());
+        }
+        assertEquals(10000, list.size());
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(14999 - i, list.get(i).intValue());
+        }
+    }
+
+    public void testIteratorAcrossLeaves() {
+        final List<Integer> list = new ChunkedTreeList<Integer>();
+        final List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i < 5000; i++) {
+            list.add(Integer.valueOf(i));
+            expected.add(Integer.valueOf(i));
+        }
+        final ListIterator<Integer> it = list.listIterator(2500);
+        assertTrue(it instanceof OrderedIterator);
+        for (int i = 2499; i >= 0; i--) {
+            assertEquals(i, it.previous().intValue());
+        }
+        assertFalse(it.hasPrevious());
+
+        // remove every third element and double every other one on the way
+        int count = 0;
+        while (it.hasNext()) {
+            final Integer value = it.next();
+            if (count % 3 == 0) {
+                it.remove();
+            } else if (count % 2 == 0) {
+                it.add(value);
+            }
+            count++;
+        }
+        final ListIterator<Integer> expectedIt = expected.listIterator();
+        count = 0;
+        while (expectedIt.hasNext()) {
+            final Integer value = expectedIt.next();
+            if (count % 3 == 0) {
+                expectedIt.remove();
+            } else if (count % 2 == 0) {
+                expectedIt.add(value);
+            }
+            count++;
+        }
+        assertEquals(expected, list);
+        for (int i = list.size() - 1; it.hasPrevious(); i--) {
+            assertEquals(expected.get(i), it.previous());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.list;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.Test;
+
+import org.apache.commons.collections.BulkTest;
+
+/**
+ * Test class for ConcurrentNodeCachingLinkedList.
+ *
+ * @version $Id$
+ */
+public class ConcurrentNodeCachingLinkedListTest<E> extends AbstractLinkedListTest<E> {
+
+    public ConcurrentNodeCachingLinkedListTest(final String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return BulkTest.makeSuite(ConcurrentNodeCachingLinkedListTest.class);
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public ConcurrentNodeCachingLinkedList<E> makeObject() {
+        return new ConcurrentNodeCachingLinkedList<E>();
+    }
+
+    @Override
+    protected boolean skipSerializedCanonicalTests() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ConcurrentNodeCachingLinkedList<E> getCollection() {
+        return (ConcurrentNodeCachingLinkedList<E>) super.getCollection();
+    }
+
+    //-----------------------------------------------------------------------
+    public void testNodesAreReused() {
+        final ConcurrentNodeCachingLinkedList<Integer> list = new ConcurrentNodeCachingLinkedList<Integer>();
+        for (int i = 0; i < 100; i++) {
+            list.addLast(Integer.valueOf(i));
+        }
+        final AbstractLinkedList.Node<Integer> node = list.getNode(0, false);
+        assertEquals(Integer.valueOf(0), list.removeFirst());
+        assertNull(node.getValue());
+        list.addFirst(Integer.valueOf(-1));
+        assertSame(node, list.getNode(0, false));
+        assertEquals(Integer.valueOf(-1), list.getFirst());
+    }
+
+    public void testCacheGrowsWithChurn() {
+        final ConcurrentNodeCachingLinkedList<Integer> list = new ConcurrentNodeCachingLinkedList<Integer>(500);
+        // a burst of 400 elements, more than the initial limit of the cache
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 400; i++) {
+                list.addLast(Integer.valueOf(i));
+            }
+            for (int i = 0; i < 400; i++) {
+                list.removeLast();
+            }
+        }
+        int reused = 0;
+        for (int i = 0; i < 400; i++) {
+            if (list.getNodeFromCache() != null) {
+                reused++;
+            }
+        }
+        assertTrue("only " + reused + " nodes cached", reused >= 200);
+    }
+
+    public void testShrinkCache() {
+        final ConcurrentNodeCachingLinkedList<Integer> list = new ConcurrentNodeCachingLinkedList<Integer>(500);
+        for (int i = 0; i < 400; i++) {
+            list.addLast(Integer.valueOf(i));
+        }
+        list.clear();
+        list.setMaximumCacheSize(2);
+        int reused = 0;
+        while (list.getNodeFromCache() != null) {
+            reused++;
+        }
+        assertTrue(reused <= 4);
+    }
+
+    public void testProducersAndConsumers() throws InterruptedException {
+        final ConcurrentNodeCachingLinkedList<Long> list = new ConcurrentNodeCachingLinkedList<Long>();
+        final int threads = 4;
+        final int count = 20000;
+        final CountDownLatch done = new CountDownLatch(threads * 2);
+        final AtomicLong consumed = new AtomicLong();
+        final AtomicLong sum = new AtomicLong();
+        for (int t = 0; t < threads; t++) {
+            final boolean first = t % 2 == 0;
+            new Thread() {
+                @Override
+                public void run() {
+                    for (long i = 1; i <= count; i++) {
+                        if (first) {
+                            list.addFirst(Long.valueOf(i));
+                        } else {
+                            list.add(Long.valueOf(i));
+                        }
+                    }
+                    done.countDown();
+                }
+            }.start();
+            new Thread() {
+                @Override
+                public void run() {
+                    while (consumed.get() < threads * count) {
+                        try {
+                            final Long value = first ? list.removeFirst() : list.removeLast();
+                            sum.addAndGet(value.longValue());
+                            consumed.incrementAndGet();
+                        } catch (final NoSuchElementException ex) {
+                            Thread.yield();
+                        }
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        done.await();
+        assertEquals(threads * count, consumed.get());
+        assertEquals(threads * (long) count * (count + 1) / 2, sum.get());
+        assertTrue(list.isEmpty());
+    }
+}
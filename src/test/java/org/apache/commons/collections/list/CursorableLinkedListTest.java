@@ -17,12 +17,14 @@
 package org.apache.commons.collections.list;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.ConcurrentModificationException;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
+import java.util.Random;
 
 import junit.framework.Test;
 
@@ -41,10 +43,48 @@ public class CursorableLinkedListTest<E> extends AbstractLinkedListTest<E> {
         super(testName);
     }
 
+//    public static void main(String[] args) {
+//        System.out.println("cursors; add+remove; iterate");
+//        benchmark(0);
+//        benchmark(10000);
+//    }
+
     public static Test suite() {
         return BulkTest.makeSuite(CursorableLinkedListTest.class);
     }
 
+    public static void benchmark(final int cursorCount) {
+        final CursorableLinkedList<Integer> list = new CursorableLinkedList<Integer>();
+        for (int i = 0; i < 100000; i++) {
+            list.add(Integer.valueOf(i));
+        }
+        final Random random = new Random(1);
+        final List<CursorableLinkedList.Cursor<Integer>> cursors = new ArrayList<CursorableLinkedList.Cursor<Integer>>();
+        for (int i = 0; i < cursorCount; i++) {
+            cursors.add(list.cursor(random.nextInt(list.size())));
+        }
+        System.out.print(cursorCount + ";");
+
+        long start = System.currentTimeMillis();
+        final ListIterator<Integer> it = list.listIterator(50000);
+        for (int i = 0; i < 100000; i++) {
+            it.add(Integer.valueOf(-i));
+            it.previous();
+            it.remove();
+        }
+        System.out.print(System.currentTimeMillis() - start + ";");
+
+        start = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++) {
+            final CursorableLinkedList.Cursor<Integer> cursor = list.cursor();
+            while (cursor.hasNext()) {
+                cursor.next();
+            }
+            cursor.close();
+        }
+        System.out.println(System.currentTimeMillis() - start + ";" + cursors.size());
+    }
+
     private CursorableLinkedList<E> list;
 
     @Override
@@ -555,10 +595,12 @@ public class CursorableLinkedListTest<E> extends AbstractLinkedListTest<E> {
 
         assertEquals("B", list.remove(1));
 
-        assertEquals(false, c1.nextIndexValid);
+        // the cursor is not next to B, it only notices the change of modCount
+        assertTrue(c1.indexModCount != list.modCount);
         assertEquals(false, c1.currentRemovedByAnother);
         assertEquals("C", c1.current.value);
         assertEquals("D", c1.next.value);
+        assertEquals(2, c1.nextIndex());
 
         assertEquals("[A, C, D]", list.toString());
         c1.remove();  // works ok
@@ -1535,4 +1577,113 @@ public class CursorableLinkedListTest<E> extends AbstractLinkedListTest<E> {
 //        writeExternalFormToDisk((java.io.Serializable) collection, "C:/commons/collections/data/test/CursorableLinkedList.fullCollection.version4.0.obj");
 //    }
 
+    //-----------------------------------------------------------------------
+    @SuppressWarnings("unchecked")
+    public void testManyCursorsFollowChanges() {
+        for (int i = 0; i < 200; i++) {
+            list.add((E) Integer.valueOf(i));
+        }
+        final List<CursorableLinkedList.Cursor<E>> cursors = new ArrayList<CursorableLinkedList.Cursor<E>>();
+        // the value that each cursor will return next, null at the end
+        final List<Object> nextValues = new ArrayList<Object>();
+        for (int i = 0; i <= 200; i++) {
+            cursors.add(list.cursor(i));
+            nextValues.add(i < 200 ? Integer.valueOf(i) : null);
+        }
+
+        final Random random = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            if (random.nextBoolean() && list.size() > 0) {
+                final int index = random.nextInt(list.size());
+                final Object successor = index + 1 < list.size() ? list.get(index + 1) : null;
+                final Object removed = list.remove(index);
+                for (int j = 0; j < nextValues.size(); j++) {
+                    if (removed.equals(nextValues.get(j))) {
+                        nextValues.set(j, successor);
+                    }
+                }
+            } else {
+                final int index = random.nextInt(list.size() + 1);
+                final Object before = index < list.size() ? list.get(index) : null;
+                final Integer added = Integer.valueOf(1000 + i);
+                list.add(index, (E) added);
+                for (int j = 0; j < nextValues.size(); j++) {
+                    final Object next = nextValues.get(j);
+                    if (next == null ? before == null : next.equals(before)) {
+                        nextValues.set(j, added);
+                    }
+                }
+            }
+        }
+
+        for (int j = 0; j < cursors.size(); j++) {
+            final CursorableLinkedList.Cursor<E> cursor = cursors.get(j);
+            final Object next = nextValues.get(j);
+            assertEquals(next == null ? list.size() : list.indexOf(next), cursor.nextIndex());
+            if (next == null) {
+                assertFalse(cursor.hasNext());
+            } else {
+                assertEquals(next, cursor.next());
+            }
+            cursor.close();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testCursorRemoveAfterLaterRemovalByList() {
+        list.addAll(Arrays.asList((E[]) new String[] { "A", "B", "C", "D", "E" }));
+
+        final CursorableLinkedList.Cursor<E> c1 = list.cursor();
+        assertEquals("A", c1.next());
+        list.remove("A");
+        list.add((E) "F");
+        c1.remove();  // quietly ignored, only an element was added since
+        assertEquals("[B, C, D, E, F]", list.toString());
+
+        assertEquals("B", c1.next());
+        list.remove("B");
+        list.remove("E");  // not next to the cursor
+        try {
+            c1.remove();
+            fail();
+        } catch (final IllegalStateException ex) {}
+        assertEquals("[C, D, F]", list.toString());
+        c1.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testClosedCursorsAreReleased() {
+        list.add((E) "A");
+        list.add((E) "B");
+        final List<CursorableLinkedList.Cursor<E>> cursors = new ArrayList<CursorableLinkedList.Cursor<E>>();
+        for (int i = 0; i < 100; i++) {
+            cursors.add(list.cursor(1));
+        }
+        final CursorableLinkedList.CursorableNode<E> node = (CursorableLinkedList.CursorableNode<E>) list.header.next.next;
+        assertNotNull(node.cursors);
+        for (final CursorableLinkedList.Cursor<E> cursor : cursors) {
+            cursor.close();
+        }
+        assertNull(node.cursors);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testCollectedCursorsArePurged() {
+        list.add((E) "A");
+        list.add((E) "B");
+        final List<CursorableLinkedList.Cursor<E>> cursors = new ArrayList<CursorableLinkedList.Cursor<E>>();
+        for (int i = 0; i < 100; i++) {
+            cursors.add(list.cursor(1));
+        }
+        final CursorableLinkedList.CursorableNode<E> node = (CursorableLinkedList.CursorableNode<E>) list.header.next.next;
+        assertNotNull(node.cursors);
+        // enqueue the references as the garbage collector would
+        for (final CursorableLinkedList.Cursor<E> cursor : cursors) {
+            assertTrue(cursor.ref.enqueue());
+        }
+        // the references of the collected cursors are purged on changes
+        list.set(0, (E) "A");
+        assertNull(node.cursors);
+    }
+
 }
@@ -0,0 +1,373 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.list;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Extension of {@link AbstractListTest} for exercising the
+ * {@link IndexedSetUniqueList} implementation.
+ *
+ * @since 4.0
+ * @version $Id$
+ */
+public class IndexedSetUniqueListTest<E> extends AbstractListTest<E> {
+
+    public IndexedSetUniqueListTest(final String testName) {
+        super(testName);
+    }
+
+//    public static void main(String[] args) {
+//        final int size = 1000000;
+//        final List<Integer> values = new ArrayList<Integer>();
+//        for (int i = 0; i < size; i++) {
+//            values.add(Integer.valueOf(i));
+//        }
+//        final IndexedSetUniqueList<Integer> indexed = new IndexedSetUniqueList<Integer>(values);
+//        final SetUniqueList<Integer> plain = SetUniqueList.setUniqueList(new ArrayList<Integer>(values));
+//        long start = System.currentTimeMillis();
+//        for (int i = 0; i < size; i++) {
+//            indexed.indexOf(values.get(i));
+//        }
+//        System.out.println("IndexedSetUniqueList indexOf x " + size + " = " + (System.currentTimeMillis() - start));
+//        start = System.currentTimeMillis();
+//        for (int i = 0; i < size; i += 1000) {
+//            plain.indexOf(values.get(i));
+//        }
+//        System.out.println("SetUniqueList indexOf x " + size / 1000 + " = " + (System.currentTimeMillis() - start));
+//    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public IndexedSetUniqueList<E> makeObject() {
+        return new IndexedSetUniqueList<E>();
+    }
+
+    @Override
+    public void testListIteratorSet() {
+        // override to block
+        resetFull();
+        final ListIterator<E> it = getCollection().listIterator();
+        it.next();
+        try {
+            it.set(null);
+            fail();
+        } catch (final UnsupportedOperationException ex) {}
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E[] getFullNonNullElements() {
+        // override to avoid duplicate "One"
+        return (E[]) new Object[] {
+                new String(""),
+                new String("One"),
+                new Integer(2),
+                "Three",
+                new Integer(4),
+                new Double(5),
+                new Float(6),
+                "Seven",
+                "Eight",
+                new String("Nine"),
+                new Integer(10),
+                new Short((short)11),
+                new Long(12),
+                "Thirteen",
+                "14",
+                "15",
+                new Byte((byte)16)
+        };
+    }
+
+    @Override
+    public void testListIteratorAdd() {
+        // override to cope with Set behaviour
+        resetEmpty();
+        final List<E> list1 = getCollection();
+        final List<E> list2 = getConfirmed();
+
+        final E[] elements = getOtherElements();
+        ListIterator<E> iter1 = list1.listIterator();
+        ListIterator<E> iter2 = list2.listIterator();
+
+        for (final E element : elements) {
+            iter1.add(element);
+            iter2.add(element);
+            super.verify();
+        }
+
+        resetFull();
+        iter1 = getCollection().listIterator();
+        iter2 = getConfirmed().listIterator();
+        for (final E element : elements) {
+            iter1.next();
+            iter2.next();
+            iter1.add(element);
+            iter2.add(element);
+            super.verify();
+        }
+    }
+
+    @Override
+    public void testCollectionAddAll() {
+        // override for set behaviour
+        resetEmpty();
+        E[] elements = getFullElements();
+        boolean r = getCollection().addAll(Arrays.asList(elements));
+        getConfirmed().addAll(Arrays.asList(elements));
+        verify();
+        assertTrue("Empty collection should change after addAll", r);
+
+        resetFull();
+        final int size = getCollection().size();
+        elements = getOtherElements();
+        r = getCollection().addAll(Arrays.asList(elements));
+        getConfirmed().addAll(Arrays.asList(elements));
+        verify();
+        assertTrue("Full collection should change after addAll", r);
+        assertEquals("Size should increase after addAll",
+                size + elements.length, getCollection().size());
+
+        final Collection<E> again = Arrays.asList(elements);
+        assertFalse("Duplicates should not be added", getCollection().addAll(0, again));
+        verify();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void testListSetByIndex() {
+        // override for set behaviour
+        resetFull();
+        final int size = getCollection().size();
+        getCollection().set(0, (E) new Long(1000));
+        assertEquals(size, getCollection().size());
+
+        getCollection().set(2, (E) new Long(1000));
+        assertEquals(size - 1, getCollection().size());
+        assertEquals(new Long(1000), getCollection().get(1));  // set into 2, but shifted down to 1
+    }
+
+    //-----------------------------------------------------------------------
+    @SuppressWarnings("unchecked")
+    public void testRejectsDuplicates() {
+        final IndexedSetUniqueList<E> list = makeObject();
+        assertTrue(list.add((E) "a"));
+        assertFalse(list.add((E) "a"));
+        list.add(0, (E) "a");
+        assertTrue(list.add(null));
+        assertFalse(list.add(null));
+        assertEquals(Arrays.asList("a", null), list);
+        assertEquals(1, list.indexOf(null));
+        assertEquals(new HashSet<Object>(Arrays.asList("a", null)), list.asSet());
+        try {
+            list.asSet().add((E) "b");
+            fail();
+        } catch (final UnsupportedOperationException ex) {}
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testSet() {
+        final IndexedSetUniqueList<E> list = makeObject();
+        final E obj1 = (E) new Integer(1);
+        final E obj2 = (E) new Integer(2);
+        final E obj3 = (E) new Integer(3);
+
+        list.addAll(Arrays.asList(obj1, obj2));
+        list.set(0, obj1);
+        assertEquals(Arrays.asList(obj1, obj2), list);
+
+        list.set(0, obj2);
+        assertEquals(Arrays.asList(obj2), list);
+
+        list.clear();
+        list.addAll(Arrays.asList(obj1, obj2));
+        list.set(0, obj3);
+        assertEquals(Arrays.asList(obj3, obj2), list);
+        assertFalse(list.contains(obj1));
+        assertEquals(1, list.indexOf(obj2));
+
+        list.set(1, obj3);
+        assertEquals(Arrays.asList(obj3), list);
+        assertEquals(0, list.indexOf(obj3));
+    }
+
+    public void testRandomOperations() {
+        final Random random = new Random(17);
+        final IndexedSetUniqueList<Integer> list = new IndexedSetUniqueList<Integer>();
+        final List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i < 20000; i++) {
+            final Integer value = Integer.valueOf(random.nextInt(4000));
+            final int index = random.nextInt(expected.size() + 1);
+            switch (random.nextInt(5)) {
+            case 0:
+            case 1:
+                list.add(index, value);
+                if (!expected.contains(value)) {
+                    expected.add(index, value);
+                }
+                break;
+            case 2:
+                assertEquals(expected.remove(value), list.remove(value));
+                break;
+            case 3:
+                if (index < expected.size()) {
+                    assertEquals(expected.remove(index), list.remove(index));
+                }
+                break;
+            default:
+                if (index < expected.size()) {
+                    final int pos = expected.indexOf(value);
+                    assertEquals(expected.set(index, value), list.set(index, value));
+                    if (pos != -1 && pos != index) {
+                        expected.remove(pos);
+                    }
+                }
+                break;
+            }
+            assertEquals(expected.size(), list.size());
+            assertEquals(expected.indexOf(value), list.indexOf(value));
+        }
+        assertEquals(expected, list);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(i, list.indexOf(expected.get(i)));
+        }
+    }
+
+    public void testBulkOperations() {
+        final List<Integer> values = new ArrayList<Integer>();
+        for (int i = 0; i < 10000; i++) {
+            values.add(Integer.valueOf(i % 7000));
+        }
+        final IndexedSetUniqueList<Integer> list = new IndexedSetUniqueList<Integer>(values);
+        final List<Integer> expected = new ArrayList<Integer>(values.subList(0, 7000));
+        assertEquals(expected, list);
+
+        final List<Integer> more = new ArrayList<Integer>();
+        for (int i = 6000; i < 9000; i++) {
+            more.add(Integer.valueOf(i));
+        }
+        assertTrue(list.addAll(100, more));
+        expected.addAll(100, more.subList(1000, 3000));
+        assertEquals(expected, list);
+        assertFalse(list.addAll(50, more));
+
+        final Set<Integer> odd = new HashSet<Integer>();
+        for (int i = 1; i < 9000; i += 2) {
+            odd.add(Integer.valueOf(i));
+        }
+        assertTrue(list.removeAll(odd));
+        expected.removeAll(odd);
+        assertEquals(expected, list);
+        assertFalse(list.removeAll(odd));
+
+        final List<Integer> keep = new ArrayList<Integer>();
+        for (int i = 0; i < 9000; i += 3) {
+            keep.add(Integer.valueOf(i));
+        }
+        assertTrue(list.retainAll(keep));
+        expected.retainAll(keep);
+        assertEquals(expected, list);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(i, list.indexOf(expected.get(i)));
+        }
+        assertFalse(list.contains(Integer.valueOf(1)));
+        assertTrue(list.contains(Integer.valueOf(8994)));
+    }
+
+    public void testIteratorRemoveAcrossTree() {
+        final IndexedSetUniqueList<Integer> list = new IndexedSetUniqueList<Integer>();
+        final List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i < 1000; i++) {
+            list.add(Integer.valueOf(i));
+            expected.add(Integer.valueOf(i));
+        }
+        final ListIterator<Integer> it = list.listIterator(500);
+        for (int i = 0; i < 300; i++) {
+            it.previous();
+            if (i % 2 == 0) {
+                it.remove();
+            }
+        }
+        while (it.hasNext()) {
+            if (it.next().intValue() % 3 == 0) {
+                it.remove();
+            }
+        }
+        final ListIterator<Integer> expectedIt = expected.listIterator(500);
+        for (int i = 0; i < 300; i++) {
+            expectedIt.previous();
+            if (i % 2 == 0) {
+                expectedIt.remove();
+            }
+        }
+        while (expectedIt.hasNext()) {
+            if (expectedIt.next().intValue() % 3 == 0) {
+                expectedIt.remove();
+            }
+        }
+        assertEquals(expected, list);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testSubListRejectsDuplicatesOutsideRange() {
+        final IndexedSetUniqueList<E> list = makeObject();
+        list.addAll((List<E>) Arrays.asList("a", "b", "c", "d", "e"));
+        final List<E> sub = list.subList(1, 3);
+        assertFalse(sub.add((E) "a"));
+        sub.add(0, (E) "e");
+        assertEquals(2, sub.size());
+        assertEquals(Arrays.asList("b", "c"), sub);
+        assertFalse(sub.contains("a"));
+        assertEquals(-1, sub.indexOf("d"));
+
+        assertTrue(sub.add((E) "x"));
+        assertEquals(Arrays.asList("b", "c", "x"), sub);
+        assertEquals(Arrays.asList("a", "b", "c", "x", "d", "e"), list);
+
+        // setting an element present before the range removes it there
+        sub.set(0, (E) "a");
+        assertEquals(Arrays.asList("a", "c", "x"), sub);
+        assertEquals(Arrays.asList("a", "c", "x", "d", "e"), list);
+        // and inside the range shrinks it
+        sub.set(0, (E) "x");
+        assertEquals(Arrays.asList("x", "c"), sub);
+        assertEquals(Arrays.asList("x", "c", "d", "e"), list);
+
+        final List<E> nested = sub.subList(1, 2);
+        assertFalse(nested.add((E) "x"));
+        assertTrue(nested.add((E) "y"));
+        assertEquals(Arrays.asList("c", "y"), nested);
+        assertEquals(Arrays.asList("x", "c", "y"), sub);
+        assertEquals(Arrays.asList("x", "c", "y", "d", "e"), list);
+
+        list.add((E) "z");
+        try {
+            sub.size();
+            fail();
+        } catch (final ConcurrentModificationException ex) {}
+    }
+
+}
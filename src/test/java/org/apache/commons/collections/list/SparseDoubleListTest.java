@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.list;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Test;
+
+import org.apache.commons.collections.BulkTest;
+
+/**
+ * Extension of {@link AbstractListTest} for exercising the
+ * {@link SparseDoubleList} implementation.
+ *
+ * @since 4.0
+ * @version $Id$
+ */
+public class SparseDoubleListTest extends AbstractListTest<Double> {
+
+    public SparseDoubleListTest(final String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return BulkTest.makeSuite(SparseDoubleListTest.class);
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public SparseDoubleList makeObject() {
+        return new SparseDoubleList();
+    }
+
+    @Override
+    public boolean isNullSupported() {
+        return false;
+    }
+
+    @Override
+    public Double[] getFullNonNullElements() {
+        return new Double[] {
+            Double.valueOf(0), Double.valueOf(1), Double.valueOf(-1), Double.valueOf(2), Double.valueOf(0),
+            Double.valueOf(3), Double.valueOf(Double.MAX_VALUE), Double.valueOf(Double.NaN), Double.valueOf(4),
+            Double.valueOf(5), Double.valueOf(6), Double.valueOf(7), Double.valueOf(8), Double.valueOf(9)
+        };
+    }
+
+    @Override
+    public Double[] getOtherNonNullElements() {
+        return new Double[] {
+            Double.valueOf(10), Double.valueOf(20), Double.valueOf(30), Double.valueOf(40), Double.valueOf(50)
+        };
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Override.
+     */
+    @Override
+    public void testListAddByIndexBoundsChecking() {
+        List<Double> list;
+        final Double element = getOtherElements()[0];
+        try {
+            list = makeObject();
+            list.add(-1, element);
+            fail("List.add should throw IndexOutOfBoundsException [-1]");
+        } catch (final IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Override.
+     */
+    @Override
+    public void testListAddByIndexBoundsChecking2() {
+        List<Double> list;
+        final Double element = getOtherElements()[0];
+        try {
+            list = makeFullCollection();
+            list.add(-1, element);
+            fail("List.add should throw IndexOutOfBoundsException [-1]");
+        } catch (final IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Override.
+     */
+    @Override
+    public void testListSetByIndexBoundsChecking() {
+        final List<Double> list = makeObject();
+        final Double element = getOtherElements()[0];
+        try {
+            list.set(-1, element);
+            fail("List.set should throw IndexOutOfBoundsException [-1]");
+        } catch (final IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Override.
+     */
+    @Override
+    public void testListSetByIndexBoundsChecking2() {
+        final List<Double> list = makeFullCollection();
+        final Double element = getOtherElements()[0];
+        try {
+            list.set(-1, element);
+            fail("List.set should throw IndexOutOfBoundsException [-1]");
+        } catch(final IndexOutOfBoundsException e) {
+            // expected
+        } 
+    }
+
+    //-----------------------------------------------------------------------
+    public void testDefaultValueIsNotStored() {
+        final SparseDoubleList list = new SparseDoubleList(-1.0);
+        assertEquals(-1.0, list.setDouble(5000000, 42.0));
+        assertEquals(5000001, list.size());
+        assertEquals(1, list.presentCount());
+        assertEquals(-1.0, list.getDouble(4000000));
+        assertEquals(Double.valueOf(-1.0), list.get(0));
+        assertEquals(-1.0, list.setDouble(3000000, -1.0));
+        assertEquals(1, list.presentCount());
+        assertEquals(5000000, list.indexOfDouble(42.0));
+        assertEquals(5000000, list.nextPresentIndex(0));
+        assertEquals(0, list.indexOfDouble(-1.0));
+        assertEquals(4999999, list.lastIndexOfDouble(-1.0));
+        assertEquals(42.0, list.setDouble(5000000, -1.0));
+        assertEquals(0, list.presentCount());
+    }
+
+    public void testNaNDefault() {
+        final SparseDoubleList list = new SparseDoubleList(Double.NaN);
+        list.setDouble(100000, 1.5);
+        list.setDouble(200000, 0.0);
+        list.setDouble(300000, -0.0);
+        assertTrue(Double.isNaN(list.getDouble(5)));
+        assertEquals(3, list.presentCount());
+        assertEquals(200000, list.indexOfDouble(0.0));
+        assertEquals(300000, list.indexOf(Double.valueOf(-0.0)));
+        assertEquals(0, list.indexOf(Double.valueOf(Double.NaN)));
+        list.setDouble(100000, Double.NaN);
+        assertEquals(2, list.presentCount());
+        assertEquals(200000, list.nextPresentIndex(0));
+    }
+
+    public void testPrimitiveOperationsMatchList() {
+        final Random random = new Random(11);
+        final SparseDoubleList list = new SparseDoubleList(7.0);
+        final List<Double> expected = new ArrayList<Double>();
+        for (int i = 0; i < 5000; i++) {
+            final int index = random.nextInt(expected.size() + 50);
+            final double value = random.nextInt(3) == 0 ? 7.0 : i;
+            switch (random.nextInt(4)) {
+            case 0:
+                list.addDouble(index, value);
+                while (expected.size() < index) {
+                    expected.add(Double.valueOf(7.0));
+                }
+                expected.add(index, Double.valueOf(value));
+                break;
+            case 1:
+                list.setDouble(index, value);
+                while (expected.size() <= index) {
+                    expected.add(Double.valueOf(7.0));
+                }
+                expected.set(index, Double.valueOf(value));
+                break;
+            default:
+                if (index < expected.size()) {
+                    assertEquals(expected.remove(index).doubleValue(), list.removeDouble(index));
+                }
+                break;
+            }
+        }
+        assertEquals(expected, list);
+        final double[] array = list.toDoubleArray();
+        assertEquals(expected.size(), array.length);
+        for (int i = 0; i < array.length; i++) {
+            assertEquals(expected.get(i).doubleValue(), array[i]);
+        }
+    }
+
+}
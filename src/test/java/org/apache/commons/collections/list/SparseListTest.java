@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.list;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Test;
+
+import org.apache.commons.collections.BulkTest;
+import org.apache.commons.collections.Factory;
+
+/**
+ * Extension of {@link AbstractListTest} for exercising the
+ * {@link SparseList} implementation.
+ *
+ * @since 4.0
+ * @version $Id$
+ */
+public class SparseListTest<E> extends AbstractListTest<E> {
+
+    public SparseListTest(final String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return BulkTest.makeSuite(SparseListTest.class);
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public SparseList<E> makeObject() {
+        return new SparseList<E>();
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Override.
+     */
+    @Override
+    public void testListAddByIndexBoundsChecking() {
+        List<E> list;
+        final E element = getOtherElements()[0];
+        try {
+            list = makeObject();
+            list.add(-1, element);
+            fail("List.add should throw IndexOutOfBoundsException [-1]");
+        } catch (final IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Override.
+     */
+    @Override
+    public void testListAddByIndexBoundsChecking2() {
+        List<E> list;
+        final E element = getOtherElements()[0];
+        try {
+            list = makeFullCollection();
+            list.add(-1, element);
+            fail("List.add should throw IndexOutOfBoundsException [-1]");
+        } catch (final IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Override.
+     */
+    @Override
+    public void testListSetByIndexBoundsChecking() {
+        final List<E> list = makeObject();
+        final E element = getOtherElements()[0];
+        try {
+            list.set(-1, element);
+            fail("List.set should throw IndexOutOfBoundsException [-1]");
+        } catch (final IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Override.
+     */
+    @Override
+    public void testListSetByIndexBoundsChecking2() {
+        final List<E> list = makeFullCollection();
+        final E element = getOtherElements()[0];
+        try {
+            list.set(-1, element);
+            fail("List.set should throw IndexOutOfBoundsException [-1]");
+        } catch(final IndexOutOfBoundsException e) {
+            // expected
+        } 
+    }
+
+    //-----------------------------------------------------------------------
+    public void testGrowthOnSetAndAdd() {
+        final SparseList<String> list = new SparseList<String>();
+        assertNull(list.set(1000000, "a"));
+        assertEquals(1000001, list.size());
+        assertEquals(1, list.presentCount());
+        assertNull(list.get(999999));
+        assertEquals("a", list.get(1000000));
+        list.add(2000000, "b");
+        assertEquals(2000001, list.size());
+        assertEquals(1000000, list.nextPresentIndex(0));
+        assertEquals(2000000, list.nextPresentIndex(1000001));
+        assertEquals(-1, list.nextPresentIndex(2000001));
+        assertEquals(0, list.indexOf(null));
+        assertEquals(1999999, list.lastIndexOf(null));
+        assertEquals(2000000, list.indexOf("b"));
+        try {
+            list.get(2000001);
+            fail();
+        } catch (final IndexOutOfBoundsException ex) {}
+    }
+
+    public void testLazyFactory() {
+        final int[] created = new int[1];
+        final SparseList<Integer> list = new SparseList<Integer>(new Factory<Integer>() {
+            public Integer create() {
+                return Integer.valueOf(created[0]++);
+            }
+        });
+        assertEquals(Integer.valueOf(0), list.get(5000));
+        assertEquals(5001, list.size());
+        assertEquals(Integer.valueOf(0), list.get(5000));
+        assertEquals(1, list.presentCount());
+        assertEquals(-1, list.indexOf(Integer.valueOf(1)));
+        assertEquals(0, list.indexOf(null));
+        assertEquals(1, created[0]);
+        assertEquals(Integer.valueOf(1), list.get(3));
+        assertEquals(2, list.presentCount());
+    }
+
+    public void testPagesAreReleased() {
+        final SparseList<Integer> list = new SparseList<Integer>();
+        for (int i = 0; i < 10000; i++) {
+            list.set(i * 1000, Integer.valueOf(i));
+        }
+        assertEquals(10000, list.presentCount());
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(Integer.valueOf(i), list.set(i * 1000, null));
+        }
+        assertEquals(0, list.presentCount());
+        assertEquals(9999001, list.size());
+        assertEquals(-1, list.nextPresentIndex(0));
+    }
+
+    public void testShiftAcrossPages() {
+        final Random random = new Random(5);
+        final SparseList<Integer> list = new SparseList<Integer>();
+        final List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i < 5000; i++) {
+            final int index = random.nextInt(expected.size() + 100);
+            final Integer value = random.nextInt(3) == 0 ? null : Integer.valueOf(i);
+            switch (random.nextInt(4)) {
+            case 0:
+                list.add(index, value);
+                if (index > expected.size()) {
+                    expected.addAll(Collections.<Integer>nCopies(index - expected.size(), null));
+                }
+                expected.add(index, value);
+                break;
+            case 1:
+                list.set(index, value);
+                if (index >= expected.size()) {
+                    expected.addAll(Collections.<Integer>nCopies(index - expected.size() + 1, null));
+                }
+                expected.set(index, value);
+                break;
+            default:
+                if (index < expected.size()) {
+                    assertEquals(expected.remove(index), list.remove(index));
+                }
+                break;
+            }
+            assertEquals(expected.size(), list.size());
+        }
+        assertEquals(expected, list);
+        int present = 0;
+        for (final Integer value : expected) {
+            if (value != null) {
+                present++;
+            }
+        }
+        assertEquals(present, list.presentCount());
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.list;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Test;
+
+import org.apache.commons.collections.BulkTest;
+
+/**
+ * Extension of {@link AbstractListTest} for exercising the
+ * {@link SparseLongList} implementation.
+ *
+ * @since 4.0
+ * @version $Id$
+ */
+public class SparseLongListTest extends AbstractListTest<Long> {
+
+    public SparseLongListTest(final String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return BulkTest.makeSuite(SparseLongListTest.class);
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public SparseLongList makeObject() {
+        return new SparseLongList();
+    }
+
+    @Override
+    public boolean isNullSupported() {
+        return false;
+    }
+
+    @Override
+    public Long[] getFullNonNullElements() {
+        return new Long[] {
+            Long.valueOf(0), Long.valueOf(1), Long.valueOf(-1), Long.valueOf(2), Long.valueOf(0),
+            Long.valueOf(3), Long.valueOf(Long.MAX_VALUE), Long.valueOf(Long.MIN_VALUE), Long.valueOf(4),
+            Long.valueOf(5), Long.valueOf(6), Long.valueOf(7), Long.valueOf(8), Long.valueOf(9)
+        };
+    }
+
+    @Override
+    public Long[] getOtherNonNullElements() {
+        return new Long[] {
+            Long.valueOf(10), Long.valueOf(20), Long.valueOf(30), Long.valueOf(40), Long.valueOf(50)
+        };
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Override.
+     */
+    @Override
+    public void testListAddByIndexBoundsChecking() {
+        List<Long> list;
+        final Long element = getOtherElements()[0];
+        try {
+            list = makeObject();
+            list.add(-1, element);
+            fail("List.add should throw IndexOutOfBoundsException [-1]");
+        } catch (final IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Override.
+     */
+    @Override
+    public void testListAddByIndexBoundsChecking2() {
+        List<Long> list;
+        final Long element = getOtherElements()[0];
+        try {
+            list = makeFullCollection();
+            list.add(-1, element);
+            fail("List.add should throw IndexOutOfBoundsException [-1]");
+        } catch (final IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Override.
+     */
+    @Override
+    public void testListSetByIndexBoundsChecking() {
+        final List<Long> list = makeObject();
+        final Long element = getOtherElements()[0];
+        try {
+            list.set(-1, element);
+            fail("List.set should throw IndexOutOfBoundsException [-1]");
+        } catch (final IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Override.
+     */
+    @Override
+    public void testListSetByIndexBoundsChecking2() {
+        final List<Long> list = makeFullCollection();
+        final Long element = getOtherElements()[0];
+        try {
+            list.set(-1, element);
+            fail("List.set should throw IndexOutOfBoundsException [-1]");
+        } catch(final IndexOutOfBoundsException e) {
+            // expected
+        } 
+    }
+
+    //-----------------------------------------------------------------------
+    public void testDefaultValueIsNotStored() {
+        final SparseLongList list = new SparseLongList(-1L);
+        assertEquals(-1L, list.setLong(5000000, 42L));
+        assertEquals(5000001, list.size());
+        assertEquals(1, list.presentCount());
+        assertEquals(-1L, list.getLong(4000000));
+        assertEquals(Long.valueOf(-1L), list.get(0));
+        assertEquals(-1L, list.setLong(3000000, -1L));
+        assertEquals(1, list.presentCount());
+        assertEquals(5000000, list.indexOfLong(42L));
+        assertEquals(5000000, list.nextPresentIndex(0));
+        assertEquals(0, list.indexOfLong(-1L));
+        assertEquals(4999999, list.lastIndexOfLong(-1L));
+        assertEquals(42L, list.setLong(5000000, -1L));
+        assertEquals(0, list.presentCount());
+    }
+
+    public void testPrimitiveOperationsMatchList() {
+        final Random random = new Random(11);
+        final SparseLongList list = new SparseLongList(7L);
+        final List<Long> expected = new ArrayList<Long>();
+        for (int i = 0; i < 5000; i++) {
+            final int index = random.nextInt(expected.size() + 50);
+            final long value = random.nextInt(3) == 0 ? 7L : i;
+            switch (random.nextInt(4)) {
+            case 0:
+                list.addLong(index, value);
+                while (expected.size() < index) {
+                    expected.add(Long.valueOf(7L));
+                }
+                expected.add(index, Long.valueOf(value));
+                break;
+            case 1:
+                list.setLong(index, value);
+                while (expected.size() <= index) {
+                    expected.add(Long.valueOf(7L));
+                }
+                expected.set(index, Long.valueOf(value));
+                break;
+            default:
+                if (index < expected.size()) {
+                    assertEquals(expected.remove(index).longValue(), list.removeLong(index));
+                }
+                break;
+            }
+        }
+        assertEquals(expected, list);
+        final long[] array = list.toLongArray();
+        assertEquals(expected.size(), array.length);
+        for (int i = 0; i < array.length; i++) {
+            assertEquals(expected.get(i).longValue(), array[i]);
+        }
+    }
+
+}
@@ -16,8 +16,10 @@
  */
 package org.apache.commons.collections.list;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Random;
 
 import junit.framework.Test;
 
@@ -247,4 +249,146 @@ public class TreeListTest<E> extends AbstractListTest<E> {
         assertEquals(false, li.hasNext());
     }
 
+    //-----------------------------------------------------------------------
+    /**
+     * Checks the list against the expected one using access by index,
+     * iteration in both directions, which follows the links between the
+     * nodes, and single element inserts and removes, which fail on a tree
+     * that is out of balance.
+     */
+    private static void assertList(final List<Integer> expected, final TreeList<Integer> list) {
+        assertEquals(expected.size(), list.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), list.get(i));
+        }
+        assertEquals(expected, list);
+        final ListIterator<Integer> it = list.listIterator(list.size());
+        for (int i = expected.size() - 1; i >= 0; i--) {
+            assertEquals(expected.get(i), it.previous());
+        }
+        assertFalse(it.hasPrevious());
+        int index = 0;
+        for (; index <= list.size(); index += 7) {
+            list.add(index, Integer.valueOf(-index));
+        }
+        for (index -= 7; index >= 0; index -= 7) {
+            assertEquals(-index, list.remove(index).intValue());
+        }
+        assertEquals(expected, list);
+    }
+
+    private static List<Integer> range(final int from, final int to) {
+        final List<Integer> list = new ArrayList<Integer>();
+        for (int i = from; i < to; i++) {
+            list.add(Integer.valueOf(i));
+        }
+        return list;
+    }
+
+    public void testBulkConstruction() {
+        for (int size = 0; size < 70; size++) {
+            final List<Integer> expected = range(0, size);
+            assertList(expected, new TreeList<Integer>(expected));
+            assertList(expected, new TreeList<Integer>(expected.toArray(new Integer[size])));
+        }
+    }
+
+    public void testAddAllAtIndex() {
+        final Random random = new Random(17);
+        final List<Integer> expected = new ArrayList<Integer>();
+        final TreeList<Integer> list = new TreeList<Integer>();
+        int next = 0;
+        for (int i = 0; i < 200; i++) {
+            final int index = random.nextInt(expected.size() + 1);
+            final int count = random.nextInt(i % 10 == 0 ? 500 : 20);
+            final List<Integer> added = range(next, next + count);
+            next += count;
+            expected.addAll(index, added);
+            assertEquals(count > 0, list.addAll(index, added));
+            if (i % 20 == 0) {
+                assertList(expected, list);
+            }
+        }
+        assertList(expected, list);
+    }
+
+    public void testRemoveRange() {
+        final Random random = new Random(23);
+        final List<Integer> expected = range(0, 20000);
+        final TreeList<Integer> list = new TreeList<Integer>(expected);
+        while (expected.size() > 0) {
+            final int from = random.nextInt(expected.size());
+            final int to = from + random.nextInt(Math.min(expected.size() - from, 500) + 1);
+            expected.subList(from, to).clear();
+            list.subList(from, to).clear();
+            assertEquals(expected.size(), list.size());
+            if (random.nextInt(10) == 0) {
+                assertList(expected, list);
+            }
+        }
+        assertList(expected, list);
+    }
+
+    public void testSplitAndConcatenate() {
+        final Random random = new Random(5);
+        for (int i = 0; i < 50; i++) {
+            final int size = random.nextInt(2000);
+            final int index = random.nextInt(size + 1);
+            final TreeList<Integer> list = new TreeList<Integer>();
+            for (int j = 0; j < size; j++) {
+                list.add(Integer.valueOf(j));
+            }
+            final TreeList<Integer> tail = list.split(index);
+            assertList(range(0, index), list);
+            final List<Integer> expectedTail = range(index, size);
+            assertList(expectedTail, tail);
+
+            final int otherSize = random.nextInt(3000);
+            final TreeList<Integer> other = new TreeList<Integer>(range(size, size + otherSize));
+            tail.concatenate(other);
+            expectedTail.addAll(range(size, size + otherSize));
+            assertEquals(0, other.size());
+            assertList(expectedTail, tail);
+            other.add(Integer.valueOf(1));
+            assertEquals(1, other.size());
+        }
+    }
+
+    public void testSplitRepeatedly() {
+        final Random random = new Random(6);
+        final TreeList<Integer> list = new TreeList<Integer>(range(0, 3000));
+        final List<TreeList<Integer>> pieces = new ArrayList<TreeList<Integer>>();
+        pieces.add(list);
+        for (int i = 0; i < 40; i++) {
+            final int position = random.nextInt(pieces.size());
+            final TreeList<Integer> piece = pieces.get(position);
+            final int first = piece.isEmpty() ? 0 : piece.get(0).intValue();
+            final int index = random.nextInt(piece.size() + 1);
+            final TreeList<Integer> tail = piece.split(index);
+            assertList(range(first, first + index), piece);
+            assertList(range(first + index, first + index + tail.size()), tail);
+            pieces.add(position + 1, tail);
+        }
+        for (int i = 1; i < pieces.size(); i++) {
+            list.concatenate(pieces.get(i));
+        }
+        assertList(range(0, 3000), list);
+    }
+
+    public void testRemoveAllRetainAll() {
+        final List<Integer> expected = range(0, 1000);
+        final TreeList<Integer> list = new TreeList<Integer>(expected);
+        final List<Integer> odd = new ArrayList<Integer>();
+        for (int i = 1; i < 1000; i += 2) {
+            odd.add(Integer.valueOf(i));
+        }
+        assertTrue(list.removeAll(odd));
+        expected.removeAll(odd);
+        assertList(expected, list);
+        assertFalse(list.removeAll(odd));
+        assertTrue(list.retainAll(range(0, 100)));
+        expected.retainAll(range(0, 100));
+        assertList(expected, list);
+    }
+
 }
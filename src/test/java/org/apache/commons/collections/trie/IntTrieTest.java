@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.trie;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IntTrieTest {
+
+    @Test
+    public void testSimple() {
+        final IntTrie<String> trie = new IntTrie<String>();
+        Assert.assertTrue(trie.isEmpty());
+        Assert.assertNull(trie.put(1, "One"));
+        Assert.assertEquals("One", trie.put(1, "NotOne"));
+        Assert.assertEquals("NotOne", trie.get(1));
+        Assert.assertTrue(trie.containsKey(1));
+
+        trie.put(Integer.MIN_VALUE, "min");
+        trie.put(Integer.MAX_VALUE, "max");
+        trie.put(-1, "minus one");
+        Assert.assertEquals(4, trie.size());
+        Assert.assertEquals(Integer.MIN_VALUE, trie.firstKey());
+        Assert.assertEquals(Integer.MAX_VALUE, trie.lastKey());
+        Assert.assertEquals("minus one", trie.remove(-1));
+        Assert.assertEquals(3, trie.size());
+    }
+
+    @Test
+    public void testAgainstTreeMap() {
+        final IntTrie<Integer> trie = new IntTrie<Integer>();
+        final SortedMap<Integer, Integer> map = new TreeMap<Integer, Integer>();
+        final Random random = new Random(99);
+        for (int i = 0; i < 10000; i++) {
+            final int key = random.nextInt() >> random.nextInt(32);
+            if (random.nextInt(4) == 0) {
+                Assert.assertEquals(map.remove(key), trie.remove(key));
+            } else {
+                Assert.assertEquals(map.put(key, i), trie.put(key, i));
+            }
+        }
+
+        final IntTrie.EntryIterator<Integer> it = trie.iterator();
+        for (final Map.Entry<Integer, Integer> entry : map.entrySet()) {
+            Assert.assertTrue(it.hasNext());
+            Assert.assertEquals(entry.getKey().intValue(), it.next());
+            Assert.assertEquals(entry.getValue(), it.getValue());
+        }
+        Assert.assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testPrefixedByBits() {
+        final IntTrie<String> trie = new IntTrie<String>();
+        // 10.0.0.0/8, 192.168.0.0/16 and 192.169.0.0/16
+        trie.put(0x0a000001, "10.0.0.1");
+        trie.put(0xc0a80001, "192.168.0.1");
+        trie.put(0xc0a80102, "192.168.1.2");
+        trie.put(0xc0a90001, "192.169.0.1");
+
+        final IntTrie<String> prefixed = trie.getPrefixedByBits(0xc0a80000, 16);
+        Assert.assertEquals(2, prefixed.size());
+        Assert.assertEquals(0xc0a80001, prefixed.firstKey());
+        Assert.assertEquals(0xc0a80102, prefixed.lastKey());
+        Assert.assertNull(prefixed.get(0xc0a90001));
+
+        Assert.assertEquals(3, trie.getPrefixedByBits(0xc0000000, 8).size());
+        Assert.assertEquals(1, trie.getPrefixedByBits(0, 1).size());
+        Assert.assertEquals(4, trie.getPrefixedByBits(0, 0).size());
+        Assert.assertEquals(1, trie.getPrefixedByBits(0xc0a80102, 32).size());
+        try {
+            trie.getPrefixedByBits(0, 33);
+            Assert.fail("Expected IllegalArgumentException");
+        } catch (final IllegalArgumentException expected) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.trie;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LongTrieTest {
+
+    @Test
+    public void testSimple() {
+        final LongTrie<String> trie = new LongTrie<String>();
+        Assert.assertTrue(trie.isEmpty());
+        Assert.assertEquals(0, trie.size());
+        Assert.assertNull(trie.get(1L));
+
+        Assert.assertNull(trie.put(1L, "One"));
+        Assert.assertFalse(trie.isEmpty());
+        Assert.assertEquals(1, trie.size());
+        Assert.assertEquals("One", trie.get(1L));
+        Assert.assertTrue(trie.containsKey(1L));
+        Assert.assertFalse(trie.containsKey(0L));
+
+        Assert.assertEquals("One", trie.put(1L, "NotOne"));
+        Assert.assertEquals(1, trie.size());
+        Assert.assertEquals("NotOne", trie.remove(1L));
+        Assert.assertNull(trie.remove(1L));
+        Assert.assertTrue(trie.isEmpty());
+
+        trie.put(Long.MIN_VALUE, "min");
+        trie.put(-1L, "minus one");
+        trie.put(0L, "zero");
+        trie.put(Long.MAX_VALUE, "max");
+        Assert.assertEquals(Long.MIN_VALUE, trie.firstKey());
+        Assert.assertEquals(Long.MAX_VALUE, trie.lastKey());
+        Assert.assertEquals("minus one", trie.get(-1L));
+
+        trie.clear();
+        Assert.assertTrue(trie.isEmpty());
+        try {
+            trie.firstKey();
+            Assert.fail("Expected NoSuchElementException");
+        } catch (final NoSuchElementException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testAgainstTreeMap() {
+        final LongTrie<Long> trie = new LongTrie<Long>();
+        final SortedMap<Long, Long> map = new TreeMap<Long, Long>();
+        final Random random = new Random(1234);
+        for (int i = 0; i < 20000; i++) {
+            final long key = random.nextBoolean() ? random.nextLong() : random.nextInt(1000) - 500;
+            if (random.nextInt(4) == 0) {
+                Assert.assertEquals(map.remove(key), trie.remove(key));
+            } else {
+                Assert.assertEquals(map.put(key, key * 2), trie.put(key, key * 2));
+            }
+        }
+        Assert.assertEquals(map.size(), trie.size());
+        assertSameEntries(map, trie);
+        for (final Long key : map.keySet()) {
+            Assert.assertEquals(map.get(key), trie.get(key));
+        }
+        Assert.assertEquals(map.firstKey().longValue(), trie.firstKey());
+        Assert.assertEquals(map.lastKey().longValue(), trie.lastKey());
+    }
+
+    @Test
+    public void testPrefixedByBits() {
+        final LongTrie<String> trie = new LongTrie<String>();
+        for (long key = 0x1200; key < 0x1400; key += 0x10) {
+            trie.put(key, Long.toHexString(key));
+        }
+        trie.put(-0x1300L, "negative");
+
+        final LongTrie<String> prefixed = trie.getPrefixedByBits(0x1300L, 56);
+        Assert.assertEquals(16, prefixed.size());
+        Assert.assertEquals(0x1300L, prefixed.firstKey());
+        Assert.assertEquals(0x13f0L, prefixed.lastKey());
+        Assert.assertEquals("1310", prefixed.get(0x1310L));
+        Assert.assertNull(prefixed.get(0x1210L));
+        Assert.assertFalse(prefixed.containsKey(0x1210L));
+
+        final LongTrie<String> narrower = prefixed.getPrefixedByBits(0x1340L, 60);
+        Assert.assertEquals(1, narrower.size());
+        Assert.assertEquals("1340", narrower.get(0x1340L));
+        Assert.assertSame(prefixed, prefixed.getPrefixedByBits(0x1300L, 48));
+
+        // changes are visible in both directions
+        prefixed.put(0x1301L, "1301");
+        Assert.assertEquals("1301", trie.get(0x1301L));
+        trie.remove(0x1310L);
+        Assert.assertEquals(16, prefixed.size());
+        try {
+            prefixed.put(0x1201L, "out of range");
+            Assert.fail("Expected IllegalArgumentException");
+        } catch (final IllegalArgumentException expected) {
+            // expected
+        }
+
+        Assert.assertTrue(trie.getPrefixedByBits(0x7700L, 56).isEmpty());
+        Assert.assertEquals(1, trie.getPrefixedByBits(-1L, 1).size());
+        Assert.assertEquals(trie.size(), trie.getPrefixedByBits(42L, 0).size());
+
+        prefixed.clear();
+        Assert.assertTrue(prefixed.isEmpty());
+        Assert.assertEquals(17, trie.size());
+    }
+
+    @Test
+    public void testPrefixedByBitsAgainstTreeMap() {
+        final LongTrie<Long> trie = new LongTrie<Long>();
+        final Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            final long key = random.nextLong() >> random.nextInt(64);
+            trie.put(key, key);
+        }
+        for (int i = 0; i < 500; i++) {
+            final long prefix = random.nextLong() >> random.nextInt(64);
+            final int lengthInBits = random.nextInt(65);
+            final SortedMap<Long, Long> expected = new TreeMap<Long, Long>();
+            for (final LongTrie.EntryIterator<Long> it = trie.iterator(); it.hasNext();) {
+                final long key = it.next();
+                if (lengthInBits == 0 || (key ^ prefix) >>> (64 - lengthInBits) == 0) {
+                    expected.put(key, it.getValue());
+                }
+            }
+            final LongTrie<Long> prefixed = trie.getPrefixedByBits(prefix, lengthInBits);
+            Assert.assertEquals(expected.size(), prefixed.size());
+            assertSameEntries(expected, prefixed);
+        }
+    }
+
+    @Test
+    public void testIterator() {
+        final LongTrie<String> trie = new LongTrie<String>();
+        for (long key = -10; key < 10; key++) {
+            trie.put(key, String.valueOf(key));
+        }
+
+        LongTrie.EntryIterator<String> it = trie.iterator();
+        for (long key = -10; key < 10; key++) {
+            Assert.assertTrue(it.hasNext());
+            Assert.assertEquals(key, it.next());
+            Assert.assertEquals(key, it.getKey());
+            Assert.assertEquals(String.valueOf(key), it.setValue("x"));
+            if (key % 2 == 0) {
+                it.remove();
+            }
+        }
+        Assert.assertFalse(it.hasNext());
+        Assert.assertEquals(10, trie.size());
+        Assert.assertEquals("x", trie.get(-9L));
+        Assert.assertNull(trie.get(-8L));
+
+        it = trie.iterator();
+        try {
+            it.getValue();
+            Assert.fail("Expected IllegalStateException");
+        } catch (final IllegalStateException expected) {
+            // expected
+        }
+        it.next();
+        trie.put(100L, "100");
+        try {
+            it.next();
+            Assert.fail("Expected ConcurrentModificationException");
+        } catch (final ConcurrentModificationException expected) {
+            // expected
+        }
+    }
+
+    private static void assertSameEntries(final SortedMap<Long, Long> expected, final LongTrie<Long> trie) {
+        final Iterator<Map.Entry<Long, Long>> entries = expected.entrySet().iterator();
+        final LongTrie.EntryIterator<Long> it = trie.iterator();
+        while (entries.hasNext()) {
+            final Map.Entry<Long, Long> entry = entries.next();
+            Assert.assertTrue(it.hasNext());
+            Assert.assertEquals(entry.getKey().longValue(), it.next());
+            Assert.assertEquals(entry.getValue(), it.getValue());
+        }
+        Assert.assertFalse(it.hasNext());
+    }
+}
@@ -31,9 +31,12 @@ import java.util.Random;
 import java.util.SortedMap;
 import java.util.StringTokenizer;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.Map.Entry;
 
 import org.apache.commons.collections.Trie.Cursor;
+import org.apache.commons.collections.keyvalue.DefaultMapEntry;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -987,6 +990,16 @@ public class PatriciaTrieTest {
             Assert.fail("shouldn't have next (but was: " + iter.next() + ")");
         }
         Assert.assertFalse(iter.hasNext());
+        
+        // removing the last entry with the prefix
+        iter.remove();
+        Assert.assertTrue(map.isEmpty());
+        
+        map = trie.getPrefixedBy("Am");
+        map.clear();
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertFalse(trie.containsKey("Amber"));
+        Assert.assertEquals(12, trie.size());
     }
 
     @Test
@@ -1043,6 +1056,257 @@ public class PatriciaTrieTest {
         Assert.assertEquals(1, strings.size());
     }
     
+    @Test
+    public void testGetWithinDistance() {
+        final PatriciaTrie<String, String> trie 
+            = new PatriciaTrie<String, String>(new StringKeyAnalyzer());
+        final String[] words = { "", "a", "and", "ant", "anna", "banana", "band", 
+                "bandana", "can", "cane", "candy", "hand", "handy", "sand", "sandy" };
+        for (final String word : words) {
+            trie.put(word, word.toUpperCase());
+        }
+        
+        Assert.assertEquals(Arrays.asList("and"), 
+                new ArrayList<String>(trie.getWithinDistance("and", 0).keySet()));
+        Assert.assertEquals(Arrays.asList("and", "ant", "band", "hand", "sand"), 
+                new ArrayList<String>(trie.getWithinDistance("and", 1).keySet()));
+        Assert.assertEquals("HANDY", trie.getWithinDistance("hnady", 2).get("handy"));
+        Assert.assertTrue(trie.getWithinDistance("xyz", 2).isEmpty());
+        
+        final Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            final String word = randomString(random, 0, 8, 'a', 'd');
+            trie.put(word, word);
+        }
+        for (int i = 0; i < 50; i++) {
+            final String key = randomString(random, 0, 8, 'a', 'e');
+            for (int maxDistance = 0; maxDistance < 4; maxDistance++) {
+                final SortedMap<String, String> expected = new TreeMap<String, String>();
+                for (final Map.Entry<String, String> entry : trie.entrySet()) {
+                    if (levenshtein(key, entry.getKey()) <= maxDistance) {
+                        expected.put(entry.getKey(), entry.getValue());
+                    }
+                }
+                Assert.assertEquals(expected, trie.getWithinDistance(key, maxDistance));
+            }
+        }
+    }
+    
+    @Test
+    public void testTraverseWithinDistance() {
+        final PatriciaTrie<char[], String> trie 
+            = new PatriciaTrie<char[], String>(new CharArrayKeyAnalyzer());
+        trie.put("color".toCharArray(), "color");
+        trie.put("colour".toCharArray(), "colour");
+        trie.put("collar".toCharArray(), "collar");
+        trie.put("dollar".toCharArray(), "dollar");
+        
+        final List<String> matches = new ArrayList<String>();
+        Assert.assertNull(trie.traverseWithinDistance("colr".toCharArray(), 2, 
+                new Cursor<char[], String>() {
+            public Decision select(final Entry<? extends char[], ? extends String> entry) {
+                matches.add(entry.getValue());
+                return Decision.CONTINUE;
+            }
+        }));
+        Collections.sort(matches);
+        Assert.assertEquals(Arrays.asList("collar", "color", "colour"), matches);
+        
+        final Map.Entry<char[], String> removed = trie.traverseWithinDistance("dolar".toCharArray(), 1, 
+                new Cursor<char[], String>() {
+            public Decision select(final Entry<? extends char[], ? extends String> entry) {
+                return Decision.REMOVE_AND_EXIT;
+            }
+        });
+        Assert.assertEquals("dollar", removed.getValue());
+        Assert.assertEquals(3, trie.size());
+        
+        try {
+            trie.traverseWithinDistance("color".toCharArray(), 0, new Cursor<char[], String>() {
+                public Decision select(final Entry<? extends char[], ? extends String> entry) {
+                    return Decision.REMOVE;
+                }
+            });
+            Assert.fail("Expected UnsupportedOperationException");
+        } catch (final UnsupportedOperationException expected) {
+            // expected
+        }
+        
+        try {
+            trie.getWithinDistance("color".toCharArray(), -1);
+            Assert.fail("Expected IllegalArgumentException");
+        } catch (final IllegalArgumentException expected) {
+            // expected
+        }
+    }
+    
+    @Test
+    public void testFromSortedEntries() throws Exception {
+        final Random random = new Random(7);
+        final PatriciaTrie<String, Integer> sorted 
+            = new PatriciaTrie<String, Integer>(new StringKeyAnalyzer());
+        sorted.put("", -1);
+        for (int i = 0; i < 5000; i++) {
+            sorted.put(randomString(random, 1, 12, '\0', 'z'), i);
+        }
+        final List<Map.Entry<String, Integer>> entries 
+            = new ArrayList<Map.Entry<String, Integer>>(sorted.entrySet());
+        
+        // the same entries added one by one in sorted order
+        final PatriciaTrie<String, Integer> expected 
+            = new PatriciaTrie<String, Integer>(new StringKeyAnalyzer());
+        for (final Map.Entry<String, Integer> entry : entries) {
+            expected.put(entry.getKey(), entry.getValue());
+        }
+        
+        final PatriciaTrie<String, Integer> trie = PatriciaTrie.fromSortedEntries(
+                new StringKeyAnalyzer(), entries);
+        assertSameStructure(expected, trie);
+        
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (final int slices : new int[] { 1, 2, 7, 64, entries.size() }) {
+                final PatriciaTrie<String, Integer> parallel 
+                    = new PatriciaTrie<String, Integer>(new StringKeyAnalyzer());
+                parallel.putAllSorted(entries, executor, slices);
+                assertSameStructure(expected, parallel);
+            }
+            assertSameStructure(expected, 
+                    PatriciaTrie.fromSortedEntries(new StringKeyAnalyzer(), entries, executor));
+        } finally {
+            executor.shutdown();
+        }
+        
+        // the trie must stay consistent when it is modified afterwards
+        for (final Iterator<Map.Entry<String, Integer>> it = entries.iterator(); it.hasNext();) {
+            final String key = it.next().getKey();
+            if (random.nextBoolean()) {
+                Assert.assertEquals(expected.remove(key), trie.remove(key));
+            }
+        }
+        assertSameStructure(expected, trie);
+        Assert.assertEquals(expected, trie);
+    }
+    
+    @Test
+    public void testFromSortedEntriesWithDuplicates() throws Exception {
+        final PatriciaTrie<Integer, String> expected 
+            = new PatriciaTrie<Integer, String>(new IntegerKeyAnalyzer());
+        final List<Map.Entry<Integer, String>> entries = new ArrayList<Map.Entry<Integer, String>>();
+        final Random random = new Random(11);
+        final List<Integer> keys = new ArrayList<Integer>(new PatriciaTrie<Integer, String>(
+                new IntegerKeyAnalyzer(), randomIntegers(random, 3000)).keySet());
+        for (final Integer key : keys) {
+            // zero and the duplicates go to the same nodes
+            final int count = key.intValue() == 0 ? 3 : 1 + random.nextInt(3);
+            for (int i = 0; i < count; i++) {
+                final String value = key + "/" + i;
+                entries.add(new DefaultMapEntry<Integer, String>(key, value));
+                expected.put(key, value);
+            }
+        }
+        
+        assertSameStructure(expected, PatriciaTrie.fromSortedEntries(new IntegerKeyAnalyzer(), entries));
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (final int slices : new int[] { 3, 100, entries.size() }) {
+                final PatriciaTrie<Integer, String> parallel 
+                    = new PatriciaTrie<Integer, String>(new IntegerKeyAnalyzer());
+                parallel.putAllSorted(entries, executor, slices);
+                assertSameStructure(expected, parallel);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    @Test
+    public void testFromSortedEntriesNotSorted() {
+        final List<Map.Entry<String, String>> entries = new ArrayList<Map.Entry<String, String>>();
+        entries.add(new DefaultMapEntry<String, String>("b", "b"));
+        entries.add(new DefaultMapEntry<String, String>("a", "a"));
+        try {
+            PatriciaTrie.fromSortedEntries(new StringKeyAnalyzer(), entries);
+            Assert.fail("Expected IllegalArgumentException");
+        } catch (final IllegalArgumentException expected) {
+            // expected
+        }
+        
+        entries.clear();
+        entries.add(new DefaultMapEntry<String, String>("a", "a"));
+        entries.add(new DefaultMapEntry<String, String>("", "empty"));
+        try {
+            PatriciaTrie.fromSortedEntries(new StringKeyAnalyzer(), entries);
+            Assert.fail("Expected IllegalArgumentException");
+        } catch (final IllegalArgumentException expected) {
+            // expected
+        }
+        
+        Assert.assertTrue(PatriciaTrie.fromSortedEntries(new StringKeyAnalyzer(), 
+                new ArrayList<Map.Entry<String, String>>()).isEmpty());
+    }
+    
+    private static Map<Integer, String> randomIntegers(final Random random, final int count) {
+        final Map<Integer, String> map = new TreeMap<Integer, String>();
+        map.put(0, "0");
+        for (int i = 0; i < count; i++) {
+            final int key = random.nextInt() >> random.nextInt(32);
+            map.put(key, String.valueOf(key));
+        }
+        return map;
+    }
+    
+    /**
+     * Checks that both tries consist of equal nodes with the same links.
+     */
+    private static <K, V> void assertSameStructure(final PatriciaTrie<K, V> expected, 
+            final PatriciaTrie<K, V> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        Assert.assertEquals(new ArrayList<Map.Entry<K, V>>(expected.entrySet()), 
+                new ArrayList<Map.Entry<K, V>>(actual.entrySet()));
+        assertSameStructure(expected.root, actual.root);
+    }
+    
+    private static <K, V> void assertSameStructure(final PatriciaTrieBase.TrieEntry<K, V> expected, 
+            final PatriciaTrieBase.TrieEntry<K, V> actual) {
+        Assert.assertEquals(expected.toString(), actual.toString());
+        if (expected.left != null && expected.left.bitIndex > expected.bitIndex) {
+            assertSameStructure(expected.left, actual.left);
+        }
+        if (expected.right != null && expected.right.bitIndex > expected.bitIndex) {
+            assertSameStructure(expected.right, actual.right);
+        }
+    }
+    
+    private static String randomString(final Random random, final int minLength, final int maxLength,
+            final char from, final char to) {
+        final int length = minLength + random.nextInt(maxLength - minLength + 1);
+        final StringBuilder buffer = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            buffer.append((char) (from + random.nextInt(to - from + 1)));
+        }
+        return buffer.toString();
+    }
+    
+    private static int levenshtein(final String a, final String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                final int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1], previous[j]) + 1, previous[j - 1] + cost);
+            }
+            final int[] tmp = previous;
+            previous = current;
+            current = tmp;
+        }
+        return previous[b.length()];
+    }
+    
     private static class TestCursor implements Cursor<Object, Object> {
         private final List<Object> keys;
         private final List<Object> values;
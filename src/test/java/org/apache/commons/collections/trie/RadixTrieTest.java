@@ -0,0 +1,423 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.trie;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.commons.collections.Trie.Cursor;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RadixTrieTest {
+
+    @Test
+    public void testSimple() {
+        final RadixTrie<Integer> trie = new RadixTrie<Integer>();
+        Assert.assertTrue(trie.isEmpty());
+        Assert.assertNull(trie.get("a"));
+        Assert.assertNull(trie.remove("a"));
+
+        Assert.assertNull(trie.put("http://commons.apache.org/", 1));
+        Assert.assertNull(trie.put("http://commons.apache.org/collections/", 2));
+        Assert.assertNull(trie.put("http://commons.apache.org/lang/", 3));
+        Assert.assertNull(trie.put("http://", 4));
+        Assert.assertNull(trie.put("", 5));
+        Assert.assertEquals(5, trie.size());
+
+        Assert.assertEquals(Integer.valueOf(2), trie.get("http://commons.apache.org/collections/"));
+        Assert.assertEquals(Integer.valueOf(4), trie.get("http://"));
+        Assert.assertEquals(Integer.valueOf(5), trie.get(""));
+        Assert.assertNull(trie.get("http://commons.apache.org"));
+        Assert.assertNull(trie.get("http://commons.apache.org/c"));
+        Assert.assertNull(trie.get(Integer.valueOf(1)));
+        Assert.assertFalse(trie.containsKey(null));
+
+        Assert.assertEquals("", trie.firstKey());
+        Assert.assertEquals("http://commons.apache.org/lang/", trie.lastKey());
+
+        Assert.assertEquals(Integer.valueOf(4), trie.put("http://", 6));
+        Assert.assertEquals(5, trie.size());
+        Assert.assertEquals(Integer.valueOf(6), trie.remove("http://"));
+        Assert.assertEquals(Integer.valueOf(5), trie.remove(""));
+        Assert.assertEquals(3, trie.size());
+        Assert.assertEquals(Integer.valueOf(1), trie.get("http://commons.apache.org/"));
+
+        trie.put("\u20ac-\u00e4-\u0100", 7);
+        Assert.assertEquals(Integer.valueOf(7), trie.get("\u20ac-\u00e4-\u0100"));
+        Assert.assertEquals("\u20ac-\u00e4-\u0100", trie.lastKey());
+
+        try {
+            trie.put(null, 0);
+            Assert.fail("Expected NullPointerException");
+        } catch (final NullPointerException expected) {
+        }
+
+        trie.clear();
+        Assert.assertTrue(trie.isEmpty());
+        Assert.assertNull(trie.get("http://"));
+        try {
+            trie.firstKey();
+            Assert.fail("Expected NoSuchElementException");
+        } catch (final NoSuchElementException expected) {
+        }
+    }
+
+    @Test
+    public void testAgainstTreeMap() {
+        final Random random = new Random(13);
+        final RadixTrie<Integer> trie = new RadixTrie<Integer>();
+        final TreeMap<String, Integer> expected = new TreeMap<String, Integer>();
+
+        for (int i = 0; i < 20000; i++) {
+            final String key = randomKey(random);
+            if (random.nextInt(3) == 0) {
+                Assert.assertEquals(expected.remove(key), trie.remove(key));
+            } else {
+                Assert.assertEquals(expected.put(key, i), trie.put(key, i));
+            }
+            Assert.assertEquals(expected.size(), trie.size());
+
+            if (i % 1000 == 0) {
+                assertEntries(expected, trie);
+                trie.trimToSize();
+            }
+        }
+        assertEntries(expected, trie);
+        for (final String key : expected.keySet()) {
+            Assert.assertEquals(expected.get(key), trie.get(key));
+        }
+        Assert.assertEquals(expected, trie);
+        Assert.assertEquals(expected.hashCode(), trie.hashCode());
+        Assert.assertEquals(expected.firstKey(), trie.firstKey());
+        Assert.assertEquals(expected.lastKey(), trie.lastKey());
+
+        for (final String key : new ArrayList<String>(expected.keySet())) {
+            Assert.assertEquals(expected.remove(key), trie.remove(key));
+        }
+        Assert.assertTrue(trie.isEmpty());
+    }
+
+    @Test
+    public void testRangeViews() {
+        final Random random = new Random(17);
+        final RadixTrie<Integer> trie = new RadixTrie<Integer>();
+        final TreeMap<String, Integer> expected = new TreeMap<String, Integer>();
+        for (int i = 0; i < 2000; i++) {
+            final String key = randomKey(random);
+            trie.put(key, i);
+            expected.put(key, i);
+        }
+
+        for (int i = 0; i < 200; i++) {
+            String from = randomKey(random);
+            String to = randomKey(random);
+            if (from.compareTo(to) > 0) {
+                final String tmp = from;
+                from = to;
+                to = tmp;
+            }
+            assertView(expected.subMap(from, to), trie.subMap(from, to));
+            assertView(expected.headMap(to), trie.headMap(to));
+            assertView(expected.tailMap(from), trie.tailMap(from));
+
+            if (from.compareTo(to) < 0) {
+                final String middle = randomKeyBetween(random, from, to);
+                assertView(expected.subMap(from, to).headMap(middle), trie.subMap(from, to).headMap(middle));
+                assertView(expected.subMap(from, to).tailMap(middle), trie.subMap(from, to).tailMap(middle));
+            }
+        }
+
+        final SortedMap<String, Integer> view = trie.subMap("b", "c");
+        try {
+            view.put("c", 0);
+            Assert.fail("Expected IllegalArgumentException");
+        } catch (final IllegalArgumentException expected2) {
+        }
+        try {
+            view.subMap("a", "bb");
+            Assert.fail("Expected IllegalArgumentException");
+        } catch (final IllegalArgumentException expected2) {
+        }
+        try {
+            trie.subMap("c", "b");
+            Assert.fail("Expected IllegalArgumentException");
+        } catch (final IllegalArgumentException expected2) {
+        }
+
+        // the views are backed by the trie
+        view.put("bzz", -1);
+        Assert.assertEquals(Integer.valueOf(-1), trie.get("bzz"));
+        view.clear();
+        Assert.assertTrue(view.isEmpty());
+        Assert.assertEquals(expected.headMap("b").size() + expected.tailMap("c").size(), trie.size());
+        Assert.assertTrue(trie.headMap("b").size() > 0);
+    }
+
+    @Test
+    public void testPrefixedBy() {
+        final Random random = new Random(19);
+        final RadixTrie<Integer> trie = new RadixTrie<Integer>();
+        final TreeMap<String, Integer> expected = new TreeMap<String, Integer>();
+        for (int i = 0; i < 2000; i++) {
+            final String key = randomKey(random);
+            trie.put(key, i);
+            expected.put(key, i);
+        }
+
+        for (int i = 0; i < 300; i++) {
+            final String prefix = randomKey(random);
+            for (int length = 0; length <= prefix.length(); length++) {
+                final String p = prefix.substring(0, length);
+                final SortedMap<String, Integer> prefixed = new TreeMap<String, Integer>();
+                for (final Map.Entry<String, Integer> entry : expected.entrySet()) {
+                    if (entry.getKey().startsWith(p)) {
+                        prefixed.put(entry.getKey(), entry.getValue());
+                    }
+                }
+                assertView(prefixed, trie.getPrefixedBy(prefix, length));
+                assertView(prefixed, trie.getPrefixedByBits(prefix, length * 16));
+                if (!prefixed.isEmpty()) {
+                    final String first = prefixed.firstKey();
+                    assertView(prefixed.tailMap(first), trie.getPrefixedBy(prefix, length).tailMap(first));
+                }
+            }
+        }
+
+        trie.clear();
+        trie.put("Anna", 1);
+        trie.put("Anael", 2);
+        trie.put("Analu", 3);
+        trie.put("Andreas", 4);
+        trie.put("Andrea", 5);
+        trie.put("Andres", 6);
+        trie.put("Anatole", 7);
+        final SortedMap<String, Integer> and = trie.getPrefixedBy("Hello Andrey Smith", 6, 4);
+        Assert.assertEquals(3, and.size());
+        Assert.assertEquals("Andrea", and.firstKey());
+        Assert.assertEquals("Andres", and.lastKey());
+        Assert.assertFalse(and.containsKey("Anna"));
+        Assert.assertNull(and.get("Anna"));
+        try {
+            and.put("Anna", 0);
+            Assert.fail("Expected IllegalArgumentException");
+        } catch (final IllegalArgumentException expected2) {
+        }
+
+        and.remove("Andrea");
+        Assert.assertEquals(2, and.size());
+        Assert.assertEquals(6, trie.size());
+        and.put("Andr", 8);
+        Assert.assertEquals("Andr", and.firstKey());
+        Assert.assertEquals(Integer.valueOf(8), trie.get("Andr"));
+
+        Assert.assertTrue(trie.getPrefixedBy("Andy").isEmpty());
+        Assert.assertTrue(trie.getPrefixedBy("B").isEmpty());
+        try {
+            trie.getPrefixedByBits("And", 20);
+            Assert.fail("Expected IllegalArgumentException");
+        } catch (final IllegalArgumentException expected2) {
+        }
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        final RadixTrie<Integer> trie = new RadixTrie<Integer>();
+        final TreeMap<String, Integer> expected = new TreeMap<String, Integer>();
+        final Random random = new Random(23);
+        for (int i = 0; i < 3000; i++) {
+            final String key = randomKey(random);
+            trie.put(key, i);
+            expected.put(key, i);
+        }
+
+        final Iterator<Map.Entry<String, Integer>> it = trie.entrySet().iterator();
+        final Iterator<Map.Entry<String, Integer>> exp = expected.entrySet().iterator();
+        final List<Map.Entry<String, Integer>> removed = new ArrayList<Map.Entry<String, Integer>>();
+        while (it.hasNext()) {
+            final Map.Entry<String, Integer> entry = it.next();
+            final Map.Entry<String, Integer> other = exp.next();
+            Assert.assertEquals(other.getKey(), entry.getKey());
+            if (random.nextBoolean()) {
+                it.remove();
+                exp.remove();
+                removed.add(entry);
+                Assert.assertFalse(trie.containsKey(entry.getKey()));
+            } else {
+                entry.setValue(-entry.getValue());
+                other.setValue(-other.getValue());
+            }
+        }
+        Assert.assertFalse(exp.hasNext());
+        assertEntries(expected, trie);
+        for (final Map.Entry<String, Integer> entry : removed) {
+            Assert.assertFalse(trie.containsKey(entry.getKey()));
+        }
+
+        try {
+            it.next();
+            Assert.fail("Expected NoSuchElementException");
+        } catch (final NoSuchElementException expected2) {
+        }
+
+        final Iterator<String> keys = trie.keySet().iterator();
+        keys.next();
+        trie.put("\u1234", 0);
+        try {
+            keys.next();
+            Assert.fail("Expected ConcurrentModificationException");
+        } catch (final ConcurrentModificationException expected2) {
+        }
+    }
+
+    @Test
+    public void testTraverseAndSelect() {
+        final RadixTrie<Integer> trie = new RadixTrie<Integer>();
+        final Random random = new Random(29);
+        for (int i = 0; i < 500; i++) {
+            trie.put(randomKey(random), i);
+        }
+
+        for (final String key : new ArrayList<String>(trie.keySet())) {
+            Assert.assertEquals(key, trie.selectKey(key));
+        }
+
+        // select visits every entry exactly once
+        final Set<String> visited = new HashSet<String>();
+        Assert.assertNull(trie.select("abc", new Cursor<String, Integer>() {
+            public Decision select(final Map.Entry<? extends String, ? extends Integer> entry) {
+                Assert.assertTrue(visited.add(entry.getKey()));
+                return Decision.CONTINUE;
+            }
+        }));
+        Assert.assertEquals(trie.keySet(), visited);
+
+        // remove all keys starting with 'a'
+        final int size = trie.size();
+        final int prefixed = trie.getPrefixedBy("a").size();
+        Assert.assertNull(trie.traverse(new Cursor<String, Integer>() {
+            public Decision select(final Map.Entry<? extends String, ? extends Integer> entry) {
+                return entry.getKey().startsWith("a") ? Decision.REMOVE : Decision.CONTINUE;
+            }
+        }));
+        Assert.assertEquals(size - prefixed, trie.size());
+        Assert.assertTrue(trie.getPrefixedBy("a").isEmpty());
+
+        final String first = trie.firstKey();
+        final Map.Entry<String, Integer> removed = trie.traverse(new Cursor<String, Integer>() {
+            public Decision select(final Map.Entry<? extends String, ? extends Integer> entry) {
+                return Decision.REMOVE_AND_EXIT;
+            }
+        });
+        Assert.assertEquals(first, removed.getKey());
+        Assert.assertFalse(trie.containsKey(first));
+
+        trie.clear();
+        trie.put("H", 1);
+        trie.put("L", 2);
+        Assert.assertEquals("L", trie.selectKey("D"));
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        final RadixTrie<Integer> trie = new RadixTrie<Integer>();
+        final Random random = new Random(31);
+        for (int i = 0; i < 1000; i++) {
+            trie.put(randomKey(random), i);
+        }
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(trie);
+        out.close();
+        final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        final Object copy = in.readObject();
+        in.close();
+
+        Assert.assertEquals(trie, copy);
+        Assert.assertEquals(new ArrayList<String>(trie.keySet()),
+                new ArrayList<String>(((RadixTrie<?>) copy).keySet()));
+    }
+
+    /**
+     * Returns a random key with many shared prefixes and some wide characters.
+     */
+    private static String randomKey(final Random random) {
+        final StringBuilder buffer = new StringBuilder();
+        final int length = random.nextInt(8);
+        for (int i = 0; i < length; i++) {
+            final int c = random.nextInt(5);
+            buffer.append(c == 4 ? (char) ('\u0100' + random.nextInt(2)) : (char) ('a' + c));
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Returns a key from the first key inclusive to the second exclusive.
+     */
+    private static String randomKeyBetween(final Random random, final String from, final String to) {
+        for (int i = 0; i < 100; i++) {
+            final String key = randomKey(random);
+            if (key.compareTo(from) >= 0 && key.compareTo(to) < 0) {
+                return key;
+            }
+        }
+        return from;
+    }
+
+    private static void assertEntries(final SortedMap<String, Integer> expected, final SortedMap<String, Integer> actual) {
+        Assert.assertEquals(new ArrayList<Map.Entry<String, Integer>>(expected.entrySet()),
+                new ArrayList<Map.Entry<String, Integer>>(actual.entrySet()));
+    }
+
+    private static void assertView(final SortedMap<String, Integer> expected, final SortedMap<String, Integer> actual) {
+        assertEntries(expected, actual);
+        Assert.assertEquals(expected.size(), actual.size());
+        Assert.assertEquals(expected.isEmpty(), actual.isEmpty());
+        if (expected.isEmpty()) {
+            try {
+                actual.firstKey();
+                Assert.fail("Expected NoSuchElementException");
+            } catch (final NoSuchElementException e) {
+            }
+            try {
+                actual.lastKey();
+                Assert.fail("Expected NoSuchElementException");
+            } catch (final NoSuchElementException e) {
+            }
+        } else {
+            Assert.assertEquals(expected.firstKey(), actual.firstKey());
+            Assert.assertEquals(expected.lastKey(), actual.lastKey());
+            final String key = expected.firstKey();
+            Assert.assertTrue(actual.containsKey(key));
+            Assert.assertEquals(expected.get(key), actual.get(key));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.trie;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import junit.framework.Test;
+
+import org.apache.commons.collections.Bag;
+import org.apache.commons.collections.BulkTest;
+import org.apache.commons.collections.SortedBag;
+import org.apache.commons.collections.bag.AbstractSortedBagTest;
+import org.apache.commons.collections.bag.HashBag;
+
+/**
+ * Extension of {@link AbstractSortedBagTest} for exercising the
+ * {@link TrieBag} implementation.
+ *
+ * @version $Id$
+ */
+public class TrieBagTest<T> extends AbstractSortedBagTest<T> {
+
+    public TrieBagTest(final String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return BulkTest.makeSuite(TrieBagTest.class);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public SortedBag<T> makeObject() {
+        return new TrieBag<T>((KeyAnalyzer<? super T>) StringKeyAnalyzer.INSTANCE);
+    }
+
+    //-----------------------------------------------------------------------
+    public void testOrdering() {
+        final TrieBag<String> bag = new TrieBag<String>(StringKeyAnalyzer.INSTANCE,
+                Arrays.asList("C", "A", "B", "D", "A"));
+        assertEquals(Arrays.asList("A", "A", "B", "C", "D"), Arrays.asList(bag.toArray()));
+        assertEquals("A", bag.first());
+        assertEquals("D", bag.last());
+        assertEquals("[2:A,1:B,1:C,1:D]", bag.toString());
+    }
+
+    public void testEmptyKey() {
+        final TrieBag<String> bag = new TrieBag<String>(StringKeyAnalyzer.INSTANCE);
+        bag.add("", 3);
+        bag.add("a");
+        assertEquals(3, bag.getCount(""));
+        assertTrue(bag.remove(""));
+        assertEquals(0, bag.getCount(""));
+        bag.add("");
+        assertEquals(1, bag.getCount(""));
+        assertEquals(2, bag.size());
+    }
+
+    public void testPrefixedBy() {
+        final TrieBag<String> bag = new TrieBag<String>(StringKeyAnalyzer.INSTANCE);
+        bag.add("Anna", 2);
+        bag.add("Anael");
+        bag.add("Andreas", 3);
+        bag.add("Andrea");
+        bag.add("Andres", 4);
+
+        assertEquals(8, bag.prefixCount("And"));
+        assertEquals(11, bag.prefixCount("An"));
+        assertEquals(0, bag.prefixCount("Andy"));
+
+        final SortedBag<String> and = bag.getPrefixedBy("Andrey", 4);
+        assertEquals(8, and.size());
+        assertEquals(3, and.uniqueSet().size());
+        assertEquals(3, and.getCount("Andreas"));
+        assertEquals(0, and.getCount("Anna"));
+        assertEquals("Andrea", and.first());
+        assertEquals("Andres", and.last());
+        assertEquals("[1:Andrea,3:Andreas,4:Andres]", and.toString());
+
+        // the view is backed by the bag
+        and.add("Andrew", 2);
+        assertEquals(2, bag.getCount("Andrew"));
+        assertEquals(13, bag.size());
+        try {
+            and.add("Anna");
+            fail("Expected IllegalArgumentException");
+        } catch (final IllegalArgumentException e) {
+        }
+        assertTrue(and.remove("Andres", 3));
+        assertEquals(1, bag.getCount("Andres"));
+        assertFalse(and.remove("Anna"));
+        assertEquals(2, bag.getCount("Anna"));
+
+        final Bag<String> expected = new HashBag<String>();
+        expected.add("Andrea");
+        expected.add("Andreas", 3);
+        expected.add("Andres");
+        expected.add("Andrew", 2);
+        assertEquals(expected, and);
+        assertEquals(expected.hashCode(), and.hashCode());
+
+        final Iterator<String> it = and.iterator();
+        assertEquals("Andrea", it.next());
+        it.remove();
+        assertEquals("Andreas", it.next());
+        it.remove();
+        assertEquals(5, and.size());
+        assertEquals(8, bag.size());
+
+        and.clear();
+        assertTrue(and.isEmpty());
+        assertEquals(3, bag.size());
+        assertEquals("[1:Anael,2:Anna]", bag.toString());
+    }
+}
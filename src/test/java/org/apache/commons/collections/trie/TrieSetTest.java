@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections.trie;
+
+import java.util.Arrays;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import junit.framework.Test;
+
+import org.apache.commons.collections.BulkTest;
+import org.apache.commons.collections.set.AbstractSortedSetTest;
+
+/**
+ * Extension of {@link AbstractSortedSetTest} for exercising the
+ * {@link TrieSet} implementation.
+ *
+ * @version $Id$
+ */
+public class TrieSetTest<E> extends AbstractSortedSetTest<E> {
+
+    public TrieSetTest(final String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return BulkTest.makeSuite(TrieSetTest.class);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public SortedSet<E> makeObject() {
+        return new TrieSet<E>((KeyAnalyzer<? super E>) StringKeyAnalyzer.INSTANCE);
+    }
+
+    @Override
+    public SortedSet<E> makeConfirmedCollection() {
+        return new TreeSet<E>();
+    }
+
+    @Override
+    public boolean isNullSupported() {
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E[] getFullNonNullElements() {
+        final Object[] elements = new Object[30];
+        for (int i = 0; i < 30; i++) {
+            elements[i] = String.valueOf(i + i + 101);
+        }
+        return (E[]) elements;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E[] getOtherNonNullElements() {
+        final Object[] elements = new Object[30];
+        for (int i = 0; i < 30; i++) {
+            elements[i] = String.valueOf(i + i + 102);
+        }
+        return (E[]) elements;
+    }
+
+    @Override
+    protected boolean skipSerializedCanonicalTests() {
+        return true;
+    }
+
+    //-----------------------------------------------------------------------
+    public void testPrefixedBy() {
+        final TrieSet<String> set = new TrieSet<String>(StringKeyAnalyzer.INSTANCE,
+                Arrays.asList("Anna", "Anael", "Analu", "Andreas", "Andrea", "Andres", "Anatole"));
+
+        assertEquals(3, set.prefixCount("And"));
+        assertEquals(7, set.prefixCount("An"));
+        assertEquals(0, set.prefixCount("Andy"));
+
+        final SortedSet<String> and = set.getPrefixedBy("Andrey", 4);
+        assertEquals(Arrays.asList("Andrea", "Andreas", "Andres"), Arrays.asList(and.toArray()));
+        assertEquals("Andrea", and.first());
+        assertEquals("Andres", and.last());
+        assertFalse(and.contains("Anna"));
+
+        // the view is backed by the set
+        assertTrue(and.add("Andrew"));
+        assertFalse(and.add("Andrew"));
+        assertTrue(set.contains("Andrew"));
+        try {
+            and.add("Anna");
+            fail("Expected IllegalArgumentException");
+        } catch (final IllegalArgumentException e) {
+        }
+        assertTrue(set.remove("Andreas"));
+        assertFalse(and.contains("Andreas"));
+        assertEquals(3, set.getPrefixedByBits("Andr", 64).size());
+
+        and.clear();
+        assertEquals(4, set.size());
+        assertEquals(set.getPrefixedBy("Ana"), set.subSet("Ana", "Anb"));
+        assertEquals("Anael", set.first());
+        assertEquals("Anna", set.last());
+    }
+}